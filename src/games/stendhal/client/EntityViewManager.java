@@ -17,10 +17,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
@@ -34,6 +40,11 @@ import games.stendhal.client.gui.j2d.entity.EntityViewFactory;
  * Manager for EntityViews. Several methods specify from which threads they may
  * be called. The manager takes care of synchronizing the relevant data between
  * those.
+ * <p>
+ * Added, removed and changed views are passed to the event dispatch thread in
+ * a queue, and only those are updated when the screen is drawn. The views are
+ * kept in a grid by their screen area for finding the visible ones, and the
+ * list of visible views is kept sorted between draws.
  */
 class EntityViewManager {
 	private static final Logger logger = Logger.getLogger(EntityViewManager.class);
@@ -42,14 +53,28 @@ class EntityViewManager {
 	 * Comparator used to sort entities to display.
 	 */
 	private static final EntityViewComparator entityViewComparator = new EntityViewComparator();
+	/** Width and height of the view grid cells in pixels. */
+	private static final int CELL_SIZE = 8 * IGameScreen.SIZE_UNIT_PIXELS;
 
 	/**
-	 * The entity views. Modified in the game loop and read in the EDT.
-	 * Remember to synchronize.
+	 * View additions, removals and changes in the order they happened. Filled
+	 * mostly in the game loop, and emptied in the EDT. A view has at most one
+	 * change from its change listener in the queue at a time.
 	 */
-	private final List<EntityView<IEntity>> views = new ArrayList<EntityView<IEntity>>();
+	private final Queue<ViewChange> changes = new ConcurrentLinkedQueue<ViewChange>();
+	/**
+	 * The areas where the views are placed in the grid. May be accessed only
+	 * in the EDT.
+	 */
+	private final Map<EntityView<IEntity>, Rectangle> placements = new IdentityHashMap<EntityView<IEntity>, Rectangle>();
+	/** Views by grid cell. May be accessed only in the EDT. */
+	private final Map<Long, List<EntityView<IEntity>>> cells = new HashMap<Long, List<EntityView<IEntity>>>();
 	/** Entities on the screen. */
 	private final List<EntityView<IEntity>> visibleViews = new ArrayList<EntityView<IEntity>>();
+	/** The views of visibleViews, for quick look ups. */
+	private final Set<EntityView<IEntity>> visibleSet = Collections.newSetFromMap(new IdentityHashMap<EntityView<IEntity>, Boolean>());
+	/** The area used for finding the current visible views. */
+	private final Rectangle visibleArea = new Rectangle();
 
 	/**
 	 * The entity to view map. May be accessed only in the game loop thread.
@@ -69,21 +94,26 @@ class EntityViewManager {
 		final EntityView<IEntity> view = EntityViewFactory.create(entity);
 
 		if (view != null) {
-			entities.put(entity, view);
-			addEntityView(view);
+			addEntityView(entity, view);
 		}
 		return view;
 	}
 
 	/**
-	 * Add an entity view.
+	 * Add an entity view. Must be called only from the game loop thread.
 	 *
-	 * @param view new view
+	 * @param entity entity
+	 * @param view view belonging to the entity
 	 */
-	private void addEntityView(EntityView<IEntity> view) {
-		synchronized (views) {
-			views.add(view);
-		}
+	void addEntityView(IEntity entity, EntityView<IEntity> view) {
+		entities.put(entity, view);
+		final ViewChange change = new ViewChange(view, ViewChange.Type.CHANGED);
+		view.setChangeListener(() -> {
+			if (change.queued.compareAndSet(false, true)) {
+				changes.add(change);
+			}
+		});
+		changes.add(new ViewChange(view, ViewChange.Type.ADDED));
 	}
 
 	/**
@@ -223,19 +253,9 @@ class EntityViewManager {
 		final EntityView<IEntity> view = entities.remove(entity);
 
 		if (view != null) {
-			removeEntityView(view);
-		}
-	}
-
-	/**
-	 * Remove an entity view.
-	 *
-	 * @param view removed view
-	 */
-	private void removeEntityView(EntityView<IEntity> view) {
-		synchronized (views) {
-			views.remove(view);
+			view.setChangeListener(null);
 			view.release();
+			changes.add(new ViewChange(view, ViewChange.Type.REMOVED));
 		}
 	}
 
@@ -248,6 +268,7 @@ class EntityViewManager {
 		for (Entry<IEntity, EntityView<IEntity>> entry : entities.entrySet()) {
 			// initialize() should trigger making a new image
 			entry.getValue().initialize(entry.getKey());
+			changes.add(new ViewChange(entry.getValue(), ViewChange.Type.CHANGED));
 		}
 	}
 
@@ -260,20 +281,223 @@ class EntityViewManager {
 	 * 	should be only done when the whole screen is drawn
 	 */
 	void prepareViews(Rectangle area, boolean setVisibleArea) {
-		visibleViews.clear();
-		synchronized (views) {
-			for (EntityView<IEntity> view : views) {
+		boolean moved = applyQueuedChanges();
+		// Views can change their area also when drawn
+		for (EntityView<IEntity> view : visibleViews) {
+			if (placements.containsKey(view)) {
+				view.applyChanges();
+				moved |= place(view);
+			}
+		}
+
+		if (moved || !area.equals(visibleArea)) {
+			visibleArea.setBounds(area);
+			findVisibleViews(area);
+		}
+
+		if (setVisibleArea) {
+			for (EntityView<IEntity> view : visibleViews) {
+				view.setVisibleScreenArea(area);
+			}
+		}
+	}
+
+	/**
+	 * Apply the queued view additions, removals and changes.
+	 *
+	 * @return <code>true</code> if any view was added, removed or changed its
+	 * 	area
+	 */
+	private boolean applyQueuedChanges() {
+		boolean moved = false;
+		ViewChange change = changes.poll();
+		while (change != null) {
+			EntityView<IEntity> view = change.view;
+			switch (change.type) {
+			case ADDED:
 				view.applyChanges();
-				if (area.intersects(view.getArea())) {
-					visibleViews.add(view);
-					if (setVisibleArea) {
-						view.setVisibleScreenArea(area);
+				place(view);
+				moved = true;
+				break;
+			case CHANGED:
+				// Cleared before applying, so that later changes get queued
+				change.queued.set(false);
+				// Ignore changes of views that have been removed already
+				if (placements.containsKey(view)) {
+					view.applyChanges();
+					moved |= place(view);
+				}
+				break;
+			default:
+				Rectangle placement = placements.remove(view);
+				if (placement != null) {
+					removeFromCells(view, placement);
+					moved = true;
+				}
+			}
+			change = changes.poll();
+		}
+		return moved;
+	}
+
+	/**
+	 * Get the number of view changes waiting to be applied.
+	 *
+	 * @return number of queued changes
+	 */
+	int getQueuedChanges() {
+		return changes.size();
+	}
+
+	/**
+	 * Place a view in the grid according to its current area.
+	 *
+	 * @param view view
+	 * @return <code>true</code> if the area of the view changed,
+	 * 	<code>false</code> otherwise
+	 */
+	private boolean place(EntityView<IEntity> view) {
+		Rectangle area = view.getArea();
+		Rectangle placement = placements.get(view);
+		if (placement == null) {
+			placement = new Rectangle(area);
+			placements.put(view, placement);
+			addToCells(view, placement);
+			return true;
+		}
+		if (placement.equals(area)) {
+			return false;
+		}
+		removeFromCells(view, placement);
+		placement.setBounds(area);
+		addToCells(view, placement);
+		return true;
+	}
+
+	/**
+	 * Add a view to the grid cells overlapping an area.
+	 *
+	 * @param view view
+	 * @param area area of the view
+	 */
+	private void addToCells(EntityView<IEntity> view, Rectangle area) {
+		for (int cy = minCell(area.y); cy <= maxCell(area.y, area.height); cy++) {
+			for (int cx = minCell(area.x); cx <= maxCell(area.x, area.width); cx++) {
+				Long key = cellKey(cx, cy);
+				List<EntityView<IEntity>> cell = cells.get(key);
+				if (cell == null) {
+					cell = new ArrayList<EntityView<IEntity>>(4);
+					cells.put(key, cell);
+				}
+				cell.add(view);
+			}
+		}
+	}
+
+	/**
+	 * Remove a view from the grid cells overlapping an area.
+	 *
+	 * @param view view
+	 * @param area area the view was placed with
+	 */
+	private void removeFromCells(EntityView<IEntity> view, Rectangle area) {
+		for (int cy = minCell(area.y); cy <= maxCell(area.y, area.height); cy++) {
+			for (int cx = minCell(area.x); cx <= maxCell(area.x, area.width); cx++) {
+				Long key = cellKey(cx, cy);
+				List<EntityView<IEntity>> cell = cells.get(key);
+				if (cell != null) {
+					cell.remove(view);
+					if (cell.isEmpty()) {
+						cells.remove(key);
 					}
 				}
 			}
 		}
+	}
+
+	/**
+	 * Update the visible views for a new visible area, or for changed views.
+	 * Views that stay visible keep their order, so that sorting the list again
+	 * is cheap.
+	 *
+	 * @param area visible area
+	 */
+	private void findVisibleViews(Rectangle area) {
+		Iterator<EntityView<IEntity>> it = visibleViews.iterator();
+		while (it.hasNext()) {
+			EntityView<IEntity> view = it.next();
+			if (!placements.containsKey(view) || !area.intersects(view.getArea())) {
+				it.remove();
+				visibleSet.remove(view);
+			}
+		}
+
+		int added = 0;
+		for (int cy = minCell(area.y); cy <= maxCell(area.y, area.height); cy++) {
+			for (int cx = minCell(area.x); cx <= maxCell(area.x, area.width); cx++) {
+				List<EntityView<IEntity>> cell = cells.get(cellKey(cx, cy));
+				if (cell != null) {
+					for (EntityView<IEntity> view : cell) {
+						if (!visibleSet.contains(view) && area.intersects(view.getArea())) {
+							visibleViews.add(view);
+							visibleSet.add(view);
+							added++;
+						}
+					}
+				}
+			}
+		}
+
+		if (added > visibleViews.size() / 4) {
+			Collections.sort(visibleViews, entityViewComparator);
+		} else {
+			// Insertion sort: linear for the nearly sorted list
+			for (int i = 1; i < visibleViews.size(); i++) {
+				EntityView<IEntity> view = visibleViews.get(i);
+				int j = i - 1;
+				while ((j >= 0) && (entityViewComparator.compare(visibleViews.get(j), view) > 0)) {
+					visibleViews.set(j + 1, visibleViews.get(j));
+					j--;
+				}
+				visibleViews.set(j + 1, view);
+			}
+		}
+	}
+
+	/**
+	 * Get the first grid cell coordinate of a span.
+	 *
+	 * @param start start of the span in pixels
+	 * @return cell coordinate
+	 */
+	private static int minCell(int start) {
+		return Math.floorDiv(start, CELL_SIZE);
+	}
 
-		Collections.sort(visibleViews, entityViewComparator);
+	/**
+	 * Get the last grid cell coordinate of a span. For empty spans the result
+	 * is smaller than the first cell.
+	 *
+	 * @param start start of the span in pixels
+	 * @param length length of the span in pixels
+	 * @return cell coordinate
+	 */
+	private static int maxCell(int start, int length) {
+		if (length <= 0) {
+			return minCell(start) - 1;
+		}
+		return Math.floorDiv(start + length - 1, CELL_SIZE);
+	}
+
+	/**
+	 * Get the key of a grid cell.
+	 *
+	 * @param cx cell x coordinate
+	 * @param cy cell y coordinate
+	 * @return key
+	 */
+	private static Long cellKey(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xffffffffL);
 	}
 
 	/**
@@ -306,6 +530,36 @@ class EntityViewManager {
 		}
 	}
 
+	/**
+	 * A queued view addition, removal or change.
+	 */
+	private static final class ViewChange {
+		/** Kinds of changes. */
+		enum Type {
+			ADDED,
+			CHANGED,
+			REMOVED
+		}
+
+		/** The changed view. */
+		final EntityView<IEntity> view;
+		/** Kind of the change. */
+		final Type type;
+		/** <code>true</code> while the change is waiting in the queue. */
+		final AtomicBoolean queued = new AtomicBoolean();
+
+		/**
+		 * Create a new ViewChange.
+		 *
+		 * @param view changed view
+		 * @param type kind of the change
+		 */
+		ViewChange(EntityView<IEntity> view, Type type) {
+			this.view = view;
+			this.type = type;
+		}
+	}
+
 	/**
 	 * Comparator for sorting the views.
 	 */
@@ -11,10 +11,14 @@
  ***************************************************************************/
 package games.stendhal.client;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.log4j.Logger;
 
@@ -42,6 +46,17 @@ public class GameLoop {
 	 */
 	private volatile boolean running;
 
+	/** Number of screen draws since the last debug report. */
+	private final LongAdder frames = new LongAdder();
+	/** Time spent drawing the screen since the last debug report. */
+	private final LongAdder frameTime = new LongAdder();
+	/** Longest screen draw since the last debug report. */
+	private final LongAccumulator maxFrameTime = new LongAccumulator(Math::max, 0);
+	/** Garbage collection count at the last debug report. */
+	private long lastGcCount;
+	/** Garbage collection time at the last debug report. */
+	private long lastGcTime;
+
 	/**
 	 * Create a new GameLoop.
 	 */
@@ -122,6 +137,18 @@ public class GameLoop {
 		temporaryTasks.add(task);
 	}
 
+	/**
+	 * Record the time used for drawing the game screen, for the debugging
+	 * output.
+	 *
+	 * @param nanos drawing time in nanoseconds
+	 */
+	public void frameDrawn(long nanos) {
+		frames.increment();
+		frameTime.add(nanos);
+		maxFrameTime.accumulate(nanos);
+	}
+
 	/**
 	 * The actual game loop.
 	 */
@@ -150,8 +177,8 @@ public class GameLoop {
 					tempTask = temporaryTasks.poll();
 				}
 
-				if (logger.isDebugEnabled()) {
-					reportClientInfo(refreshTime, lastFpsTime, fps);
+				if (logger.isDebugEnabled()
+						&& reportClientInfo(refreshTime, lastFpsTime, fps)) {
 					fps = 0;
 					lastFpsTime = refreshTime;
 				}
@@ -188,16 +215,39 @@ public class GameLoop {
 	 * @param refreshTime
 	 * @param lastFpsTime
 	 * @param fps
+	 * @return <code>true</code> if the data was written, <code>false</code>
+	 * 	if it is not time for that yet
 	 */
-	private void reportClientInfo(long refreshTime, long lastFpsTime, int fps) {
+	private boolean reportClientInfo(long refreshTime, long lastFpsTime, int fps) {
 		if ((refreshTime - lastFpsTime) >= 1000L) {
 			logger.debug("FPS: " + fps);
+			final long draws = frames.sumThenReset();
+			final long drawTime = frameTime.sumThenReset();
+			final long maxDrawTime = maxFrameTime.getThenReset();
+			if (draws > 0) {
+				logger.debug(String.format("Frame time average/max: %.2f/%.2f ms",
+						drawTime / (draws * 1e6), maxDrawTime / 1e6));
+			}
 			final long freeMemory = Runtime.getRuntime().freeMemory() / 1024;
 			final long totalMemory = Runtime.getRuntime().totalMemory() / 1024;
 
 			logger.debug("Total/Used memory: " + totalMemory + "/"
 					+ (totalMemory - freeMemory));
+			logger.debug("Outfit cache: " + OutfitStore.get().getCacheStatistics());
+
+			long gcCount = 0;
+			long gcTime = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount += Math.max(0, gc.getCollectionCount());
+				gcTime += Math.max(0, gc.getCollectionTime());
+			}
+			logger.debug("GC count/time: " + (gcCount - lastGcCount) + "/"
+					+ (gcTime - lastGcTime) + " ms");
+			lastGcCount = gcCount;
+			lastGcTime = gcTime;
+			return true;
 		}
+		return false;
 	}
 
 	/**
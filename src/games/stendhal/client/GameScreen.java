@@ -539,6 +539,7 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 
 	@Override
 	public void paintComponent(final Graphics g) {
+		final long start = System.nanoTime();
 		g.setColor(Color.BLACK);
 		g.fillRect(0, 0, getWidth(), getHeight());
 		if (StendhalClient.get().isInTransfer()) {
@@ -596,6 +597,7 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 
 		paintOffLineIfNeeded(g2d);
 		graphics.dispose();
+		GameLoop.get().frameDrawn(System.nanoTime() - start);
 	}
 
 	/**
@@ -630,13 +632,13 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 
 		final String set = gameLayers.getAreaName();
 		gameLayers.drawLayers(g, set, "floor_bundle", startTileX,
-				startTileY, layerWidth, layerHeight, "blend_ground", "0_floor",
+				startTileY, layerWidth, layerHeight, true, "blend_ground", "0_floor",
 				"1_terrain", "2_object");
 
 		viewManager.draw(g);
 
 		gameLayers.drawLayers(g, set, "roof_bundle", startTileX,
-				startTileY, layerWidth, layerHeight, "blend_roof", "3_roof",
+				startTileY, layerWidth, layerHeight, false, "blend_roof", "3_roof",
 				"4_roof_add");
 		gameLayers.drawWeather(g, startTileX, startTileY, layerWidth, layerHeight);
 
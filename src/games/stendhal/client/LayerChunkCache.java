@@ -0,0 +1,268 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-rendered images of a static layer bundle, in square chunks of tiles.
+ * Drawing the visible part of the layer needs only a few image draws instead
+ * of drawing every tile separately. Animated tiles are left out of the images
+ * and are drawn on top of them at every draw.
+ * <p>
+ * The images belong to one layer renderer. A new renderer, as created at zone
+ * changes and when the zone coloring changes, drops the images of the old
+ * one. The least recently drawn chunks are dropped when there are more than
+ * needed for covering the screen a couple of times. Must be used only from
+ * the event dispatch thread.
+ */
+final class LayerChunkCache {
+	/** Width and height of the chunks in tiles. */
+	private static final int CHUNK_TILES = 16;
+	/** Minimum number of chunks kept, regardless of the screen size. */
+	private static final int MIN_CHUNKS = 12;
+
+	/**
+	 * <code>true</code> if the layer is drawn on the black screen background,
+	 * so that the chunk images can be opaque.
+	 */
+	private final boolean background;
+	/** Renderer of the layer the chunks were drawn from. */
+	private LayerRenderer renderer;
+	/** Maximum number of chunks kept. */
+	private int capacity = MIN_CHUNKS;
+	/** Chunks by position, in access order. */
+	private final Map<Long, Chunk> chunks = new LinkedHashMap<Long, Chunk>(32, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+			if (size() > capacity) {
+				eldest.getValue().flush();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Create a new LayerChunkCache.
+	 *
+	 * @param background <code>true</code> if the layer is drawn directly on
+	 * 	the black screen background. The chunk images of such layers are
+	 * 	opaque, which makes them considerably faster to draw
+	 */
+	LayerChunkCache(boolean background) {
+		this.background = background;
+	}
+
+	/**
+	 * Draw a layer.
+	 *
+	 * @param g The graphics to draw to
+	 * @param renderer layer renderer
+	 * @param x starting x coordinate in world units
+	 * @param y starting y coordinate in world units
+	 * @param w width in world units
+	 * @param h height in world units
+	 */
+	void draw(Graphics g, LayerRenderer renderer, int x, int y, int w, int h) {
+		if (renderer != this.renderer) {
+			flush();
+			this.renderer = renderer;
+		}
+		if (!(renderer instanceof TileRenderer) || !(g instanceof Graphics2D)) {
+			renderer.draw(g, x, y, w, h);
+			return;
+		}
+
+		TileRenderer tiles = (TileRenderer) renderer;
+		x = Math.max(0, x);
+		y = Math.max(0, y);
+		final int endX = Math.min(x + w, tiles.getWidth());
+		final int endY = Math.min(y + h, tiles.getHeight());
+		if ((endX <= x) || (endY <= y)) {
+			return;
+		}
+
+		final int minChunkX = x / CHUNK_TILES;
+		final int minChunkY = y / CHUNK_TILES;
+		final int maxChunkX = (endX - 1) / CHUNK_TILES;
+		final int maxChunkY = (endY - 1) / CHUNK_TILES;
+		capacity = Math.max(MIN_CHUNKS, 2 * (maxChunkX - minChunkX + 1) * (maxChunkY - minChunkY + 1));
+
+		GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+		for (int cy = minChunkY; cy <= maxChunkY; cy++) {
+			for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+				final Long key = ((long) cx << 32) | cy;
+				Chunk chunk = chunks.get(key);
+				if (chunk == null) {
+					int tileX = cx * CHUNK_TILES;
+					int tileY = cy * CHUNK_TILES;
+					chunk = new Chunk(tileX, tileY, Math.min(CHUNK_TILES, tiles.getWidth() - tileX),
+							Math.min(CHUNK_TILES, tiles.getHeight() - tileY));
+					chunks.put(key, chunk);
+				}
+				if (!chunk.draw(g, gc, tiles, background)) {
+					tiles.draw(g, chunk.tileX, chunk.tileY, chunk.tileWidth, chunk.tileHeight);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release all chunk images.
+	 */
+	void flush() {
+		for (Chunk chunk : chunks.values()) {
+			chunk.flush();
+		}
+		chunks.clear();
+		renderer = null;
+	}
+
+	/**
+	 * A pre-rendered area of a layer.
+	 */
+	private static final class Chunk {
+		/** Number of attempts to draw the image before giving up. */
+		private static final int MAX_TRIES = 3;
+
+		/** Position and size in world units. */
+		final int tileX, tileY, tileWidth, tileHeight;
+		/** Image of the constant tiles. */
+		private VolatileImage image;
+		/** <code>true</code> when the image contents are up to date. */
+		private boolean rendered;
+		/** Map indices of the animated tiles. */
+		private int[] varying;
+
+		/**
+		 * Create a new Chunk.
+		 *
+		 * @param tileX x coordinate in world units
+		 * @param tileY y coordinate in world units
+		 * @param tileWidth width in world units
+		 * @param tileHeight height in world units
+		 */
+		Chunk(int tileX, int tileY, int tileWidth, int tileHeight) {
+			this.tileX = tileX;
+			this.tileY = tileY;
+			this.tileWidth = tileWidth;
+			this.tileHeight = tileHeight;
+		}
+
+		/**
+		 * Draw the chunk, rendering its image first if needed.
+		 *
+		 * @param g The graphics to draw to
+		 * @param gc graphics configuration of the destination
+		 * @param tiles layer renderer
+		 * @param opaque <code>true</code> if the image should be opaque
+		 * @return <code>true</code> if the chunk was drawn, <code>false</code>
+		 * 	if the caller should draw the tiles directly
+		 */
+		boolean draw(Graphics g, GraphicsConfiguration gc, TileRenderer tiles, boolean opaque) {
+			int tries = 0;
+			do {
+				if (++tries > MAX_TRIES) {
+					return false;
+				}
+				if (image == null) {
+					createImage(gc, opaque);
+				}
+				int status = image.validate(gc);
+				if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+					image.flush();
+					createImage(gc, opaque);
+					image.validate(gc);
+				} else if (status == VolatileImage.IMAGE_RESTORED) {
+					rendered = false;
+				}
+				if (!rendered && !render(tiles)) {
+					return false;
+				}
+				g.drawImage(image, tileX * IGameScreen.SIZE_UNIT_PIXELS, tileY * IGameScreen.SIZE_UNIT_PIXELS, null);
+			} while (image.contentsLost());
+
+			for (int mapidx : varying) {
+				tiles.drawTile(g, mapidx);
+			}
+			return true;
+		}
+
+		/**
+		 * Create an empty image for the chunk.
+		 *
+		 * @param gc graphics configuration of the destination
+		 * @param opaque <code>true</code> if the image should be opaque
+		 */
+		private void createImage(GraphicsConfiguration gc, boolean opaque) {
+			image = gc.createCompatibleVolatileImage(tileWidth * IGameScreen.SIZE_UNIT_PIXELS,
+					tileHeight * IGameScreen.SIZE_UNIT_PIXELS, opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+			rendered = false;
+		}
+
+		/**
+		 * Draw the constant tiles to the image.
+		 *
+		 * @param tiles layer renderer
+		 * @return <code>true</code> if the image was rendered,
+		 * 	<code>false</code> if the layer is not ready for drawing
+		 */
+		private boolean render(TileRenderer tiles) {
+			List<Integer> animated = new ArrayList<Integer>();
+			Graphics2D g = image.createGraphics();
+			try {
+				if (image.getTransparency() == Transparency.OPAQUE) {
+					g.setColor(Color.BLACK);
+					g.fillRect(0, 0, image.getWidth(), image.getHeight());
+				} else {
+					g.setComposite(AlphaComposite.Clear);
+					g.fillRect(0, 0, image.getWidth(), image.getHeight());
+					g.setComposite(AlphaComposite.SrcOver);
+				}
+				g.translate(-tileX * IGameScreen.SIZE_UNIT_PIXELS, -tileY * IGameScreen.SIZE_UNIT_PIXELS);
+				if (!tiles.drawConstant(g, tileX, tileY, tileWidth, tileHeight, animated)) {
+					return false;
+				}
+			} finally {
+				g.dispose();
+			}
+
+			varying = new int[animated.size()];
+			for (int i = 0; i < varying.length; i++) {
+				varying[i] = animated.get(i);
+			}
+			rendered = true;
+			return true;
+		}
+
+		/**
+		 * Release the image.
+		 */
+		void flush() {
+			if (image != null) {
+				image.flush();
+				image = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * A cache for composed outfit sprites. Unlike the sprite cache, the memory
+ * use is bounded: the images are counted at 4 bytes per pixel, and the least
+ * recently used sprites are dropped when the total would exceed the budget.
+ * The cache is thread safe.
+ */
+final class OutfitCache {
+	/** Maximum number of bytes used by the cached images. */
+	private final long budget;
+	/** Cached sprites by key, in access order. */
+	private final Map<String, Sprite> sprites = new LinkedHashMap<String, Sprite>(64, 0.75f, true);
+	/** Bytes used by the cached images. */
+	private long bytes;
+	/** Number of lookups that found a sprite. */
+	private long hits;
+	/** Number of lookups that did not find a sprite. */
+	private long misses;
+
+	/**
+	 * Create a new OutfitCache.
+	 *
+	 * @param budget maximum number of bytes used by the cached images
+	 */
+	OutfitCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Get a sprite from the cache.
+	 *
+	 * @param key sprite key
+	 * @return cached sprite, or <code>null</code> if it is not in the cache
+	 */
+	synchronized Sprite get(String key) {
+		Sprite sprite = sprites.get(key);
+		if (sprite != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return sprite;
+	}
+
+	/**
+	 * Get a sprite from the cache without counting the lookup in the hit
+	 * rate. For lookups that repeat one that has been counted already.
+	 *
+	 * @param key sprite key
+	 * @return cached sprite, or <code>null</code> if it is not in the cache
+	 */
+	synchronized Sprite peek(String key) {
+		return sprites.get(key);
+	}
+
+	/**
+	 * Store a sprite in the cache. Sprites larger than the whole budget are
+	 * not stored.
+	 *
+	 * @param key sprite key
+	 * @param sprite sprite
+	 */
+	synchronized void put(String key, Sprite sprite) {
+		long size = size(sprite);
+		if (size > budget) {
+			return;
+		}
+		Sprite old = sprites.put(key, sprite);
+		if (old != null) {
+			bytes -= size(old);
+		}
+		bytes += size;
+
+		Iterator<Sprite> it = sprites.values().iterator();
+		while (bytes > budget) {
+			// the newly added sprite is the last one, and always fits
+			bytes -= size(it.next());
+			it.remove();
+		}
+	}
+
+	/**
+	 * Remove all sprites from the cache.
+	 */
+	synchronized void clear() {
+		sprites.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Get the number of cached sprites.
+	 *
+	 * @return number of sprites
+	 */
+	synchronized int size() {
+		return sprites.size();
+	}
+
+	/**
+	 * Get the memory used by the cached images.
+	 *
+	 * @return used bytes
+	 */
+	synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Get the maximum memory used by the cached images.
+	 *
+	 * @return budget in bytes
+	 */
+	long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the fraction of lookups that found a sprite in the cache.
+	 *
+	 * @return hit rate between 0 and 1, or 0 if there have been no lookups
+	 */
+	synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return (lookups > 0) ? (double) hits / lookups : 0;
+	}
+
+	/**
+	 * Get a short description of the cache state, for the client debug
+	 * information.
+	 *
+	 * @return description
+	 */
+	synchronized String getStatistics() {
+		return String.format("%d sprites, %d/%d kB, hit rate %.1f%% of %d lookups", sprites.size(),
+				bytes / 1024, budget / 1024, 100 * getHitRate(), hits + misses);
+	}
+
+	/**
+	 * Calculate the memory used by a sprite image.
+	 *
+	 * @param sprite sprite
+	 * @return size in bytes
+	 */
+	private static long size(Sprite sprite) {
+		return 4L * sprite.getWidth() * sprite.getHeight();
+	}
+}
@@ -24,9 +24,14 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import org.apache.log4j.Logger;
 import org.json.simple.JSONArray;
@@ -37,7 +42,6 @@ import games.stendhal.client.gui.wt.core.WtWindowManager;
 import games.stendhal.client.sprite.DataLoader;
 import games.stendhal.client.sprite.ImageSprite;
 import games.stendhal.client.sprite.Sprite;
-import games.stendhal.client.sprite.SpriteCache;
 import games.stendhal.client.sprite.SpriteStore;
 import games.stendhal.client.util.JSONLoader;
 
@@ -49,6 +53,8 @@ public class OutfitStore {
 
 	/** outfit directory */
 	private static final String OUTFITS = "data/sprites/outfit";
+	/** Maximum memory used by the composed outfit images. */
+	private static final long CACHE_BUDGET = 32L * 1024 * 1024;
 
 	// these layers should return an empty sprite for index "0"
 	final List<String> emptyForZeroIndex = Arrays.asList("dress", "mouth", "mask", "hair", "hat", "detail");
@@ -69,15 +75,27 @@ public class OutfitStore {
 	 */
 	private SpriteStore store;
 
+	/** Composed outfits. */
+	private final OutfitCache cache = new OutfitCache(CACHE_BUDGET);
+	/** Views waiting for outfits composed in the background, by reference. */
+	private final Map<String, Set<Runnable>> pending = new HashMap<>();
+	/** Thread for composing outfits in the background. */
+	private final Executor composer = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "Outfit composer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	/**
 	 * Create an outfit store.
 	 *
 	 * @param store
 	 *            The sprite store to use.
 	 */
-	private OutfitStore(final SpriteStore store) {
+	OutfitStore(final SpriteStore store) {
 		this.store = store;
-		detailRearLayers = new ArrayList<>();
+		// read by the composing thread
+		detailRearLayers = new CopyOnWriteArrayList<>();
 	}
 
 	public void init() {
@@ -121,22 +139,17 @@ public class OutfitStore {
 	}
 
 	/**
-	 * Build an outfit sprite.
+	 * Get the layer indices of an outfit.
 	 *
-	 * @param strcode
-	 * @param color
-	 * 		coloring data
-	 * @return A walking state tileset.
+	 * @param strcode outfit code
+	 * @return layer indices by layer name. Layers missing from the code have
+	 * 	index 0
 	 */
-	private Sprite buildOutfit(final String strcode, final OutfitColor color) {
+	private Map<String, Integer> parseLayers(final String strcode) {
 		final Map<String, Integer> layer_map = new HashMap<>();
 
-		// make a copy of layer names so it can be amended in cases of special layers
-		final List<String> lnames = new LinkedList<>();
-		lnames.addAll(LAYER_NAMES);
-
-	    // initialize outfit parts to 0 in case some haven't been specified
-		for (String n: lnames) {
+		// initialize outfit parts to 0 in case some haven't been specified
+		for (String n: LAYER_NAMES) {
 			layer_map.put(n, 0);
 		}
 
@@ -147,6 +160,24 @@ public class OutfitStore {
 			}
 		}
 
+		return layer_map;
+	}
+
+	/**
+	 * Build an outfit sprite.
+	 *
+	 * @param strcode
+	 * @param color
+	 * 		coloring data
+	 * @return A walking state tileset.
+	 */
+	Sprite buildOutfit(final String strcode, final OutfitColor color) {
+		final Map<String, Integer> layer_map = parseLayers(strcode);
+
+		// make a copy of layer names so it can be amended in cases of special layers
+		final List<String> lnames = new LinkedList<>();
+		lnames.addAll(LAYER_NAMES);
+
 		ImageSprite sprite;
 
 		Sprite layer;
@@ -372,14 +403,7 @@ public class OutfitStore {
 	 * @return outfit
 	 */
 	private Sprite getOutfit(final String strcode, final OutfitColor color) {
-		// Use the normalized string for the reference
-		String colorString = "null";
-		if (color != null) {
-			colorString = color.toString();
-		}
-
-		final String reference = buildReference(strcode, colorString);
-		return getOutfit(strcode, color, reference);
+		return getOutfit(strcode, color, buildReference(strcode, color));
 	}
 
 	/**
@@ -393,15 +417,11 @@ public class OutfitStore {
 	 * @return outfit
 	 */
 	private Sprite getOutfit(final String strcode, final OutfitColor color, final String reference) {
-		final SpriteCache cache = SpriteCache.get();
-
-		// FIXME: set sprite to null until reference for extended outfit is fixed
-		//Sprite sprite = cache.get(reference);
-		Sprite sprite = null;
+		Sprite sprite = cache.get(reference);
 
 		if (sprite == null) {
 			sprite = buildOutfit(strcode, color);
-			cache.add(reference, sprite);
+			cache.put(reference, sprite);
 		}
 
 		return sprite;
@@ -409,36 +429,193 @@ public class OutfitStore {
 
 	/**
 	 * Get an outfit with color adjustment, such as a player in colored light.
+	 *
+	 * @param strcode outfit code
+	 * @param color colors for coloring some outfit parts, or <code>null</code>
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend blend mode of the adjustment color, or <code>null</code>
+	 * @return outfit
 	 */
 	public Sprite getAdjustedOutfit(final String strcode, final OutfitColor color, final Color adjColor, final Composite blend) {
-		if (adjColor == null || blend == null) {
-			return getOutfit(strcode, color);
-		} else {
-			final String reference = buildReference(strcode, color.toString());
-			String fullRef = reference + ":" + adjColor.getRGB() + blend.toString();
+		final String reference = buildReference(strcode, color, adjColor, blend);
+		final Sprite sprite = cache.get(reference);
+		if (sprite != null) {
+			return sprite;
+		}
+		return composeOutfit(strcode, color, adjColor, blend, reference);
+	}
 
-			// FIXME: set sprite to null until reference for extended outfit is fixed
-			//Sprite sprite = cache.get(fullRef);
-			Sprite sprite = null;
+	/**
+	 * Get an outfit with color adjustment without waiting for it to be
+	 * composed. If the outfit is not in the cache, it is composed in the
+	 * background, and an empty placeholder is returned until it is ready.
+	 *
+	 * @param strcode outfit code
+	 * @param color colors for coloring some outfit parts, or <code>null</code>
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend blend mode of the adjustment color, or <code>null</code>
+	 * @param onReady called once from the composing thread when the outfit is
+	 * 	ready, if the placeholder was returned. Requesting the same outfit
+	 * 	again with the same callback before that does not add another call.
+	 * 	See {@link #cancelOutfit(Runnable)}
+	 * @return outfit, or the placeholder
+	 */
+	public Sprite getAdjustedOutfit(final String strcode, final OutfitColor color, final Color adjColor,
+			final Composite blend, final Runnable onReady) {
+		final String reference = buildReference(strcode, color, adjColor, blend);
+		final Sprite sprite = cache.get(reference);
+		if (sprite != null) {
+			return sprite;
+		}
 
-			if (sprite == null) {
-				Sprite plain = getOutfit(strcode, color);
-				sprite = store.modifySprite(plain, adjColor, blend, fullRef);
+		synchronized (pending) {
+			Set<Runnable> callbacks = pending.get(reference);
+			if (callbacks == null) {
+				callbacks = new LinkedHashSet<>();
+				pending.put(reference, callbacks);
+				composer.execute(() -> composeInBackground(strcode, color, adjColor, blend, reference));
 			}
+			callbacks.add(onReady);
+		}
+
+		return store.getEmptySprite(48 * 3, 64 * 4);
+	}
 
+	/**
+	 * Stop waiting for outfits composed in the background. Views should call
+	 * this when they are released, so that they do not get called anymore.
+	 *
+	 * @param onReady callback given to
+	 * 	{@link #getAdjustedOutfit(String, OutfitColor, Color, Composite, Runnable)}
+	 */
+	public void cancelOutfit(final Runnable onReady) {
+		synchronized (pending) {
+			for (Set<Runnable> callbacks : pending.values()) {
+				callbacks.remove(onReady);
+			}
+		}
+	}
+
+	/**
+	 * Compose an outfit, and notify the views waiting for it.
+	 *
+	 * @param strcode outfit code
+	 * @param color colors for coloring some outfit parts, or <code>null</code>
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend blend mode of the adjustment color, or <code>null</code>
+	 * @param reference outfit reference
+	 */
+	private void composeInBackground(final String strcode, final OutfitColor color, final Color adjColor,
+			final Composite blend, final String reference) {
+		try {
+			composeOutfit(strcode, color, adjColor, blend, reference);
+		} catch (final RuntimeException e) {
+			logger.warn("Cannot build outfit " + reference + ". Using failsafe outfit.", e);
+			cache.put(reference, getFailsafeOutfit());
+		}
+
+		final List<Runnable> callbacks;
+		synchronized (pending) {
+			callbacks = new ArrayList<>(pending.remove(reference));
+		}
+		for (Runnable callback : callbacks) {
+			callback.run();
+		}
+	}
+
+	/**
+	 * Compose an outfit, and store it in the cache. The caller has already
+	 * looked for the outfit in the cache, so the lookups here do not count in
+	 * the hit rate.
+	 *
+	 * @param strcode outfit code
+	 * @param color colors for coloring some outfit parts, or <code>null</code>
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend blend mode of the adjustment color, or <code>null</code>
+	 * @param reference outfit reference
+	 * @return outfit
+	 */
+	private Sprite composeOutfit(final String strcode, final OutfitColor color, final Color adjColor,
+			final Composite blend, final String reference) {
+		Sprite sprite = cache.peek(reference);
+		if (sprite != null) {
 			return sprite;
 		}
+
+		final String plainReference = buildReference(strcode, color);
+		Sprite plain = cache.peek(plainReference);
+		if (plain == null) {
+			plain = buildOutfit(strcode, color);
+			cache.put(plainReference, plain);
+		}
+		if (adjColor == null || blend == null) {
+			return plain;
+		}
+
+		// the outfit cache bounds the memory use, so the sprite cache must
+		// not keep the image
+		sprite = store.createModifiedSprite(plain, adjColor, blend, reference);
+		cache.put(reference, sprite);
+		return sprite;
+	}
+
+	/**
+	 * Get a short description of the outfit cache state, such as its memory
+	 * use and hit rate.
+	 *
+	 * @return description
+	 */
+	public String getCacheStatistics() {
+		return cache.getStatistics();
+	}
+
+	/**
+	 * Create an unique reference for an outfit. Outfit codes that result in
+	 * the same image get the same reference: the layers are listed in drawing
+	 * order with the default indices filled in, and the settings that affect
+	 * the image are included.
+	 *
+	 * @param strcode outfit code
+	 * @param color color information for outfit parts, or <code>null</code>
+	 * @return outfit reference
+	 */
+	String buildReference(final String strcode, final OutfitColor color) {
+		final Map<String, Integer> layer_map = parseLayers(strcode);
+		final StringBuilder sb = new StringBuilder("OUTFIT:");
+		for (String lname : LAYER_NAMES) {
+			Integer index = layer_map.get(lname);
+			// hair is not drawn under certain hats/helmets
+			if (lname.equals("hair") && HATS_NO_HAIR.contains(layer_map.get("hat"))) {
+				index = 0;
+			}
+			sb.append(lname).append('=').append(index).append(',');
+		}
+		if (detailHasRearLayer(layer_map.get("detail"))) {
+			sb.append("rear,");
+		}
+		if (WtWindowManager.getInstance().getPropertyBoolean("gamescreen.nonude", true)) {
+			sb.append("nonude,");
+		}
+		sb.append('@').append(color);
+		return sb.toString();
 	}
 
 	/**
-	 * Create an unique reference for an outfit.
+	 * Create an unique reference for an outfit with color adjustment.
 	 *
-	 * @param code outfit code
-	 * @param colorCode color information for outfit parts
+	 * @param strcode outfit code
+	 * @param color color information for outfit parts, or <code>null</code>
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend blend mode of the adjustment color, or <code>null</code>
 	 * @return outfit reference
 	 */
-	private String buildReference(final String strcode, final String colorCode) {
-		return "OUTFIT:" + strcode + "@" + colorCode;
+	private String buildReference(final String strcode, final OutfitColor color, final Color adjColor,
+			final Composite blend) {
+		final String reference = buildReference(strcode, color);
+		if (adjColor == null || blend == null) {
+			return reference;
+		}
+		return reference + ":" + adjColor.getRGB() + blend.toString();
 	}
 
 	/*
@@ -14,6 +14,8 @@ package games.stendhal.client;
 
 import java.awt.Graphics;
 import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -31,6 +33,8 @@ public class StaticGameLayers {
 	private final ZoneInfo zoneInfo = ZoneInfo.get();
 	/** The current zone. */
 	private Zone currentZone;
+	/** Pre-rendered layer images by layer bundle name. */
+	private final Map<String, LayerChunkCache> chunkCaches = new HashMap<String, LayerChunkCache>();
 
 	public StaticGameLayers() {
 		area = null;
@@ -129,15 +133,22 @@ public class StaticGameLayers {
 	 * @param y
 	 * @param width
 	 * @param height
+	 * @param background <code>true</code> if the layers are drawn directly on
+	 * 	the black screen background
 	 * @param adjustLayer name of the adjustment layer
 	 * @param layers names of the layer set, starting from the bottom
 	 */
 	void drawLayers(Graphics g, final String area, final String compositeName,
 			final int x, final int y, final int width, final int height,
-			String adjustLayer, String ... layers) {
+			boolean background, String adjustLayer, String ... layers) {
 		LayerRenderer lr = getMerged(area, compositeName, adjustLayer, layers);
 		if (lr != null) {
-			lr.draw(g, x, y, width, height);
+			LayerChunkCache cache = chunkCaches.get(compositeName);
+			if (cache == null) {
+				cache = new LayerChunkCache(background);
+				chunkCaches.put(compositeName, cache);
+			}
+			cache.draw(g, lr, x, y, width, height);
 		}
 	}
 
@@ -15,6 +15,7 @@ package games.stendhal.client;
 import java.awt.Graphics;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -95,6 +96,53 @@ class TileRenderer extends LayerRenderer {
 		return true;
 	}
 
+	/**
+	 * Draw the tiles of an area that look the same at every draw, and collect
+	 * the map indices of the animated tiles.
+	 *
+	 * @param g The graphics to draw to
+	 * @param x starting x coordinate in world units
+	 * @param y starting y coordinate in world units
+	 * @param w width in world units
+	 * @param h height in world units
+	 * @param varying list for the indices of the tiles that were not drawn
+	 * @return <code>true</code> if the tiles were drawn, <code>false</code> if
+	 * 	the layer is not ready for drawing yet
+	 */
+	boolean drawConstant(Graphics g, int x, int y, int w, int h, List<Integer> varying) {
+		if (!initSpriteMap()) {
+			return false;
+		}
+
+		final int endX = Math.min(x + w, getWidth());
+		final int endY = Math.min(y + h, getHeight());
+
+		for (int j = y; j < endY; j++) {
+			int mapidx = (j * width) + x;
+			for (int i = x; i < endX; i++) {
+				Sprite sprite = spriteMap[mapidx];
+				if (sprite.isConstant()) {
+					sprite.draw(g, i * IGameScreen.SIZE_UNIT_PIXELS, j * IGameScreen.SIZE_UNIT_PIXELS);
+				} else {
+					varying.add(mapidx);
+				}
+				mapidx++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Draw a single tile.
+	 *
+	 * @param g The graphics to draw to
+	 * @param mapidx index of the tile in the map
+	 */
+	void drawTile(Graphics g, int mapidx) {
+		spriteMap[mapidx].draw(g, (mapidx % width) * IGameScreen.SIZE_UNIT_PIXELS,
+				(mapidx / width) * IGameScreen.SIZE_UNIT_PIXELS);
+	}
+
 	@Override
 	public void draw(Graphics g, int x, int y, final int w, final int h) {
 		if (!initSpriteMap()) {
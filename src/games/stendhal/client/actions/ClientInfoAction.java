@@ -13,6 +13,7 @@
 package games.stendhal.client.actions;
 
 import games.stendhal.client.ClientSingletonRepository;
+import games.stendhal.client.OutfitStore;
 import games.stendhal.client.gui.chatlog.HeaderLessEventLine;
 import games.stendhal.common.Debug;
 import games.stendhal.common.NotificationType;
@@ -65,6 +66,7 @@ class ClientInfoAction implements SlashAction {
 		final long freeMemory = Runtime.getRuntime().freeMemory() / 1024;
 		final long totalMemory = Runtime.getRuntime().totalMemory() / 1024;
 		sb.append("Total/Used memory: " + totalMemory + "/" + (totalMemory - freeMemory) + "\n");
+		sb.append("Outfit cache: " + OutfitStore.get().getCacheStatistics() + "\n");
 		ClientSingletonRepository.getUserInterface().addEventLine(new HeaderLessEventLine(sb.toString(), NotificationType.CLIENT));
 
 		if (first) {
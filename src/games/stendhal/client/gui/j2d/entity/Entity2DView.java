@@ -120,6 +120,8 @@ public abstract class Entity2DView<T extends IEntity> implements EntityView<T> {
 	 * Some model value changed.
 	 */
 	private volatile boolean changed;
+	/** Listener notified when the view is marked changed. */
+	private volatile Runnable changeListener;
 	/** Additional sprites attached to the view. */
 	private Collection<AttachedSprite> attachedSprites;
 
@@ -287,6 +289,15 @@ public abstract class Entity2DView<T extends IEntity> implements EntityView<T> {
 	 */
 	void markChanged() {
 		changed = true;
+		Runnable listener = changeListener;
+		if (listener != null) {
+			listener.run();
+		}
+	}
+
+	@Override
+	public void setChangeListener(Runnable listener) {
+		changeListener = listener;
 	}
 
 	/**
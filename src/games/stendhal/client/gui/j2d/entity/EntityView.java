@@ -92,4 +92,11 @@ public interface EntityView<T extends IEntity> extends Inspectable {
 	 * Update the view with the changes in entity.
 	 */
 	void applyChanges();
+	/**
+	 * Set the listener that is notified whenever the view gets changes that
+	 * {@link #applyChanges()} should handle.
+	 *
+	 * @param listener listener, or <code>null</code> to remove the listener
+	 */
+	void setChangeListener(Runnable listener);
 }
@@ -164,9 +164,10 @@ class Player2DView<T extends Player> extends RPEntity2DView<T> {
 				sb.append(",hair=" + hair);
 				sb.append(",detail=" + detail);
 
-				outfit = store.getAdjustedOutfit(sb.toString(), color, info.getZoneColor(), info.getColorMethod());
+				outfit = store.getAdjustedOutfit(sb.toString(), color, info.getZoneColor(), info.getColorMethod(),
+						outfitReady);
 			} else {
-				outfit = store.getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod());
+				outfit = store.getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod(), outfitReady);
 			}
 
 			if (entity.hasStatus(StatusID.ZOMBIE)) {
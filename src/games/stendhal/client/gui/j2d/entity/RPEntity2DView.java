@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 
 import games.stendhal.client.IGameScreen;
+import games.stendhal.client.OutfitStore;
 import games.stendhal.client.entity.ActionType;
 import games.stendhal.client.entity.Entity;
 import games.stendhal.client.entity.IEntity;
@@ -112,6 +113,14 @@ abstract class RPEntity2DView<T extends RPEntity> extends ActiveEntity2DView<T>
 	private final List<AbstractStatusIconManager> iconManagers = new ArrayList<AbstractStatusIconManager>();
 	private HealthBar healthBar;
 	private int statusBarYOffset;
+	/**
+	 * Rebuilds the representation when an outfit composed in the background
+	 * is ready.
+	 */
+	protected final Runnable outfitReady = () -> {
+		representationChanged = true;
+		markChanged();
+	};
 
 	/**
 	 * Flag for detecting if any of the icon manager managed icons have
@@ -920,6 +929,13 @@ abstract class RPEntity2DView<T extends RPEntity> extends ActiveEntity2DView<T>
 		return 8000;
 	}
 
+	@Override
+	public void release() {
+		// do not get called back for outfits that are still being composed
+		OutfitStore.get().cancelOutfit(outfitReady);
+		super.release();
+	}
+
 	@Override
 	public void setVisibleScreenArea(Rectangle area) {
 		Rectangle drawingArea = getDrawingArea();
@@ -175,6 +175,17 @@ public class CompositeSprite implements Sprite {
 		return slaves.get(0).getWidth();
 	}
 
+	@Override
+	public boolean isConstant() {
+		// Compositing keeps the animated slaves as they are
+		for (int i = 0; i < slaves.size(); i++) {
+			if (!slaves.get(i).isConstant()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Merge all ImageSprite layers.
 	 */
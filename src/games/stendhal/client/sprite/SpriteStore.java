@@ -299,6 +299,24 @@ public class SpriteStore {
 	 * @return modified sprite
 	 */
 	public Sprite modifySprite(Sprite base, Color color, Composite blend, Object ref) {
+		Sprite sprite = createModifiedSprite(base, color, blend, ref);
+		SpriteCache cache = SpriteCache.get();
+		cache.add(ref, sprite);
+
+		return sprite;
+	}
+
+	/**
+	 * Create a modified variant of a sprite without storing it in the sprite
+	 * cache. For callers that manage the life time of the sprite themselves.
+	 *
+	 * @param base original sprite
+	 * @param color adjustment color
+	 * @param blend blend mode for applying the adjustment color
+	 * @param ref reference for the new sprite
+	 * @return modified sprite
+	 */
+	public Sprite createModifiedSprite(Sprite base, Color color, Composite blend, Object ref) {
 		int width = base.getWidth();
 		int height = base.getHeight();
 		BufferedImage image = gc.createCompatibleImage(width, height,
@@ -310,11 +328,7 @@ public class SpriteStore {
 		g.fillRect(0, 0, width, height);
 		g.dispose();
 
-		Sprite sprite = new ImageSprite(image, ref);
-		SpriteCache cache = SpriteCache.get();
-		cache.add(ref, sprite);
-
-		return sprite;
+		return new ImageSprite(image, ref);
 	}
 
 	/**
@@ -28,10 +28,17 @@ public class CollisionDetection {
 
 	private int height;
 
+	/**
+	 * Connected component of each position, or 0 for collision tiles.
+	 * <code>null</code> when it needs to be recalculated.
+	 */
+	private volatile int[] components;
+
 	/**
 	 * Clear the collision map.
 	 */
 	public void clear() {
+		components = null;
 		if (map == null) {
 			map = new CollisionMap(width, height);
 		}
@@ -52,6 +59,7 @@ public class CollisionDetection {
 
 		this.width = width;
 		this.height = height;
+		components = null;
 
 		clear();
 	}
@@ -67,6 +75,7 @@ public class CollisionDetection {
 			return;
 		}
 		map.set(x, y);
+		components = null;
 	}
 
 	/**
@@ -90,6 +99,7 @@ public class CollisionDetection {
 				}
 			}
 		}
+		components = null;
 	}
 
 	/**
@@ -194,6 +204,47 @@ public class CollisionDetection {
 		return map.get(x, y);
 	}
 
+	/**
+	 * Check if a straight line between two positions crosses collision
+	 * tiles. The line is rendered the same way as by {@link Line}, always
+	 * from the left (or upper) point, so that the result does not depend on
+	 * the direction.
+	 *
+	 * @param x1 x coordinate of the first point
+	 * @param y1 y coordinate of the first point
+	 * @param x2 x coordinate of the second point
+	 * @param y2 y coordinate of the second point
+	 * @return <code>true</code> if any point of the line is a collision tile,
+	 * 	or outside the map
+	 */
+	public boolean collidesOnLine(final int x1, final int y1, final int x2, final int y2) {
+		final int startX;
+		final int startY;
+		final int deltaX;
+		final int deltaY;
+		if ((x1 < x2) || ((x1 == x2) && (y1 < y2))) {
+			startX = x1;
+			startY = y1;
+			deltaX = x2 - x1;
+			deltaY = y2 - y1;
+		} else {
+			startX = x2;
+			startY = y2;
+			deltaX = x1 - x2;
+			deltaY = y1 - y2;
+		}
+		final int steps = Math.max(Math.abs(deltaX), Math.abs(deltaY));
+		if (collides(startX, startY)) {
+			return true;
+		}
+		for (int step = 1; step <= steps; step++) {
+			if (collides(startX + (deltaX * step) / steps, startY + (deltaY * step) / steps)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Get the width of the collision map.
 	 *
@@ -211,4 +262,122 @@ public class CollisionDetection {
 	public int getHeight() {
 		return height;
 	}
+
+	/**
+	 * Calculate the connected components of the walkable positions, if they
+	 * are not known already. They are calculated on demand otherwise, this
+	 * allows doing it at load time.
+	 */
+	public void updateComponents() {
+		getComponents();
+	}
+
+	/**
+	 * Get the connected component of a position. Positions that can reach
+	 * each other by walking horizontally and vertically over non collision
+	 * tiles have the same component.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return component number, or 0 for collision tiles and positions
+	 * 	outside the map
+	 */
+	public int getComponent(final int x, final int y) {
+		if ((x < 0) || (x >= width) || (y < 0) || (y >= height)) {
+			return 0;
+		}
+		return getComponents()[x + y * width];
+	}
+
+	/**
+	 * Check if an area could be reached from a position according to the
+	 * static collision. A <code>false</code> result means that no entity can
+	 * walk from the position to the area.
+	 *
+	 * @param x x coordinate of the start position
+	 * @param y y coordinate of the start position
+	 * @param area target area
+	 * @return <code>false</code> if the area is certainly unreachable,
+	 * 	otherwise <code>true</code>
+	 */
+	public boolean isConnected(final int x, final int y, final Rectangle2D area) {
+		final int component = getComponent(x, y);
+		if (component == 0) {
+			// Standing on a collision; nothing is known
+			return true;
+		}
+
+		final int startx = (int) Math.max(0, Math.floor(area.getMinX()));
+		final int endx = (int) Math.min(width, Math.ceil(area.getMaxX()));
+		final int starty = (int) Math.max(0, Math.floor(area.getMinY()));
+		final int endy = (int) Math.min(height, Math.ceil(area.getMaxY()));
+		final int[] comps = getComponents();
+		for (int j = starty; j < endy; j++) {
+			for (int i = startx; i < endx; i++) {
+				if (comps[i + j * width] == component) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the component data, calculating it if needed.
+	 *
+	 * @return component numbers in row major order
+	 */
+	private int[] getComponents() {
+		int[] result = components;
+		if (result == null) {
+			result = calculateComponents();
+			components = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Label the connected components with a flood fill.
+	 *
+	 * @return component numbers in row major order
+	 */
+	private int[] calculateComponents() {
+		final int[] result = new int[width * height];
+		final int[] queue = new int[width * height];
+		int component = 0;
+		for (int start = 0; start < result.length; start++) {
+			if ((result[start] != 0) || map.get(start % width, start / width)) {
+				continue;
+			}
+			component++;
+			result[start] = component;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+			while (head < tail) {
+				final int pos = queue[head++];
+				final int x = pos % width;
+				final int y = pos / width;
+				if ((x > 0) && (result[pos - 1] == 0) && !map.get(x - 1, y)) {
+					result[pos - 1] = component;
+					queue[tail++] = pos - 1;
+				}
+				if ((x < width - 1) && (result[pos + 1] == 0) && !map.get(x + 1, y)) {
+					result[pos + 1] = component;
+					queue[tail++] = pos + 1;
+				}
+				if ((y > 0) && (result[pos - width] == 0) && !map.get(x, y - 1)) {
+					result[pos - width] = component;
+					queue[tail++] = pos - width;
+				}
+				if ((y < height - 1) && (result[pos + width] == 0) && !map.get(x, y + 1)) {
+					result[pos + width] = component;
+					queue[tail++] = pos + width;
+				}
+			}
+		}
+
+		return result;
+	}
 }
@@ -15,24 +15,32 @@ package games.stendhal.common;
 
 
 import java.awt.geom.Rectangle2D;
-import java.util.BitSet;
+import java.util.Arrays;
 
 import games.stendhal.common.tiled.LayerDefinition;
 
+/**
+ * A binary map of tiles. The tiles are packed as bits in row major order,
+ * each row starting at a new <code>long</code>, so that checking a rectangle
+ * needs only a few word operations per row, and no allocations.
+ */
 public class CollisionMap {
+	/** log2 of the number of bits in a word. */
+	private static final int WORD_SHIFT = 6;
+	/** Mask for the bit position in a word. */
+	private static final int BIT_MASK = 63;
 
 	private final int width;
 	private final int height;
-	private final BitSet[] colls;
+	/** Words per row. */
+	private final int stride;
+	private final long[] bits;
 
 	public CollisionMap(final int width, final int height) {
 		this.width = width;
 		this.height = height;
-		colls = new BitSet[width];
-		for (int i = 0; i < width; i++) {
-			colls[i] = new BitSet();
-		}
-
+		stride = (width + BIT_MASK) >>> WORD_SHIFT;
+		bits = new long[stride * height];
 	}
 
 	public CollisionMap(final LayerDefinition layer) {
@@ -55,12 +63,17 @@ public class CollisionMap {
 	}
 
 	public boolean get(final int i, final int j) {
-		return colls[i].get(j);
+		if ((i < 0) || (i >= width) || (j < 0) || (j >= height)) {
+			return false;
+		}
+		return (bits[j * stride + (i >>> WORD_SHIFT)] & (1L << i)) != 0;
 	}
 
 	public void set(final int i, final int j) {
-
-		colls[i].set(j);
+		if ((i < 0) || (i >= width) || (j < 0) || (j >= height)) {
+			return;
+		}
+		bits[j * stride + (i >>> WORD_SHIFT)] |= 1L << i;
 	}
 
 	public boolean collides(final int x, final int y, final int width, final int height) {
@@ -72,20 +85,42 @@ public class CollisionMap {
 			return true;
 		}
 
-		final BitSet result = new BitSet();
-		for (int i = x; i < x + width; i++) {
-			result.or(colls[i]);
+		if (width <= 0) {
+			return false;
 		}
 
-		return !result.get(y, y + height).isEmpty();
+		final int firstWord = x >>> WORD_SHIFT;
+		final int lastWord = (x + width - 1) >>> WORD_SHIFT;
+		final long firstMask = -1L << x;
+		final long lastMask = -1L >>> (BIT_MASK - ((x + width - 1) & BIT_MASK));
+		for (int row = y; row < y + height; row++) {
+			final int start = row * stride;
+			if (firstWord == lastWord) {
+				if ((bits[start + firstWord] & firstMask & lastMask) != 0) {
+					return true;
+				}
+			} else {
+				if ((bits[start + firstWord] & firstMask) != 0) {
+					return true;
+				}
+				for (int word = firstWord + 1; word < lastWord; word++) {
+					if (bits[start + word] != 0) {
+						return true;
+					}
+				}
+				if ((bits[start + lastWord] & lastMask) != 0) {
+					return true;
+				}
+			}
+		}
+
+		return false;
 	}
 
 	public void clear() {
-		for (int i = 0; i < this.width; i++) {
-			colls[i].clear();
-		}
-
+		Arrays.fill(bits, 0L);
 	}
+
 	public static CollisionMap create(final LayerDefinition layer) {
 
 		CollisionMap collissionMap = new CollisionMap(layer.getWidth(), layer
@@ -101,15 +136,21 @@ public class CollisionMap {
 	}
 
 	public void unset(final int i, final int k) {
-		colls[i].clear(k);
-
+		if ((i < 0) || (i >= width) || (k < 0) || (k >= height)) {
+			return;
+		}
+		bits[k * stride + (i >>> WORD_SHIFT)] &= ~(1L << i);
 	}
 
 	public void set(final Rectangle2D shape) {
-		int y = (int) shape.getY();
-		for (int x = (int) shape.getX(); x < shape.getX() + shape.getWidth(); x++) {
-
-			colls[x].set(y, (int) (y + shape.getHeight()));
+		final int y = (int) shape.getY();
+		final int startY = Math.max(0, y);
+		final int endY = Math.min(height, (int) (y + shape.getHeight()));
+		final double endX = Math.min(width, shape.getX() + shape.getWidth());
+		for (int x = Math.max(0, (int) shape.getX()); x < endX; x++) {
+			for (int j = startY; j < endY; j++) {
+				set(x, j);
+			}
 		}
 
 	}
@@ -23,17 +23,49 @@ public class Rand {
 
 	private static Random rand;
 
+	/** Generators used by single threads instead of the shared one. */
+	private static final ThreadLocal<Random> threadGenerator = new ThreadLocal<Random>();
+
 	static {
 		rand = new Random();
 	}
 
+	/**
+	 * Set the generator used by the current thread. The server uses this to
+	 * give each zone its own generator, when the zones are processed in
+	 * parallel.
+	 *
+	 * @param generator generator for the current thread, or <code>null</code>
+	 * 	to use the shared generator again
+	 */
+	public static void setThreadGenerator(final Random generator) {
+		if (generator == null) {
+			threadGenerator.remove();
+		} else {
+			threadGenerator.set(generator);
+		}
+	}
+
+	/**
+	 * Get the generator of the current thread.
+	 *
+	 * @return generator
+	 */
+	private static Random generator() {
+		final Random generator = threadGenerator.get();
+		if (generator != null) {
+			return generator;
+		}
+		return rand;
+	}
+
 	/**
 	 * Simulates flipping a coin.
 	 *
 	 * @return Either 1 or 2, equally distributed.
 	 */
 	public static int throwCoin() {
-		return rand.nextInt(2) + 1;
+		return generator().nextInt(2) + 1;
 	}
 
 	/**
@@ -42,7 +74,7 @@ public class Rand {
 	 * @return A random number between 1 and 6, equally distributed.
 	 */
 	public static int roll1D6() {
-		return rand.nextInt(6) + 1;
+		return generator().nextInt(6) + 1;
 	}
 
 	/**
@@ -51,7 +83,7 @@ public class Rand {
 	 * @return A random number between 1 and 20, equally distributed.
 	 */
 	public static int roll1D20() {
-		return rand.nextInt(20) + 1;
+		return generator().nextInt(20) + 1;
 	}
 
 	/**
@@ -60,7 +92,7 @@ public class Rand {
 	 * @return A random number between 1 and 100, equally distributed.
 	 */
 	public static int roll1D100() {
-		return rand.nextInt(100) + 1;
+		return generator().nextInt(100) + 1;
 	}
 
 
@@ -79,7 +111,7 @@ public class Rand {
 		final int max = Math.max(a, b);
 		final int min = Math.min(a, b);
 
-		return rand.nextInt(max - min + 1) + min;
+		return generator().nextInt(max - min + 1) + min;
 	}
 
 	/**
@@ -90,7 +122,7 @@ public class Rand {
 	 * @return A random number between 0 and <i>n</i> - 1, equally distributed.
 	 */
 	public static int rand(final int n) {
-		return rand.nextInt(n);
+		return generator().nextInt(n);
 	}
 
 	/**
@@ -99,7 +131,7 @@ public class Rand {
 	 * @return A random number between 0 and 1, equally distributed.
 	 */
 	public static double rand() {
-		return rand.nextDouble();
+		return generator().nextDouble();
 	}
 
 	/**
@@ -170,7 +202,7 @@ public class Rand {
 	 * @return An integer near <i>mean</i>
 	 */
 	public static int randGaussian(final int mean, final int sd) {
-		return (int) (rand.nextGaussian() * sd + mean);
+		return (int) (generator().nextGaussian() * sd + mean);
 	}
 
 	/**
@@ -181,7 +213,7 @@ public class Rand {
 	 * @return An integer exponential variate <i>mean</i>
 	 */
 	public static int randExponential(final int mean) {
-		return (int) (-mean * Math.log(rand.nextDouble()));
+		return (int) (-mean * Math.log(generator().nextDouble()));
 	}
 
 	/**
@@ -204,6 +236,6 @@ public class Rand {
 	 * @return true or false randomly
 	 */
 	public static boolean flipCoin(final double propability) {
-		return rand.nextDouble() <= propability;
+		return generator().nextDouble() <= propability;
 	}
 }
@@ -12,8 +12,6 @@
  ***************************************************************************/
 package games.stendhal.common.parser;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.apache.log4j.Logger;
@@ -30,11 +28,17 @@ public final class ConversationParser extends ErrorBuffer {
 
 	private static final Logger LOGGER = Logger.getLogger(ConversationParser.class);
 
+	/** Maximum number of cached trigger Expressions. */
+	private static final int TRIGGER_CACHE_SIZE = 20000;
+
+	/** Maximum number of cached matching Sentences. */
+	private static final int MATCHING_CACHE_SIZE = 5000;
+
 	/** A cache to hold pre-parsed trigger Expressions. */
-    private static Map<String, Expression> triggerExpressionsCache = new HashMap<String, Expression>();
+    private static final ParserCache<Expression> triggerExpressionsCache = new ParserCache<Expression>(TRIGGER_CACHE_SIZE);
 
     /** A cache to hold pre-parsed matching Sentences. */
-    private static Map<String, Sentence> matchingSentenceCache = new HashMap<String, Sentence>();
+    private static final ParserCache<Sentence> matchingSentenceCache = new ParserCache<Sentence>(MATCHING_CACHE_SIZE);
 
     /** Tokenizer to split a sentence into words */
     private final transient StringTokenizer tokenizer;
@@ -62,6 +66,24 @@ public final class ConversationParser extends ErrorBuffer {
 		tokenizer = new StringTokenizer(textWithoutPunctation);
     }
 
+    /**
+     * Get the cache of trigger Expressions, for statistics.
+     *
+     * @return trigger expression cache
+     */
+    public static ParserCache<Expression> getTriggerExpressionsCache() {
+        return triggerExpressionsCache;
+    }
+
+    /**
+     * Get the cache of matching Sentences, for statistics.
+     *
+     * @return matching sentence cache
+     */
+    public static ParserCache<Sentence> getMatchingSentenceCache() {
+        return matchingSentenceCache;
+    }
+
     /**
      *
      * @param text
@@ -0,0 +1,105 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe cache of parse results with a maximum size. When the cache is
+ * full, the least recently used entry is dropped. The number of hits and
+ * misses is counted.
+ *
+ * @param <V> type of the parse results
+ */
+public final class ParserCache<V> {
+	private final Map<String, V> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create a new cache.
+	 *
+	 * @param maxSize maximum number of entries
+	 */
+	ParserCache(final int maxSize) {
+		entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Get a cached parse result.
+	 *
+	 * @param text parsed text
+	 * @return cached result, or <code>null</code> if the text is not cached
+	 */
+	V get(final String text) {
+		final V value;
+		synchronized (entries) {
+			value = entries.get(text);
+		}
+		if (value != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Store a parse result.
+	 *
+	 * @param text parsed text
+	 * @param value result
+	 */
+	void put(final String text, final V value) {
+		synchronized (entries) {
+			entries.put(text, value);
+		}
+	}
+
+	/**
+	 * Get the number of cached entries.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Get the number of lookups that found a cached result.
+	 *
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of lookups that did not find a cached result.
+	 *
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -24,7 +24,8 @@ public class SimilarExprMatcher extends ExpressionMatcher {
     }
 
     /**
-     * Check for string similarity giving a limit quotient. Comparison is case insensitive.
+     * Check for string similarity giving a limit quotient. Comparison is case insensitive, see
+     * {@link #limitedLevenshtein}.
      *
      * @param str1
      * @param str2
@@ -45,10 +46,27 @@ public class SimilarExprMatcher extends ExpressionMatcher {
             return len1 == len2;
         }
 
-        final int shorterLength = Math.min(len1, len2);
-        final int limit = (int) ((shorterLength * delta * shorterLength + (shorterLength - 1)) / shorterLength);
+        return compareLevenshtein(str1, str2, getLimit(Math.min(len1, len2), delta));
+    }
 
-        return compareLevenshtein(str1, str2, limit);
+    /**
+     * Calculate the maximum distance for two strings to be similar.
+     * As the distance is at least the difference of the string lengths, two
+     * strings can only be similar if their lengths differ by no more than the
+     * limit calculated for the length of the longer one.
+     *
+     * @param length
+     *            length of the shorter string
+     * @param delta
+     *            limit quotient
+     * @return maximum allowed distance
+     */
+    public static int getLimit(final int length, final double delta) {
+        if (length == 0) {
+            return 0;
+        }
+
+        return (int) ((length * delta * length + (length - 1)) / length);
     }
 
     /**
@@ -67,94 +85,111 @@ public class SimilarExprMatcher extends ExpressionMatcher {
         } else if (limit < 1) {
             return false;
         } else {
-            final int dist = limitedLevenshtein(str1.toLowerCase(), str2.toLowerCase(), 0, 0, limit);
-
-            return dist <= limit;
+            return limitedLevenshtein(str1, str2, limit) <= limit;
         }
     }
 
     /**
-     * Calculate the Levenshtein distance of two strings using index arithmetic given a maximum distance value to
-     * terminate calculation. This is not exactly the Levenshtein algorithm, but fits our need to quickly look for
-     * similar strings.
+     * Calculate the Levenshtein distance of two strings up to a maximum distance. Only the diagonal band of
+     * the distance matrix within the maximum distance is calculated, one row at a time, and the calculation
+     * stops as soon as a row exceeds the limit. Characters are compared case insensitively, like in
+     * String.equalsIgnoreCase(), independent of the default locale. It differs from the distance of the
+     * strings lower cased with Locale.ENGLISH only for the few characters whose case mappings are not
+     * one to one, like the long s, the final sigma or the dotted capital I.
      *
      * @param str1
      * @param str2
-     * @param idx1
-     *            current index
-     * @param idx2
-     *            current index
      * @param limit
      *            maximum allowed distance
-     * @return number of differing chars
+     * @return distance, or limit + 1 if the distance is larger than the limit
      */
-    private static int limitedLevenshtein(final String str1, final String str2, int idx1, int idx2, final int limit) {
-        // As long as the current characters match, we can go straight forward.
-        // Stop if we reach the end of one of the strings or find a difference.
-        while (true) {
-            if (idx1 == str1.length()) {
-                return str2.length() - idx2;
-            } else if (idx2 == str2.length()) {
-                return str1.length() - idx1;
-            } else if (str1.charAt(idx1) != str2.charAt(idx2)) {
-                // If we reach here, the distance is at least 1, so break if limit is less.
-                if (limit < 1) {
-                    return 1;
-                } else {
-                    return 1 + bestLimLev(str1, str2, idx1, idx2, limit - 1);
+    static int limitedLevenshtein(final String str1, final String str2, final int limit) {
+        final int len1 = str1.length();
+        final int len2 = str2.length();
+        final int tooFar = limit + 1;
+
+        // The distance is at least the difference of the lengths.
+        if (Math.abs(len1 - len2) > limit) {
+            return tooFar;
+        }
+
+        // row[j] holds the distance between the current prefix of str1 and the first j characters of str2.
+        final int[] row = getRow(len2 + 1);
+        for (int j = 0; j <= len2; ++j) {
+            row[j] = Math.min(j, tooFar);
+        }
+
+        for (int i = 1; i <= len1; ++i) {
+            final int from = Math.max(1, i - limit);
+            final int to = Math.min(len2, i + limit);
+            final char c1 = str1.charAt(i - 1);
+
+            // distance of the previous row in the previous column
+            int diag = row[from - 1];
+            // distance of the current row in the previous column; left of the band it is too far
+            int left = (from == 1) ? Math.min(i, tooFar) : tooFar;
+            row[from - 1] = left;
+            int rowMin = left;
+
+            for (int j = from; j <= to; ++j) {
+                final int up = row[j];
+                int dist = diag;
+
+                if (!equalChars(c1, str2.charAt(j - 1))) {
+                    dist = 1 + Math.min(diag, Math.min(up, left));
+
+                    if (dist > tooFar) {
+                        dist = tooFar;
+                    }
+                }
+
+                diag = up;
+                row[j] = dist;
+                left = dist;
+
+                if (dist < rowMin) {
+                    rowMin = dist;
                 }
             }
 
-            ++idx1;
-            ++idx2;
+            if (rowMin > limit) {
+                return tooFar;
+            }
         }
+
+        return row[len2];
     }
 
     /**
-     * Called the limited Levenstein distance for two differing strings.
-     * @param str1
-     * @param str2
-     * @param idx1
-     * @param idx2
-     * @param limit
-     * @return the distance
+     * Per thread buffer for the rows of the distance matrix.
      */
-    private static int bestLimLev(final String str1, final String str2, final int idx1, final int idx2, final int limit) {
-        // check for a replaced character
-        final int d1 = limitedLevenshtein(str1, str2, idx1 + 1, idx2 + 1, limit);
-
-        // Shortcut, no other result can be better than 0.
-        if (d1 == 0) {
-            return 0;
-        }
+    private static final ThreadLocal<int[]> rowBuffer = new ThreadLocal<int[]>();
 
-        // check for an inserted character
-        final int d2 = limitedLevenshtein(str1, str2, idx1 + 1, idx2, limit);
+    private static int[] getRow(final int size) {
+        int[] row = rowBuffer.get();
 
-        // Shortcut, no result can be better than 0.
-        if (d2 == 0) {
-            return 0;
+        if ((row == null) || (row.length < size)) {
+            row = new int[Math.max(size, 32)];
+            rowBuffer.set(row);
         }
 
-        // check for a removed character
-        final int d3 = limitedLevenshtein(str1, str2, idx1, idx2 + 1, limit);
-
-        // Return the best of the three results.
-        return min(d1, d2, d3);
+        return row;
     }
 
-    private static int min(final int d1, final int d2, final int d3) {
-        int d = d1;
+    private static boolean equalChars(final char c1, final char c2) {
+        if (c1 == c2) {
+            return true;
+        } else if ((c1 | c2) < 128) {
+            // ASCII characters are only equal if they are letters differing in case.
+            final char lower = (char) (c1 | 0x20);
 
-        if (d2 < d) {
-            d = d2;
+            return ((c1 ^ c2) == 0x20) && (lower >= 'a') && (lower <= 'z');
         }
 
-        if (d3 < d) {
-            d = d3;
-        }
+        final char u1 = Character.toUpperCase(c1);
+        final char u2 = Character.toUpperCase(c2);
 
-        return d;
+        return (u1 == u2) || (Character.toLowerCase(u1) == Character.toLowerCase(u2));
     }
 
 }
@@ -0,0 +1,161 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An index of strings to look up the strings that are similar to a given
+ * string in the sense of {@link SimilarExprMatcher#isSimilar}, without
+ * comparing it to every string of the index.
+ *
+ * <p>The strings are stored in a BK-tree: the children of a node are sorted by
+ * their case insensitive Levenshtein distance to the node. As the distance is
+ * a metric, a search within a maximum distance only needs to visit the
+ * children whose distance to the node differs from the distance of the
+ * searched string by no more than that maximum.
+ *
+ * @param <T> type of the values stored for the strings
+ */
+public final class SimilarityIndex<T> {
+
+    /**
+     * A node of the tree.
+     */
+    private static final class Node<T> {
+        private final String key;
+        private final List<T> values = new ArrayList<T>(1);
+        /** Child nodes by distance to this node. */
+        private Node<T>[] children;
+
+        private Node(final String key) {
+            this.key = key;
+        }
+
+        private Node<T> getChild(final int distance) {
+            if ((children == null) || (distance >= children.length)) {
+                return null;
+            }
+
+            return children[distance];
+        }
+
+        @SuppressWarnings("unchecked")
+        private void setChild(final int distance, final Node<T> child) {
+            if (children == null) {
+                children = new Node[distance + 1];
+            } else if (distance >= children.length) {
+                final Node<T>[] grown = new Node[distance + 1];
+                System.arraycopy(children, 0, grown, 0, children.length);
+                children = grown;
+            }
+
+            children[distance] = child;
+        }
+    }
+
+    private Node<T> root;
+
+    /**
+     * Add a value for a string. Strings differing only in case share their
+     * values.
+     *
+     * @param key
+     * @param value
+     */
+    public void add(final String key, final T value) {
+        if (root == null) {
+            root = new Node<T>(key);
+            root.values.add(value);
+            return;
+        }
+
+        Node<T> node = root;
+
+        while (true) {
+            final int distance = distance(key, node.key);
+
+            if (distance == 0) {
+                node.values.add(value);
+                return;
+            }
+
+            final Node<T> child = node.getChild(distance);
+
+            if (child == null) {
+                final Node<T> added = new Node<T>(key);
+                added.values.add(value);
+                node.setChild(distance, added);
+                return;
+            }
+
+            node = child;
+        }
+    }
+
+    /**
+     * Look for the values of all strings similar to the given one.
+     *
+     * @param str
+     * @param delta
+     *            limit quotient, as in SimilarExprMatcher.isSimilar()
+     * @param result
+     *            list to add the values of the similar strings to
+     */
+    public void findSimilar(final String str, final double delta, final List<T> result) {
+        if ((root == null) || (str == null)) {
+            return;
+        }
+
+        // The allowed distance depends on the shorter of the two strings,
+        // so it is not larger than the one of the searched string.
+        final int maxDistance = SimilarExprMatcher.getLimit(str.length(), delta);
+
+        final Deque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            final Node<T> node = stack.pop();
+            // The exact distance is only needed up to the largest one, where children may be found.
+            final int childDistance = (node.children == null) ? 0 : node.children.length - 1;
+            final int distance = SimilarExprMatcher.limitedLevenshtein(str, node.key, maxDistance + childDistance);
+
+            if ((distance <= maxDistance) && SimilarExprMatcher.isSimilar(str, node.key, delta)) {
+                result.addAll(node.values);
+            }
+
+            if (node.children != null) {
+                final int to = Math.min(distance + maxDistance, node.children.length - 1);
+
+                for (int d = Math.max(1, distance - maxDistance); d <= to; ++d) {
+                    if (node.children[d] != null) {
+                        stack.push(node.children[d]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate the case insensitive Levenshtein distance of two strings.
+     *
+     * @param str1
+     * @param str2
+     * @return distance
+     */
+    private static int distance(final String str1, final String str2) {
+        return SimilarExprMatcher.limitedLevenshtein(str1, str2, Math.max(str1.length(), str2.length()));
+    }
+}
@@ -0,0 +1,260 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.server.core.config.ZonesXMLLoader.ZoneDesc;
+import games.stendhal.server.core.config.zone.TMXLoader;
+import games.stendhal.server.core.config.zone.ZoneMapCache;
+import games.stendhal.server.core.engine.StendhalRPWorld;
+
+/**
+ * Loads zones in two stages.
+ *
+ * <p>The map files are parsed and the layers encoded by a pool of worker
+ * threads. The zones are then created, registered and configured one by one
+ * in the calling thread, in the order they were added. The workers run ahead
+ * of the commit stage by a limited number of zones, so that not every
+ * parsed map needs to be kept in memory at the same time.
+ *
+ * <p>The number of worker threads can be set with the
+ * <code>stendhal.zone.loader.threads</code> system property. It defaults to
+ * the number of available processors. When the {@link ZoneMapCache} is
+ * enabled, the workers read unchanged maps from the cache instead of
+ * parsing and encoding them.
+ */
+final class StagedZoneLoader {
+	private static final Logger logger = Logger.getLogger(StagedZoneLoader.class);
+
+	/** Layers that are encoded by the workers. */
+	private static final String[] ENCODED_LAYERS = { "0_floor", "1_terrain", "2_object",
+			"3_roof", "4_roof_add", "blend_ground", "blend_roof", "collision", "protection" };
+
+	/** Prepared zones waiting for the commit stage, per worker thread. */
+	private static final int QUEUED_PER_THREAD = 4;
+
+	/** Zones to load, in commit order. */
+	private final List<PreparedZone> zones = new ArrayList<PreparedZone>();
+
+	/** Time spent parsing map files, summed over all workers. */
+	private final AtomicLong parseNanos = new AtomicLong();
+	/** Time spent encoding layers, summed over all workers. */
+	private final AtomicLong encodeNanos = new AtomicLong();
+	/** Time spent reading valid cache entries, summed over all workers. */
+	private final AtomicLong cacheNanos = new AtomicLong();
+	/** Number of maps read from the cache. */
+	private final AtomicInteger cacheHits = new AtomicInteger();
+
+	/** Cache of prepared maps, or <code>null</code> if the cache is disabled. */
+	private final ZoneMapCache cache = ZoneMapCache.fromSystemProperty();
+
+	/**
+	 * A zone and the results of the parallel stage.
+	 */
+	private static final class PreparedZone {
+		final ZonesXMLLoader loader;
+		final ZoneDesc desc;
+		StendhalMapStructure zonedata;
+		final Map<String, byte[]> encoded = new HashMap<String, byte[]>();
+
+		PreparedZone(final ZonesXMLLoader loader, final ZoneDesc desc) {
+			this.loader = loader;
+			this.desc = desc;
+		}
+	}
+
+	/**
+	 * Add zones to be loaded.
+	 *
+	 * @param loader loader of the zone group
+	 * @param descriptors zone descriptors
+	 */
+	void add(final ZonesXMLLoader loader, final List<ZoneDesc> descriptors) {
+		for (final ZoneDesc desc : descriptors) {
+			zones.add(new PreparedZone(loader, desc));
+		}
+	}
+
+	/**
+	 * Load all added zones. Errors are logged, and the failing zones are
+	 * skipped.
+	 */
+	void load() {
+		if (zones.isEmpty()) {
+			return;
+		}
+		final long start = System.nanoTime();
+		final int threads = Math.max(1, Math.min(zones.size(), Integer.getInteger("stendhal.zone.loader.threads",
+				Runtime.getRuntime().availableProcessors())));
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, new LoaderThreadFactory());
+
+		long waitNanos = 0;
+		long commitNanos = 0;
+		int loaded = 0;
+		try {
+			final Deque<Future<PreparedZone>> queue = new ArrayDeque<Future<PreparedZone>>();
+			int next = 0;
+			for (final PreparedZone zone : zones) {
+				while ((next < zones.size()) && (queue.size() < threads * QUEUED_PER_THREAD)) {
+					queue.add(executor.submit(new Preparation(zones.get(next))));
+					next++;
+				}
+
+				final long waitStart = System.nanoTime();
+				final Future<PreparedZone> future = queue.remove();
+				try {
+					future.get();
+				} catch (final ExecutionException e) {
+					logger.error("Error loading zone: " + zone.desc.getName(), e.getCause());
+					continue;
+				} finally {
+					waitNanos += System.nanoTime() - waitStart;
+				}
+				if (zone.zonedata == null) {
+					// map verification failed, and was logged
+					continue;
+				}
+
+				final long commitStart = System.nanoTime();
+				if (commit(zone)) {
+					loaded++;
+				}
+				commitNanos += System.nanoTime() - commitStart;
+			}
+		} catch (final InterruptedException e) {
+			logger.error("Interrupted while loading zones", e);
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		logger.info("Loaded " + loaded + " of " + zones.size() + " zones in " + millis(System.nanoTime() - start)
+				+ " ms using " + threads + " threads. Parsing: " + millis(parseNanos.get())
+				+ " ms, encoding: " + millis(encodeNanos.get()) + " ms, reading " + cacheHits.get()
+				+ " maps from cache: " + millis(cacheNanos.get()) + " ms (thread time), waiting for workers: "
+				+ millis(waitNanos) + " ms, commit: " + millis(commitNanos) + " ms");
+	}
+
+	/**
+	 * Create, register and configure a prepared zone.
+	 *
+	 * @param zone prepared zone
+	 * @return <code>true</code> if the zone was loaded successfully
+	 */
+	private boolean commit(final PreparedZone zone) {
+		final String name = zone.desc.getName();
+		logger.info("Loading zone: " + name);
+		try {
+			zone.loader.commit(zone.desc, zone.zonedata, zone.encoded);
+			return true;
+		} catch (final Exception ex) {
+			logger.error("Error loading zone: " + name, ex);
+			return false;
+		} finally {
+			// release the map data
+			zone.zonedata = null;
+			zone.encoded.clear();
+		}
+	}
+
+	private static long millis(final long nanos) {
+		return nanos / 1000000L;
+	}
+
+	/**
+	 * The parallel stage for one zone: parse the map file and encode the
+	 * layers.
+	 */
+	private final class Preparation implements Callable<PreparedZone> {
+		private final PreparedZone zone;
+
+		Preparation(final PreparedZone zone) {
+			this.zone = zone;
+		}
+
+		@Override
+		public PreparedZone call() throws Exception {
+			final String filename = StendhalRPWorld.MAPS_FOLDER + zone.desc.getFile();
+			final long start = System.nanoTime();
+			byte[] source = null;
+			if (cache != null) {
+				source = TMXLoader.readSource(filename);
+				final StendhalMapStructure cached = cache.read(filename, source, zone.encoded);
+				if (cached != null) {
+					// only verified maps are cached
+					cacheNanos.addAndGet(System.nanoTime() - start);
+					cacheHits.incrementAndGet();
+					zone.zonedata = cached;
+					return zone;
+				}
+			}
+
+			final StendhalMapStructure zonedata;
+			if (source != null) {
+				zonedata = new TMXLoader().readMap(filename, source);
+			} else {
+				zonedata = TMXLoader.load(filename);
+			}
+			final long parsed = System.nanoTime();
+			parseNanos.addAndGet(parsed - start);
+
+			if (!zone.loader.verifyMap(zone.desc, zonedata)) {
+				return zone;
+			}
+			for (final String layerName : ENCODED_LAYERS) {
+				final LayerDefinition layer = zonedata.getLayer(layerName);
+				if (layer != null) {
+					zone.encoded.put(layerName, layer.encode());
+				}
+			}
+			encodeNanos.addAndGet(System.nanoTime() - parsed);
+			if (cache != null) {
+				cache.write(filename, source, zonedata, zone.encoded);
+			}
+			// published to the commit stage by Future.get()
+			zone.zonedata = zonedata;
+			return zone;
+		}
+	}
+
+	/**
+	 * Creates named daemon threads for the workers.
+	 */
+	private static final class LoaderThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "zone-loader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
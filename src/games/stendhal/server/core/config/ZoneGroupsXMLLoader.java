@@ -57,19 +57,21 @@ public class ZoneGroupsXMLLoader extends DefaultHandler {
 		final GroupsXMLLoader groupsLoader = new GroupsXMLLoader(uri);
 		final List<URI> zoneGroups = groupsLoader.load();
 
-		// Load each group
+		// Read each group, then load the zones of all groups together
+		final StagedZoneLoader stagedLoader = new StagedZoneLoader();
 		for (final URI tempUri : zoneGroups) {
 			LOGGER.debug("Loading zone group [" + tempUri + "]");
 
 			final ZonesXMLLoader loader = new ZonesXMLLoader(tempUri);
 
 			try {
-				loader.load();
+				stagedLoader.add(loader, loader.readZones());
 			} catch (final SAXException ex) {
 				LOGGER.error("Error loading zone group: " + tempUri, ex);
 			} catch (final IOException ex) {
 				LOGGER.error("Error loading zone group: " + tempUri, ex);
 			}
 		}
+		stagedLoader.load();
 	}
 }
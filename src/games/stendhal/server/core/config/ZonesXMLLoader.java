@@ -23,8 +23,10 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
@@ -34,7 +36,6 @@ import org.xml.sax.SAXException;
 //
 //
 
-import games.stendhal.common.tiled.LayerDefinition;
 import games.stendhal.common.tiled.StendhalMapStructure;
 import games.stendhal.server.core.config.zone.AttributesXMLReader;
 import games.stendhal.server.core.config.zone.ConfiguratorXMLReader;
@@ -43,9 +44,7 @@ import games.stendhal.server.core.config.zone.PortalSetupXMLReader;
 import games.stendhal.server.core.config.zone.RegionNameSubstitutionHelper;
 import games.stendhal.server.core.config.zone.SetupDescriptor;
 import games.stendhal.server.core.config.zone.SetupXMLReader;
-import games.stendhal.server.core.config.zone.TMXLoader;
 import games.stendhal.server.core.engine.SingletonRepository;
-import games.stendhal.server.core.engine.StendhalRPWorld;
 import games.stendhal.server.core.engine.StendhalRPZone;
 
 /**
@@ -128,6 +127,46 @@ public final class ZonesXMLLoader {
 	 *             If an I/O error occurred.
 	 */
 	protected void load(final InputStream in) throws SAXException, IOException {
+		final StagedZoneLoader stagedLoader = new StagedZoneLoader();
+		stagedLoader.add(this, readZones(in));
+		stagedLoader.load();
+	}
+
+	/**
+	 * Read the descriptors of the zones of the group.
+	 *
+	 * @return descriptors of the zones that should be loaded
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 */
+	List<ZoneDesc> readZones() throws SAXException, IOException {
+		final InputStream in = ZonesXMLLoader.class.getResourceAsStream(uri.getPath());
+
+		if (in == null) {
+			throw new FileNotFoundException("Cannot find resource: " + uri);
+		}
+
+		try {
+			return readZones(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the descriptors of the zones in a config file.
+	 *
+	 * @param in
+	 *            The config file stream.
+	 * @return descriptors of the zones that should be loaded
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 */
+	private List<ZoneDesc> readZones(final InputStream in) throws SAXException, IOException {
 		final Document doc = XMLUtil.parse(in);
 
 		// just to speed up starting of the server in while developing
@@ -137,9 +176,7 @@ public final class ZonesXMLLoader {
 		// if there is a problem with the zone
 		final String regex = System.getProperty("stendhal.zone.regex", ".*");
 
-		/*
-		 * Load each zone
-		 */
+		final List<ZoneDesc> zones = new ArrayList<ZoneDesc>();
 		for (final Element element : XMLUtil.getElements(doc.getDocumentElement(), "zone")) {
 			final ZoneDesc zdesc = readZone(element);
 
@@ -151,38 +188,44 @@ public final class ZonesXMLLoader {
 			if (!name.matches(regex) && !name.equals("int_semos_townhall") && !name.equals("int_semos_guard_house")) {
 				continue;
 			}
+			zones.add(zdesc);
+		}
+		return zones;
+	}
 
-			logger.info("Loading zone: " + name);
-
-			try {
-				final StendhalMapStructure zonedata = TMXLoader.load(StendhalRPWorld.MAPS_FOLDER
-						+ zdesc.getFile());
-
-				if (verifyMap(zdesc, zonedata)) {
-					final StendhalRPZone zone = load(zdesc, zonedata);
+	/**
+	 * Create a zone from prepared map data, and configure it.
+	 *
+	 * @param zdesc zone descriptor
+	 * @param zonedata map data
+	 * @param encoded encoded layers by layer name. Layers missing here are
+	 * 	encoded when needed
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 */
+	void commit(final ZoneDesc zdesc, final StendhalMapStructure zonedata, final Map<String, byte[]> encoded)
+			throws SAXException, IOException {
+		final StendhalRPZone zone = load(zdesc, zonedata, encoded);
 
-					/*
-					 * Setup Descriptors
-					 */
-					final Iterator<SetupDescriptor> diter = zdesc.getDescriptors();
+		/*
+		 * Setup Descriptors
+		 */
+		final Iterator<SetupDescriptor> diter = zdesc.getDescriptors();
 
-					while (diter.hasNext()) {
-						diter.next().setup(zone);
-					}
-					// Zone configurators can add creatures, so this should be
-					// done after them
-					zone.calculateDangerLevel();
-				}
-			} catch (final Exception ex) {
-				logger.error("Error loading zone: " + name, ex);
-			}
+		while (diter.hasNext()) {
+			diter.next().setup(zone);
 		}
+		// Zone configurators can add creatures, so this should be
+		// done after them
+		zone.calculateDangerLevel();
 	}
 
 	private static final String[] REQUIRED_LAYERS = { "0_floor", "1_terrain",
 			"2_object", "objects", "collision", "protection" };
 
-	private boolean verifyMap(final ZoneDesc zdesc, final StendhalMapStructure zonedata) {
+	boolean verifyMap(final ZoneDesc zdesc, final StendhalMapStructure zonedata) {
 		for (final String layer : REQUIRED_LAYERS) {
 			if (!zonedata.hasLayer(layer)) {
 				logger.error("Required layer " + layer + " missing in zone "
@@ -206,6 +249,22 @@ public final class ZonesXMLLoader {
 	 */
 	protected StendhalRPZone load(final ZoneDesc desc, final StendhalMapStructure zonedata)
 			throws SAXException, IOException {
+		return load(desc, zonedata, Collections.<String, byte[]>emptyMap());
+	}
+
+	/**
+	 * Create a new zone from zone data with already encoded layers.
+	 *
+	 * @param desc the zone's descriptor
+	 * @param zonedata to be loaded
+	 * @param encoded encoded layers by layer name. Layers missing here are
+	 * 	encoded when needed
+	 * @return the created zone
+	 * @throws SAXException if any xml parsing error happened
+	 * @throws IOException if any IO error happened
+	 */
+	private StendhalRPZone load(final ZoneDesc desc, final StendhalMapStructure zonedata,
+			final Map<String, byte[]> encoded) throws SAXException, IOException {
 		final String name = desc.getName();
 
 		final StendhalRPZone zone;
@@ -216,21 +275,21 @@ public final class ZonesXMLLoader {
 		}
 
 		zone.addTilesets(name + ".tilesets", zonedata.getTilesets());
-		zone.addLayer(name + ".0_floor", zonedata.getLayer("0_floor"));
-		zone.addLayer(name + ".1_terrain", zonedata.getLayer("1_terrain"));
-		zone.addLayer(name + ".2_object", zonedata.getLayer("2_object"));
+		zone.addLayer(name + ".0_floor", encode(zonedata, encoded, "0_floor"));
+		zone.addLayer(name + ".1_terrain", encode(zonedata, encoded, "1_terrain"));
+		zone.addLayer(name + ".2_object", encode(zonedata, encoded, "2_object"));
 
 		// Roof layers are optional
-		loadOptionalLayer(zone, zonedata, "3_roof");
-		loadOptionalLayer(zone, zonedata, "4_roof_add");
+		loadOptionalLayer(zone, zonedata, encoded, "3_roof");
+		loadOptionalLayer(zone, zonedata, encoded, "4_roof_add");
 		// Effect layers are optional too
-		loadOptionalLayer(zone, zonedata, "blend_ground");
-		loadOptionalLayer(zone, zonedata, "blend_roof");
+		loadOptionalLayer(zone, zonedata, encoded, "blend_ground");
+		loadOptionalLayer(zone, zonedata, encoded, "blend_roof");
 
 		zone.addCollisionLayer(name + ".collision",
-				zonedata.getLayer("collision"));
+				zonedata.getLayer("collision"), encode(zonedata, encoded, "collision"));
 		zone.addProtectionLayer(name + ".protection",
-				zonedata.getLayer("protection"));
+				zonedata.getLayer("protection"), encode(zonedata, encoded, "protection"));
 
 		if (desc.isInterior()) {
 			zone.setPosition();
@@ -263,15 +322,33 @@ public final class ZonesXMLLoader {
 	 *
 	 * @param zone
 	 * @param zonedata
+	 * @param encoded already encoded layers
 	 * @param layerName
 	 * @throws IOException
 	 */
 	private void loadOptionalLayer(StendhalRPZone zone,
-			StendhalMapStructure zonedata, String layerName) throws IOException {
-		LayerDefinition layer = zonedata.getLayer(layerName);
-		if (layer != null) {
-			zone.addLayer(zone.getName() + "." + layerName, layer);
+			StendhalMapStructure zonedata, Map<String, byte[]> encoded, String layerName) throws IOException {
+		if (encoded.containsKey(layerName) || zonedata.hasLayer(layerName)) {
+			zone.addLayer(zone.getName() + "." + layerName, encode(zonedata, encoded, layerName));
+		}
+	}
+
+	/**
+	 * Get the encoded data of a layer.
+	 *
+	 * @param zonedata map data
+	 * @param encoded already encoded layers
+	 * @param layerName name of the layer
+	 * @return encoded layer
+	 * @throws IOException
+	 */
+	private static byte[] encode(StendhalMapStructure zonedata, Map<String, byte[]> encoded,
+			String layerName) throws IOException {
+		final byte[] data = encoded.get(layerName);
+		if (data != null) {
+			return data;
 		}
+		return zonedata.getLayer(layerName).encode();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -13,7 +13,9 @@
 package games.stendhal.server.core.config.zone;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -250,10 +252,48 @@ public class TMXLoader {
 	}
 
 	public StendhalMapStructure readMap(final String filename) throws Exception {
+		return readMap(filename, open(filename));
+	}
+
+	/**
+	 * Parse a map from the already read contents of a map file.
+	 *
+	 * @param filename name of the map file
+	 * @param source contents of the file, as returned by
+	 * 	{@link #readSource(String)}
+	 * @return map
+	 * @throws Exception if the map can not be parsed
+	 */
+	public StendhalMapStructure readMap(final String filename, final byte[] source) throws Exception {
+		return readMap(filename, new ByteArrayInputStream(source));
+	}
+
+	private StendhalMapStructure readMap(final String filename, final InputStream in) throws Exception {
 		xmlPath = filename.substring(0,
 				filename.lastIndexOf(File.separatorChar) + 1);
 
-		InputStream is = getClass().getClassLoader().getResourceAsStream(
+		InputStream is = in;
+		// Wrap with GZIP decoder for .tmx.gz files
+		if (filename.endsWith(".gz")) {
+			is = new GZIPInputStream(is);
+		}
+
+		try {
+			return unmarshal(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Open a map file, either from the class path or from the file system.
+	 *
+	 * @param filename name of the map file
+	 * @return stream of the file contents
+	 * @throws IOException if the file can not be opened
+	 */
+	private static InputStream open(final String filename) throws IOException {
+		InputStream is = TMXLoader.class.getClassLoader().getResourceAsStream(
 				filename);
 
 		if (is == null) {
@@ -263,13 +303,30 @@ public class TMXLoader {
 			final URL url = new URL(xmlFile);
 			is = url.openStream();
 		}
+		return is;
+	}
 
-		// Wrap with GZIP decoder for .tmx.gz files
-		if (filename.endsWith(".gz")) {
-			is = new GZIPInputStream(is);
+	/**
+	 * Read the unparsed contents of a map file.
+	 *
+	 * @param filename name of the map file
+	 * @return file contents
+	 * @throws IOException if the file can not be read
+	 */
+	public static byte[] readSource(final String filename) throws IOException {
+		final InputStream is = open(filename);
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read = is.read(buffer);
+			while (read >= 0) {
+				out.write(buffer, 0, read);
+				read = is.read(buffer);
+			}
+			return out.toByteArray();
+		} finally {
+			is.close();
 		}
-
-		return unmarshal(is);
 	}
 
 	public static void main(final String[] args) throws Exception {
@@ -0,0 +1,363 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.common.tiled.TileSetDefinition;
+
+/**
+ * An on disk cache of prepared zone maps, so that unchanged maps do not need
+ * to be parsed and compressed again at server start.
+ *
+ * <p>Each map file has a cache file holding the hash of the map file, the
+ * tilesets, the encoded layers that are sent to the clients, the collision
+ * and protection layers as bitmaps and the non empty tiles of the objects
+ * layer. A cache file is only used when the hash and the format version
+ * match; otherwise the map is parsed and the cache file rewritten.
+ *
+ * <p>The maps read from the cache contain only the layers the server uses
+ * itself: objects, collision and protection. The collision and protection
+ * layers only keep whether a tile is set. All other layers are only
+ * available in encoded form.
+ *
+ * <p>The cache is enabled by setting the <code>stendhal.zone.cache</code>
+ * system property to the cache directory.
+ */
+public final class ZoneMapCache {
+	private static final Logger logger = Logger.getLogger(ZoneMapCache.class);
+
+	/** Marks a cache file. "STZC" */
+	private static final int MAGIC = 0x53545a43;
+	/** Increase when the file format, or the meaning of the data changes. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** Layers stored as bitmaps. */
+	private static final String[] BITMAP_LAYERS = { "collision", "protection" };
+	/** Layers stored as lists of non empty tiles. */
+	private static final String[] SPARSE_LAYERS = { "objects" };
+
+	private final File directory;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param directory cache directory. It is created when needed
+	 */
+	public ZoneMapCache(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Get the cache configured with the <code>stendhal.zone.cache</code>
+	 * system property.
+	 *
+	 * @return cache, or <code>null</code> if the cache is not enabled
+	 */
+	public static ZoneMapCache fromSystemProperty() {
+		final String path = System.getProperty("stendhal.zone.cache");
+		if ((path == null) || path.isEmpty()) {
+			return null;
+		}
+		return new ZoneMapCache(new File(path));
+	}
+
+	/**
+	 * Read a map from the cache.
+	 *
+	 * @param filename name of the map file
+	 * @param source contents of the map file
+	 * @param encoded map where the encoded layers are put by layer name
+	 * @return map, or <code>null</code> if there is no valid cache entry
+	 */
+	public StendhalMapStructure read(final String filename, final byte[] source, final Map<String, byte[]> encoded) {
+		final File file = getCacheFile(filename);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final ByteBuffer buffer = map(file);
+			if ((buffer.getInt() != MAGIC) || (buffer.getInt() != FORMAT_VERSION)) {
+				logger.info("Ignoring cache file of an other version: " + file);
+				return null;
+			}
+			final byte[] hash = new byte[buffer.getInt()];
+			buffer.get(hash);
+			if (!Arrays.equals(hash, hash(source))) {
+				logger.debug("Map changed since it was cached: " + filename);
+				return null;
+			}
+			return readMap(buffer, encoded);
+		} catch (final IOException e) {
+			logger.warn("Could not read cache file " + file, e);
+		} catch (final BufferUnderflowException e) {
+			logger.warn("Truncated cache file " + file, e);
+		} catch (final RuntimeException e) {
+			logger.warn("Invalid cache file " + file, e);
+		}
+		encoded.clear();
+		return null;
+	}
+
+	/**
+	 * Store a map in the cache. Errors are logged.
+	 *
+	 * @param filename name of the map file
+	 * @param source contents of the map file
+	 * @param map parsed map
+	 * @param encoded encoded layers by layer name
+	 */
+	public void write(final String filename, final byte[] source, final StendhalMapStructure map,
+			final Map<String, byte[]> encoded) {
+		final File file = getCacheFile(filename);
+		File temp = null;
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+				logger.warn("Could not create zone cache directory " + directory);
+				return;
+			}
+			// write to a temporary file first, so that readers never see a
+			// partially written file
+			temp = File.createTempFile(file.getName(), ".tmp", directory);
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				final byte[] hash = hash(source);
+				out.writeInt(hash.length);
+				out.write(hash);
+				writeMap(out, map, encoded);
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+		} catch (final IOException e) {
+			logger.warn("Could not write cache file " + file, e);
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Get the cache file of a map file.
+	 *
+	 * @param filename name of the map file
+	 * @return cache file
+	 */
+	File getCacheFile(final String filename) {
+		return new File(directory, filename.replaceAll("[^A-Za-z0-9_.-]", "_") + ".cache");
+	}
+
+	private static ByteBuffer map(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Calculate the hash of map file contents.
+	 *
+	 * @param source file contents
+	 * @return hash
+	 */
+	static byte[] hash(final byte[] source) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(source);
+		} catch (final NoSuchAlgorithmException e) {
+			// every Java implementation is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeMap(final DataOutputStream out, final StendhalMapStructure map,
+			final Map<String, byte[]> encoded) throws IOException {
+		out.writeInt(map.getWidth());
+		out.writeInt(map.getHeight());
+
+		out.writeInt(map.getTilesets().size());
+		for (final TileSetDefinition set : map.getTilesets()) {
+			writeString(out, set.getName());
+			writeString(out, set.getSource());
+			out.writeInt(set.getFirstGid());
+		}
+
+		out.writeInt(encoded.size());
+		for (final Map.Entry<String, byte[]> entry : encoded.entrySet()) {
+			writeString(out, entry.getKey());
+			out.writeInt(entry.getValue().length);
+			out.write(entry.getValue());
+		}
+
+		for (final String name : BITMAP_LAYERS) {
+			final LayerDefinition layer = map.getLayer(name);
+			if (layer == null) {
+				out.writeBoolean(false);
+				continue;
+			}
+			out.writeBoolean(true);
+			layer.build();
+			final int width = layer.getWidth();
+			final int height = layer.getHeight();
+			out.writeInt(width);
+			out.writeInt(height);
+			final long[] words = new long[(width * height + 63) >>> 6];
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					if (layer.getTileAt(x, y) != 0) {
+						final int bit = y * width + x;
+						words[bit >>> 6] |= 1L << bit;
+					}
+				}
+			}
+			for (final long word : words) {
+				out.writeLong(word);
+			}
+		}
+
+		for (final String name : SPARSE_LAYERS) {
+			final LayerDefinition layer = map.getLayer(name);
+			if (layer == null) {
+				out.writeBoolean(false);
+				continue;
+			}
+			out.writeBoolean(true);
+			layer.build();
+			final int width = layer.getWidth();
+			final int height = layer.getHeight();
+			out.writeInt(width);
+			out.writeInt(height);
+			final int[] data = layer.expose();
+			int count = 0;
+			for (final int tile : data) {
+				if (tile != 0) {
+					count++;
+				}
+			}
+			out.writeInt(count);
+			for (int i = 0; i < data.length; i++) {
+				if (data[i] != 0) {
+					out.writeInt(i);
+					out.writeInt(data[i]);
+				}
+			}
+		}
+	}
+
+	private static StendhalMapStructure readMap(final ByteBuffer in, final Map<String, byte[]> encoded) {
+		final StendhalMapStructure map = new StendhalMapStructure(in.getInt(), in.getInt());
+
+		final int tilesets = in.getInt();
+		for (int i = 0; i < tilesets; i++) {
+			final String name = readString(in);
+			final String source = readString(in);
+			map.addTileset(new TileSetDefinition(name, source, in.getInt()));
+		}
+
+		final int layers = in.getInt();
+		for (int i = 0; i < layers; i++) {
+			final String name = readString(in);
+			final byte[] data = new byte[in.getInt()];
+			in.get(data);
+			encoded.put(name, data);
+		}
+
+		for (final String name : BITMAP_LAYERS) {
+			if (in.get() == 0) {
+				continue;
+			}
+			final int width = in.getInt();
+			final int height = in.getInt();
+			final LayerDefinition layer = new LayerDefinition(width, height);
+			layer.setName(name);
+			final int words = (width * height + 63) >>> 6;
+			for (int w = 0; w < words; w++) {
+				long word = in.getLong();
+				while (word != 0) {
+					final int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+					layer.set(bit % width, bit / width, 1);
+					word &= word - 1;
+				}
+			}
+			map.addLayer(layer);
+		}
+
+		for (final String name : SPARSE_LAYERS) {
+			if (in.get() == 0) {
+				continue;
+			}
+			final int width = in.getInt();
+			final int height = in.getInt();
+			final LayerDefinition layer = new LayerDefinition(width, height);
+			layer.setName(name);
+			final int count = in.getInt();
+			for (int i = 0; i < count; i++) {
+				final int index = in.getInt();
+				layer.set(index % width, index / width, in.getInt());
+			}
+			map.addLayer(layer);
+		}
+		return map;
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final ByteBuffer in) {
+		final int length = in.getInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,277 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.common.filter.FilterCriteria;
+import games.stendhal.server.core.engine.SpatialGrid.Bounds;
+import games.stendhal.server.entity.Entity;
+
+/**
+ * A uniform bucket grid over the entities of a zone.
+ *
+ * <p>Every entity is registered in all buckets its area overlaps, so that
+ * point and rectangle queries only need to look at the entities near the
+ * query instead of every object in the zone. Entities with negative
+ * coordinates or with very large areas are kept in a separate list that is
+ * checked by every query.
+ *
+ * <p>The grid is not thread safe. {@link StendhalRPZone} guards it with its
+ * own lock.
+ */
+final class EntityGrid {
+	/** The buckets. */
+	private final SpatialGrid<Entity> grid = new SpatialGrid<Entity>(4);
+
+	/** Bucket ranges the entities are currently registered in. */
+	private final Map<Entity, Bounds> indexed = new IdentityHashMap<Entity, Bounds>();
+
+	/** Reused when checking whether a moved entity changed its buckets. */
+	private final Bounds scratch = new Bounds();
+
+	/**
+	 * Add an entity to the grid, or update its position if it is already
+	 * registered.
+	 *
+	 * @param entity entity
+	 */
+	void add(final Entity entity) {
+		Bounds bounds = indexed.get(entity);
+		if (bounds != null) {
+			update(entity);
+			return;
+		}
+		bounds = new Bounds();
+		calculateBounds(entity, bounds);
+		indexed.put(entity, bounds);
+		grid.insert(entity, bounds);
+	}
+
+	/**
+	 * Remove an entity from the grid.
+	 *
+	 * @param entity entity
+	 * @return <code>true</code> if the entity was registered
+	 */
+	boolean remove(final Entity entity) {
+		final Bounds bounds = indexed.remove(entity);
+		if (bounds == null) {
+			return false;
+		}
+		grid.erase(entity, bounds);
+		return true;
+	}
+
+	/**
+	 * Update the buckets of an entity after its position or size changed.
+	 * Entities that are not registered are ignored.
+	 *
+	 * @param entity entity
+	 */
+	void update(final Entity entity) {
+		final Bounds bounds = indexed.get(entity);
+		if (bounds == null) {
+			return;
+		}
+		calculateBounds(entity, scratch);
+		if (scratch.isSame(bounds)) {
+			return;
+		}
+
+		grid.erase(entity, bounds);
+		bounds.set(scratch);
+		grid.insert(entity, bounds);
+	}
+
+	/**
+	 * Check if an entity is registered.
+	 *
+	 * @param entity entity
+	 * @return <code>true</code> if it is in the grid
+	 */
+	boolean contains(final Entity entity) {
+		return indexed.containsKey(entity);
+	}
+
+	/**
+	 * Get the number of registered entities.
+	 *
+	 * @return entity count
+	 */
+	int size() {
+		return indexed.size();
+	}
+
+	/**
+	 * Find an entity, other than <code>entity</code>, that overlaps an area
+	 * and is an obstacle for <code>entity</code>.
+	 *
+	 * @param entity the moving entity
+	 * @param area area to check
+	 * @return blocking entity, or <code>null</code> if the area is free
+	 */
+	Entity getObstacle(final Entity entity, final Rectangle2D area) {
+		Entity obstacle = getObstacle(entity, area, grid.getUnbucketed());
+		if (obstacle != null) {
+			return obstacle;
+		}
+
+		final Bounds range = new Bounds();
+		grid.getRange(area, range);
+		for (int cy = range.minY; cy <= range.maxY; cy++) {
+			for (int cx = range.minX; cx <= range.maxX; cx++) {
+				final List<Entity> cell = grid.getCell(cx, cy);
+				if (cell != null) {
+					obstacle = getObstacle(entity, area, cell);
+					if (obstacle != null) {
+						return obstacle;
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static Entity getObstacle(final Entity entity, final Rectangle2D area, final List<Entity> candidates) {
+		for (int i = 0; i < candidates.size(); i++) {
+			final Entity other = candidates.get(i);
+			// Ignore same object
+			if ((entity != other)
+					&& area.intersects(other.getX(), other.getY(), other.getWidth(), other.getHeight())
+					&& other.isObstacle(entity)) {
+				return other;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Find an entity whose area contains a point.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return an entity, or <code>null</code> if there is none
+	 */
+	Entity getEntityAt(final double x, final double y) {
+		Entity found = getEntityAt(x, y, grid.getUnbucketed());
+		if (found == null) {
+			final List<Entity> cell = grid.getCellAt(x, y);
+			if (cell != null) {
+				found = getEntityAt(x, y, cell);
+			}
+		}
+
+		return found;
+	}
+
+	private static Entity getEntityAt(final double x, final double y, final List<Entity> candidates) {
+		for (int i = 0; i < candidates.size(); i++) {
+			final Entity entity = candidates.get(i);
+			if (entity.getArea().contains(x, y)) {
+				return entity;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Collect all entities of a given type whose area contains a point.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param clazz required entity type
+	 * @param result list where the found entities are added
+	 */
+	<T extends Entity> void getEntitiesAt(final double x, final double y, final Class<T> clazz, final List<T> result) {
+		getEntitiesAt(x, y, clazz, grid.getUnbucketed(), result);
+		final List<Entity> cell = grid.getCellAt(x, y);
+		if (cell != null) {
+			getEntitiesAt(x, y, clazz, cell, result);
+		}
+	}
+
+	private static <T extends Entity> void getEntitiesAt(final double x, final double y, final Class<T> clazz,
+			final List<Entity> candidates, final List<T> result) {
+		for (int i = 0; i < candidates.size(); i++) {
+			final Entity entity = candidates.get(i);
+			if (clazz.isInstance(entity) && entity.getArea().contains(x, y)) {
+				result.add(clazz.cast(entity));
+			}
+		}
+	}
+
+	/**
+	 * Collect all entities that intersect an area and pass a filter. Every
+	 * entity is reported at most once.
+	 *
+	 * @param area area to check
+	 * @param criteria filter, or <code>null</code> to accept all entities
+	 * @param result list where the found entities are added
+	 */
+	void getEntitiesIn(final Rectangle2D area, final FilterCriteria<Entity> criteria, final List<Entity> result) {
+		final List<Entity> unbucketed = grid.getUnbucketed();
+		for (int i = 0; i < unbucketed.size(); i++) {
+			final Entity entity = unbucketed.get(i);
+			if (intersects(entity, area) && ((criteria == null) || criteria.passes(entity))) {
+				result.add(entity);
+			}
+		}
+
+		final Bounds range = new Bounds();
+		grid.getRange(area, range);
+		for (int cy = range.minY; cy <= range.maxY; cy++) {
+			for (int cx = range.minX; cx <= range.maxX; cx++) {
+				final List<Entity> cell = grid.getCell(cx, cy);
+				if (cell == null) {
+					continue;
+				}
+				for (int i = 0; i < cell.size(); i++) {
+					final Entity entity = cell.get(i);
+					final Bounds bounds = indexed.get(entity);
+					/*
+					 * Entities spanning several buckets are reported only from
+					 * the first bucket where they overlap the query range.
+					 */
+					if ((cx == Math.max(range.minX, bounds.minX)) && (cy == Math.max(range.minY, bounds.minY))
+							&& intersects(entity, area) && ((criteria == null) || criteria.passes(entity))) {
+						result.add(entity);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean intersects(final Entity entity, final Rectangle2D area) {
+		return area.intersects(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight());
+	}
+
+	private static void calculateBounds(final Entity entity, final Bounds bounds) {
+		bounds.set(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight());
+	}
+
+	/**
+	 * Pre-size the grid for a zone of the given size in tiles.
+	 *
+	 * @param width zone width
+	 * @param height zone height
+	 */
+	void setZoneSize(final int width, final int height) {
+		grid.setZoneSize(width, height);
+	}
+}
@@ -0,0 +1,176 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bucket grid over the exterior zones of each level, in world
+ * coordinates.
+ *
+ * <p>Every zone is registered in all buckets its area overlaps, so that
+ * finding the zone at a position only needs to look at the zones of one or a
+ * few buckets instead of every zone of the world. Interior zones have no
+ * world position and are not indexed.
+ */
+final class ExteriorZoneIndex {
+	/** log2 of the bucket edge length in tiles. */
+	private static final int CELL_SHIFT = 6;
+
+	/** Buckets by level and bucket position. */
+	private final Map<Integer, Map<Long, List<StendhalRPZone>>> levels = new HashMap<Integer, Map<Long, List<StendhalRPZone>>>();
+
+	/**
+	 * Add an exterior zone. Interior zones are ignored.
+	 *
+	 * @param zone zone
+	 */
+	void add(final StendhalRPZone zone) {
+		if (zone.isInterior()) {
+			return;
+		}
+
+		Map<Long, List<StendhalRPZone>> cells = levels.get(zone.getLevel());
+		if (cells == null) {
+			cells = new HashMap<Long, List<StendhalRPZone>>();
+			levels.put(zone.getLevel(), cells);
+		}
+
+		for (final long key : keys(zoneArea(zone))) {
+			List<StendhalRPZone> cell = cells.get(key);
+			if (cell == null) {
+				cell = new ArrayList<StendhalRPZone>(2);
+				cells.put(key, cell);
+			}
+			cell.add(zone);
+		}
+	}
+
+	/**
+	 * Remove a zone.
+	 *
+	 * @param zone zone
+	 */
+	void remove(final StendhalRPZone zone) {
+		if (zone.isInterior()) {
+			return;
+		}
+
+		final Map<Long, List<StendhalRPZone>> cells = levels.get(zone.getLevel());
+		if (cells == null) {
+			return;
+		}
+
+		for (final long key : keys(zoneArea(zone))) {
+			final List<StendhalRPZone> cell = cells.get(key);
+			if (cell != null) {
+				cell.remove(zone);
+				if (cell.isEmpty()) {
+					cells.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find an exterior zone overlapping an area.
+	 *
+	 * @param level level
+	 * @param area area in world coordinates
+	 * @return a zone overlapping the area, or <code>null</code> if there is none
+	 */
+	StendhalRPZone getZoneAt(final int level, final Rectangle2D area) {
+		final Map<Long, List<StendhalRPZone>> cells = levels.get(level);
+		if (cells == null) {
+			return null;
+		}
+
+		for (final long key : keys(area)) {
+			final List<StendhalRPZone> cell = cells.get(key);
+			if (cell != null) {
+				for (final StendhalRPZone zone : cell) {
+					if (zone.intersects(area)) {
+						return zone;
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get the exterior zones of the same level that share a border or a
+	 * corner with a zone, or overlap it.
+	 *
+	 * @param zone zone
+	 * @return neighbouring zones, empty for interior zones
+	 */
+	List<StendhalRPZone> getNeighbours(final StendhalRPZone zone) {
+		final List<StendhalRPZone> result = new ArrayList<StendhalRPZone>();
+		final Map<Long, List<StendhalRPZone>> cells = levels.get(zone.getLevel());
+		if (zone.isInterior() || (cells == null)) {
+			return result;
+		}
+
+		// the border of the zone, one tile wide
+		final Rectangle2D area = new Rectangle(zone.getX() - 1, zone.getY() - 1,
+				zone.getWidth() + 2, zone.getHeight() + 2);
+		final Set<StendhalRPZone> found = new LinkedHashSet<StendhalRPZone>();
+		for (final long key : keys(area)) {
+			final List<StendhalRPZone> cell = cells.get(key);
+			if (cell != null) {
+				for (final StendhalRPZone other : cell) {
+					if ((other != zone) && other.intersects(area)) {
+						found.add(other);
+					}
+				}
+			}
+		}
+		result.addAll(found);
+		return result;
+	}
+
+	private static Rectangle2D zoneArea(final StendhalRPZone zone) {
+		return new Rectangle(zone.getX(), zone.getY(), zone.getWidth(), zone.getHeight());
+	}
+
+	/**
+	 * Get the keys of the buckets an area overlaps.
+	 *
+	 * @param area area
+	 * @return bucket keys
+	 */
+	private static long[] keys(final Rectangle2D area) {
+		final int minX = (int) Math.floor(area.getMinX()) >> CELL_SHIFT;
+		final int minY = (int) Math.floor(area.getMinY()) >> CELL_SHIFT;
+		// the buckets of the far edge are included, which is harmless
+		final int maxX = (int) Math.floor(area.getMaxX()) >> CELL_SHIFT;
+		final int maxY = (int) Math.floor(area.getMaxY()) >> CELL_SHIFT;
+
+		final long[] keys = new long[(maxX - minX + 1) * (maxY - minY + 1)];
+		int i = 0;
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				keys[i++] = ((long) x << 32) | (y & 0xffffffffL);
+			}
+		}
+		return keys;
+	}
+}
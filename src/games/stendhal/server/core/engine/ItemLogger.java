@@ -14,6 +14,7 @@ package games.stendhal.server.core.engine;
 
 import games.stendhal.server.core.engine.db.StendhalItemDAO;
 import games.stendhal.server.core.engine.dbcommand.AbstractLogItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogItemEventBatchCommand;
 import games.stendhal.server.core.engine.dbcommand.LogMergeItemEventCommand;
 import games.stendhal.server.core.engine.dbcommand.LogSimpleItemEventCommand;
 import games.stendhal.server.core.engine.dbcommand.LogSplitItemEventCommand;
@@ -24,8 +25,6 @@ import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.player.Player;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
-import marauroa.server.db.command.DBCommandPriority;
-import marauroa.server.db.command.DBCommandQueue;
 
 /**
  * Item Logger.
@@ -35,8 +34,13 @@ import marauroa.server.db.command.DBCommandQueue;
 public class ItemLogger {
 
 
+	/**
+	 * Adds an item log event. Events are written in batches.
+	 *
+	 * @param command item log event
+	 */
 	public void addLogItemEventCommand(final AbstractLogItemEventCommand command) {
-		DBCommandQueue.get().enqueue(command, DBCommandPriority.LOW);
+		LogItemEventBatchCommand.enqueue(command);
 	}
 
 
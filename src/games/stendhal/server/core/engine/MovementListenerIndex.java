@@ -0,0 +1,193 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import games.stendhal.server.core.engine.SpatialGrid.Bounds;
+import games.stendhal.server.core.events.MovementListener;
+
+/**
+ * A uniform bucket grid over the areas of the movement listeners of a zone.
+ *
+ * <p>Movement notifications only need the listeners whose areas overlap the
+ * old or the new area of the moving entity. The grid returns those
+ * candidates in registration order, so that the listeners are notified in
+ * the same order as with a plain list. The caller still does the exact
+ * intersection checks.
+ *
+ * <p>Listener areas are read when the listener is added, and when
+ * {@link #update(MovementListener)} is called. Listeners that are entities
+ * get updated by the zone when they move. Other listeners must keep their
+ * area.
+ */
+final class MovementListenerIndex {
+	/** All registrations in registration order. */
+	private final List<Registration> registrations = new ArrayList<Registration>();
+
+	/** The buckets. */
+	private final SpatialGrid<Registration> grid = new SpatialGrid<Registration>(2);
+
+	/** Order of the next registration. */
+	private long nextOrder;
+
+	/** Stamp used to report each registration once per query. */
+	private int queryStamp;
+
+	/**
+	 * A listener and the buckets it is registered in.
+	 */
+	private static final class Registration {
+		final MovementListener listener;
+		final long order;
+		final Bounds bounds = new Bounds();
+		int stamp;
+
+		Registration(final MovementListener listener, final long order) {
+			this.listener = listener;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * Add a listener. Like with a list, a listener added twice is notified
+	 * twice.
+	 *
+	 * @param listener listener
+	 */
+	void add(final MovementListener listener) {
+		final Registration registration = new Registration(listener, nextOrder++);
+		calculateBounds(listener.getArea(), registration.bounds);
+		registrations.add(registration);
+		grid.insert(registration, registration.bounds);
+	}
+
+	/**
+	 * Remove the first registration of a listener.
+	 *
+	 * @param listener listener
+	 * @return <code>true</code> if the listener was registered
+	 */
+	boolean remove(final MovementListener listener) {
+		for (int i = 0; i < registrations.size(); i++) {
+			final Registration registration = registrations.get(i);
+			if (listener.equals(registration.listener)) {
+				registrations.remove(i);
+				grid.erase(registration, registration.bounds);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Update the buckets of a listener after its area has changed. Listeners
+	 * that are not registered are ignored.
+	 *
+	 * @param listener listener
+	 */
+	void update(final MovementListener listener) {
+		for (int i = 0; i < registrations.size(); i++) {
+			final Registration registration = registrations.get(i);
+			if (registration.listener == listener) {
+				grid.erase(registration, registration.bounds);
+				calculateBounds(listener.getArea(), registration.bounds);
+				grid.insert(registration, registration.bounds);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of registrations.
+	 *
+	 * @return listener count
+	 */
+	int size() {
+		return registrations.size();
+	}
+
+	/**
+	 * Get the listeners whose buckets overlap any of two areas, in
+	 * registration order.
+	 *
+	 * @param area1 first area
+	 * @param area2 second area, or <code>null</code>
+	 * @return candidate listeners
+	 */
+	List<MovementListener> getCandidates(final Rectangle2D area1, final Rectangle2D area2) {
+		if (registrations.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final int stamp = ++queryStamp;
+		final List<Registration> found = new ArrayList<Registration>();
+		final List<Registration> unbucketed = grid.getUnbucketed();
+		for (int i = 0; i < unbucketed.size(); i++) {
+			final Registration registration = unbucketed.get(i);
+			registration.stamp = stamp;
+			found.add(registration);
+		}
+		collect(area1, stamp, found);
+		if (area2 != null) {
+			collect(area2, stamp, found);
+		}
+
+		if (found.isEmpty()) {
+			return Collections.emptyList();
+		}
+		// restore the registration order; the lists are short
+		for (int i = 1; i < found.size(); i++) {
+			final Registration registration = found.get(i);
+			int j = i - 1;
+			while ((j >= 0) && (found.get(j).order > registration.order)) {
+				found.set(j + 1, found.get(j));
+				j--;
+			}
+			found.set(j + 1, registration);
+		}
+		final List<MovementListener> result = new ArrayList<MovementListener>(found.size());
+		for (final Registration registration : found) {
+			result.add(registration.listener);
+		}
+		return result;
+	}
+
+	private void collect(final Rectangle2D area, final int stamp, final List<Registration> found) {
+		final Bounds range = new Bounds();
+		grid.getRange(area, range);
+		for (int cy = range.minY; cy <= range.maxY; cy++) {
+			for (int cx = range.minX; cx <= range.maxX; cx++) {
+				final List<Registration> cell = grid.getCell(cx, cy);
+				if (cell == null) {
+					continue;
+				}
+				for (int i = 0; i < cell.size(); i++) {
+					final Registration registration = cell.get(i);
+					if (registration.stamp != stamp) {
+						registration.stamp = stamp;
+						found.add(registration);
+					}
+				}
+			}
+		}
+	}
+
+	private static void calculateBounds(final Rectangle2D area, final Bounds bounds) {
+		if (area == null) {
+			bounds.minX = -1;
+			return;
+		}
+		bounds.set(area.getX(), area.getY(), area.getWidth(), area.getHeight());
+	}
+}
@@ -0,0 +1,141 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.entity.Entity;
+
+/**
+ * A zone entity list that can also look up its elements by position.
+ *
+ * <p>The position of an element is read when it is added, and when
+ * {@link #update(Entity)} is called. The zone does that when an entity
+ * changes its area.
+ *
+ * @param <T> element type
+ */
+final class PositionIndexedList<T extends Entity> extends ZoneEntityList<T> {
+	/** Elements by position. */
+	private final Map<Long, List<T>> byPosition = new HashMap<Long, List<T>>();
+	/** Indexed position of each element. */
+	private final Map<T, Long> positions = new IdentityHashMap<T, Long>();
+
+	/**
+	 * Get the element at a position. If there are several, the one that is
+	 * first in the list is returned.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return element, or <code>null</code> if there is none
+	 */
+	T getAt(final int x, final int y) {
+		final List<T> candidates = byPosition.get(key(x, y));
+		if (candidates == null) {
+			return null;
+		}
+		T first = null;
+		int firstOrder = Integer.MAX_VALUE;
+		for (final T candidate : candidates) {
+			final int order = order(candidate);
+			if (order < firstOrder) {
+				first = candidate;
+				firstOrder = order;
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Update the position of an element after it has moved. Entities that
+	 * are not in the list are ignored.
+	 *
+	 * @param element moved element
+	 */
+	void update(final T element) {
+		final Long old = positions.get(element);
+		if (old == null) {
+			return;
+		}
+		final long key = key(element.getX(), element.getY());
+		if (old.longValue() == key) {
+			return;
+		}
+		final List<T> oldCandidates = byPosition.get(old);
+		int copies = 0;
+		for (int i = oldCandidates.size() - 1; i >= 0; i--) {
+			if (oldCandidates.get(i) == element) {
+				oldCandidates.remove(i);
+				copies++;
+			}
+		}
+		if (oldCandidates.isEmpty()) {
+			byPosition.remove(old);
+		}
+		positions.put(element, key);
+		final List<T> candidates = candidatesAt(key);
+		for (int i = 0; i < copies; i++) {
+			candidates.add(element);
+		}
+	}
+
+	@Override
+	protected void onAdded(final T element) {
+		if (element == null) {
+			return;
+		}
+		Long key = positions.get(element);
+		if (key == null) {
+			key = key(element.getX(), element.getY());
+			positions.put(element, key);
+		}
+		candidatesAt(key).add(element);
+	}
+
+	@Override
+	protected void onRemoved(final T element) {
+		if (element == null) {
+			return;
+		}
+		final Long key = positions.get(element);
+		final List<T> candidates = byPosition.get(key);
+		for (int i = 0; i < candidates.size(); i++) {
+			if (candidates.get(i) == element) {
+				candidates.remove(i);
+				break;
+			}
+		}
+		if (candidates.isEmpty()) {
+			byPosition.remove(key);
+		}
+		if (!candidates.contains(element)) {
+			positions.remove(element);
+		}
+	}
+
+	private List<T> candidatesAt(final Long key) {
+		List<T> candidates = byPosition.get(key);
+		if (candidates == null) {
+			candidates = new ArrayList<T>(1);
+			byPosition.put(key, candidates);
+		}
+		return candidates;
+	}
+
+	private static long key(final int x, final int y) {
+		return (((long) x) << 32) | (y & 0xffffffffL);
+	}
+}
@@ -0,0 +1,285 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A uniform bucket grid over areas of a zone, in tile coordinates.
+ *
+ * <p>Every value is registered in all buckets its area overlaps. Values with
+ * negative coordinates, with very large areas, or without an area are kept
+ * in a separate list that queries have to check as well. The owner of the
+ * grid keeps the bucket range of each value, and passes it back when the
+ * value is removed.
+ *
+ * <p>The grid is not thread safe.
+ *
+ * @param <T> type of the values
+ */
+final class SpatialGrid<T> {
+	/** log2 of the bucket edge length in tiles. */
+	static final int CELL_SHIFT = 3;
+
+	/**
+	 * Values that would have to be registered in more buckets than this are
+	 * kept in the unbucketed list instead.
+	 */
+	private static final int MAX_CELLS_PER_VALUE = 64;
+
+	/** Upper limit for the number of bucket columns and rows. */
+	private static final int MAX_GRID_SIZE = 1024;
+
+	/** Buckets in row major order. Created on demand. */
+	private List<List<T>> cells = new ArrayList<List<T>>();
+	private int columns;
+	private int rows;
+
+	/** Values that are not registered in any bucket. */
+	private final List<T> unbucketed = new ArrayList<T>();
+
+	/** Initial capacity of new buckets. */
+	private final int cellCapacity;
+
+	/**
+	 * A range of buckets. A range with <code>minX</code> less than 0 means
+	 * the value is in the unbucketed list.
+	 */
+	static final class Bounds {
+		int minX;
+		int minY;
+		int maxX;
+		int maxY;
+
+		boolean isBucketed() {
+			return minX >= 0;
+		}
+
+		/**
+		 * Set the range of the buckets an area overlaps.
+		 *
+		 * @param x x coordinate of the area
+		 * @param y y coordinate of the area
+		 * @param width width of the area
+		 * @param height height of the area
+		 */
+		void set(final double x, final double y, final double width, final double height) {
+			if (Double.isNaN(x) || Double.isNaN(y)) {
+				minX = -1;
+				return;
+			}
+			minX = cellMin(x);
+			minY = cellMin(y);
+			maxX = cellMax(x, width);
+			maxY = cellMax(y, height);
+			final long cellCount = ((long) maxX - minX + 1) * ((long) maxY - minY + 1);
+			if ((minX < 0) || (minY < 0) || (maxX >= MAX_GRID_SIZE) || (maxY >= MAX_GRID_SIZE)
+					|| (cellCount > MAX_CELLS_PER_VALUE)) {
+				minX = -1;
+			}
+		}
+
+		/**
+		 * Copy another range.
+		 *
+		 * @param other range to copy
+		 */
+		void set(final Bounds other) {
+			minX = other.minX;
+			minY = other.minY;
+			maxX = other.maxX;
+			maxY = other.maxY;
+		}
+
+		boolean isSame(final Bounds other) {
+			return (minX == other.minX) && (minY == other.minY) && (maxX == other.maxX) && (maxY == other.maxY);
+		}
+	}
+
+	/**
+	 * Create a new grid.
+	 *
+	 * @param cellCapacity initial capacity of new buckets
+	 */
+	SpatialGrid(final int cellCapacity) {
+		this.cellCapacity = cellCapacity;
+	}
+
+	/**
+	 * Register a value in the buckets of a range.
+	 *
+	 * @param value value
+	 * @param bounds bucket range of the value
+	 */
+	void insert(final T value, final Bounds bounds) {
+		if (!bounds.isBucketed()) {
+			unbucketed.add(value);
+			return;
+		}
+
+		ensureSize(bounds.maxX + 1, bounds.maxY + 1);
+		for (int cy = bounds.minY; cy <= bounds.maxY; cy++) {
+			for (int cx = bounds.minX; cx <= bounds.maxX; cx++) {
+				final int index = cy * columns + cx;
+				List<T> cell = cells.get(index);
+				if (cell == null) {
+					cell = new ArrayList<T>(cellCapacity);
+					cells.set(index, cell);
+				}
+				cell.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Remove a value from the buckets of a range.
+	 *
+	 * @param value value
+	 * @param bounds bucket range the value was inserted with
+	 */
+	void erase(final T value, final Bounds bounds) {
+		if (!bounds.isBucketed()) {
+			removeIdentical(unbucketed, value);
+			return;
+		}
+
+		for (int cy = bounds.minY; cy <= bounds.maxY; cy++) {
+			for (int cx = bounds.minX; cx <= bounds.maxX; cx++) {
+				removeIdentical(cells.get(cy * columns + cx), value);
+			}
+		}
+	}
+
+	private static <T> void removeIdentical(final List<T> list, final T value) {
+		for (int i = list.size() - 1; i >= 0; i--) {
+			if (list.get(i) == value) {
+				list.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Get the values that are not in any bucket.
+	 *
+	 * @return unbucketed values
+	 */
+	List<T> getUnbucketed() {
+		return unbucketed;
+	}
+
+	/**
+	 * Get the range of existing buckets that an area overlaps. The range is
+	 * empty if <code>minX &gt; maxX</code> or <code>minY &gt; maxY</code>.
+	 *
+	 * @param area area
+	 * @param range the range to set
+	 */
+	void getRange(final Rectangle2D area, final Bounds range) {
+		range.minX = Math.max(0, cellMin(area.getX()));
+		range.minY = Math.max(0, cellMin(area.getY()));
+		range.maxX = Math.min(columns - 1, cellMax(area.getX(), area.getWidth()));
+		range.maxY = Math.min(rows - 1, cellMax(area.getY(), area.getHeight()));
+	}
+
+	/**
+	 * Get a bucket within the range returned by {@link #getRange}.
+	 *
+	 * @param cx bucket column
+	 * @param cy bucket row
+	 * @return the bucket, or <code>null</code> if it has never been used
+	 */
+	List<T> getCell(final int cx, final int cy) {
+		return cells.get(cy * columns + cx);
+	}
+
+	/**
+	 * Get the bucket containing a point.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return the bucket, or <code>null</code> if there is none
+	 */
+	List<T> getCellAt(final double x, final double y) {
+		final int cx = cellMin(x);
+		final int cy = cellMin(y);
+		if ((cx < 0) || (cy < 0) || (cx >= columns) || (cy >= rows)) {
+			return null;
+		}
+		return cells.get(cy * columns + cx);
+	}
+
+	/**
+	 * Get the bucket coordinate of the first tile covered by a range.
+	 *
+	 * @param start start of the range
+	 * @return bucket coordinate
+	 */
+	private static int cellMin(final double start) {
+		return ((int) Math.floor(start)) >> CELL_SHIFT;
+	}
+
+	/**
+	 * Get the bucket coordinate of the last tile covered by a range.
+	 *
+	 * @param start start of the range
+	 * @param length length of the range
+	 * @return bucket coordinate
+	 */
+	private static int cellMax(final double start, final double length) {
+		final int first = (int) Math.floor(start);
+		final int last = Math.max(first, (int) Math.ceil(start + length) - 1);
+		return last >> CELL_SHIFT;
+	}
+
+	/**
+	 * Grow the bucket array so that it covers at least the given number of
+	 * columns and rows.
+	 *
+	 * @param minColumns required columns
+	 * @param minRows required rows
+	 */
+	private void ensureSize(final int minColumns, final int minRows) {
+		if ((minColumns <= columns) && (minRows <= rows)) {
+			return;
+		}
+
+		final int newColumns = Math.min(MAX_GRID_SIZE, Math.max(minColumns, columns * 2));
+		final int newRows = Math.min(MAX_GRID_SIZE, Math.max(minRows, rows * 2));
+		final List<List<T>> newCells = new ArrayList<List<T>>(newColumns * newRows);
+		for (int i = 0; i < newColumns * newRows; i++) {
+			newCells.add(null);
+		}
+		for (int cy = 0; cy < rows; cy++) {
+			for (int cx = 0; cx < columns; cx++) {
+				newCells.set(cy * newColumns + cx, cells.get(cy * columns + cx));
+			}
+		}
+		cells = newCells;
+		columns = newColumns;
+		rows = newRows;
+	}
+
+	/**
+	 * Pre-size the grid for a zone of the given size in tiles.
+	 *
+	 * @param width zone width
+	 * @param height zone height
+	 */
+	void setZoneSize(final int width, final int height) {
+		if ((width > 0) && (height > 0)) {
+			ensureSize(Math.min(MAX_GRID_SIZE, cellMax(0, width) + 1), Math.min(MAX_GRID_SIZE, cellMax(0, height) + 1));
+		}
+	}
+}
@@ -230,6 +230,13 @@ public class StendhalPlayerDatabase {
 				transaction.execute("ALTER TABLE npcs ADD COLUMN (" + col + " VARCHAR(1000));", null);
 			}
 		}
+
+		// 1.44: content hashes for writing only the changed rows of the website dumps
+		for (final String table: Arrays.asList("npcs", "zoneinfo")) {
+			if (!transaction.doesColumnExist(table, "content_hash")) {
+				transaction.execute("ALTER TABLE " + table + " ADD COLUMN (content_hash VARCHAR(64));", null);
+			}
+		}
 	}
 
 
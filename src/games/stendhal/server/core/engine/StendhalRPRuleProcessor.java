@@ -30,6 +30,10 @@ import org.apache.log4j.Logger;
 import games.stendhal.common.Debug;
 import games.stendhal.common.NotificationType;
 import games.stendhal.common.filter.FilterCriteria;
+import games.stendhal.common.parser.ConversationParser;
+import games.stendhal.common.parser.Expression;
+import games.stendhal.common.parser.ParserCache;
+import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.actions.CommandCenter;
 import games.stendhal.server.actions.admin.AdministrationAction;
 import games.stendhal.server.core.account.AccountCreator;
@@ -46,6 +50,7 @@ import games.stendhal.server.core.scripting.ScriptRunner;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.npc.NPCList;
+import games.stendhal.server.entity.npc.UtteranceCache;
 import games.stendhal.server.entity.npc.behaviour.impl.OutfitChangerBehaviour.ExpireOutfit;
 import games.stendhal.server.entity.player.AfkTimeouter;
 import games.stendhal.server.entity.player.Player;
@@ -56,7 +61,6 @@ import marauroa.common.Configuration;
 import marauroa.common.Pair;
 import marauroa.common.game.AccountResult;
 import marauroa.common.game.CharacterResult;
-import marauroa.common.game.IRPZone;
 import marauroa.common.game.RPAction;
 import marauroa.common.game.RPObject;
 import marauroa.common.io.UnicodeSupportingInputStreamReader;
@@ -106,6 +110,9 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 
 	private LinkedList<marauroa.server.game.rp.GameEvent> gameEvents = new LinkedList<>();
 
+	/** runs the logic of the zones at the end of each turn */
+	private ZoneLogicExecutor zoneLogicExecutor = new ZoneLogicExecutor(1);
+
 
 	/**
 	 * gets the singleton instance of StendhalRPRuleProcessor
@@ -189,6 +196,8 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 				logger.info("No server extensions configured in ini file.");
 			}
 
+			setZoneLogicExecutor(new ZoneLogicExecutor(config.getInt("zone_logic_threads", 1)));
+
 			// Remove online info from database.
 			DAORegister.get().get(StendhalWebsiteDAO.class).clearOnlineStatus();
 		} catch (final Exception e) {
@@ -223,9 +232,27 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	 * @param killer
 	 */
 	public void killRPEntity(final RPEntity entity, final Entity killer) {
+		if (ZoneLogicExecutor.defer(new Runnable() {
+			@Override
+			public void run() {
+				killRPEntity(entity, killer);
+			}
+		})) {
+			return;
+		}
 		entityToKill.add(new Pair<RPEntity, Entity>(entity, killer));
 	}
 
+	/**
+	 * Sets the executor that runs the zone logic at the end of each turn.
+	 *
+	 * @param executor new executor
+	 */
+	void setZoneLogicExecutor(final ZoneLogicExecutor executor) {
+		zoneLogicExecutor.shutdown();
+		zoneLogicExecutor = executor;
+	}
+
 	/**
 	 * Checks whether the given RPEntity has been killed this turn.
 	 *
@@ -295,6 +322,12 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 			logger.error("error in beginTurn", e);
 		}
 
+		try {
+			logConversationCaches();
+		} catch (final Exception e) {
+			logger.error("error in beginTurn", e);
+		}
+
 		try {
 			handleKilledEntities();
 		} catch (final Exception e) {
@@ -336,6 +369,25 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 		Statistics.getStatistics().set("Players logged", getOnlinePlayers().size());
 	}
 
+	protected void logConversationCaches() {
+		final Statistics stats = Statistics.getStatistics();
+		final UtteranceCache utterances = UtteranceCache.get();
+		stats.set("Utterance cache hits", toInt(utterances.getHits()));
+		stats.set("Utterance cache misses", toInt(utterances.getMisses()));
+		final ParserCache<Expression> triggers = ConversationParser.getTriggerExpressionsCache();
+		stats.set("Trigger cache size", triggers.size());
+		stats.set("Trigger cache hits", toInt(triggers.getHits()));
+		stats.set("Trigger cache misses", toInt(triggers.getMisses()));
+		final ParserCache<Sentence> matchers = ConversationParser.getMatchingSentenceCache();
+		stats.set("Matching sentence cache size", matchers.size());
+		stats.set("Matching sentence cache hits", toInt(matchers.getHits()));
+		stats.set("Matching sentence cache misses", toInt(matchers.getMisses()));
+	}
+
+	private static int toInt(final long value) {
+		return (int) Math.min(value, Integer.MAX_VALUE);
+	}
+
 	protected void handlePlayersRmTexts() {
 		for (final Player player : playersRmText) {
 			if (player.has("text")) {
@@ -350,8 +402,14 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 		// SpeakerNPC logic
 		final NPCList npcList = SingletonRepository.getNPCList();
 		final Set<String> npcs = npcList.getNPCs();
-		for (final String npc : npcs) {
-			npcList.get(npc).preLogic();
+		final UtteranceCache utterances = UtteranceCache.get();
+		utterances.beginTurn();
+		try {
+			for (final String npc : npcs) {
+				npcList.get(npc).preLogic();
+			}
+		} finally {
+			utterances.endTurn();
 		}
 	}
 
@@ -393,10 +451,7 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 
 			SingletonRepository.getTurnNotifier().logic(currentTurn);
 
-			for (final IRPZone zoneI : SingletonRepository.getRPWorld()) {
-				final StendhalRPZone zone = (StendhalRPZone) zoneI;
-				zone.logic();
-			}
+			zoneLogicExecutor.execute(SingletonRepository.getRPWorld());
 
 			// run registered object's logic method for this turn
 
@@ -793,7 +848,15 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	 * @param event  event
 	 * @param params parameters
 	 */
-	public void logGameEvent(String source, String event, String... params) {
+	public void logGameEvent(final String source, final String event, final String... params) {
+		if (ZoneLogicExecutor.defer(new Runnable() {
+			@Override
+			public void run() {
+				logGameEvent(source, event, params);
+			}
+		})) {
+			return;
+		}
 		this.gameEvents.add(new marauroa.server.game.rp.GameEvent(source, event, params));
 
 		// we collect one second of game events and write them as batch to the database
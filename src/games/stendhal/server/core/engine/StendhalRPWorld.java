@@ -14,11 +14,14 @@ package games.stendhal.server.core.engine;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
@@ -60,6 +63,15 @@ public class StendhalRPWorld extends RPWorld {
 
 	private final Map<String, Set<StendhalRPZone>> regionMap = new HashMap<String, Set<StendhalRPZone>>();
 
+	/** exterior zones by their position in the world */
+	private final ExteriorZoneIndex exteriorZones = new ExteriorZoneIndex();
+
+	/**
+	 * results of getAllZonesFromRegion() by region and flags, cleared when
+	 * zones are added or removed
+	 */
+	private final Map<String, Collection<StendhalRPZone>> regionViews = new ConcurrentHashMap<String, Collection<StendhalRPZone>>();
+
 
 	/**
 	 * Singleton access method.
@@ -90,6 +102,10 @@ public class StendhalRPWorld extends RPWorld {
 				zones.remove(zone);
 			}
 		}
+		if (zone != null) {
+			exteriorZones.remove(zone);
+		}
+		regionViews.clear();
 		return super.removeRPZone(zoneid);
 	}
 
@@ -262,24 +278,39 @@ public class StendhalRPWorld extends RPWorld {
 	 * @return The matching zone, or <code>null</code> if not found.
 	 */
 	public StendhalRPZone getZoneAt(final int level, final int wx, final int wy, final Entity entity) {
-		for (final IRPZone izone : this) {
-			final StendhalRPZone zone = (StendhalRPZone) izone;
+		final StendhalRPZone zone = exteriorZones.getZoneAt(level, entity.getArea(wx, wy));
+		if ((zone != null) && logger.isDebugEnabled()) {
+			logger.debug("Contained at :" + zone.getID());
+		}
 
-			if (zone.isInterior()) {
-				continue;
-			}
+		return zone;
+	}
 
-			if (zone.getLevel() != level) {
-				continue;
-			}
+	/**
+	 * Get the exterior zones of the same level that border on a zone, for
+	 * example to prepare them before an entity crosses the border.
+	 *
+	 * @param zone
+	 *            The zone.
+	 *
+	 * @return The neighbouring zones. Interior zones have none.
+	 */
+	public List<StendhalRPZone> getNeighbourZones(final StendhalRPZone zone) {
+		return exteriorZones.getNeighbours(zone);
+	}
 
-			if (zone.intersects(entity.getArea(wx, wy))) {
-				logger.debug("Contained at :" + zone.getID());
-				return zone;
-			}
+	@Override
+	public void addRPZone(final IRPZone zone) {
+		// a zone with the same ID is replaced
+		final IRPZone old = super.getRPZone(zone.getID());
+		if (old instanceof StendhalRPZone) {
+			exteriorZones.remove((StendhalRPZone) old);
 		}
-
-		return null;
+		super.addRPZone(zone);
+		if (zone instanceof StendhalRPZone) {
+			exteriorZones.add((StendhalRPZone) zone);
+		}
+		regionViews.clear();
 	}
 
 	/**
@@ -288,7 +319,7 @@ public class StendhalRPWorld extends RPWorld {
 	 * @param zone
 	 */
 	public void addRPZone(final String region, final StendhalRPZone zone) {
-		super.addRPZone(zone);
+		addRPZone(zone);
 		if(!regionMap.containsKey(region)) {
 			regionMap.put(region, new HashSet<StendhalRPZone>());
 		}
@@ -308,9 +339,28 @@ public class StendhalRPWorld extends RPWorld {
 	 * @param exterior only exterior zones(true), interior zones(false) or all zones (null)
 	 * @param aboveGround only zones above ground(true), zones below ground(false) or all (null)
 	 * @param accessible use true to filter out zones that are not accessible for everyone
-	 * @return a list of zones
+	 * @return an unmodifiable collection of zones
 	 */
 	public Collection<StendhalRPZone> getAllZonesFromRegion(final String region, final Boolean exterior, final Boolean aboveGround, final Boolean accessible) {
+		final String key = region + "|" + exterior + "|" + aboveGround + "|" + accessible;
+		Collection<StendhalRPZone> zones = regionViews.get(key);
+		if (zones == null) {
+			zones = Collections.unmodifiableSet(filterZonesFromRegion(region, exterior, aboveGround, accessible));
+			regionViews.put(key, zones);
+		}
+		return zones;
+	}
+
+	/**
+	 * Collects all zones from a specified region with the given flags
+	 *
+	 * @param region the name of the region to search for
+	 * @param exterior only exterior zones(true), interior zones(false) or all zones (null)
+	 * @param aboveGround only zones above ground(true), zones below ground(false) or all (null)
+	 * @param accessible use true to filter out zones that are not accessible for everyone
+	 * @return a set of zones
+	 */
+	private Set<StendhalRPZone> filterZonesFromRegion(final String region, final Boolean exterior, final Boolean aboveGround, final Boolean accessible) {
 		final Set<StendhalRPZone> zonesInRegion = new HashSet<StendhalRPZone>();
 		if(regionMap.containsKey(region)) {
 			zonesInRegion.addAll(regionMap.get(region));
@@ -37,7 +37,6 @@ import games.stendhal.common.CRC;
 import games.stendhal.common.CollisionDetection;
 import games.stendhal.common.Debug;
 import games.stendhal.common.Direction;
-import games.stendhal.common.Line;
 import games.stendhal.common.MathHelper;
 import games.stendhal.common.filter.FilterCriteria;
 import games.stendhal.common.grammar.Grammar;
@@ -103,7 +102,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	private Point entryPoint;
 
-	private final List<Portal> portals;
+	private final PositionIndexedList<Portal> portals;
 
 	private final List<NPC> npcs;
 
@@ -118,12 +117,15 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	private final List<RPEntity> playersAndFriends;
 
+	/** Target queries of the creatures in the zone. Created when needed. */
+	private TargetingService targetingService;
+
 	private final List<Player> players;
 
 	/**
 	 * The blood spills.
 	 */
-	private final List<Blood> bloods;
+	private final PositionIndexedList<Blood> bloods;
 
 	//private boolean teleportAllowed = true;
 
@@ -132,7 +134,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	/**
 	 * Objects that implement MovementListener.
 	 */
-	private final List<MovementListener> movementListeners;
+	private final MovementListenerIndex movementListeners = new MovementListenerIndex();
 
 
 	private final List<ZoneEnterExitListener> zoneListeners;
@@ -144,6 +146,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 */
 	private final Set<Item> itemsOnGround;
 
+	/** Spatial index of the entities in this zone. */
+	private final EntityGrid entityGrid = new EntityGrid();
+
 	/** contains data to if a certain area is walkable. */
 	public CollisionDetection collisionMap;
 
@@ -210,17 +215,16 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		contents = new LinkedList<TransferContent>();
 		entryPoint = null;
-		portals = new LinkedList<Portal>();
+		portals = new PositionIndexedList<Portal>();
 		itemsOnGround = new HashSet<Item>();
-		bloods = new LinkedList<Blood>();
-		npcs = new LinkedList<NPC>();
-		sheepFoods = new LinkedList<SheepFood>();
-		respawnPoints = new LinkedList<CreatureRespawnPoint>();
-		plantGrowers = new LinkedList<PassiveEntityRespawnPoint>();
-		players = new LinkedList<Player>();
-		playersAndFriends = new LinkedList<RPEntity>();
-
-		movementListeners = new LinkedList<MovementListener>();
+		bloods = new PositionIndexedList<Blood>();
+		npcs = new ZoneEntityList<NPC>();
+		sheepFoods = new ZoneEntityList<SheepFood>();
+		respawnPoints = new ZoneEntityList<CreatureRespawnPoint>();
+		plantGrowers = new ZoneEntityList<PassiveEntityRespawnPoint>();
+		players = new ZoneEntityList<Player>();
+		playersAndFriends = new ZoneEntityList<RPEntity>();
+
 		zoneListeners = new LinkedList<ZoneEnterExitListener>();
 
 		collisionMap = new CollisionDetection();
@@ -240,6 +244,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public StendhalRPZone(final String name, final int width, final int height) {
 		this(name);
 		collisionMap.init(width, height);
+		entityGrid.setZoneSize(width, height);
 	}
 
 	public StendhalRPZone(final String name, final StendhalRPZone zone) {
@@ -251,6 +256,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 		contents.addAll(zone.contents);
 		collisionMap = zone.collisionMap;
 		protectionMap  = zone.protectionMap;
+		entityGrid.setZoneSize(collisionMap.getWidth(), collisionMap.getHeight());
 
 		this.zoneid = new ID(name);
 	}
@@ -266,13 +272,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return The blood, or <code>null</code>.
 	 */
 	public Blood getBlood(final int x, final int y) {
-		for (final Blood blood : bloods) {
-			if ((blood.getX() == x) && (blood.getY() == y)) {
-				return blood;
-			}
-		}
-
-		return null;
+		return bloods.getAt(x, y);
 	}
 
 	public List<NPC> getNPCList() {
@@ -307,13 +307,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return The portal, or <code>null</code>.
 	 */
 	public Portal getPortal(final int x, final int y) {
-		for (final Portal portal : portals) {
-			if ((portal.getX() == x) && (portal.getY() == y)) {
-				return portal;
-			}
-		}
-
-		return null;
+		return portals.getAt(x, y);
 	}
 
 	/**
@@ -403,6 +397,16 @@ public class StendhalRPZone extends MarauroaRPZone {
 		addToContent(name, byteContents);
 	}
 
+	/**
+	 * Add a layer that has already been encoded.
+	 *
+	 * @param name layer name
+	 * @param encoded layer data as returned by {@link LayerDefinition#encode()}
+	 */
+	public void addLayer(final String name, final byte[] encoded) {
+		addToContent(name, encoded);
+	}
+
 	public void addTilesets(final String name, final List<TileSetDefinition> tilesets)
 			throws IOException {
 		/*
@@ -488,13 +492,39 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	public void addCollisionLayer(final String name, final LayerDefinition collisionLayer)
 			throws IOException {
-		addToContent(name, collisionLayer.encode());
+		addCollisionLayer(name, collisionLayer, collisionLayer.encode());
+	}
+
+	/**
+	 * Set the collision layer.
+	 *
+	 * @param name layer name
+	 * @param collisionLayer collision layer
+	 * @param encoded layer data as returned by {@link LayerDefinition#encode()}
+	 */
+	public void addCollisionLayer(final String name, final LayerDefinition collisionLayer,
+			final byte[] encoded) {
+		addToContent(name, encoded);
 		collisionMap.setCollisionData(collisionLayer);
+		collisionMap.updateComponents();
+		entityGrid.setZoneSize(collisionMap.getWidth(), collisionMap.getHeight());
 	}
 
 	public void addProtectionLayer(final String name, final LayerDefinition protectionLayer)
 			throws IOException {
-		addToContent(name, protectionLayer.encode());
+		addProtectionLayer(name, protectionLayer, protectionLayer.encode());
+	}
+
+	/**
+	 * Set the protection layer.
+	 *
+	 * @param name layer name
+	 * @param protectionLayer protection layer
+	 * @param encoded layer data as returned by {@link LayerDefinition#encode()}
+	 */
+	public void addProtectionLayer(final String name, final LayerDefinition protectionLayer,
+			final byte[] encoded) {
+		addToContent(name, encoded);
 		protectionMap.setCollisionData(protectionLayer);
 	}
 
@@ -925,6 +955,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		 */
 		assignRPObjectID(object);
 		super.add(object);
+		if (object instanceof Entity) {
+			entityGrid.add((Entity) object);
+		}
 
 		notifyAdded(object);
 
@@ -952,6 +985,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 			Player playerObject = (Player) object;
 			players.add(playerObject);
 			playersAndFriends.add(playerObject);
+			invalidateTargeting();
 			/*
 			 * super.add() clears the events, so this needs to be after it for
 			 * the player to see the zone achievements. Also, Player.onAdded()
@@ -961,14 +995,17 @@ public class StendhalRPZone extends MarauroaRPZone {
 			SingletonRepository.getAchievementNotifier().onZoneEnter(playerObject);
 		} else if (object instanceof AttackableCreature) {
 			playersAndFriends.add((AttackableCreature) object);
+			invalidateTargeting();
 		} else if (object instanceof Sheep) {
 			if (((Sheep) object).wasOwned()) {
 				playersAndFriends.add((Sheep) object);
+				invalidateTargeting();
 			}
 		} else if (object instanceof SheepFood) {
 			sheepFoods.add((SheepFood) object);
 		} else if (object instanceof BabyDragon) {
 			playersAndFriends.add((BabyDragon) object);
+			invalidateTargeting();
 		} else if (object instanceof SpeakerNPC) {
 			SingletonRepository.getNPCList().add((SpeakerNPC) object);
 		} else if (object instanceof Portal) {
@@ -991,6 +1028,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public void addToPlayersAndFriends(RPEntity object) {
 		if (!playersAndFriends.contains(object)) {
 			playersAndFriends.add(object);
+			invalidateTargeting();
 		}
 	}
 
@@ -1024,14 +1062,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 		} else if (object instanceof Player) {
 			players.remove(object);
 			playersAndFriends.remove(object);
+			invalidateTargeting();
 		} else if (object instanceof AttackableCreature) {
 			playersAndFriends.remove(object);
+			invalidateTargeting();
 		} else if (object instanceof Sheep) {
 			playersAndFriends.remove(object);
+			invalidateTargeting();
 		} else if (object instanceof SheepFood) {
 			sheepFoods.remove(object);
 		} else if (object instanceof BabyDragon) {
 			playersAndFriends.remove(object);
+			invalidateTargeting();
 		} else if (object instanceof SpeakerNPC) {
 			SingletonRepository.getNPCList().remove(((SpeakerNPC) object).getName());
 		} else if (object instanceof Portal) {
@@ -1046,6 +1088,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 
 		super.remove(id);
+		if (object instanceof Entity) {
+			entityGrid.remove((Entity) object);
+		}
 
 		if (object instanceof Item) {
 			final Item item = (Item) object;
@@ -1089,6 +1134,29 @@ public class StendhalRPZone extends MarauroaRPZone {
 		super.modify(object.getBaseContainer());
 	}
 
+	/**
+	 * Notification that the position or size of an entity in this zone has
+	 * changed. Keeps the spatial index used by collision and position lookups
+	 * up to date.
+	 *
+	 * @param entity
+	 *            The changed entity
+	 */
+	public synchronized void notifyAreaChanged(final Entity entity) {
+		entityGrid.update(entity);
+		if (entity instanceof MovementListener) {
+			movementListeners.update((MovementListener) entity);
+		}
+		if (entity instanceof Portal) {
+			portals.update((Portal) entity);
+		} else if (entity instanceof Blood) {
+			bloods.update((Blood) entity);
+		}
+		if (targetingService != null) {
+			targetingService.onAreaChanged(entity);
+		}
+	}
+
 	/**
 	 * Checks if there is a collision on the airline between 2 positions. Only
 	 * the collision map will be used.
@@ -1104,20 +1172,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return true if there is a collision
 	 */
 	public boolean collidesOnLine(final int x1, final int y1, final int x2, final int y2) {
-		List<Point> points;
-		// Always draw the line to the same direction, so that if A to B
-		// collides, then so does B to A
-		if ((x1 < x2) || ((x1 == x2) && (y1 < y2))) {
-			points = Line.renderLine(x1, y1, x2, y2);
-		} else {
-			points = Line.renderLine(x2, y2, x1, y1);
-		}
-		for (final Point point : points) {
-			if (collides((int) point.getX(), (int) point.getY())) {
-				return true;
-			}
-		}
-		return false;
+		return collisionMap.collidesOnLine(x1, y1, x2, y2);
 	}
 
 	/**
@@ -1200,22 +1255,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	}
 
 	private Entity getCollidingObject(final Entity entity, final Rectangle2D area) {
-		for (final RPObject other : objects.values()) {
-			// Ignore same object
-			if (entity != other) {
-				final Entity otherEntity = (Entity) other;
-
-				// Check if the objects overlap
-				if (area.intersects(otherEntity.getX(), otherEntity.getY(), otherEntity.getWidth(), otherEntity.getHeight())) {
-					// Check if it's blocking
-					if (otherEntity.isObstacle(entity)) {
-						return otherEntity;
-					}
-				}
-			}
-		}
-
-		return null;
+		return entityGrid.getObstacle(entity, area);
 	}
 
 	/**
@@ -1226,15 +1266,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return the first entity found if there are more than one or null if there are none
 	 */
 	public synchronized Entity getEntityAt(final double x, final double y) {
-		for (final RPObject other : objects.values()) {
-			final Entity otherEntity = (Entity) other;
-
-			final Rectangle2D rect = otherEntity.getArea();
-			if (rect.contains(x, y)) {
-				return otherEntity;
-			}
-		}
-		return null;
+		return entityGrid.getEntityAt(x, y);
 	}
 
 	/**
@@ -1244,18 +1276,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return list of entities at (x, y)
 	 */
 	public synchronized List<Entity> getEntitiesAt(final double x, final double y) {
-		List<Entity> entities = new LinkedList<Entity>();
-
-		for (final RPObject other : objects.values()) {
-			final Entity entity = (Entity) other;
-
-			final Rectangle2D rect = entity.getArea();
-			if (rect.contains(x, y)) {
-				entities.add(entity);
-			}
-		}
-
-		return entities;
+		return getEntitiesAt(x, y, Entity.class);
 	}
 
 
@@ -1267,18 +1288,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 */
 	public synchronized <T extends Entity> List<T> getEntitiesAt(final double x, final double y, Class<T> clazz) {
 		List<T> entities = new LinkedList<T>();
-
-		for (final RPObject other : objects.values()) {
-			final Entity entity = (Entity) other;
-			if (!clazz.isInstance(entity)) {
-				continue;
-			}
-
-			final Rectangle2D rect = entity.getArea();
-			if (rect.contains(x, y)) {
-				entities.add(clazz.cast(entity));
-			}
-		}
+		entityGrid.getEntitiesAt(x, y, clazz, entities);
 
 		return entities;
 	}
@@ -1350,7 +1360,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		eArea = entity.getArea(newX, newY);
 
-		for (final MovementListener l : movementListeners) {
+		for (final MovementListener l : movementListeners.getCandidates(eArea, null)) {
 			Rectangle2D area = l.getArea();
 			if (area.intersects(eArea)) {
 				l.onEntered(entity, this, newX, newY);
@@ -1373,7 +1383,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		eArea = entity.getArea(oldX, oldY);
 
-		for (final MovementListener l : movementListeners) {
+		for (final MovementListener l : movementListeners.getCandidates(eArea, null)) {
 			Rectangle2D area = l.getArea();
 			if (area.intersects(eArea)) {
 				l.onExited(entity, this, oldX, oldY);
@@ -1405,7 +1415,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 		oeArea = entity.getArea(oldX, oldY);
 		neArea = entity.getArea(newX, newY);
 
-		for (final MovementListener l : movementListeners) {
+		for (final MovementListener l : movementListeners.getCandidates(oeArea, neArea)) {
 			Rectangle2D area = l.getArea();
 
 			oldIn = area.intersects(oeArea);
@@ -1432,7 +1442,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		neArea = entity.getArea(newX, newY);
 
-		for (final MovementListener l : movementListeners) {
+		for (final MovementListener l : movementListeners.getCandidates(neArea, null)) {
 			Rectangle2D area = l.getArea();
 
 			newIn = area.intersects(neArea);
@@ -1455,8 +1465,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 
 	/**
-	 * Register a movement listener for notification. Eventually create a
-	 * macro-block hash to cut down on listeners to check.
+	 * Register a movement listener for notification. Listeners are indexed
+	 * by their area, so that movements only check the listeners nearby.
+	 * Listeners that are not entities must not change their area.
 	 *
 	 * @param listener
 	 *            A movement listener to register.
@@ -1506,6 +1517,27 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return playersAndFriends;
 	}
 
+	/**
+	 * Gets the service answering target queries of creatures in this zone.
+	 *
+	 * @return targeting service
+	 */
+	public TargetingService getTargetingService() {
+		if (targetingService == null) {
+			targetingService = new TargetingService(this);
+		}
+		return targetingService;
+	}
+
+	/**
+	 * Tell the targeting service that the players and friends have changed.
+	 */
+	private void invalidateTargeting() {
+		if (targetingService != null) {
+			targetingService.invalidate();
+		}
+	}
+
 	/**
 	 * Can moveto (mouse movement using pathfinding) be done on this map?
 	 *
@@ -1576,6 +1608,16 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 	}
 
+	/**
+	 * Check whether the zone has any entities that need to run logic each
+	 * turn.
+	 *
+	 * @return <code>true</code> if there are NPCs or portals in the zone
+	 */
+	public boolean hasLogic() {
+		return !npcs.isEmpty() || !portals.isEmpty();
+	}
+
 	/**
 	 * Return whether the zone is completely empty.
 	 * @return true if there are no objects in zone
@@ -1645,6 +1687,21 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 	}
 
+	/**
+	 * Get the entities that intersect an area and pass a filter. Only the
+	 * entities near the area are checked.
+	 *
+	 * @param area area to check
+	 * @param criteria filter, or <code>null</code> to get all entities in the area
+	 * @return matching entities
+	 */
+	public synchronized List<Entity> getFilteredEntities(final Rectangle2D area, final FilterCriteria<Entity> criteria) {
+		final List<Entity> result = new LinkedList<Entity>();
+		entityGrid.getEntitiesIn(area, criteria, result);
+
+		return result;
+	}
+
 	/**
 	 * Sets the flag whether magic scrolls for teleportation may be uses in this
 	 * zone.
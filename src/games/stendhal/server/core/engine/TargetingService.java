@@ -0,0 +1,280 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.core.pathfinder.Node;
+import games.stendhal.server.core.pathfinder.Path;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.RPEntity;
+
+/**
+ * Answers target queries of creatures in a zone. The players and friends of
+ * the zone are indexed by their horizontal position, and the index is rebuilt
+ * on the next query when any of them is added, removed or moves. The path
+ * searches of each creature are remembered for the rest of the turn, so that
+ * a creature looking for enemies does not repeat the same work.
+ */
+public final class TargetingService {
+	private final StendhalRPZone zone;
+
+	/** Turn for which the index and the remembered paths were built. */
+	private int turn;
+	/** <code>false</code> if the index needs to be rebuilt. */
+	private boolean valid;
+	/** Candidates sorted by the x coordinate of their center. */
+	private RPEntity[] candidates = new RPEntity[0];
+	/** Center x coordinates of <code>candidates</code>. */
+	private double[] centerX = new double[0];
+	/** Widest candidate, needed for the query window. */
+	private double maxWidth;
+	/** The entities of <code>candidates</code>, for quick look ups. */
+	private final Set<Entity> indexed = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+	/** Path search results of the current turn. */
+	private final Map<PathKey, List<Node>> paths = new HashMap<PathKey, List<Node>>();
+
+	/**
+	 * Create a TargetingService for a zone.
+	 *
+	 * @param zone zone
+	 */
+	TargetingService(final StendhalRPZone zone) {
+		this.zone = zone;
+	}
+
+	/**
+	 * Get the players and friends within range of an entity, ordered by
+	 * distance. Entities invisible to creatures are left out.
+	 *
+	 * @param entity entity looking for targets
+	 * @param range maximum distance, as in {@link Entity#squaredDistance(Entity)}
+	 * @param max maximum number of returned entities
+	 * @return the nearest entities, nearest first
+	 */
+	public List<RPEntity> getNearest(final Entity entity, final double range, final int max) {
+		update();
+		if (candidates.length == 0) {
+			return Collections.emptyList();
+		}
+
+		final double x = entity.getX() + entity.getWidth() / 2;
+		final double window = range + (entity.getWidth() + maxWidth) / 2;
+		final List<RPEntity> result = new ArrayList<RPEntity>();
+		for (int i = lowerBound(x - window); (i < candidates.length) && (centerX[i] <= x + window); i++) {
+			final RPEntity candidate = candidates[i];
+			if ((candidate != entity) && (candidate.getZone() == zone)
+					&& !candidate.isInvisibleToCreatures()
+					&& (entity.squaredDistance(candidate) <= range * range)) {
+				result.add(candidate);
+			}
+		}
+
+		return nearest(entity, result, max);
+	}
+
+	/**
+	 * Order entities by their distance to an entity, and drop those that are
+	 * too far, or invisible to creatures.
+	 *
+	 * @param entity reference entity
+	 * @param others entities to be ordered
+	 * @param range maximum distance
+	 * @return entities within range, nearest first
+	 */
+	public static List<RPEntity> sortByDistance(final Entity entity, final Collection<RPEntity> others,
+			final double range) {
+		final List<RPEntity> result = new ArrayList<RPEntity>(others.size());
+		for (final RPEntity other : others) {
+			if ((other != entity) && !other.isInvisibleToCreatures()
+					&& (entity.squaredDistance(other) <= range * range)) {
+				result.add(other);
+			}
+		}
+		return nearest(entity, result, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Search a path from an entity to a target. Results are remembered for
+	 * the current turn, and reused for searches by the same entity from the
+	 * same position, as long as the target stays in place. The path search
+	 * ignores the searching entity itself, so the results can not be shared
+	 * with other entities.
+	 *
+	 * @param entity moving entity
+	 * @param target target entity
+	 * @param maxDistance maximum path length
+	 * @return found path, or an empty list if there is none
+	 */
+	public List<Node> searchPath(final Entity entity, final Entity target, final double maxDistance) {
+		update();
+		final PathKey key = new PathKey(entity, target, maxDistance);
+		List<Node> path = paths.get(key);
+		if (path == null) {
+			path = Path.searchPath(entity, target, maxDistance);
+			paths.put(key, path);
+		}
+		// the caller may modify the path
+		return new ArrayList<Node>(path);
+	}
+
+	/**
+	 * Drop the index, so that it gets rebuilt on the next query. Called when
+	 * the players and friends of the zone change.
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Drop the index if a moved entity is in it. Called when the position or
+	 * size of an entity in the zone changes.
+	 *
+	 * @param entity changed entity
+	 */
+	void onAreaChanged(final Entity entity) {
+		if (valid && indexed.contains(entity)) {
+			valid = false;
+		}
+	}
+
+	/**
+	 * Rebuild the index and forget the remembered paths, if the turn has
+	 * changed.
+	 */
+	private void update() {
+		final int currentTurn = TurnNotifier.get().getCurrentTurnForDebugging();
+		if (valid && (turn == currentTurn)) {
+			return;
+		}
+		if (turn != currentTurn) {
+			paths.clear();
+		}
+		turn = currentTurn;
+		valid = true;
+
+		final List<RPEntity> list = zone.getPlayerAndFriends();
+		final RPEntity[] sorted = list.toArray(new RPEntity[list.size()]);
+		Arrays.sort(sorted, new Comparator<RPEntity>() {
+			@Override
+			public int compare(final RPEntity e1, final RPEntity e2) {
+				return Double.compare(e1.getX() + e1.getWidth() / 2, e2.getX() + e2.getWidth() / 2);
+			}
+		});
+		candidates = sorted;
+		centerX = new double[sorted.length];
+		maxWidth = 0;
+		indexed.clear();
+		for (int i = 0; i < sorted.length; i++) {
+			indexed.add(sorted[i]);
+			centerX[i] = sorted[i].getX() + sorted[i].getWidth() / 2;
+			maxWidth = Math.max(maxWidth, sorted[i].getWidth());
+		}
+	}
+
+	/**
+	 * Find the first candidate at or right of a position.
+	 *
+	 * @param x x coordinate
+	 * @return index in <code>candidates</code>
+	 */
+	private int lowerBound(final double x) {
+		int low = 0;
+		int high = centerX.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (centerX[mid] < x) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Sort entities by distance, and keep the nearest ones.
+	 *
+	 * @param entity reference entity
+	 * @param list entities, sorted in place
+	 * @param max maximum number of entities to keep
+	 * @return the nearest entities
+	 */
+	private static List<RPEntity> nearest(final Entity entity, final List<RPEntity> list, final int max) {
+		if (list.size() > 1) {
+			Collections.sort(list, new Comparator<RPEntity>() {
+				@Override
+				public int compare(final RPEntity e1, final RPEntity e2) {
+					return Double.compare(entity.squaredDistance(e1), entity.squaredDistance(e2));
+				}
+			});
+		}
+		if (list.size() > max) {
+			return list.subList(0, max);
+		}
+		return list;
+	}
+
+	/**
+	 * Key for remembered paths.
+	 */
+	private static final class PathKey {
+		private final Entity entity;
+		private final int x;
+		private final int y;
+		private final double width;
+		private final double height;
+		private final Entity target;
+		private final int targetX;
+		private final int targetY;
+		private final double maxDistance;
+
+		PathKey(final Entity entity, final Entity target, final double maxDistance) {
+			this.entity = entity;
+			x = entity.getX();
+			y = entity.getY();
+			width = entity.getWidth();
+			height = entity.getHeight();
+			this.target = target;
+			targetX = target.getX();
+			targetY = target.getY();
+			this.maxDistance = maxDistance;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((31 * x + y) * 31 + System.identityHashCode(target)) * 31 + System.identityHashCode(entity);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof PathKey)) {
+				return false;
+			}
+			final PathKey other = (PathKey) obj;
+			return (entity == other.entity) && (x == other.x) && (y == other.y) && (width == other.width)
+					&& (height == other.height) && (target == other.target)
+					&& (targetX == other.targetX) && (targetY == other.targetY)
+					&& (maxDistance == other.maxDistance);
+		}
+	}
+}
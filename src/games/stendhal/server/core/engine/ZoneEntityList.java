@@ -0,0 +1,334 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An array backed list of zone members with constant time add and remove.
+ *
+ * <p>Removed elements leave a hole in the array, so that the other elements
+ * keep their slots. The holes are closed when they outnumber the elements,
+ * or when the list is accessed by index. The slot of each element is kept in
+ * an identity map. Elements that are not found by identity are searched
+ * with <code>equals()</code>, like in other lists.
+ *
+ * <p>Iterators work on the array at the time they were created. Elements
+ * added later are not returned, and the list may be modified while
+ * iterating without a <code>ConcurrentModificationException</code>.
+ *
+ * <p>The list is not thread safe.
+ *
+ * @param <T> element type
+ */
+class ZoneEntityList<T> extends AbstractList<T> implements RandomAccess {
+	/** Holes below this number are not worth compacting. */
+	private static final int MIN_HOLES = 16;
+
+	/** Elements and holes. */
+	private Object[] elements = new Object[8];
+	/** Number of used slots, including holes. */
+	private int end;
+	/** Number of elements. */
+	private int size;
+	/** Slot of the first occurrence of each element. */
+	private final Map<Object, Integer> slots = new IdentityHashMap<Object, Integer>();
+	/** Number of elements that are in the list more than once. */
+	private int duplicates;
+
+	@Override
+	public boolean add(final T element) {
+		if (end == elements.length) {
+			if (end - size >= MIN_HOLES) {
+				compact();
+			} else {
+				elements = Arrays.copyOf(elements, elements.length * 2);
+			}
+		}
+		if (slots.containsKey(element)) {
+			duplicates++;
+		} else {
+			slots.put(element, end);
+		}
+		elements[end++] = element;
+		size++;
+		modCount++;
+		onAdded(element);
+		return true;
+	}
+
+	@Override
+	public boolean remove(final Object object) {
+		final int slot = findSlot(object);
+		if (slot < 0) {
+			return false;
+		}
+		removeSlot(slot);
+		return true;
+	}
+
+	@Override
+	public boolean contains(final Object object) {
+		return findSlot(object) >= 0;
+	}
+
+	@Override
+	public int indexOf(final Object object) {
+		compactIfNeeded();
+		return findSlot(object);
+	}
+
+	@Override
+	public T get(final int index) {
+		compactIfNeeded();
+		if ((index < 0) || (index >= size)) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return elementAt(index);
+	}
+
+	@Override
+	public T set(final int index, final T element) {
+		final T old = get(index);
+		elements[index] = element;
+		onRemoved(old);
+		onAdded(element);
+		rebuildSlots();
+		return old;
+	}
+
+	@Override
+	public T remove(final int index) {
+		final T old = get(index);
+		removeSlot(index);
+		return old;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < end; i++) {
+			if (elements[i] != null) {
+				onRemoved(elementAt(i));
+			}
+		}
+		elements = new Object[8];
+		end = 0;
+		size = 0;
+		slots.clear();
+		duplicates = 0;
+		modCount++;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new SnapshotIterator();
+	}
+
+	/**
+	 * Get a number that orders the elements like the list does. Only valid
+	 * until the list is modified.
+	 *
+	 * @param element list element
+	 * @return position of the element, or -1 if it is not in the list
+	 */
+	int order(final Object element) {
+		final Integer slot = slots.get(element);
+		if (slot == null) {
+			return -1;
+		}
+		return slot;
+	}
+
+	/**
+	 * Called after an element was added.
+	 *
+	 * @param element added element
+	 */
+	protected void onAdded(final T element) {
+		// for subclasses
+	}
+
+	/**
+	 * Called after an element was removed.
+	 *
+	 * @param element removed element
+	 */
+	protected void onRemoved(final T element) {
+		// for subclasses
+	}
+
+	@SuppressWarnings("unchecked")
+	private T elementAt(final int slot) {
+		return (T) elements[slot];
+	}
+
+	/**
+	 * Find the slot of the first occurrence of an object.
+	 *
+	 * @param object searched object
+	 * @return slot, or -1 if the object is not in the list
+	 */
+	private int findSlot(final Object object) {
+		final Integer slot = slots.get(object);
+		if (slot != null) {
+			return slot;
+		}
+		if (object == null) {
+			return -1;
+		}
+		for (int i = 0; i < end; i++) {
+			if ((elements[i] != null) && object.equals(elements[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void removeSlot(final int slot) {
+		final T element = elementAt(slot);
+		elements[slot] = null;
+		size--;
+		modCount++;
+
+		if ((duplicates > 0) && (slots.get(element) == slot)) {
+			// move the first occurrence to the next copy, if there is one
+			slots.remove(element);
+			for (int i = slot + 1; i < end; i++) {
+				if (elements[i] == element) {
+					slots.put(element, i);
+					duplicates--;
+					break;
+				}
+			}
+		} else if (duplicates > 0) {
+			// a later copy found by equals()
+			duplicates--;
+		} else {
+			slots.remove(element);
+		}
+		onRemoved(element);
+
+		if ((end - size >= MIN_HOLES) && (end - size > size)) {
+			compact();
+		}
+	}
+
+	private void compactIfNeeded() {
+		if (end != size) {
+			compact();
+		}
+	}
+
+	/**
+	 * Close the holes. The elements are copied to a new array, so that
+	 * running iterators are not affected.
+	 */
+	private void compact() {
+		final Object[] compacted = new Object[Math.max(8, size * 2)];
+		int j = 0;
+		for (int i = 0; i < end; i++) {
+			if (elements[i] != null) {
+				compacted[j++] = elements[i];
+			}
+		}
+		elements = compacted;
+		end = size;
+		rebuildSlots();
+	}
+
+	private void rebuildSlots() {
+		slots.clear();
+		duplicates = 0;
+		for (int i = 0; i < end; i++) {
+			final Object element = elements[i];
+			if (element == null) {
+				continue;
+			}
+			if (slots.containsKey(element)) {
+				duplicates++;
+			} else {
+				slots.put(element, i);
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the array at the time of its creation. Elements removed
+	 * from the list before the iterator reaches them are skipped, as long
+	 * as the list has not been compacted in between.
+	 */
+	private class SnapshotIterator implements Iterator<T> {
+		private final Object[] array = elements;
+		private final int limit = end;
+		private int next;
+		private int last = -1;
+		private Object lastElement;
+
+		/**
+		 * Move the cursor past the removed elements. Must be done at reading
+		 * time, because elements can be removed while the iterator is used.
+		 */
+		private void skipHoles() {
+			while ((next < limit) && (array[next] == null)) {
+				next++;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			skipHoles();
+			return next < limit;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T next() {
+			skipHoles();
+			if (next >= limit) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			lastElement = array[next++];
+			return (T) lastElement;
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if ((array == elements) && (elements[last] == lastElement)) {
+				removeSlot(last);
+			} else {
+				ZoneEntityList.this.remove(lastElement);
+			}
+			last = -1;
+			lastElement = null;
+		}
+	}
+}
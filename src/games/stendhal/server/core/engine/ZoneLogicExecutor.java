@@ -0,0 +1,423 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.Rand;
+import marauroa.common.game.IRPZone;
+
+/**
+ * Runs the logic of all zones of the world at the end of a turn.
+ *
+ * <p>By default the zones are processed one after another on the game
+ * thread. If more than one thread is configured (<code>zone_logic_threads</code>
+ * in server.ini), the zones are processed in parallel on a fork join pool.
+ * In that mode side effects that reach outside of the zone being processed,
+ * like turn notifier registrations, kills, and game event logging, are
+ * collected per zone and applied on the game thread after all zones are done.
+ * They are applied in the iteration order of the world's zones, and in the
+ * order they were requested within each zone. Each zone also draws its random
+ * numbers from a generator of its own, so that the combat results of a zone
+ * do not depend on how the zones were scheduled.
+ * <p>
+ * Actions whose result the zone logic needs right away, like placing an
+ * entity into another zone, use {@link #exclusive(Supplier, StendhalRPZone...)}.
+ * The zone then waits until the zones before it are done and the other zones
+ * are paused, and the action runs on the game thread in the meantime.
+ * <p>
+ * Code reached from zone logic that modifies other shared state must use
+ * {@link #defer(Runnable)} as well. The parallel mode is experimental.
+ */
+public final class ZoneLogicExecutor {
+	private static final Logger logger = Logger.getLogger(ZoneLogicExecutor.class);
+
+	/** The zone processed by the current thread in parallel mode. */
+	private static final ThreadLocal<ZoneContext> currentContext = new ThreadLocal<ZoneContext>();
+
+	/** Pool for parallel mode, <code>null</code> in sequential mode. */
+	private final ForkJoinPool pool;
+	/** Number of worker threads in parallel mode. */
+	private final int threads;
+	/** Random number generators of the zones in parallel mode. */
+	private Map<StendhalRPZone, Random> generators = new IdentityHashMap<StendhalRPZone, Random>();
+	/** Source of the seeds of new zone generators. */
+	private final Random seeds;
+
+	/**
+	 * A zone together with the side effects its logic requested.
+	 */
+	private static final class ZoneContext {
+		final Run run;
+		final StendhalRPZone zone;
+		final Random generator;
+		final List<Runnable> deferred = new ArrayList<Runnable>();
+		/** Values kept for the zone until its deferred actions are applied. */
+		final Map<Object, Object> locals = new HashMap<Object, Object>();
+		/** Exclusive action the zone waits for, or <code>null</code>. */
+		Request<?> request;
+		/** Set while the exclusive action of the zone runs on the game thread. */
+		boolean exclusive;
+		boolean done;
+
+		ZoneContext(final Run run, final StendhalRPZone zone, final Random generator) {
+			this.run = run;
+			this.zone = zone;
+			this.generator = generator;
+		}
+	}
+
+	/**
+	 * An exclusive action and its outcome.
+	 */
+	private static final class Request<T> {
+		final Supplier<T> action;
+		T result;
+		RuntimeException error;
+		boolean done;
+
+		Request(final Supplier<T> action) {
+			this.action = action;
+		}
+
+		void run() {
+			try {
+				result = action.get();
+			} catch (final RuntimeException e) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * The state of processing the zones of one turn in parallel.
+	 */
+	private static final class Run {
+		final Lock lock = new ReentrantLock();
+		final Condition changed = lock.newCondition();
+		final List<ZoneContext> contexts;
+		/** Index of the next zone to start. Zones are started in order. */
+		int next;
+		/** Number of zones that are started, and neither waiting nor done. */
+		int running;
+		/** Set while an exclusive action runs on the game thread. */
+		boolean serving;
+
+		Run(final List<ZoneContext> contexts) {
+			this.contexts = contexts;
+		}
+	}
+
+	/**
+	 * Create a new ZoneLogicExecutor.
+	 *
+	 * @param threads number of threads to use. Values less than 2 select the
+	 * 	sequential mode
+	 */
+	public ZoneLogicExecutor(final int threads) {
+		this(threads, new Random());
+	}
+
+	/**
+	 * Create a new ZoneLogicExecutor.
+	 *
+	 * @param threads number of threads to use. Values less than 2 select the
+	 * 	sequential mode
+	 * @param seeds source of the seeds of the zone random number generators
+	 */
+	ZoneLogicExecutor(final int threads, final Random seeds) {
+		this.seeds = seeds;
+		this.threads = threads;
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads);
+			logger.info("Running zone logic in parallel on " + threads + " threads");
+		} else {
+			pool = null;
+		}
+	}
+
+	/**
+	 * Check whether zones are processed in parallel.
+	 *
+	 * @return <code>true</code> in parallel mode
+	 */
+	public boolean isParallel() {
+		return pool != null;
+	}
+
+	/**
+	 * Run the logic of the given zones.
+	 *
+	 * @param zones zones to process
+	 */
+	public void execute(final Iterable<? extends IRPZone> zones) {
+		if (pool == null) {
+			for (final IRPZone zone : zones) {
+				((StendhalRPZone) zone).logic();
+			}
+			return;
+		}
+
+		final List<ZoneContext> contexts = new ArrayList<ZoneContext>();
+		final Run run = new Run(contexts);
+		// keep the generators of the current zones only
+		final Map<StendhalRPZone, Random> zoneGenerators = new IdentityHashMap<StendhalRPZone, Random>();
+		for (final IRPZone zoneI : zones) {
+			final StendhalRPZone zone = (StendhalRPZone) zoneI;
+			if (zone.hasLogic()) {
+				Random generator = generators.get(zone);
+				if (generator == null) {
+					generator = new Random(seeds.nextLong());
+				}
+				zoneGenerators.put(zone, generator);
+				contexts.add(new ZoneContext(run, zone, generator));
+			}
+		}
+		generators = zoneGenerators;
+
+		for (int i = Math.min(threads, contexts.size()); i > 0; i--) {
+			pool.execute(new Worker(run));
+		}
+		serve(run);
+
+		// barrier: all zones are done, apply their side effects in zone order
+		for (final ZoneContext context : contexts) {
+			for (final Runnable action : context.deferred) {
+				try {
+					action.run();
+				} catch (final RuntimeException e) {
+					logger.error("Error in deferred action of zone " + context.zone.getName(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run the exclusive actions of the zones on the game thread, until all
+	 * zones are done. The action of a zone runs when all zones before it are
+	 * done and all other zones are waiting, so that the actions run in zone
+	 * order and nothing else runs at the same time.
+	 *
+	 * @param run the state of the turn
+	 */
+	private static void serve(final Run run) {
+		run.lock.lock();
+		try {
+			int first = 0;
+			while (true) {
+				while (run.running > 0) {
+					run.changed.awaitUninterruptibly();
+				}
+				while ((first < run.contexts.size()) && run.contexts.get(first).done) {
+					first++;
+				}
+				if (first == run.contexts.size()) {
+					return;
+				}
+
+				final ZoneContext context = run.contexts.get(first);
+				final Request<?> request = context.request;
+				if (request == null) {
+					// the zone has not been started yet
+					run.changed.awaitUninterruptibly();
+					continue;
+				}
+
+				run.serving = true;
+				run.lock.unlock();
+				context.exclusive = true;
+				currentContext.set(context);
+				Rand.setThreadGenerator(context.generator);
+				try {
+					request.run();
+				} finally {
+					Rand.setThreadGenerator(null);
+					currentContext.remove();
+					context.exclusive = false;
+					run.lock.lock();
+				}
+				run.serving = false;
+				context.request = null;
+				request.done = true;
+				run.running++;
+				run.changed.signalAll();
+			}
+		} finally {
+			run.lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop the worker threads.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Defer an action until all zones have been processed, if the current
+	 * thread is running zone logic in parallel mode.
+	 *
+	 * @param action action to run
+	 * @return <code>true</code> if the action was deferred, <code>false</code>
+	 * 	if the caller should run it immediately
+	 */
+	public static boolean defer(final Runnable action) {
+		final ZoneContext context = currentContext.get();
+		if (context == null) {
+			return false;
+		}
+		context.deferred.add(action);
+		return true;
+	}
+
+	/**
+	 * Run an action that affects some zones, and return its result. If the
+	 * current thread is running zone logic in parallel mode, and any of the
+	 * zones is not the zone processed by the thread, the thread waits until
+	 * the zones before its zone are done and the other zones are waiting.
+	 * The action then runs on the game thread. Otherwise the action runs
+	 * immediately.
+	 *
+	 * @param action action to run
+	 * @param zones the zones affected by the action. <code>null</code> values
+	 * 	are ignored
+	 * @return result of the action
+	 */
+	public static <T> T exclusive(final Supplier<T> action, final StendhalRPZone... zones) {
+		final ZoneContext context = currentContext.get();
+		if ((context == null) || context.exclusive || !affectsOtherZone(context, zones)) {
+			return action.get();
+		}
+
+		final Request<T> request = new Request<T>(action);
+		final Run run = context.run;
+		run.lock.lock();
+		try {
+			context.request = request;
+			run.running--;
+			run.changed.signalAll();
+			while (!request.done) {
+				run.changed.awaitUninterruptibly();
+			}
+		} finally {
+			run.lock.unlock();
+		}
+		if (request.error != null) {
+			throw request.error;
+		}
+		return request.result;
+	}
+
+	private static boolean affectsOtherZone(final ZoneContext context, final StendhalRPZone... zones) {
+		for (final StendhalRPZone zone : zones) {
+			if ((zone != null) && (zone != context.zone)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get a value kept for the zone processed by the current thread until its
+	 * deferred actions have been applied. Code that defers changes can use it
+	 * to let later reads of the same zone see them.
+	 *
+	 * @param key key of the value
+	 * @param initial creates the value if there is none yet, or
+	 * 	<code>null</code> to only look up an existing value
+	 * @return the value, or <code>null</code> if there is none or the current
+	 * 	thread is not running zone logic in parallel mode
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T getZoneLocal(final Object key, final Supplier<T> initial) {
+		final ZoneContext context = currentContext.get();
+		if (context == null) {
+			return null;
+		}
+		T value = (T) context.locals.get(key);
+		if ((value == null) && (initial != null)) {
+			value = initial.get();
+			context.locals.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Runs the logic of the zones on a worker thread, taking the next zone
+	 * that has not been started until all zones are started.
+	 */
+	private static final class Worker implements Runnable {
+		private final Run run;
+
+		Worker(final Run run) {
+			this.run = run;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final ZoneContext context;
+				run.lock.lock();
+				try {
+					while (run.serving) {
+						run.changed.awaitUninterruptibly();
+					}
+					if (run.next >= run.contexts.size()) {
+						return;
+					}
+					context = run.contexts.get(run.next++);
+					run.running++;
+				} finally {
+					run.lock.unlock();
+				}
+
+				currentContext.set(context);
+				Rand.setThreadGenerator(context.generator);
+				try {
+					context.zone.logic();
+				} catch (final RuntimeException e) {
+					logger.error("Error in logic of zone " + context.zone.getName(), e);
+				} finally {
+					Rand.setThreadGenerator(null);
+					currentContext.remove();
+					finish(context);
+				}
+			}
+		}
+
+		private void finish(final ZoneContext context) {
+			run.lock.lock();
+			try {
+				context.done = true;
+				run.running--;
+				run.changed.signalAll();
+			} finally {
+				run.lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import marauroa.common.crypto.Hash;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.game.Statistics;
+
+/**
+ * Writes the rows of a website table, such as the NPC or zone dump, by
+ * comparing them to the rows already in the table. Each row carries a hash of
+ * its contents in the column <code>content_hash</code>, so that only new,
+ * changed and obsolete rows need to be written. The rows are identified by
+ * the first column.
+ */
+final class DifferentialTableDump {
+	private static Logger logger = Logger.getLogger(DifferentialTableDump.class);
+
+	/** Name of the column holding the content hash. */
+	static final String HASH_COLUMN = "content_hash";
+
+	private final String table;
+	private final String[] columns;
+	/** The rows to dump by their key. */
+	private final Map<String, Object[]> rows = new LinkedHashMap<>();
+
+	private int inserted;
+	private int updated;
+	private int deleted;
+
+	/**
+	 * Create a new DifferentialTableDump.
+	 *
+	 * @param table name of the table
+	 * @param columns the dumped columns. The first one identifies the rows
+	 */
+	DifferentialTableDump(String table, String... columns) {
+		this.table = table;
+		this.columns = columns;
+	}
+
+	/**
+	 * Add a row to dump.
+	 *
+	 * @param values values of the columns, in the order of the columns. The
+	 * 	values can be strings, integers, doubles or <code>null</code>
+	 */
+	void addRow(Object... values) {
+		String key = (String) values[0];
+		if (rows.put(key, values) != null) {
+			logger.warn("Duplicate row " + key + " in the dump of " + table);
+		}
+	}
+
+	/**
+	 * Write the changes to the table.
+	 *
+	 * @param transaction DBTransaction
+	 * @throws SQLException in case of a database error
+	 */
+	void write(DBTransaction transaction) throws SQLException {
+		inserted = 0;
+		updated = 0;
+		deleted = 0;
+
+		// existing rows by key. Rows with duplicate keys are deleted
+		Map<String, ExistingRow> existing = new HashMap<>();
+		List<Integer> toDelete = new ArrayList<>();
+		ResultSet resultSet = transaction.query("SELECT id, " + columns[0] + ", " + HASH_COLUMN + " FROM " + table, null);
+		while (resultSet.next()) {
+			ExistingRow row = new ExistingRow(resultSet.getInt(1), resultSet.getString(3));
+			ExistingRow previous = existing.put(resultSet.getString(2), row);
+			if (previous != null) {
+				toDelete.add(Integer.valueOf(previous.id));
+			}
+		}
+		resultSet.close();
+
+		PreparedStatement insert = null;
+		PreparedStatement update = null;
+		for (Object[] values : rows.values()) {
+			String hash = hash(values);
+			ExistingRow row = existing.remove(values[0]);
+			if (row == null) {
+				if (insert == null) {
+					insert = transaction.prepareStatement(insertQuery(), null);
+				}
+				setValues(insert, values, hash);
+				insert.addBatch();
+				inserted++;
+			} else if (!hash.equals(row.hash)) {
+				if (update == null) {
+					update = transaction.prepareStatement(updateQuery(), null);
+				}
+				setValues(update, values, hash);
+				update.setInt(columns.length + 2, row.id);
+				update.addBatch();
+				updated++;
+			}
+		}
+		for (ExistingRow row : existing.values()) {
+			toDelete.add(Integer.valueOf(row.id));
+		}
+
+		if (!toDelete.isEmpty()) {
+			PreparedStatement delete = transaction.prepareStatement("DELETE FROM " + table + " WHERE id=?", null);
+			for (Integer id : toDelete) {
+				delete.setInt(1, id.intValue());
+				delete.addBatch();
+			}
+			delete.executeBatch();
+			delete.close();
+			deleted = toDelete.size();
+		}
+		if (insert != null) {
+			insert.executeBatch();
+			insert.close();
+		}
+		if (update != null) {
+			update.executeBatch();
+			update.close();
+		}
+
+		final Statistics stats = Statistics.getStatistics();
+		stats.set("Website dump " + table + " inserted", inserted);
+		stats.set("Website dump " + table + " updated", updated);
+		stats.set("Website dump " + table + " deleted", deleted);
+	}
+
+	/**
+	 * Get the number of rows inserted by the last write.
+	 *
+	 * @return number of inserted rows
+	 */
+	int getInserted() {
+		return inserted;
+	}
+
+	/**
+	 * Get the number of rows updated by the last write.
+	 *
+	 * @return number of updated rows
+	 */
+	int getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * Get the number of rows deleted by the last write.
+	 *
+	 * @return number of deleted rows
+	 */
+	int getDeleted() {
+		return deleted;
+	}
+
+	private String insertQuery() {
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+		StringBuilder params = new StringBuilder();
+		for (String column : columns) {
+			sql.append(column).append(", ");
+			params.append("?, ");
+		}
+		sql.append(HASH_COLUMN).append(") VALUES (").append(params).append("?)");
+		return sql.toString();
+	}
+
+	private String updateQuery() {
+		StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+		for (String column : columns) {
+			sql.append(column).append("=?, ");
+		}
+		sql.append(HASH_COLUMN).append("=? WHERE id=?");
+		return sql.toString();
+	}
+
+	/**
+	 * Set the values of a row and its hash as the first parameters of a
+	 * statement.
+	 *
+	 * @param stmt PreparedStatement
+	 * @param values column values
+	 * @param hash content hash
+	 * @throws SQLException in case a database error is thrown.
+	 */
+	private void setValues(PreparedStatement stmt, Object[] values, String hash) throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			Object value = values[i];
+			if (value instanceof Integer) {
+				stmt.setInt(i + 1, ((Integer) value).intValue());
+			} else if (value instanceof Double) {
+				stmt.setDouble(i + 1, ((Double) value).doubleValue());
+			} else {
+				stmt.setString(i + 1, (String) value);
+			}
+		}
+		stmt.setString(values.length + 1, hash);
+	}
+
+	/**
+	 * Calculate the content hash of a row.
+	 *
+	 * @param values column values
+	 * @return hash as hex string
+	 */
+	private static String hash(Object[] values) {
+		StringBuilder sb = new StringBuilder();
+		for (Object value : values) {
+			// separate the values, and tell null apart from "null"
+			if (value == null) {
+				sb.append('\u0001');
+			} else {
+				sb.append(value);
+			}
+			sb.append('\u0000');
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			return Hash.toHexString(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A row already in the table.
+	 */
+	private static final class ExistingRow {
+		final int id;
+		final String hash;
+
+		ExistingRow(int id, String hash) {
+			this.id = id;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/***************************************************************************
+ *                 (C) Copyright 2007-2023 - Faiumoni e. V.                *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.entity.RPEntity;
+import games.stendhal.server.util.StringUtils;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+
+/**
+ * Collects item log rows, and writes them with one JDBC batch. New items
+ * get their id from the AUTO_INCREMENT column of the item table right away,
+ * so that later entries of the same batch can refer to them. The ids are
+ * put on the live items only by {@link #applyIds()}, after the transaction
+ * has been committed.
+ *
+ * @author hendrik
+ */
+public class ItemLogBatch {
+	/** ids assigned to items in this batch */
+	private final Map<RPObject, Integer> assigned = new IdentityHashMap<RPObject, Integer>();
+	private final List<EntryRow> entries = new ArrayList<EntryRow>();
+	private PreparedStatement itemInsert;
+
+	/**
+	 * Assigns the next logid to the specified item in case it does not already have one.
+	 *
+	 * @param transaction database transaction
+	 * @param item item
+	 * @param timestamp timestamp
+	 * @throws SQLException in case of a database error
+	 */
+	public void assignIDIfNotPresent(final DBTransaction transaction, final RPObject item, final Timestamp timestamp) throws SQLException {
+		if (getLogId(item) != null) {
+			return;
+		}
+
+		if (itemInsert == null) {
+			itemInsert = transaction.prepareStatement("INSERT INTO item (name, timedate) VALUES (?, ?)", null);
+		}
+		itemInsert.setString(1, emptyIfNull(item.get("name")));
+		itemInsert.setTimestamp(2, timestamp);
+		itemInsert.executeUpdate();
+		final int id = transaction.getLastInsertId("item", "id");
+		assigned.put(item, Integer.valueOf(id));
+		writeEntry(timestamp, id, null, "register", StendhalItemDAO.getAttribute(item, "name"),
+				StendhalItemDAO.getAttribute(item, "quantity"), StendhalItemDAO.getAttribute(item, "infostring"),
+				StendhalItemDAO.getAttribute(item, "bound"));
+	}
+
+	/**
+	 * gets the logid of an item, including the ids assigned in this batch
+	 *
+	 * @param item item
+	 * @return logid, or <code>null</code> if the item does not have one yet
+	 */
+	public Integer getLogId(final RPObject item) {
+		final Integer id = assigned.get(item);
+		if (id != null) {
+			return id;
+		}
+		if (item.has(StendhalItemDAO.ATTR_ITEM_LOGID)) {
+			return Integer.valueOf(item.getInt(StendhalItemDAO.ATTR_ITEM_LOGID));
+		}
+		return null;
+	}
+
+	/**
+	 * Puts the ids assigned in this batch on the items. Must be called only
+	 * after the batch has been committed.
+	 */
+	public void applyIds() {
+		for (final Map.Entry<RPObject, Integer> entry : assigned.entrySet()) {
+			final RPObject item = entry.getKey();
+			if (!item.has(StendhalItemDAO.ATTR_ITEM_LOGID)) {
+				item.put(StendhalItemDAO.ATTR_ITEM_LOGID, entry.getValue().intValue());
+			}
+		}
+		assigned.clear();
+	}
+
+	/**
+	 * adds a log entry
+	 *
+	 * @param timestamp timestamp
+	 * @param item item
+	 * @param player player object
+	 * @param event  name of event
+	 * @param param1 param 1
+	 * @param param2 param 2
+	 * @param param3 param 3
+	 * @param param4 param 4
+	 */
+	public void writeEntry(final Timestamp timestamp, final RPObject item, final RPEntity player, final String event,
+			final String param1, final String param2, final String param3, final String param4) {
+		writeEntry(timestamp, getLogId(item).intValue(), player, event, param1, param2, param3, param4);
+	}
+
+	/**
+	 * adds a log entry
+	 *
+	 * @param timestamp timestamp
+	 * @param itemid itemid of item
+	 * @param player player object
+	 * @param event  name of event
+	 * @param param1 param 1
+	 * @param param2 param 2
+	 * @param param3 param 3
+	 * @param param4 param 4
+	 */
+	public void writeEntry(final Timestamp timestamp, final int itemid, final RPEntity player, final String event,
+			final String param1, final String param2, final String param3, final String param4) {
+		String playerName = null;
+		if (player != null) {
+			playerName = player.getName();
+		}
+		entries.add(new EntryRow(itemid, playerName, event, param1, param2, param3, param4, timestamp));
+	}
+
+	/**
+	 * gets the number of rows waiting to be written
+	 *
+	 * @return number of rows
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * writes the collected rows
+	 *
+	 * @param transaction DBTransaction
+	 * @throws SQLException in case of an database error
+	 */
+	public void flush(final DBTransaction transaction) throws SQLException {
+		if (itemInsert != null) {
+			itemInsert.close();
+			itemInsert = null;
+		}
+
+		if (!entries.isEmpty()) {
+			final PreparedStatement stmt = transaction.prepareStatement("INSERT INTO itemlog (itemid, source, event, "
+					+ "param1, param2, param3, param4, timedate) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", null);
+			for (final EntryRow row : entries) {
+				stmt.setInt(1, row.itemid);
+				stmt.setString(2, trim(row.source));
+				stmt.setString(3, trim(row.event));
+				stmt.setString(4, trim(row.param1));
+				stmt.setString(5, trim(row.param2));
+				stmt.setString(6, trim(row.param3));
+				stmt.setString(7, trim(row.param4));
+				stmt.setTimestamp(8, row.timestamp);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+			stmt.close();
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Trims a parameter to the column size. Missing values are written as
+	 * empty strings, like the templated queries do.
+	 *
+	 * @param value value
+	 * @return value for the database
+	 */
+	private static String trim(final String value) {
+		return emptyIfNull(StringUtils.trimTo(value, 64));
+	}
+
+	private static String emptyIfNull(final String value) {
+		if (value == null) {
+			return "";
+		}
+		return value;
+	}
+
+	/**
+	 * a row of the itemlog table
+	 */
+	private static class EntryRow {
+		final int itemid;
+		final String source;
+		final String event;
+		final String param1;
+		final String param2;
+		final String param3;
+		final String param4;
+		final Timestamp timestamp;
+
+		EntryRow(final int itemid, final String source, final String event, final String param1,
+				final String param2, final String param3, final String param4, final Timestamp timestamp) {
+			this.itemid = itemid;
+			this.source = source;
+			this.event = event;
+			this.param1 = param1;
+			this.param2 = param2;
+			this.param3 = param3;
+			this.param4 = param4;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -129,7 +129,7 @@ public class StendhalItemDAO {
 	 * @param attribute
 	 * @return attribute name of attribute
 	 */
-	private String getAttribute(final RPObject object, final String attribute) {
+	static String getAttribute(final RPObject object, final String attribute) {
 		if (object.has(attribute)) {
 			return object.get(attribute);
 		} else {
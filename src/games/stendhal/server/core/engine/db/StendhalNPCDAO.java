@@ -11,7 +11,6 @@
  ***************************************************************************/
 package games.stendhal.server.core.engine.db;
 
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
@@ -37,38 +36,34 @@ public class StendhalNPCDAO {
 
 
 	/**
-	 * Dumps the properties of the specified SpeakerNPC into the prepared statement as an operation in
-	 * a batch.
+	 * Adds the properties of the specified SpeakerNPC as a row of the dump.
 	 *
-	 * @param stmt
-	 *   PreparedStatement in batch mode.
+	 * @param dump
+	 *   Dump of the NPC table.
 	 * @param npc
 	 *   SpeakerNPC.
 	 * @param shopsInfo
 	 *   What the NPC buys & sells.
-	 * @throws
-	 *   SQLException in case a database error is thrown.
 	 */
-	private void dumpNPC(PreparedStatement stmt, SpeakerNPC npc, Map<String, String> shopsInfo) throws SQLException {
-		stmt.setString(1, npc.getName());
-		stmt.setString(2, npc.getTitle());
-		stmt.setString(3, npc.get("class"));
-		stmt.setString(4, getOutfit(npc));
-		stmt.setString(5, getOutfitLayer(npc));
-		stmt.setInt(6, npc.getHP());
-		stmt.setInt(7, npc.getBaseHP());
-		stmt.setString(8, npc.getZone().getName());
-		stmt.setInt(9, npc.getX());
-		stmt.setInt(10, npc.getY());
-		stmt.setInt(11, npc.getLevel());
-		stmt.setString(12, npc.getDescription());
-		stmt.setString(13, npc.getJob());
-		stmt.setString(14, npc.getAlternativeImage());
-		stmt.setString(15, npc.get("cloned"));
-		stmt.setString(16, shopsInfo.get("buys"));
-		stmt.setString(17, shopsInfo.get("sells"));
-		stmt.setString(18, shopsInfo.get("sells_outfit"));
-		stmt.addBatch();
+	private void dumpNPC(DifferentialTableDump dump, SpeakerNPC npc, Map<String, String> shopsInfo) {
+		dump.addRow(npc.getName(),
+				npc.getTitle(),
+				npc.get("class"),
+				getOutfit(npc),
+				getOutfitLayer(npc),
+				npc.getHP(),
+				npc.getBaseHP(),
+				npc.getZone().getName(),
+				npc.getX(),
+				npc.getY(),
+				npc.getLevel(),
+				npc.getDescription(),
+				npc.getJob(),
+				npc.getAlternativeImage(),
+				npc.get("cloned"),
+				shopsInfo.get("buys"),
+				shopsInfo.get("sells"),
+				shopsInfo.get("sells_outfit"));
 	}
 
 	/**
@@ -100,18 +95,17 @@ public class StendhalNPCDAO {
 	}
 
 	/**
-	 * dumps all NPCs
+	 * dumps all NPCs. Only the NPCs that have changed since the last dump are
+	 * written.
 	 *
 	 * @param transaction DBTransaction
 	 * @throws SQLException in case of an database error
 	 */
 	public void dumpNPCs(DBTransaction transaction) throws SQLException {
 		long start = System.currentTimeMillis();
-		transaction.execute("DELETE FROM npcs", null);
-		PreparedStatement stmt = transaction.prepareStatement("INSERT INTO npcs " +
-			"(name, title, class, outfit, outfit_layers, hp, base_hp, zone, x, y, " +
-			"level, description, job, image, cloned, buys, sells, sells_outfit) " +
-			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);", null);
+		DifferentialTableDump dump = new DifferentialTableDump("npcs",
+			"name", "title", "class", "outfit", "outfit_layers", "hp", "base_hp", "zone", "x", "y",
+			"level", "description", "job", "image", "cloned", "buys", "sells", "sells_outfit");
 
 		final List<Pair<String, BuyerBehaviour>> buyers =
 				SingletonRepository.getMerchantsRegister().getBuyers();
@@ -121,10 +115,11 @@ public class StendhalNPCDAO {
 				SingletonRepository.getServicersRegister().getOutfitChangers();
 
 		for (SpeakerNPC npc : SingletonRepository.getNPCList()) {
-			dumpNPC(stmt, npc, getShopsInfo(npc.getName(), buyers, sellers, outfitters));
+			dumpNPC(dump, npc, getShopsInfo(npc.getName(), buyers, sellers, outfitters));
 		}
-		stmt.executeBatch();
-		logger.debug("Completed dumping of NPCs in " + (System.currentTimeMillis() - start) + " milliseconds.");
+		dump.write(transaction);
+		logger.debug("Completed dumping of NPCs in " + (System.currentTimeMillis() - start) + " milliseconds: "
+				+ dump.getInserted() + " inserted, " + dump.getUpdated() + " updated, " + dump.getDeleted() + " deleted.");
 	}
 
 	/**
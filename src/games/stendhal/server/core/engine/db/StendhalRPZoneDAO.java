@@ -11,7 +11,6 @@
  ***************************************************************************/
 package games.stendhal.server.core.engine.db;
 
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 import org.apache.log4j.Logger;
@@ -25,50 +24,49 @@ public class StendhalRPZoneDAO {
 	private static Logger logger = Logger.getLogger(StendhalRPZoneDAO.class);
 
 	/**
-	 * dumps the properties of the specified zone into the prepared statement as an operation in a batch.
+	 * adds the properties of the specified zone as a row of the dump.
 	 *
-	 * @param stmt PreparedStatement in batch mode
+	 * @param dump dump of the zone table
 	 * @param zone StendhalRPZone
-	 * @throws SQLException in case a database error is thrown.
 	 */
-	private void dumpZone(PreparedStatement stmt, StendhalRPZone zone) throws SQLException {
+	private void dumpZone(DifferentialTableDump dump, StendhalRPZone zone) {
 		zone.calculateDangerLevel();
-		stmt.setString(1, zone.getName());
-		stmt.setInt(2, zone.getLevel());
-		stmt.setInt(3, zone.isInterior() ? 1 : 0);
-		stmt.setInt(4, zone.getX());
-		stmt.setInt(5, zone.getY());
-		stmt.setInt(6, zone.getHeight());
-		stmt.setInt(7, zone.getWidth());
-		stmt.setInt(8, zone.isPublicAccessible() ? 1 : 0);
-		stmt.setString(9, zone.getAttributes().get("readable_name"));
-		stmt.setString(10, zone.describe());
-		stmt.setString(11, zone.getAttributes().get("color_method"));
-		stmt.setString(12, zone.getAttributes().get("color"));
-		stmt.setString(13, zone.getAttributes().get("blend_method"));
-		stmt.setDouble(14, Double.parseDouble(zone.getAttributes().get("danger_level")));
-		stmt.setString(15, zone.getAttributes().get("weather"));
-		stmt.addBatch();
+		dump.addRow(zone.getName(),
+				zone.getLevel(),
+				zone.isInterior() ? 1 : 0,
+				zone.getX(),
+				zone.getY(),
+				zone.getHeight(),
+				zone.getWidth(),
+				zone.isPublicAccessible() ? 1 : 0,
+				zone.getAttributes().get("readable_name"),
+				zone.describe(),
+				zone.getAttributes().get("color_method"),
+				zone.getAttributes().get("color"),
+				zone.getAttributes().get("blend_method"),
+				Double.parseDouble(zone.getAttributes().get("danger_level")),
+				zone.getAttributes().get("weather"));
 	}
 
 	/**
-	 * dumps all zones
+	 * dumps all zones. Only the zones that have changed since the last dump
+	 * are written.
 	 *
 	 * @param transaction DBTransaction
 	 * @throws SQLException in case of an database error
 	 */
 	public void dumpZones(DBTransaction transaction) throws SQLException {
 		long start = System.currentTimeMillis();
-		transaction.execute("DELETE FROM zoneinfo", null);
-		PreparedStatement stmt = transaction.prepareStatement("INSERT INTO zoneinfo " +
-			"(name, level, iterior, x, y, height, width, accessable, readableName, description, colorMethod, color, blendMethod, dangerLevel, weather)" +
-			" VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);", null);
+		DifferentialTableDump dump = new DifferentialTableDump("zoneinfo",
+			"name", "level", "iterior", "x", "y", "height", "width", "accessable", "readableName",
+			"description", "colorMethod", "color", "blendMethod", "dangerLevel", "weather");
 
 		for (IRPZone zone : StendhalRPWorld.get()) {
-			dumpZone(stmt, (StendhalRPZone) zone);
+			dumpZone(dump, (StendhalRPZone) zone);
 		}
-		stmt.executeBatch();
-		logger.debug("Completed dumping of zones in " + (System.currentTimeMillis() - start) + " milliseconds.");
+		dump.write(transaction);
+		logger.debug("Completed dumping of zones in " + (System.currentTimeMillis() - start) + " milliseconds: "
+				+ dump.getInserted() + " inserted, " + dump.getUpdated() + " updated, " + dump.getDeleted() + " deleted.");
 	}
 
 }
@@ -12,22 +12,36 @@
 package games.stendhal.server.core.engine.dbcommand;
 
 import java.sql.SQLException;
+import java.util.Collections;
 
+import games.stendhal.server.core.engine.db.ItemLogBatch;
 import marauroa.common.game.RPObject;
 import marauroa.server.db.DBTransaction;
-import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.dbcommand.DBCommandWithCallback;
 
 /**
  * base class for item logging
  *
  * @author hendrik
  */
-public abstract class AbstractLogItemEventCommand extends AbstractDBCommand {
+public abstract class AbstractLogItemEventCommand extends DBCommandWithCallback {
 
+	/** the event written in the current transaction */
+	private LogItemEventBatchCommand written;
 
 	@Override
 	public void execute(DBTransaction transaction) throws SQLException {
-		log(transaction);
+		// written like a batch of one event
+		written = new LogItemEventBatchCommand(Collections.singletonList(this));
+		written.execute(transaction);
+	}
+
+	@Override
+	public void invokeCallback() {
+		if ((written != null) && (getException() == null)) {
+			written.committed();
+		}
+		written = null;
 	}
 
 
@@ -35,9 +49,10 @@ public abstract class AbstractLogItemEventCommand extends AbstractDBCommand {
 	 * logs the event to the database.
 	 *
 	 * @param transaction DBTransaction
+	 * @param batch batch collecting the rows to write
 	 * @throws SQLException in case of an database error
 	 */
-	protected abstract void log(DBTransaction transaction) throws SQLException;
+	protected abstract void log(DBTransaction transaction, ItemLogBatch batch) throws SQLException;
 
 	/**
 	 * gets the quantity from an item; correctly handles non stackable items
@@ -0,0 +1,216 @@
+/***************************************************************************
+ *                    (C) Copyright 2007-2023 - Stendhal                   *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.db.ItemLogBatch;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
+import marauroa.server.game.dbcommand.DBCommandWithCallback;
+
+/**
+ * Writes the pending item log events in one transaction. Events are
+ * collected until the command is executed, so a busy database gets larger
+ * batches instead of a longer queue.
+ * <p>
+ * The events are written in the transaction of the command queue. The
+ * logids of new items are put on the live items only after the queue has
+ * committed that transaction. If the batch fails, it is rolled back to a
+ * savepoint and the events are written one by one, so that only the failing
+ * ones are dropped.
+ *
+ * @author hendrik
+ */
+public class LogItemEventBatchCommand extends DBCommandWithCallback {
+	private static Logger logger = Logger.getLogger(LogItemEventBatchCommand.class);
+
+	/** maximum number of events written in one transaction */
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	/** events waiting for a batch */
+	private static final List<AbstractLogItemEventCommand> pending = new ArrayList<AbstractLogItemEventCommand>();
+
+	/** is there a batch command in the database queue? */
+	private static boolean queued;
+
+	/** events of this batch, <code>null</code> until they are taken */
+	private List<AbstractLogItemEventCommand> events;
+
+	/** batches written in the current transaction */
+	private final List<ItemLogBatch> written = new ArrayList<ItemLogBatch>();
+
+	/** number of savepoints set in the current transaction */
+	private int savepoints;
+
+	/**
+	 * creates a command for the pending events
+	 */
+	private LogItemEventBatchCommand() {
+		// the events are taken when the command is executed
+	}
+
+	/**
+	 * creates a command for specific events
+	 *
+	 * @param events events to write
+	 */
+	LogItemEventBatchCommand(final List<AbstractLogItemEventCommand> events) {
+		this.events = new ArrayList<AbstractLogItemEventCommand>(events);
+	}
+
+	/**
+	 * adds an item log event to the next batch
+	 *
+	 * @param command item log event
+	 */
+	public static void enqueue(final AbstractLogItemEventCommand command) {
+		command.setEnqueueTime(new Timestamp(System.currentTimeMillis()));
+		synchronized (pending) {
+			pending.add(command);
+			if (queued) {
+				return;
+			}
+			queued = true;
+		}
+		DBCommandQueue.get().enqueue(new LogItemEventBatchCommand(), DBCommandPriority.LOW);
+	}
+
+	/**
+	 * takes the events for this batch
+	 *
+	 * @return events
+	 */
+	private static List<AbstractLogItemEventCommand> takePending() {
+		final List<AbstractLogItemEventCommand> commands;
+		boolean more = false;
+		synchronized (pending) {
+			final int size = Math.min(pending.size(), MAX_BATCH_SIZE);
+			final List<AbstractLogItemEventCommand> head = pending.subList(0, size);
+			commands = new ArrayList<AbstractLogItemEventCommand>(head);
+			head.clear();
+			if (pending.isEmpty()) {
+				queued = false;
+			} else {
+				more = true;
+			}
+		}
+		if (more) {
+			DBCommandQueue.get().enqueue(new LogItemEventBatchCommand(), DBCommandPriority.LOW);
+		}
+		return commands;
+	}
+
+	@Override
+	public void execute(final DBTransaction transaction) throws SQLException {
+		// the command queue executes the command again after connection
+		// errors, so the events are kept until the transaction is committed
+		written.clear();
+		if (events == null) {
+			events = takePending();
+		}
+		if (events.isEmpty() || write(transaction, events)) {
+			return;
+		}
+
+		for (final AbstractLogItemEventCommand event : events) {
+			write(transaction, Collections.singletonList(event));
+		}
+	}
+
+	/**
+	 * Writes events. If writing them fails, the transaction is rolled back
+	 * to the state before the events.
+	 *
+	 * @param transaction DBTransaction
+	 * @param commands events
+	 * @return <code>true</code> if the events were written,
+	 * 	<code>false</code> if writing them failed
+	 * @throws SQLException in case of a connection error or a deadlock. The
+	 * 	events can be written again later
+	 */
+	private boolean write(final DBTransaction transaction, final List<AbstractLogItemEventCommand> commands) throws SQLException {
+		final String savepoint = "item_log_" + (++savepoints);
+		transaction.execute("SAVEPOINT " + savepoint, null);
+		final ItemLogBatch batch = new ItemLogBatch();
+		try {
+			for (final AbstractLogItemEventCommand command : commands) {
+				command.log(transaction, batch);
+			}
+			batch.flush(transaction);
+		} catch (final SQLException e) {
+			if (transaction.isConnectionError(e) || transaction.isDeadlockError(e)) {
+				throw e;
+			}
+			transaction.execute("ROLLBACK TO SAVEPOINT " + savepoint, null);
+			logFailure(commands, e);
+			return false;
+		} catch (final RuntimeException e) {
+			transaction.execute("ROLLBACK TO SAVEPOINT " + savepoint, null);
+			logFailure(commands, e);
+			return false;
+		}
+		written.add(batch);
+		return true;
+	}
+
+	/**
+	 * Called by the command queue after the transaction has been committed,
+	 * or has failed.
+	 */
+	@Override
+	public void invokeCallback() {
+		if (getException() == null) {
+			committed();
+		}
+		written.clear();
+	}
+
+	/**
+	 * Puts the logids of the written events on the items. Must be called
+	 * only after the transaction has been committed.
+	 */
+	void committed() {
+		for (final ItemLogBatch batch : written) {
+			batch.applyIds();
+		}
+		written.clear();
+		if (events != null) {
+			events.clear();
+		}
+	}
+
+	private static void logFailure(final List<AbstractLogItemEventCommand> commands, final Exception e) {
+		if (commands.size() == 1) {
+			logger.error("Dropping item log event " + commands.get(0), e);
+		} else {
+			logger.warn("Writing " + commands.size() + " item log events failed, writing them one by one", e);
+		}
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return "LogItemEventBatchCommand []";
+	}
+}
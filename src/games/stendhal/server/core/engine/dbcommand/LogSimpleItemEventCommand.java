@@ -15,11 +15,10 @@ import java.sql.SQLException;
 
 import com.google.common.base.MoreObjects;
 
-import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import games.stendhal.server.core.engine.db.ItemLogBatch;
 import games.stendhal.server.entity.RPEntity;
 import marauroa.common.game.RPObject;
 import marauroa.server.db.DBTransaction;
-import marauroa.server.game.db.DAORegister;
 
 /**
  * logs a simple item event
@@ -60,14 +59,13 @@ public class LogSimpleItemEventCommand extends AbstractLogItemEventCommand {
 
 
 	@Override
-	protected void log(final DBTransaction transaction) throws SQLException {
+	protected void log(final DBTransaction transaction, final ItemLogBatch batch) throws SQLException {
 		// don't log the destruction of items that have not been logged prior.
-		if (event.equals("destroy") && !item.has("logid")) {
+		if (event.equals("destroy") && (batch.getLogId(item) == null)) {
 			return;
 		}
-		StendhalItemDAO stendhalItemDAO = DAORegister.get().get(StendhalItemDAO.class);
-		stendhalItemDAO.itemLogAssignIDIfNotPresent(transaction, item, getEnqueueTime());
-		stendhalItemDAO.itemLogWriteEntry(transaction, getEnqueueTime(), item, player, event, param1, param2, param3, param4);
+		batch.assignIDIfNotPresent(transaction, item, getEnqueueTime());
+		batch.writeEntry(getEnqueueTime(), item, player, event, param1, param2, param3, param4);
 	}
 
 	/**
@@ -15,11 +15,10 @@ import java.sql.SQLException;
 
 import com.google.common.base.MoreObjects;
 
-import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import games.stendhal.server.core.engine.db.ItemLogBatch;
 import games.stendhal.server.entity.RPEntity;
 import marauroa.common.game.RPObject;
 import marauroa.server.db.DBTransaction;
-import marauroa.server.game.db.DAORegister;
 
 /**
  * logs splitting off items from a stack.
@@ -49,19 +48,18 @@ public class LogSplitItemEventCommand extends AbstractLogItemEventCommand {
 	}
 
 	@Override
-	protected void log(DBTransaction transaction) throws SQLException {
-		StendhalItemDAO stendhalItemDAO = DAORegister.get().get(StendhalItemDAO.class);
-		stendhalItemDAO.itemLogAssignIDIfNotPresent(transaction, liveItem, getEnqueueTime());
-		stendhalItemDAO.itemLogAssignIDIfNotPresent(transaction, liveNewItem, getEnqueueTime());
+	protected void log(DBTransaction transaction, ItemLogBatch batch) throws SQLException {
+		batch.assignIDIfNotPresent(transaction, liveItem, getEnqueueTime());
+		batch.assignIDIfNotPresent(transaction, liveNewItem, getEnqueueTime());
 
 		final String outlivingQuantity = getQuantity(frozenItem);
 		final String newQuantity = getQuantity(frozenNewItem);
 		final String oldQuantity = Integer.toString(Integer.parseInt(outlivingQuantity) + Integer.parseInt(newQuantity));
-		stendhalItemDAO.itemLogWriteEntry(transaction, getEnqueueTime(), liveItem.getInt(StendhalItemDAO.ATTR_ITEM_LOGID), player, "split out",
-				liveNewItem.get(StendhalItemDAO.ATTR_ITEM_LOGID), oldQuantity,
+		batch.writeEntry(getEnqueueTime(), batch.getLogId(liveItem).intValue(), player, "split out",
+				batch.getLogId(liveNewItem).toString(), oldQuantity,
 				outlivingQuantity, newQuantity);
-		stendhalItemDAO.itemLogWriteEntry(transaction, getEnqueueTime(), liveNewItem.getInt(StendhalItemDAO.ATTR_ITEM_LOGID), player, "splitted out",
-				liveItem.get(StendhalItemDAO.ATTR_ITEM_LOGID), oldQuantity,
+		batch.writeEntry(getEnqueueTime(), batch.getLogId(liveNewItem).intValue(), player, "splitted out",
+				batch.getLogId(liveItem).toString(), oldQuantity,
 				newQuantity, outlivingQuantity);
 
 	}
@@ -16,39 +16,148 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import org.apache.log4j.Logger;
 
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
 
 /**
  * Other classes can register here to be notified at some time in the future.
  *
+ * <p>The registrations are kept in a hierarchical timing wheel. The lowest
+ * level has one slot per turn for the next 256 turns, each higher level
+ * covers 64 times the range of the level below it. Registrations move down
+ * a level whenever the turn counter passes the start of their slot, so each
+ * registration is touched at most once per level. A map from listener to
+ * its registrations makes cancellation and remaining time lookups
+ * independent of the number of registered listeners.
+ *
  * @author hendrik, daniel
  */
 public final class TurnNotifier {
 
 	private static Logger logger = Logger.getLogger(TurnNotifier.class);
 
+	/** Bits of the turn number used for the slot index of the lowest level. */
+	private static final int ROOT_BITS = 8;
+	/** Bits of the turn number used for the slot index of the higher levels. */
+	private static final int LEVEL_BITS = 6;
+	/** Number of levels above the lowest one. */
+	private static final int UPPER_LEVELS = 3;
+
+	private static final int ROOT_SIZE = 1 << ROOT_BITS;
+	private static final int ROOT_MASK = ROOT_SIZE - 1;
+	private static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+	private static final int LEVEL_MASK = LEVEL_SIZE - 1;
+	/** Registrations this far in the future go to the overflow list. */
+	private static final long MAX_WHEEL_DELTA = 1L << (ROOT_BITS + UPPER_LEVELS * LEVEL_BITS);
+
+	/** Creates the changes a zone running in parallel has deferred. */
+	private static final Supplier<PendingChanges> NEW_PENDING = new Supplier<PendingChanges>() {
+		@Override
+		public PendingChanges get() {
+			return new PendingChanges();
+		}
+	};
+
 	/** The singleton instance. */
 	private static TurnNotifier instance;
 
 	private int currentTurn = -1;
 
+	/** The next turn the wheel will process. */
+	private int nextTurn = 0;
+
+	/** Slots of the lowest level, one per turn. */
+	private final Registration[] root = new Registration[ROOT_SIZE];
+
+	/** Slots of the higher levels. */
+	private final Registration[][] levels = new Registration[UPPER_LEVELS][LEVEL_SIZE];
+
+	/** Registrations too far in the future for the wheel. */
+	private final Registration overflow = Registration.createSlot();
+
 	/**
-	 * This Map maps each turn to the set of all events that will take place at
-	 * this turn. Turns at which no event should take place needn't be
-	 * registered here.
+	 * Registrations for turns that have been skipped. They are only notified
+	 * if the turn counter is set back.
 	 */
-	private final Map<Integer, Set<TurnListener>> register = new HashMap<Integer, Set<TurnListener>>();
+	private final Registration outdated = Registration.createSlot();
+
+	/**
+	 * Maps each listener to its registrations. Listeners that are equal are
+	 * treated as the same listener.
+	 */
+	private final Map<TurnListener, Registration> handles = new HashMap<TurnListener, Registration>();
+
+	/** Number of registrations. */
+	private int size;
 
 	/** Used for multi-threading synchronization. * */
 	private final Object sync = new Object();
 
+	/**
+	 * A registered notification. Registrations form a doubly linked list per
+	 * slot, each slot being a circular list with a sentinel registration.
+	 * Registrations of equal listeners are additionally chained through
+	 * <code>nextForListener</code>.
+	 */
+	private static final class Registration {
+		final TurnListener listener;
+		final int turn;
+		Registration prev;
+		Registration next;
+		Registration nextForListener;
+
+		Registration(final TurnListener listener, final int turn) {
+			this.listener = listener;
+			this.turn = turn;
+		}
+
+		static Registration createSlot() {
+			final Registration slot = new Registration(null, 0);
+			slot.prev = slot;
+			slot.next = slot;
+			return slot;
+		}
+
+		void append(final Registration registration) {
+			registration.prev = prev;
+			registration.next = this;
+			prev.next = registration;
+			prev = registration;
+		}
+
+		void unlink() {
+			prev.next = next;
+			next.prev = prev;
+			prev = null;
+			next = null;
+		}
+
+		boolean isEmpty() {
+			return next == this;
+		}
+	}
+
+	/**
+	 * Registration changes that the logic of a zone running in parallel has
+	 * deferred. They let the zone read its own changes before they are
+	 * applied.
+	 */
+	private static final class PendingChanges {
+		/** Listeners whose registrations were removed. */
+		final Set<TurnListener> removed = new HashSet<TurnListener>();
+		/** The earliest turn of the listeners registered after that. */
+		final Map<TurnListener, Integer> added = new HashMap<TurnListener, Integer>();
+	}
 
 	/**
 	 * Return the TurnNotifier instance.
@@ -64,10 +173,19 @@ public final class TurnNotifier {
 	}
 
 	/**
-	 * Hidden singleton constructor.
+	 * Hidden singleton constructor. Visible to the tests of the package, so
+	 * that they can run long turn sequences without advancing the turn of
+	 * the shared instance.
 	 */
-	private TurnNotifier() {
-		// singleton
+	TurnNotifier() {
+		for (int i = 0; i < ROOT_SIZE; i++) {
+			root[i] = Registration.createSlot();
+		}
+		for (int level = 0; level < UPPER_LEVELS; level++) {
+			for (int i = 0; i < LEVEL_SIZE; i++) {
+				levels[level][i] = Registration.createSlot();
+			}
+		}
 	}
 
 	/**
@@ -78,41 +196,163 @@ public final class TurnNotifier {
 	 */
 
 	public void logic(final int currentTurn) {
-		// Note: It is OK to only synchronise the remove part
-		// because notifyAtTurn will not allow registrations
-		// for the current turn. So it is important to
-		// adjust currentTurn before the loop.
-
-		this.currentTurn = currentTurn;
+		// Note: It is important to adjust currentTurn before the loop,
+		// because notifyAtTurn will not allow registrations for the
+		// current turn.
 
-		// get and remove the set for this turn
-		Set<TurnListener> set = null;
+		final List<Registration> due = new ArrayList<Registration>();
 		synchronized (sync) {
-			set = register.remove(Integer.valueOf(currentTurn));
+			this.currentTurn = currentTurn;
+			if (currentTurn != nextTurn) {
+				// The turn counter jumped. Rebuild the wheel for the new turn.
+				rebuild(currentTurn);
+			}
+			cascade(currentTurn);
+
+			// get and remove the registrations for this turn
+			final Registration slot = root[currentTurn & ROOT_MASK];
+			while (!slot.isEmpty()) {
+				final Registration registration = slot.next;
+				registration.unlink();
+				forget(registration);
+				due.add(registration);
+			}
+			nextTurn = currentTurn + 1;
 		}
 
 		if (logger.isDebugEnabled()) {
 			final StringBuilder os = new StringBuilder();
-			os.append("register: " + register.size() + "\n");
-			int setSize;
-			if (set != null) {
-				setSize = set.size();
-			} else {
-				setSize = 0;
-			}
-			os.append("set: " + setSize + "\n");
+			os.append("register: " + size + "\n");
+			os.append("set: " + due.size() + "\n");
 			logger.info(os);
 		}
 
-		if (set != null) {
-			for (final TurnListener turnListener : set) {
+		for (final Registration registration : due) {
+			final TurnListener turnListener = registration.listener;
+			try {
+				turnListener.onTurnReached(currentTurn);
+			} catch (final RuntimeException e) {
+				logger.error("Exception in " + turnListener, e);
+			}
+		}
+	}
 
-				try {
-					turnListener.onTurnReached(currentTurn);
-				} catch (final RuntimeException e) {
-					logger.error("Exception in " + turnListener, e);
-				}
+	/**
+	 * Move the registrations of the higher level slots that start at the
+	 * given turn to the lower levels.
+	 *
+	 * @param turn turn about to be processed
+	 */
+	private void cascade(final int turn) {
+		if ((turn & ROOT_MASK) != 0) {
+			return;
+		}
+		int shift = ROOT_BITS;
+		for (int level = 0; level < UPPER_LEVELS; level++) {
+			final int index = (turn >>> shift) & LEVEL_MASK;
+			reinsert(levels[level][index]);
+			if (index != 0) {
+				return;
+			}
+			shift += LEVEL_BITS;
+		}
+		reinsert(overflow);
+	}
+
+	/**
+	 * Empty a slot and insert its registrations again, relative to
+	 * <code>nextTurn</code>.
+	 *
+	 * @param slot slot to empty
+	 */
+	private void reinsert(final Registration slot) {
+		while (!slot.isEmpty()) {
+			final Registration registration = slot.next;
+			registration.unlink();
+			place(registration);
+		}
+	}
+
+	/**
+	 * Put every registration in the right slot after the turn counter was
+	 * changed to something other than the next turn.
+	 *
+	 * @param turn the new turn
+	 */
+	private void rebuild(final int turn) {
+		nextTurn = turn;
+		final List<Registration> all = new ArrayList<Registration>(size);
+		collect(overflow, all);
+		collect(outdated, all);
+		for (int level = 0; level < UPPER_LEVELS; level++) {
+			for (int i = 0; i < LEVEL_SIZE; i++) {
+				collect(levels[level][i], all);
+			}
+		}
+		for (int i = 0; i < ROOT_SIZE; i++) {
+			collect(root[i], all);
+		}
+		for (final Registration registration : all) {
+			place(registration);
+		}
+	}
+
+	private static void collect(final Registration slot, final List<Registration> result) {
+		while (!slot.isEmpty()) {
+			final Registration registration = slot.next;
+			registration.unlink();
+			result.add(registration);
+		}
+	}
+
+	/**
+	 * Put a registration into the slot matching its turn.
+	 *
+	 * @param registration registration that is not in any slot
+	 */
+	private void place(final Registration registration) {
+		final int turn = registration.turn;
+		final long delta = (long) turn - nextTurn;
+		if (delta < 0) {
+			outdated.append(registration);
+		} else if (delta < ROOT_SIZE) {
+			root[turn & ROOT_MASK].append(registration);
+		} else if (delta >= MAX_WHEEL_DELTA) {
+			overflow.append(registration);
+		} else {
+			int level = 0;
+			int shift = ROOT_BITS;
+			while (delta >= (1L << (shift + LEVEL_BITS))) {
+				level++;
+				shift += LEVEL_BITS;
 			}
+			levels[level][(turn >>> shift) & LEVEL_MASK].append(registration);
+		}
+	}
+
+	/**
+	 * Remove a registration that has already been unlinked from its slot
+	 * from the listener map.
+	 *
+	 * @param registration registration
+	 */
+	private void forget(final Registration registration) {
+		size--;
+		Registration first = handles.get(registration.listener);
+		if (first == registration) {
+			if (registration.nextForListener == null) {
+				handles.remove(registration.listener);
+			} else {
+				handles.put(registration.listener, registration.nextForListener);
+			}
+			return;
+		}
+		while (first != null) {
+			if (first.nextForListener == registration) {
+				first.nextForListener = registration.nextForListener;
+				return;
+			}
+			first = first.nextForListener;
 		}
 	}
 
@@ -157,6 +397,22 @@ public final class TurnNotifier {
 			return;
 		}
 
+		if (ZoneLogicExecutor.defer(new Runnable() {
+			@Override
+			public void run() {
+				notifyAtTurn(turn, turnListener);
+			}
+		})) {
+			if (turn > currentTurn) {
+				final PendingChanges pending = ZoneLogicExecutor.getZoneLocal(this, NEW_PENDING);
+				final Integer earliest = pending.added.get(turnListener);
+				if ((earliest == null) || (turn < earliest.intValue())) {
+					pending.added.put(turnListener, Integer.valueOf(turn));
+				}
+			}
+			return;
+		}
+
 		if (logger.isDebugEnabled()) {
 			logger.info("Notify at " + turn + " by " + turnListener);
 			final StringBuilder st = new StringBuilder();
@@ -177,15 +433,24 @@ public final class TurnNotifier {
 		}
 
 		synchronized (sync) {
-			// do we have other events for this turn?
-			final Integer turnInt = Integer.valueOf(turn);
-			Set<TurnListener> set = register.get(turnInt);
-			if (set == null) {
-				set = new HashSet<TurnListener>();
-				register.put(turnInt, set);
+			// a listener is registered only once for each turn
+			final Registration first = handles.get(turnListener);
+			Registration last = null;
+			for (Registration existing = first; existing != null; existing = existing.nextForListener) {
+				if (existing.turn == turn) {
+					return;
+				}
+				last = existing;
+			}
+
+			final Registration registration = new Registration(turnListener, turn);
+			if (last == null) {
+				handles.put(turnListener, registration);
+			} else {
+				last.nextForListener = registration;
 			}
-			// add it to the list
-			set.add(turnListener);
+			place(registration);
+			size++;
 		}
 	}
 
@@ -197,18 +462,24 @@ public final class TurnNotifier {
 	 */
 
 	public void dontNotify(final TurnListener turnListener) {
-		// all events that are equal to this one should be forgotten.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			// We don't remove directly, but first store in this
-			// set. This is to avoid ConcurrentModificationExceptions.
-			final Set<TurnListener> toBeRemoved = new HashSet<TurnListener>();
-			if (set.contains(turnListener)) {
-					toBeRemoved.add(turnListener);
+		if (ZoneLogicExecutor.defer(new Runnable() {
+			@Override
+			public void run() {
+				dontNotify(turnListener);
 			}
-			for (final TurnListener event : toBeRemoved) {
-				set.remove(event);
+		})) {
+			final PendingChanges pending = ZoneLogicExecutor.getZoneLocal(this, NEW_PENDING);
+			pending.removed.add(turnListener);
+			pending.added.remove(turnListener);
+			return;
+		}
+
+		synchronized (sync) {
+			Registration registration = handles.remove(turnListener);
+			while (registration != null) {
+				registration.unlink();
+				size--;
+				registration = registration.nextForListener;
 			}
 		}
 	}
@@ -223,24 +494,25 @@ public final class TurnNotifier {
 	 */
 
 	public int getRemainingTurns(final TurnListener turnListener) {
-		// all events match that are equal to this.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		// the HashMap is unsorted, so we need to run through
-		// all of it.
-		final List<Integer> matchingTurns = new ArrayList<Integer>();
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			for (final TurnListener currentEvent : set) {
-				if (currentEvent.equals(turnListener)) {
-					matchingTurns.add(mapEntry.getKey());
-				}
+		// zone logic running in parallel sees the changes it has deferred
+		final PendingChanges pending = ZoneLogicExecutor.getZoneLocal(this, null);
+		int turn = Integer.MAX_VALUE;
+		if (pending != null) {
+			final Integer added = pending.added.get(turnListener);
+			if (added != null) {
+				turn = added.intValue();
 			}
 		}
-		if (matchingTurns.size() > 0) {
-			Collections.sort(matchingTurns);
-			return matchingTurns.get(0).intValue() - currentTurn;
-		} else {
-			return -1;
+		synchronized (sync) {
+			if ((pending == null) || !pending.removed.contains(turnListener)) {
+				for (Registration registration = handles.get(turnListener); registration != null; registration = registration.nextForListener) {
+					turn = Math.min(turn, registration.turn);
+				}
+			}
+			if (turn == Integer.MAX_VALUE) {
+				return -1;
+			}
+			return turn - currentTurn;
 		}
 	}
 
@@ -260,12 +532,50 @@ public final class TurnNotifier {
 
 	/**
 	 * Returns the list of events. Note this is only for debugging the
-	 * TurnNotifier
+	 * TurnNotifier. The returned map is an unmodifiable snapshot.
 	 *
 	 * @return eventList
 	 */
 	public Map<Integer, Set<TurnListener>> getEventListForDebugging() {
-		return register;
+		final Map<Integer, Set<TurnListener>> events = new TreeMap<Integer, Set<TurnListener>>();
+		synchronized (sync) {
+			for (final Registration first : handles.values()) {
+				for (Registration registration = first; registration != null; registration = registration.nextForListener) {
+					Set<TurnListener> set = events.get(registration.turn);
+					if (set == null) {
+						set = new LinkedHashSet<TurnListener>();
+						events.put(registration.turn, set);
+					}
+					set.add(registration.listener);
+				}
+			}
+		}
+		for (final Map.Entry<Integer, Set<TurnListener>> entry : events.entrySet()) {
+			entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+		}
+
+		return Collections.unmodifiableMap(events);
+	}
+
+	/**
+	 * Removes all registrations. Meant for tests.
+	 */
+	public void clearAll() {
+		synchronized (sync) {
+			final List<Registration> all = new ArrayList<Registration>(size);
+			collect(overflow, all);
+			collect(outdated, all);
+			for (int level = 0; level < UPPER_LEVELS; level++) {
+				for (int i = 0; i < LEVEL_SIZE; i++) {
+					collect(levels[level][i], all);
+				}
+			}
+			for (int i = 0; i < ROOT_SIZE; i++) {
+				collect(root[i], all);
+			}
+			handles.clear();
+			size = 0;
+		}
 	}
 
 	/**
@@ -25,16 +25,20 @@ package games.stendhal.server.core.pathfinder;
 
 
 import java.awt.geom.Rectangle2D;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Stack;
+
+import games.stendhal.common.CollisionDetection;
 
 /**
- * Implements the A* algorithm. Pathing can be done on any class that implements
- * the <code>Navigable</code> interface. See org.generation5.ai.Navigable.
+ * Implements the A* algorithm on a tile grid. Subclasses define which
+ * positions are walkable, and the cost of entering them.
+ * <p>
+ * The node data is kept in primitive arrays that are reused between the
+ * searches of a thread, so that a search does not create any objects apart
+ * from the resulting path.
  *
  * @author James Matthews
  *
@@ -66,6 +70,17 @@ public abstract class Pathfinder {
 	 */
 	protected static final double STRAIGHT_PATH_PREFERENCE_FACTOR = 0.2;
 
+	/**
+	 * Node arrays of the current thread. Zone logic may run in parallel, so
+	 * each thread gets its own.
+	 */
+	private static final ThreadLocal<SearchSpace> SEARCH_SPACE = new ThreadLocal<SearchSpace>() {
+		@Override
+		protected SearchSpace initialValue() {
+			return new SearchSpace();
+		}
+	};
+
 	/**
 	 * The current status of the pathfinder.
 	 *
@@ -74,37 +89,9 @@ public abstract class Pathfinder {
 	 * @see #IN_PROGRESS
 	 */
 	private int pathStatus = IN_PROGRESS;
-	/**
-	 * The open list.
-	 */
-	private final PriorityQueue<TreeNode> openList = new PriorityQueue<TreeNode>(16,
-			new Comparator<TreeNode>() {
-		@Override
-		public int compare(final TreeNode o1, final TreeNode o2) {
-			return (int) Math.signum(o1.weight - o2.weight);
-		}
-	});
-
-	private final HashMap<Integer, TreeNode> nodeRegistry = new HashMap<Integer, TreeNode>();
-
-	/**
-	 * The goal node.
-	 */
-	protected TreeNode goalNode;
-
-	/**
-	 * The start node.
-	 */
-	protected TreeNode startNode;
-
-	/**
-	 * The current best node. The best node is taken from the open list after
-	 * every iteration of <code>doStep</code>.
-	 */
-	private TreeNode bestNode;
 
 	/**
-	 * The maximum distance for the path. It is compared with the f value of the
+	 * The maximum distance for the path. It is compared with the g value of the
 	 * node. The minimum for working pathfinding is
 	 * heuristicFromStartNode + 1
 	 */
@@ -115,46 +102,45 @@ public abstract class Pathfinder {
 	 */
 	private final Rectangle2D goalArea;
 
-	/** Initialization data */
-	private final int startX, startY;
-	/** Initialization data */
-	private final Rectangle2D destination;
+	/** Start position */
+	protected final int startX, startY;
+	/** Center of the goal area, used for the heuristic */
+	protected final int goalX, goalY;
 	/** Initialization data */
 	private final double initMaxDist;
+	/** Use jump point search, if the area has uniform movement cost */
+	private boolean jumpPointSearch;
 
 	protected Pathfinder(final int startX, final int startY, final Rectangle2D destination, final double maxDist) {
 		this.goalArea = destination;
-
-		// Setup the initialization data needed for node creation
 		this.startX = startX;
 		this.startY = startY;
-		this.destination = destination;
+		this.goalX = (int) destination.getCenterX();
+		this.goalY = (int) destination.getCenterY();
 		this.initMaxDist = maxDist;
-
-		openList.clear();
-		nodeRegistry.clear();
-
-		bestNode = null;
-		pathStatus = IN_PROGRESS;
 	}
 
 	/**
 	 * Initialization that can not be done safely in the constructor.
 	 */
 	protected void init() {
-		/*
-		 * createNode is defined in child classes, so it may require
-		 * work in the child's constructor.
-		 */
-		startNode = createNode(startX, startY);
-		goalNode = createNode((int) (destination.getCenterX()),
-				(int) (destination.getCenterY()));
-		openList.offer(startNode);
-		nodeRegistry.put(startNode.nodeNumber, startNode);
-
 		// calculate shortest distance and allow a variance of X percent
-		final double startF = 1.1 * startNode.getHeuristic(goalNode) + 1;
+		final double startF = 1.1 * getHeuristic(startX, startY) + 1;
 		this.maxDistance = Math.max(initMaxDist, startF);
+		pathStatus = IN_PROGRESS;
+	}
+
+	/**
+	 * Enable or disable jump point search. Jump point search expands far less
+	 * nodes than plain A*, and finds the shortest path, but scanning for jump
+	 * points is slower than the greedy default search on nearly empty
+	 * terrain. It is used only if {@link #hasUniformCost()} is
+	 * <code>true</code>. The path still contains every walked tile.
+	 *
+	 * @param jumpPointSearch <code>true</code> to enable jump point search
+	 */
+	public void setJumpPointSearch(final boolean jumpPointSearch) {
+		this.jumpPointSearch = jumpPointSearch;
 	}
 
 	/**
@@ -169,80 +155,80 @@ public abstract class Pathfinder {
 
 	public final List<Node> getPath() {
 		init();
-		final List<Node> list = new LinkedList<Node>();
 
 		if (unreachableGoal()) {
-			return list;
+			return new ArrayList<Node>(0);
 		}
 
-		while (pathStatus == Pathfinder.IN_PROGRESS) {
-			doStep();
+		final SearchSpace space = SEARCH_SPACE.get();
+		final int goal = space.search(this);
+		if (goal < 0) {
+			pathStatus = PATH_NOT_FOUND;
+			return new ArrayList<Node>(0);
 		}
-
-		if (pathStatus == Pathfinder.PATH_FOUND) {
-			TreeNode node = bestNode;
-			while (node != null) {
-				list.add(0, new Node(node.getX(), node.getY()));
-				node = node.getParent();
+		pathStatus = PATH_FOUND;
+
+		final int width = getWidth();
+		final List<Node> list = new ArrayList<Node>();
+		for (int node = goal; node >= 0; node = space.parent[node]) {
+			int x = node % width;
+			int y = node / width;
+			list.add(new Node(x, y));
+			// fill in the tiles skipped by jump point search
+			final int next = space.parent[node];
+			if (next >= 0) {
+				final int dx = Integer.signum(next % width - x);
+				final int dy = Integer.signum(next / width - y);
+				x += dx;
+				y += dy;
+				while (x + y * width != next) {
+					list.add(new Node(x, y));
+					x += dx;
+					y += dy;
+				}
 			}
 		}
-		/* */
+		Collections.reverse(list);
 
 		return list;
 	}
 
 	/**
-	 * Iterate the pathfinder through one step.
-	 */
-	private void doStep() {
-		bestNode = getBest();
-		if (bestNode == null) {
-			pathStatus = PATH_NOT_FOUND;
-			return;
-		}
-
-		if (reachedGoal(bestNode)) {
-			pathStatus = PATH_FOUND;
-			return;
-		}
-
-		bestNode.createChildren();
-	}
-
-	/**
-	 * Assigns the best node from the open list.
+	 * Checks if the goal is reached.
 	 *
-	 * @return the best node.
+	 * @param x x coordinate of the node
+	 * @param y y coordinate of the node
+	 * @return true if the goal is reached
 	 */
-	private TreeNode getBest() {
-		if (openList.isEmpty()) {
-			return null;
-		}
-
-		final TreeNode first = openList.poll();
-		first.setOpen(false);
-
-		return first;
+	private boolean reachedGoal(final int x, final int y) {
+		return goalArea.contains(x, y);
 	}
 
 	/**
-	 * Checks if the goal is reached.
+	 * Check if a column is within the goal area.
 	 *
-	 * @param nodeBest
-	 *            the currently best node
-	 * @return true if the goal is reached
+	 * @param x x coordinate
+	 * @return <code>true</code> if the goal area contains tiles of the
+	 * 	column
 	 */
-	private boolean reachedGoal(final TreeNode nodeBest) {
-		return goalArea.contains(nodeBest.getX(), nodeBest.getY());
+	private boolean inGoalColumns(final int x) {
+		return (x >= goalArea.getMinX()) && (x < goalArea.getMaxX());
 	}
 
 	/**
-	 * Checks if the goal is unreachable. Only the outer nodes of the goal are
-	 * checked. There could be other reasons, why a goal is unreachable.
+	 * Checks if the goal is unreachable. The outer nodes of the goal are
+	 * checked, and if the start position and the goal are in separate
+	 * components of the static collision map. There could be other reasons,
+	 * why a goal is unreachable.
 	 *
 	 * @return true checks if the goal is unreachable
 	 */
 	protected boolean unreachableGoal() {
+		final CollisionDetection collision = getCollisionMap();
+		if ((collision != null) && !collision.isConnected(startX, startY, goalArea)) {
+			return true;
+		}
+
 		final int w = (int) goalArea.getWidth() - 1;
 		final int h = (int) goalArea.getHeight() - 1;
 		final int x = (int) goalArea.getX();
@@ -251,7 +237,7 @@ public abstract class Pathfinder {
 		for (int i = 0; i <= w; i++) {
 			for (int j = 0; j <= h; j++) {
 				if ((i == 0) || (j == 0) || (i == w) || (j == h)) {
-					if (createNode(x + i, y + j).isValid()) {
+					if (isValid(x + i, y + j)) {
 						return false;
 					}
 				}
@@ -262,378 +248,455 @@ public abstract class Pathfinder {
 	}
 
 	/**
-	 * Create a new TreeNode
+	 * Get the width of the searched area.
 	 *
-	 * @param x x coordinate of the node
-	 * @param y y coordinate of the node
-	 * @return TreeNode
+	 * @return width in tiles
 	 */
-	// A workaround for java lacking proper generics
-	public abstract TreeNode createNode(final int x, final int y);
+	protected abstract int getWidth();
 
+	/**
+	 * Get the height of the searched area.
+	 *
+	 * @return height in tiles
+	 */
+	protected abstract int getHeight();
 
 	/**
-	 * Calculates the manhattan distance between to positions.
+	 * Get the static collision map of the searched area. The connectivity
+	 * data of the map is used to reject unreachable goals early.
 	 *
-	 * @param x1
-	 *            x value for position 1
-	 * @param y1
-	 *            y value for position 1
-	 * @param x2
-	 *            x value for position 2
-	 * @param y2
-	 *            y value for position 2
-	 * @return manhattan distance between to positions
+	 * @return collision map, or <code>null</code> if not available
 	 */
-	private static int manhattanDistance(final int x1, final int y1, final int x2, final int y2) {
-		return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+	protected CollisionDetection getCollisionMap() {
+		return null;
 	}
 
 	/**
-	 * Calculates the square distance between to positions.
+	 * Check if all positions have the same movement cost. Jump point search
+	 * can be used only in that case.
 	 *
-	 * @param x1
-	 *            x value for position 1
-	 * @param y1
-	 *            y value for position 1
-	 * @param x2
-	 *            x value for position 2
-	 * @param y2
-	 *            y value for position 2
-	 * @return square distance between to positions
+	 * @return <code>true</code> if {@link #getCost(int, int)} is the same
+	 * 	everywhere
 	 */
-	private static int squareDistance(final int x1, final int y1, final int x2, final int y2) {
-		return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+	protected boolean hasUniformCost() {
+		return true;
 	}
 
-
 	/**
-	 * The pathfinder node.
+	 * Check if a position is inside the area and valid.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return <code>true</code> if the position can be walked on
 	 */
-	protected abstract class TreeNode {
-
-		/**
-		 * The f-value.
-		 */
-		private double weight;
-
-		/**
-		 * The g-value.
-		 */
-		private double g;
-
-		/**
-		 * The x-position of the node.
-		 */
-		private final int x;
+	private boolean isWalkable(final int x, final int y) {
+		return (x >= 0) && (y >= 0) && (x < getWidth()) && (y < getHeight()) && isValid(x, y);
+	}
 
-		/**
-		 * The y-position of the node.
-		 */
-		private final int y;
+	/**
+	 * Checks if the entity could stand on the given by the coordinates.
+	 * @param x coordinate of the position to be checked
+	 * @param y coordinate of the position to be checked
+	 *
+	 * @return true if the the entity could stand on the position
+	 */
+	public abstract boolean isValid(int x, int y);
 
-		/**
-		 * The number of children the node has.
-		 */
-		private int numChildren;
+	/**
+	 * The cost of moving to a position.
+	 *
+	 * @param x x coordinate of the position
+	 * @param y y coordinate of the position
+	 * @return movement cost
+	 */
+	protected double getCost(final int x, final int y) {
+		return 1.0;
+	}
 
-		/**
-		 * The node identifier.
-		 */
-		private final Integer nodeNumber;
+	/**
+	 * Calculates the heuristic for the move form a position to the goal. <p>
+	 * The right heuristic is very important for A* - a over estimated heuristic
+	 * will turn A* in to bsf - a under estimated heuristic will turn A* in to
+	 * Dijkstra's so the manhattan distance seams to be the optimal
+	 * heuristic here. But it has one disadvantage. It will expand to much.
+	 * Several nodes will have the same f value It will search the area of
+	 * the size (abs(startX - goalX) + 1) * (abs(startY - goalY) + 1) So a
+	 * tie-breaker is needed. 1% square distace seems to work fine. A* will
+	 * prefer nodes closer to the goal.
+	 *
+	 * @param x x coordinate of the position
+	 * @param y y coordinate of the position
+	 * @return heuristic value for move
+	 */
+	private double getHeuristic(final int x, final int y) {
+		final int dx = x - goalX;
+		final int dy = y - goalY;
+		final double heuristic = Math.abs(dx) + Math.abs(dy);
+		final double tieBreaking = 0.01 * (dx * dx + dy * dy);
 
-		/**
-		 * The parent of the node.
-		 */
-		private TreeNode parent;
+		return heuristic + tieBreaking;
+	}
 
-		private final TreeNode[] children = new TreeNode[4];
+	/**
+	 * Get the heuristic for jump point search. It is the manhattan distance
+	 * of a position to the goal area, which never over estimates the
+	 * distance. Plenty of nodes have the same f value with it on a 4-connected
+	 * grid, so it is increased by 0.1% to prefer the nodes closer to the goal.
+	 * That still gives the shortest paths if they are shorter than 1000
+	 * steps.
+	 *
+	 * @param x x coordinate of the position
+	 * @param y y coordinate of the position
+	 * @return heuristic value
+	 */
+	private double getDistance(final int x, final int y) {
+		final double dx = Math.max(0, Math.max(goalArea.getMinX() - x, x + 1 - goalArea.getMaxX()));
+		final double dy = Math.max(0, Math.max(goalArea.getMinY() - y, y + 1 - goalArea.getMaxY()));
+		return 1.001 * (dx + dy);
+	}
 
-		private boolean open = true;
+	/**
+	 * Reusable node data for A* searches. Nodes are identified by
+	 * <code>x + y * width</code>. Instead of clearing the arrays before each
+	 * search, every search uses a new generation number, and a node whose
+	 * <code>generation</code> entry differs from the current one is treated
+	 * as not visited yet.
+	 */
+	static final class SearchSpace {
+		/** Marker in <code>heapIndex</code> for nodes that are not open. */
+		private static final int CLOSED = -1;
+
+		private int generation;
+		/** Generation in which the node was last touched. */
+		private int[] visited = new int[0];
+		/** The g-value. */
+		private double[] g = new double[0];
+		/** The f-value. */
+		private double[] weight = new double[0];
+		/** Cached movement cost of the node. */
+		private double[] cost = new double[0];
+		/** The parent of the node, or -1 for the start node. */
+		int[] parent = new int[0];
+		/** Position of the node in the open list heap, or CLOSED. */
+		private int[] heapIndex = new int[0];
+		/** The open list, as a binary heap ordered by weight. */
+		private int[] heap = new int[0];
+		private int heapSize;
 
 		/**
-		 * The default constructor with positional information.
+		 * Run a search.
 		 *
-		 * @param x
-		 *            the x-position of the node.
-		 * @param y
-		 *            the y-position of the node.
-		 */
-		protected TreeNode(final int x, final int y) {
-			this.x = x;
-			this.y = y;
-
-			this.nodeNumber = createNodeID(x, y);
-
-			init();
-		}
-
-		/**
-		 * Resets the node. This involves all f, g and h-values to 0 as well as
-		 * removing all children.
+		 * @param finder pathfinder defining the area and the goal
+		 * @return the node where the goal was reached, or -1 if there is no
+		 * 	path
 		 */
-		private void init() {
-			this.weight = 0.0;
-			this.g = 0.0;
-			this.numChildren = 0;
-			for (int i = 0; i < 4; i++) {
-				this.children[i] = null;
+		int search(final Pathfinder finder) {
+			final int width = finder.getWidth();
+			final int height = finder.getHeight();
+			if ((finder.startX < 0) || (finder.startY < 0) || (finder.startX >= width)
+					|| (finder.startY >= height)) {
+				return -1;
 			}
+			prepare(width * height);
+
+			final int start = finder.startX + finder.startY * width;
+			touch(start, 0.0);
+			g[start] = 0.0;
+			parent[start] = -1;
+			weight[start] = 0.0;
+			offer(start);
+
+			final boolean jump = finder.jumpPointSearch && finder.hasUniformCost();
+			while (heapSize > 0) {
+				final int best = poll();
+				final int x = best % width;
+				final int y = best / width;
+				if (finder.reachedGoal(x, y)) {
+					return best;
+				}
 
-			this.open = true;
-		}
-
-		/**
-		 * Add a child to the node.
-		 *
-		 * @param child
-		 *            the child node.
-		 */
-		private void addChild(final TreeNode child) {
-			this.children[numChildren++] = child;
+				if (g[best] >= finder.maxDistance) {
+					continue;
+				}
+				if (jump) {
+					expandJumpPoints(finder, best, x, y);
+				} else {
+					if (x > 0) {
+						linkChild(finder, best, best - 1, x - 1, y);
+					}
+					if (x < width - 1) {
+						linkChild(finder, best, best + 1, x + 1, y);
+					}
+					if (y > 0) {
+						linkChild(finder, best, best - width, x, y - 1);
+					}
+					if (y < height - 1) {
+						linkChild(finder, best, best + width, x, y + 1);
+					}
+				}
+			}
 
-			updateChild(child);
+			return -1;
 		}
 
 		/**
-		 * Add a child to the node.
+		 * Add the jump points reachable from a node to the open list.
+		 * <p>
+		 * For 4-connected grids with uniform cost the search prefers paths
+		 * that move vertically first. A horizontal jump stops only where the
+		 * path must turn, i.e. at a tile that has a walkable vertical
+		 * neighbour whose predecessor tile had none, or when it reaches the
+		 * goal columns. A vertical jump stops where a horizontal jump from
+		 * the passed tile would find a jump point.
 		 *
-		 * @param child
-		 *            the child node.
+		 * @param finder pathfinder
+		 * @param node expanded node
+		 * @param x x coordinate of the node
+		 * @param y y coordinate of the node
 		 */
-		private void updateChild(final TreeNode child) {
-			child.parent = this;
-			child.g = this.g + child.getCost();
-
-			child.weight = calculateChildWeight(child);
+		private void expandJumpPoints(final Pathfinder finder, final int node, final int x, final int y) {
+			final int width = finder.getWidth();
+			final int steps = (int) (finder.maxDistance + 1 - g[node]);
+			int fromX = 0;
+			int fromY = 0;
+			if (parent[node] >= 0) {
+				fromX = Integer.signum(parent[node] % width - x);
+				fromY = Integer.signum(parent[node] / width - y);
+			}
+			for (int dx = -1; dx <= 1; dx += 2) {
+				if (fromX != dx) {
+					final int jumpX = jumpHorizontal(finder, x, y, dx, steps);
+					if (jumpX >= 0) {
+						final int child = jumpX + y * width;
+						relax(node, child, g[node] + Math.abs(jumpX - x), finder.getDistance(jumpX, y), false);
+					}
+				}
+			}
+			for (int dy = -1; dy <= 1; dy += 2) {
+				if (fromY != dy) {
+					final int jumpY = jumpVertical(finder, x, y, dy, steps);
+					if (jumpY >= 0) {
+						final int child = x + jumpY * width;
+						relax(node, child, g[node] + Math.abs(jumpY - y), finder.getDistance(x, jumpY), false);
+					}
+				}
+			}
 		}
 
 		/**
-		 * Calculate node weight for a child node.
+		 * Jump horizontally.
 		 *
-		 * @param child the child to be calculated
-		 * @return weight for the child node
+		 * @param finder pathfinder
+		 * @param x start x coordinate
+		 * @param y row
+		 * @param dx direction, -1 or 1
+		 * @param steps maximum number of steps
+		 * @return x coordinate of the found jump point, or -1
 		 */
-		private double calculateChildWeight(final TreeNode child) {
-			double childweight = child.g + child.getHeuristic(goalNode);
-
-			// Prefer nodes that do not result in direction change
-			if (parent != null) {
-				final int incx = parent.x - x;
-				final int incy = parent.y - y;
-
-				final int incx2 = x - child.x;
-				final int incy2 = y - child.y;
-
-				if ((incx == incx2) && (incy == incy2)) {
-					childweight -= STRAIGHT_PATH_PREFERENCE_FACTOR;
+		private int jumpHorizontal(final Pathfinder finder, int x, final int y, final int dx, final int steps) {
+			for (int i = 0; i < steps; i++) {
+				final int prevX = x;
+				x += dx;
+				if (!finder.isWalkable(x, y)) {
+					return -1;
+				}
+				if (finder.inGoalColumns(x)) {
+					return x;
+				}
+				if ((finder.isWalkable(x, y - 1) && !finder.isWalkable(prevX, y - 1))
+						|| (finder.isWalkable(x, y + 1) && !finder.isWalkable(prevX, y + 1))) {
+					return x;
 				}
 			}
-
-			return childweight;
+			return -1;
 		}
 
 		/**
-		 * Return the x-position of the node.
+		 * Jump vertically.
 		 *
-		 * @return the x-position of the node.
+		 * @param finder pathfinder
+		 * @param x column
+		 * @param y start y coordinate
+		 * @param dy direction, -1 or 1
+		 * @param steps maximum number of steps
+		 * @return y coordinate of the found jump point, or -1
 		 */
-		public int getX() {
-			return x;
+		private int jumpVertical(final Pathfinder finder, final int x, int y, final int dy, final int steps) {
+			for (int i = 0; i < steps; i++) {
+				y += dy;
+				if (!finder.isWalkable(x, y)) {
+					return -1;
+				}
+				if (finder.reachedGoal(x, y)) {
+					return y;
+				}
+				final int remaining = steps - i - 1;
+				if ((jumpHorizontal(finder, x, y, -1, remaining) >= 0)
+						|| (jumpHorizontal(finder, x, y, 1, remaining) >= 0)) {
+					return y;
+				}
+			}
+			return -1;
 		}
 
 		/**
-		 * Return the y-position of the node.
+		 * Make the arrays large enough and start a new generation.
 		 *
-		 * @return the y-position of the node.
+		 * @param size number of nodes in the searched area
 		 */
-		public int getY() {
-			return y;
+		private void prepare(final int size) {
+			if (visited.length < size) {
+				visited = new int[size];
+				g = new double[size];
+				weight = new double[size];
+				cost = new double[size];
+				parent = new int[size];
+				heapIndex = new int[size];
+				heap = new int[size];
+				generation = 0;
+			}
+			generation++;
+			if (generation == 0) {
+				// wrapped around; old markers could collide with new ones
+				Arrays.fill(visited, 0);
+				generation = 1;
+			}
+			heapSize = 0;
 		}
 
 		/**
-		 * Return the parent node.
+		 * Mark a node as visited in the current search.
 		 *
-		 * @return the parent node.
+		 * @param node node
+		 * @param nodeCost movement cost of the node
 		 */
-		public TreeNode getParent() {
-			return parent;
+		private void touch(final int node, final double nodeCost) {
+			visited[node] = generation;
+			g[node] = Double.POSITIVE_INFINITY;
+			cost[node] = nodeCost;
+			heapIndex[node] = CLOSED;
 		}
 
 		/**
-		 * The cost of moving to this node.
+		 * Links a neighbour to a node, if it is walkable and the path through
+		 * the node is shorter than the one known so far.
 		 *
-		 * @return movement cost
-		 */
-		protected double getCost() {
-			return 1.0;
-		}
-
-		/**
-		 * Calculates the heuristic for the move form node1 to node2. <p> The right
-		 * heuristic is very important for A* - a over estimated heuristic will
-		 * turn A* in to bsf - a under estimated heuristic will turn A* in to
-		 * Dijkstra's so the manhattan distance seams to be the optimal
-		 * heuristic here. But it has one disadvantage. It will expand to much.
-		 * Several nodes will have the same f value It will search the area of
-		 * the size (abs(startX - goalX) + 1) * (abs(startY - goalY) + 1) So a
-		 * tie-breaker is needed. 1% square distace seems to work fine. A* will
-		 * prefer nodes closer to the goal.
-		 * @param nodeGoal
-		 * @return heuristic value for move
+		 * @param finder pathfinder
+		 * @param node current node
+		 * @param child neighbour node
+		 * @param childX x coordinate of the neighbour
+		 * @param childY y coordinate of the neighbour
 		 */
-		public double getHeuristic(final TreeNode nodeGoal) {
-			final double heuristic = manhattanDistance(x, y, nodeGoal.x, nodeGoal.y);
-			final double tieBreaking = 0.01 * squareDistance(x, y, nodeGoal.x,
-					nodeGoal.y);
-
-			return heuristic + tieBreaking;
-		}
+		private void linkChild(final Pathfinder finder, final int node, final int child,
+				final int childX, final int childY) {
+			if (visited[child] != generation) {
+				if (!finder.isValid(childX, childY)) {
+					return;
+				}
+				touch(child, finder.getCost(childX, childY));
+			}
 
-		/**
-		 * Checks if the entity could stand on the position of this node.
-		 *
-		 * @return true if the the entity could stand on the position
-		 */
-		public boolean isValid() {
-			return isValid(x, y);
+			relax(node, child, g[node] + cost[child], finder.getHeuristic(childX, childY), true);
 		}
 
 		/**
-		 * Checks if the entity could stand on the given by the coordinates.
-		 * @param x coordinate of the position to be checked
-		 * @param y coordinate of the position to be checked
-		 *
-		 * @return true if the the entity could stand on the position
-		 */
-		public abstract boolean isValid(int x, int y);
-
-		/**
-		 * Create a new <code>TreeNode</code>.
-		 *
-		 * @param x x coordinate of the created node
-		 * @param y y coordinate of the created node
-		 * @return a <code>TreeNode</code>
-		 */
-		// A workaround for java lacking proper generics
-		public abstract TreeNode createNode(int x, int y);
-
-		/**
-		 * Creates valid child nodes.
-		 * <p>
-		 * The child nodes have to be
-		 * <ul>
-		 * <li> a valid position
-		 * <li> a f value less than maxDistance (checked against the given node)
-		 * </ul>
+		 * Make a node the parent of a child node, if that gives the child a
+		 * shorter path than the one known so far.
 		 *
+		 * @param node parent candidate
+		 * @param child child node
+		 * @param childG g-value of the child when reached through the node
+		 * @param heuristic estimated distance from the child to the goal
+		 * @param preferStraight if nodes that do not change the walking
+		 * 	direction should be preferred
 		 */
-		public void createChildren() {
-			if (g < maxDistance) {
-				linkChild(x - 1, y + 0);
-				linkChild(x + 1, y + 0);
-				linkChild(x + 0, y - 1);
-				linkChild(x + 0, y + 1);
+		private void relax(final int node, final int child, final double childG,
+				final double heuristic, final boolean preferStraight) {
+			if (visited[child] != generation) {
+				touch(child, 1.0);
 			}
-		}
-
-		/**
-		 * Links the children to this parent node  and may also update the
-		 * parent path, if a shorter path is found.
-		 * @param x1
-		 * @param y1
-		 */
-		private void linkChild(final int x1, final int y1) {
-			if (!isValid(x1, y1)) {
+			if (childG >= g[child]) {
 				return;
 			}
 
-			// search for original child node
-			TreeNode child = nodeRegistry.get(createNodeID(x1, y1));
-			if (child == null) {
-				// if not found original child node then create a new one
-				child = createNode(x1, y1);
-
-				addChild(child);
-
-				openList.offer(child);
-				child.setOpen(true);
+			g[child] = childG;
+			parent[child] = node;
+			double childWeight = childG + heuristic;
+			// Prefer nodes that do not result in direction change
+			final int grandParent = parent[node];
+			if (preferStraight && (grandParent >= 0) && (grandParent - node == node - child)) {
+				childWeight -= STRAIGHT_PATH_PREFERENCE_FACTOR;
+			}
+			weight[child] = childWeight;
 
-				nodeRegistry.put(child.nodeNumber, child);
+			if (heapIndex[child] == CLOSED) {
+				// new, or a closed node that got a better route
+				offer(child);
 			} else {
-				// note:
-				// - working on closed nodes is stopped but they may own a better
-				// parent
-				// so they will also be added to this node (parent)
-				if (child.g > (this.g + child.getCost())) {
-					updateChild(child);
-				}
-
-				// update parents for closed nodes only
-				if (!child.isOpen()) {
-					updateSubTree(child);
-				}
+				siftUp(heapIndex[child], child);
 			}
 		}
 
 		/**
-		 * Update the parents for the new route.
+		 * Add a node to the open list.
 		 *
-		 * @param node
-		 *            the root node.
+		 * @param node node
 		 */
-		private void updateSubTree(final TreeNode node) {
-			int c = node.numChildren;
-			final Stack<TreeNode> nodeStack = new Stack<TreeNode>();
-
-			nodeStack.push(node);
-
-			TreeNode parentTemp;
-			TreeNode child;
-			while (nodeStack.size() > 0) {
-				parentTemp = nodeStack.pop();
-				c = parentTemp.numChildren;
-				for (int i = 0; i < c; i++) {
-					child = parentTemp.children[i];
-
-					if (parentTemp.g + child.getCost() < child.g) {
-						parentTemp.updateChild(child);
-
-						nodeStack.push(child);
-					}
-				}
-			}
+		private void offer(final int node) {
+			siftUp(heapSize++, node);
 		}
 
 		/**
-		 * Calculates the node id.
-		 * @param x of the node
-		 * @param y of the node
+		 * Remove the best node from the open list.
 		 *
-		 * @return the id of the node
+		 * @return node with the lowest weight
 		 */
-		protected abstract int createNodeID(int x, int y);
-
-		public final boolean isOpen() {
-			return open;
-		}
-
-		public final void setOpen(final boolean open) {
-			this.open = open;
+		private int poll() {
+			final int result = heap[0];
+			heapIndex[result] = CLOSED;
+			heapSize--;
+			if (heapSize > 0) {
+				siftDown(0, heap[heapSize]);
+			}
+			return result;
 		}
 
-		@Override
-		public boolean equals(final Object obj) {
-			if (obj instanceof TreeNode) {
-				final TreeNode treeN = (TreeNode) obj;
-				return this.nodeNumber.intValue() == treeN.nodeNumber.intValue();
+		private void siftUp(int pos, final int node) {
+			final double w = weight[node];
+			while (pos > 0) {
+				final int parentPos = (pos - 1) >>> 1;
+				final int other = heap[parentPos];
+				if (w >= weight[other]) {
+					break;
+				}
+				heap[pos] = other;
+				heapIndex[other] = pos;
+				pos = parentPos;
 			}
-			return false;
+			heap[pos] = node;
+			heapIndex[node] = pos;
 		}
 
-		@Override
-		public int hashCode() {
-			return nodeNumber.hashCode();
+		private void siftDown(int pos, final int node) {
+			final double w = weight[node];
+			final int half = heapSize >>> 1;
+			while (pos < half) {
+				int childPos = (pos << 1) + 1;
+				int other = heap[childPos];
+				final int right = childPos + 1;
+				if ((right < heapSize) && (weight[other] > weight[heap[right]])) {
+					childPos = right;
+					other = heap[childPos];
+				}
+				if (w <= weight[other]) {
+					break;
+				}
+				heap[pos] = other;
+				heapIndex[other] = pos;
+				pos = childPos;
+			}
+			heap[pos] = node;
+			heapIndex[node] = pos;
 		}
 	}
 }
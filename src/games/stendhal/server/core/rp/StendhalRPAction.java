@@ -19,6 +19,7 @@ import java.awt.Shape;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.apache.log4j.Logger;
 
@@ -29,6 +30,7 @@ import games.stendhal.server.core.engine.DataProvider;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZoneLogicExecutor;
 import games.stendhal.server.core.engine.db.StendhalKillLogDAO;
 import games.stendhal.server.core.events.TutorialNotifier;
 import games.stendhal.server.core.events.ZoneNotifier;
@@ -620,11 +622,26 @@ public class StendhalRPAction {
 	 *     <code>true</code> if it was possible to place the entity, false otherwise.
 	 */
 	public static boolean placeat(final StendhalRPZone zone, final Entity entity,
-			int x, int y, final Shape allowedArea) {
+			final int x, final int y, final Shape allowedArea) {
 		if (zone == null) {
 			return false;
 		}
 
+		// Zone logic running in parallel may not touch other zones directly
+		return ZoneLogicExecutor.exclusive(new Supplier<Boolean>() {
+			@Override
+			public Boolean get() {
+				return Boolean.valueOf(placeatInZone(zone, entity, x, y, allowedArea));
+			}
+		}, zone, entity.getZone()).booleanValue();
+	}
+
+	/**
+	 * Places an entity immediately. See {@link #placeat(StendhalRPZone, Entity, int, int, Shape)}.
+	 */
+	private static boolean placeatInZone(final StendhalRPZone zone, final Entity entity,
+			int x, int y, final Shape allowedArea) {
+
 		Player player = null;
 		if (entity instanceof Player) {
 			player = (Player) entity;
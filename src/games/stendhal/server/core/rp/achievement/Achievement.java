@@ -12,6 +12,11 @@
  ***************************************************************************/
 package games.stendhal.server.core.rp.achievement;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import games.stendhal.server.entity.npc.ChatCondition;
 import games.stendhal.server.entity.player.Player;
 /**
@@ -46,6 +51,8 @@ public class Achievement {
 
 	private final ChatCondition condition;
 
+	/** quest slots read by the condition, <code>null</code> if unknown */
+	private final Set<String> questSlots;
 
 
 	/**
@@ -60,6 +67,23 @@ public class Achievement {
 	 * @param condition
 	 */
 	public Achievement(String identifier, String title, Category category, String description, int baseScore, boolean active, ChatCondition condition) {
+		this(identifier, title, category, description, baseScore, active, condition, (String[]) null);
+	}
+
+	/**
+	 * create a new achievement whose condition depends only on the given quest
+	 * slots and on player attributes or counters that are not quest slots
+	 *
+	 * @param identifier
+	 * @param title
+	 * @param category
+	 * @param description
+	 * @param baseScore
+	 * @param active
+	 * @param condition
+	 * @param questSlots all quest slots the condition reads, none if it does not read any
+	 */
+	public Achievement(String identifier, String title, Category category, String description, int baseScore, boolean active, ChatCondition condition, String... questSlots) {
 		this.identifier = identifier;
 		this.title = title;
 		this.category = category;
@@ -67,6 +91,11 @@ public class Achievement {
 		this.description = description;
 		this.baseScore = baseScore;
 		this.active = active;
+		if (questSlots == null) {
+			this.questSlots = null;
+		} else {
+			this.questSlots = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(questSlots)));
+		}
 	}
 
 	/**
@@ -111,6 +140,14 @@ public class Achievement {
 		return active;
 	}
 
+	/**
+	 * @return the quest slots the condition reads, or <code>null</code> if it is
+	 * 	not known which ones it reads
+	 */
+	public Set<String> getQuestSlots() {
+		return questSlots;
+	}
+
 	/**
 	 * Check if a player has fulfilled this achievement
 	 * @param p the player to check
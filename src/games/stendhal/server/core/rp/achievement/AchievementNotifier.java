@@ -13,12 +13,12 @@ package games.stendhal.server.core.rp.achievement;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
@@ -42,7 +42,11 @@ import marauroa.server.db.command.DBCommandQueue;
 import marauroa.server.game.db.DAORegister;
 
 /**
- * Checks for reached achievements and marks them as reached for a player if he has fulfilled them
+ * Checks for reached achievements and marks them as reached for a player if he has fulfilled them.
+ *
+ * <p>Achievements the player has already reached are not checked again. On a
+ * change of a quest slot only the achievements that read that slot, or that
+ * do not declare which slots they read, are checked.
  *
  * @author madmetzger
  */
@@ -57,6 +61,25 @@ public final class AchievementNotifier {
 
 	final private Map<String, Integer> identifiersToIds;
 
+	/** categories of the achievements that are checked on quest changes */
+	private static final Category[] QUEST_CATEGORIES = {
+		Category.QUEST, Category.QUEST_ADOS_ITEMS, Category.QUEST_SEMOS_MONSTER,
+		Category.QUEST_KIRDNEH_ITEM, Category.FRIEND, Category.OBTAIN, Category.PRODUCTION,
+		Category.QUEST_MITHRILBOURGH_ENEMY_ARMY, Category.QUEST_KILL_BLORDROUGHS
+	};
+
+	/** achievements by identifier */
+	final private Map<String, Achievement> achievementsByIdentifier;
+
+	/** achievements that are checked on login */
+	final private List<Achievement> loginAchievements;
+
+	/** achievements that are checked on quest changes, by the quest slot that changed */
+	final private Map<String, List<Achievement>> questSlotAchievements;
+
+	/** achievements that are checked on any quest change, as their quest slots are unknown */
+	final private List<Achievement> anyQuestAchievements;
+
 
 	/**
 	 * singleton accessor method
@@ -78,6 +101,10 @@ public final class AchievementNotifier {
 	private AchievementNotifier() {
 		achievements = new EnumMap<Category, List<Achievement>>(Category.class);
 		identifiersToIds = new HashMap<String, Integer>();
+		achievementsByIdentifier = new HashMap<String, Achievement>();
+		loginAchievements = new ArrayList<Achievement>();
+		questSlotAchievements = new HashMap<String, List<Achievement>>();
+		anyQuestAchievements = new ArrayList<Achievement>();
 	}
 
 	/**
@@ -92,7 +119,9 @@ public final class AchievementNotifier {
 				achievements.put(a.getCategory(), new LinkedList<Achievement>());
 			}
 			achievements.get(a.getCategory()).add(a);
+			achievementsByIdentifier.put(a.getIdentifier(), a);
 		}
+		indexAchievements();
 		//collect all identifiers from database
 		final Map<String, Integer> allIdentifiersInDatabase = collectAllIdentifiersFromDatabase();
 		//update stored data with configured achievements
@@ -130,6 +159,46 @@ public final class AchievementNotifier {
 		SingletonRepository.getLoginNotifier().addListener(new ReadAchievementsOnLogin());
 	}
 
+	/**
+	 * Creates the lists of achievements that are checked on login and on
+	 * quest changes.
+	 */
+	private void indexAchievements() {
+		//Avoid checking of zone achievements on login to
+		//prevent double check when player is initially placed into a zone
+		for (Map.Entry<Category, List<Achievement>> entry : achievements.entrySet()) {
+			if ((entry.getKey() != Category.OUTSIDE_ZONE) && (entry.getKey() != Category.UNDERGROUND_ZONE)) {
+				loginAchievements.addAll(entry.getValue());
+			}
+		}
+
+		// an achievement with unknown quest slots is checked on changes of any slot
+		final List<Achievement> questAchievements = new ArrayList<Achievement>();
+		for (Category category : QUEST_CATEGORIES) {
+			if (achievements.containsKey(category)) {
+				questAchievements.addAll(achievements.get(category));
+			}
+		}
+		for (Achievement achievement : questAchievements) {
+			if (achievement.getQuestSlots() != null) {
+				for (String questSlot : achievement.getQuestSlots()) {
+					questSlotAchievements.put(questSlot, new ArrayList<Achievement>());
+				}
+			}
+		}
+		for (Achievement achievement : questAchievements) {
+			final Set<String> questSlots = achievement.getQuestSlots();
+			if (questSlots == null) {
+				anyQuestAchievements.add(achievement);
+			}
+			for (Map.Entry<String, List<Achievement>> entry : questSlotAchievements.entrySet()) {
+				if ((questSlots == null) || questSlots.contains(entry.getKey())) {
+					entry.getValue().add(achievement);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Checks if the achievement list has already been populated.
 	 */
@@ -188,15 +257,24 @@ public final class AchievementNotifier {
 	 * @param player
 	 */
 	public void onFinishQuest(final Player player) {
-		getAndCheckAchievementsInCategory(player, Category.QUEST);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_ADOS_ITEMS);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_SEMOS_MONSTER);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_KIRDNEH_ITEM);
-		getAndCheckAchievementsInCategory(player, Category.FRIEND);
-		getAndCheckAchievementsInCategory(player, Category.OBTAIN);
-		getAndCheckAchievementsInCategory(player, Category.PRODUCTION);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_MITHRILBOURGH_ENEMY_ARMY);
-		getAndCheckAchievementsInCategory(player, Category.QUEST_KILL_BLORDROUGHS);
+		for (Category category : QUEST_CATEGORIES) {
+			getAndCheckAchievementsInCategory(player, category);
+		}
+	}
+
+	/**
+	 * check the achievements for a player that are relevant on a change of a
+	 * quest slot
+	 *
+	 * @param player
+	 * @param questSlot name of the changed quest slot
+	 */
+	public void onQuestChange(final Player player, final String questSlot) {
+		List<Achievement> toCheck = questSlotAchievements.get(questSlot);
+		if (toCheck == null) {
+			toCheck = anyQuestAchievements;
+		}
+		notifyPlayerAboutReachedAchievements(player, checkAchievements(player, toCheck));
 	}
 
 	/**
@@ -275,19 +353,11 @@ public final class AchievementNotifier {
 	 */
 	public void awardAchievementIfNotYetReached(final Player player, final String achievementIdentifier) {
 		if(!player.hasReachedAchievement(achievementIdentifier)) {
-			boolean found = false;
-			for(List<Achievement> achievementList : this.achievements.values()) {
-				if(!found) {
-					for(Achievement achievement : achievementList) {
-						if (achievement.getIdentifier().equals(achievementIdentifier)) {
-							logReachingOfAnAchievement(player, achievement);
-							notifyPlayerAboutReachedAchievement(player, achievement);
-							found = true;
-						}
-					}
-				}
-			}
-			if(!found) {
+			final Achievement achievement = achievementsByIdentifier.get(achievementIdentifier);
+			if (achievement != null) {
+				logReachingOfAnAchievement(player, achievement);
+				notifyPlayerAboutReachedAchievement(player, achievement);
+			} else {
 				logger.warn("Tried to award non existing achievement identifier "+achievementIdentifier+" to "+player.getName());
 			}
 		}
@@ -299,17 +369,7 @@ public final class AchievementNotifier {
 	 * @param player
 	 */
 	public void onLogin(final Player player) {
-		List<Achievement> toCheck = new ArrayList<Achievement>();
-		//Avoid checking of zone achievements on login to
-		//prevent double check when player is initially placed into a zone
-		final Map<Category,List<Achievement>> map = new HashMap<Category, List<Achievement>>(achievements);
-		map.remove(Category.OUTSIDE_ZONE);
-		map.remove(Category.UNDERGROUND_ZONE);
-		Collection<List<Achievement>> values = map.values();
-		for (List<Achievement> list : values) {
-			toCheck.addAll(list);
-		}
-		final List<Achievement> reached = checkAchievements(player, toCheck);
+		final List<Achievement> reached = checkAchievements(player, loginAchievements);
 		// only send notice if actually a new added achievement was reached by doing nothing
 		if(!reached.isEmpty()) {
 			StringBuilder sb = new StringBuilder();
@@ -336,7 +396,8 @@ public final class AchievementNotifier {
 
 	/**
 	 * Checks for each achievement if the player has reached it. in case of reaching
-	 * an achievement it starts logging and notifying about reaching.
+	 * an achievement it starts logging and notifying about reaching. Achievements
+	 * the player has reached before are skipped without evaluating their condition.
 	 *
 	 * @param player player to be checked
 	 * @param toCheck list of checked achievements
@@ -352,7 +413,7 @@ public final class AchievementNotifier {
 		}
 
 		for (Achievement achievement : toCheck) {
-			if(achievement.isFulfilled(player) && !player.hasReachedAchievement(achievement.getIdentifier())) {
+			if(!player.hasReachedAchievement(achievement.getIdentifier()) && achievement.isFulfilled(player)) {
 				logReachingOfAnAchievement(player, achievement);
 				if (achievement.isActive()) {
 					reached.add(achievement);
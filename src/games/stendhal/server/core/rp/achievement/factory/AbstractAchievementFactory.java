@@ -28,6 +28,9 @@ import games.stendhal.server.entity.npc.ChatCondition;
  */
 public abstract class AbstractAchievementFactory {
 
+	/** quest slots of achievements that do not depend on any quest */
+	protected static final String[] NO_QUEST_SLOTS = new String[0];
+
 	/**
 	 * @return the category the factory should use
 	 */
@@ -54,6 +57,23 @@ public abstract class AbstractAchievementFactory {
 		return new Achievement(identifier, title, getCategory(),  description, score, active, condition);
 	}
 
+	/**
+	 * Creates a single achievement that depends on known quest slots. It is
+	 * only checked on quest changes if one of these slots changes.
+	 *
+	 * @param identifier
+	 * @param title
+	 * @param description
+	 * @param score
+	 * @param active
+	 * @param condition
+	 * @param questSlots all quest slots the condition reads, none if it does not read any
+	 * @return the new Achievement
+	 */
+	protected Achievement createAchievement(String identifier, String title, String description, int score, boolean active, ChatCondition condition, String... questSlots) {
+		return new Achievement(identifier, title, getCategory(),  description, score, active, condition, questSlots);
+	}
+
 	/**
 	 * Create a list of all known achievement factories
 	 * @return the list of factories
@@ -46,31 +46,36 @@ public class AdosItemQuestAchievementsFactory extends AbstractAchievementFactory
 			ID_SUPPORTER, "Ados's Supporter",
 			"Finish daily item quest 10 times",
 			Achievement.EASY_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily_item", 2, 9)));
+			new QuestStateGreaterThanCondition("daily_item", 2, 9),
+			"daily_item"));
 
 		achievements.add(createAchievement(
 			ID_PROVIDER, "Ados's Provider",
 			"Finish daily item quest 50 times",
 			Achievement.EASY_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily_item", 2, 49)));
+			new QuestStateGreaterThanCondition("daily_item", 2, 49),
+			"daily_item"));
 
 		achievements.add(createAchievement(
 			ID_SUPPLIER, "Ados's Supplier",
 			"Finish daily item quest 100 times",
 			Achievement.MEDIUM_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily_item", 2, 99)));
+			new QuestStateGreaterThanCondition("daily_item", 2, 99),
+			"daily_item"));
 
 		achievements.add(createAchievement(
 			ID_STOCKPILER, "Ados's Stockpiler",
 			"Finish daily item quest 250 times",
 			Achievement.MEDIUM_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily_item", 2, 249)));
+			new QuestStateGreaterThanCondition("daily_item", 2, 249),
+			"daily_item"));
 
 		achievements.add(createAchievement(
 			ID_HOARDER, "Ados's Hoarder",
 			"Finish daily item quest 500 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily_item", 2, 499)));
+			new QuestStateGreaterThanCondition("daily_item", 2, 499),
+			"daily_item"));
 
 		return achievements;
 	}
@@ -89,7 +89,10 @@ public class FriendAchievementFactory extends AbstractAchievementFactory {
 				new AndCondition(
 						new QuestActiveCondition("eggs_for_marianne"),
 						new QuestNotInStateCondition("eggs_for_marianne", "start"))
-				)));
+				),
+			"susi", "introduce_players", "plinks_toy", "toys_collector", "campfire", "icecream_for_annie",
+			"chocolate_for_elisabeth", "find_jefs_mom", "fishsoup_for_hughie", "coded_message",
+			"eggs_for_marianne"));
 
 		// quests about finding people
 		achievements.add(createAchievement(
@@ -118,7 +121,8 @@ public class FriendAchievementFactory extends AbstractAchievementFactory {
 				new QuestCompletedCondition("find_jefs_mom"),
 				// Elias Breland, Deniran
 				new QuestCompletedCondition(AGrandfathersWish.QUEST_SLOT)
-			)));
+			),
+			"find_rat_kids", "find_ghosts", "seven_cherubs", "find_jefs_mom", AGrandfathersWish.QUEST_SLOT));
 
 		// earn over 250 karma
 		achievements.add(createAchievement(
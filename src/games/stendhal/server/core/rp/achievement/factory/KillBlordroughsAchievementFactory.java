@@ -41,6 +41,10 @@ public class KillBlordroughsAchievementFactory extends AbstractAchievementFactor
 	public static final String ID_DICTATOR = "quest.special.kill_blordroughs.0100";
 
 
+	/** the quest slot of the Kill Blordroughs quest */
+	private static final String QUEST_SLOT = "kill_blordroughs";
+
+
 	@Override
 	protected Category getCategory() {
 		return Category.QUEST_KILL_BLORDROUGHS;
@@ -54,25 +58,29 @@ public class KillBlordroughsAchievementFactory extends AbstractAchievementFactor
 			ID_LACKEY, "Imperialist Lackey",
 			"Finish Kill Blordroughs quest 5 times",
 			Achievement.MEDIUM_BASE_SCORE, true,
-			new CompletedCountCondition(COUNT_LACKEY)));
+			new CompletedCountCondition(COUNT_LACKEY),
+			QUEST_SLOT));
 
 		achievements.add(createAchievement(
 			ID_SOLDIER, "Imperialist Soldier",
 			"Finish Kill Blordroughs quest 25 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new CompletedCountCondition(COUNT_SOLDIER)));
+			new CompletedCountCondition(COUNT_SOLDIER),
+			QUEST_SLOT));
 
 		achievements.add(createAchievement(
 			ID_DOMINATOR, "Imperialist Dominator",
 			"Finish Kill Blordroughs quest 50 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new CompletedCountCondition(COUNT_DOMINATOR)));
+			new CompletedCountCondition(COUNT_DOMINATOR),
+			QUEST_SLOT));
 
 		achievements.add(createAchievement(
 			ID_DICTATOR, "Imperialist Dictator",
 			"Finish Kill Blordroughs quest 100 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new CompletedCountCondition(COUNT_DICTATOR)));
+			new CompletedCountCondition(COUNT_DICTATOR),
+			QUEST_SLOT));
 
 		return achievements;
 	}
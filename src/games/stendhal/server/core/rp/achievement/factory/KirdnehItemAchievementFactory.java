@@ -40,25 +40,29 @@ public class KirdnehItemAchievementFactory extends AbstractAchievementFactory {
 			ID_ARCHAEOLOGIST, "Archaeologist",
 			"Finish weekly item quest 5 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("weekly_item", 2, 4)));
+			new QuestStateGreaterThanCondition("weekly_item", 2, 4),
+			"weekly_item"));
 
 		achievements.add(createAchievement(
 			ID_DEDICATED, "Dedicated Archaeologist",
 			"Finish weekly item quest 25 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("weekly_item", 2, 24)));
+			new QuestStateGreaterThanCondition("weekly_item", 2, 24),
+			"weekly_item"));
 
 		achievements.add(createAchievement(
 			ID_SENIOR, "Senior Archaeologist",
 			"Finish weekly item quest 50 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("weekly_item", 2, 49)));
+			new QuestStateGreaterThanCondition("weekly_item", 2, 49),
+			"weekly_item"));
 
 		achievements.add(createAchievement(
 			ID_MASTER, "Master Archaeologist",
 			"Finish weekly item quest 100 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("weekly_item", 2, 99)));
+			new QuestStateGreaterThanCondition("weekly_item", 2, 99),
+			"weekly_item"));
 
 		return achievements;
 	}
@@ -40,25 +40,29 @@ public class MithrilbourghEnemyArmyAchievementFactory extends AbstractAchievemen
 			"quest.special.kill_enemy_army.0005", "Sergeant",
 			"Finish Kill Enemy Army quest 5 times",
 			Achievement.MEDIUM_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 4)));
+			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 4),
+			"kill_enemy_army"));
 
 		achievements.add(createAchievement(
 			"quest.special.kill_enemy_army.0025", "Major",
 			"Finish Kill Enemy Army quest 25 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 24)));
+			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 24),
+			"kill_enemy_army"));
 
 		achievements.add(createAchievement(
 			"quest.special.kill_enemy_army.0050", "Major General",
 			"Finish Kill Enemy Army quest 50 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 49)));
+			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 49),
+			"kill_enemy_army"));
 
 		achievements.add(createAchievement(
 			"quest.special.kill_enemy_army.0100", "Field Marshal",
 			"Finish Kill Enemy Army quest 100 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 99)));
+			new QuestStateGreaterThanCondition("kill_enemy_army", IDX, 99),
+			"kill_enemy_army"));
 
 		return achievements;
 	}
@@ -49,7 +49,8 @@ public class ObtainAchievementsFactory extends AbstractAchievementFactory {
 			"obtain.wish", "A Wish Came True",
 			"Get an item from the wishing well",
 			Achievement.EASY_BASE_SCORE, true,
-			new PlayerGotNumberOfItemsFromWellCondition(0)));
+			new PlayerGotNumberOfItemsFromWellCondition(0),
+			NO_QUEST_SLOTS));
 
 		// Vegetable harvest achievement
 		achievements.add(createAchievement(
@@ -58,7 +59,8 @@ public class ObtainAchievementsFactory extends AbstractAchievementFactory {
 			Achievement.EASY_BASE_SCORE, true,
 			new PlayerHasHarvestedNumberOfItemsCondition(3,
 				"carrot", "salad", "broccoli", "cauliflower", "leek",
-				"onion", "courgette", "spinach", "collard", "garlic", "artichoke")));
+				"onion", "courgette", "spinach", "collard", "garlic", "artichoke"),
+			NO_QUEST_SLOTS));
 
 		// fruit harvest achievement
 		achievements.add(createAchievement(
@@ -67,7 +69,8 @@ public class ObtainAchievementsFactory extends AbstractAchievementFactory {
 			Achievement.EASY_BASE_SCORE, true,
 			new PlayerHasHarvestedNumberOfItemsCondition(3,
 				"apple", "banana", "cherry", "coconut", "grapes", "olive", "pear",
-				"pineapple", "pomegranate", "tomato", "watermelon")));
+				"pineapple", "pomegranate", "tomato", "watermelon"),
+			NO_QUEST_SLOTS));
 
 		// Fishing achievement
 		achievements.add(createAchievement(
@@ -76,14 +79,16 @@ public class ObtainAchievementsFactory extends AbstractAchievementFactory {
 			Achievement.MEDIUM_BASE_SCORE, true,
 			new PlayerHasHarvestedNumberOfItemsCondition(15,
 				"char", "clownfish", "cod", "mackerel", "perch",
-				"red lionfish", "roach", "surgeonfish", "trout")));
+				"red lionfish", "roach", "surgeonfish", "trout"),
+			NO_QUEST_SLOTS));
 
 		// ultimate collector quest achievement
 		achievements.add(createAchievement(
 			"quest.special.collector", "Ultimate Collector",
 			"Finish ultimate collector quest",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestCompletedCondition("ultimate_collector")));
+			new QuestCompletedCondition("ultimate_collector"),
+			"ultimate_collector"));
 
 		// flower harvest
 		achievements.add(createAchievement(
@@ -91,7 +96,8 @@ public class ObtainAchievementsFactory extends AbstractAchievementFactory {
 			"Harvest 20 of each type of growable flower",
 			Achievement.EASY_BASE_SCORE, true,
 			new PlayerHasHarvestedNumberOfItemsCondition(20,
-				"daisies", "lilia", "pansy", "zantedeschia")));
+				"daisies", "lilia", "pansy", "zantedeschia"),
+			NO_QUEST_SLOTS));
 
 		// herb harvest
 		achievements.add(createAchievement(
@@ -99,7 +105,8 @@ public class ObtainAchievementsFactory extends AbstractAchievementFactory {
 			"Harvest 20 of each type of herb found growing in Faiumoni",
 			Achievement.EASY_BASE_SCORE, true,
 			new PlayerHasHarvestedNumberOfItemsCondition(20,
-				"arandula", "kekik", "mandragora", "sclaria")));
+				"arandula", "kekik", "mandragora", "sclaria"),
+			NO_QUEST_SLOTS));
 
 		// loot or harvest apples
 		achievements.add(createAchievement(
@@ -114,7 +121,8 @@ public class ObtainAchievementsFactory extends AbstractAchievementFactory {
 
 						return harvested + looted >= 1000;
 					}
-				}));
+				},
+				NO_QUEST_SLOTS));
 
 		return achievements;
 	}
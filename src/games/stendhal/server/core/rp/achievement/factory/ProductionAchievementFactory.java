@@ -59,7 +59,8 @@ public class ProductionAchievementFactory extends AbstractAchievementFactory {
 			Achievement.MEDIUM_BASE_SCORE, true,
 			new AndCondition(
 				new PlayerProducedNumberOfItemsCondition(1, foods),
-				new QuestStateStartsWithCondition("coal_for_haunchy","waiting;"))));
+				new QuestStateStartsWithCondition("coal_for_haunchy","waiting;")),
+			"coal_for_haunchy"));
 
 
 	    final List<String> drinklist = producerRegister.getProducedItemNames("drink");
@@ -76,7 +77,8 @@ public class ProductionAchievementFactory extends AbstractAchievementFactory {
 				new PlayerProducedNumberOfItemsCondition(1, drinks),
 				new QuestCompletedCondition("soup_maker"),
 				new QuestCompletedCondition("fishsoup_maker"),
-				new QuestCompletedCondition("koboldish_torcibud"))));
+				new QuestCompletedCondition("koboldish_torcibud")),
+			"soup_maker", "fishsoup_maker", "koboldish_torcibud"));
 
 
 	    final List<String> resourcelist = producerRegister.getProducedItemNames("resource");
@@ -87,13 +89,15 @@ public class ProductionAchievementFactory extends AbstractAchievementFactory {
 			"production.class.resource", "Alchemist",
 			"Produce 5 of each kind of precious metal and resource",
 			Achievement.HARD_BASE_SCORE, true,
-			new PlayerProducedNumberOfItemsCondition(5, resources)));
+			new PlayerProducedNumberOfItemsCondition(5, resources),
+			NO_QUEST_SLOTS));
 
 		achievements.add(createAchievement(
 			"production.flour.1000", "Jenny's Assistant",
 			"Produce 1000 flour",
 			Achievement.EASY_BASE_SCORE, true,
-			new PlayerProducedNumberOfItemsCondition(1000, "flour")));
+			new PlayerProducedNumberOfItemsCondition(1000, "flour"),
+			NO_QUEST_SLOTS));
 
 		return achievements;
 	}
@@ -47,31 +47,36 @@ public class SemosMonsterQuestAchievementFactory extends AbstractAchievementFact
 			ID_PROTECTOR, "Semos's Protector",
 			"Finish daily monster quest 10 times",
 			Achievement.EASY_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily", 2, 9)));
+			new QuestStateGreaterThanCondition("daily", 2, 9),
+			"daily"));
 
 		achievements.add(createAchievement(
 			ID_GUARDIAN, "Semos's Guardian",
 			"Finish daily monster quest 50 times",
 			Achievement.EASY_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily", 2, 49)));
+			new QuestStateGreaterThanCondition("daily", 2, 49),
+			"daily"));
 
 		achievements.add(createAchievement(
 			ID_HERO, "Semos's Hero",
 			"Finish daily monster quest 100 times",
 			Achievement.MEDIUM_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily", 2, 99)));
+			new QuestStateGreaterThanCondition("daily", 2, 99),
+			"daily"));
 
 		achievements.add(createAchievement(
 			ID_CHAMPION, "Semos's Champion",
 			"Finish daily monster quest 250 times",
 			Achievement.MEDIUM_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily", 2, 249)));
+			new QuestStateGreaterThanCondition("daily", 2, 249),
+			"daily"));
 
 		achievements.add(createAchievement(
 			ID_VANQUISHER, "Semos's Vanquisher",
 			"Finish daily monster quest 500 times",
 			Achievement.HARD_BASE_SCORE, true,
-			new QuestStateGreaterThanCondition("daily", 2, 499)));
+			new QuestStateGreaterThanCondition("daily", 2, 499),
+			"daily"));
 
 		return achievements;
 	}
@@ -184,10 +184,6 @@ public abstract class Entity extends RPObject implements Killer {
 			}
 		}
 
-		if (moved && (zone != null)) {
-			onMoved(oldX, oldY, x, y);
-		}
-
 		if (has("height")) {
 			area.height = getInt("height");
 		}
@@ -196,6 +192,14 @@ public abstract class Entity extends RPObject implements Killer {
 			area.width = getInt("width");
 		}
 
+		if (zone != null) {
+			// the zone index needs the complete area, and is used by onMoved()
+			zone.notifyAreaChanged(this);
+			if (moved) {
+				onMoved(oldX, oldY, x, y);
+			}
+		}
+
 		if (has("resistance")) {
 			resistance = getInt("resistance");
 		}
@@ -657,6 +661,7 @@ public abstract class Entity extends RPObject implements Killer {
 		}
 
 		if (moved && (zone != null)) {
+			zone.notifyAreaChanged(this);
 			onMoved(oldX, oldY, x, y);
 		}
 	}
@@ -694,6 +699,10 @@ public abstract class Entity extends RPObject implements Killer {
 
 		this.area.height = height;
 		put("height", height);
+
+		if (zone != null) {
+			zone.notifyAreaChanged(this);
+		}
 	}
 
 	/**
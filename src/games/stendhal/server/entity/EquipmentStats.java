@@ -0,0 +1,58 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity;
+
+import java.util.List;
+
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.StackableItem;
+
+/**
+ * Summary of the combat values of the items an entity has equipped. The
+ * entity drops the summary when objects are added to or removed from its
+ * slots, when items in them change, or when its level changes, and
+ * calculates a new one when it is needed next.
+ */
+final class EquipmentStats {
+	/** Usable weapons. Not modifiable. */
+	final List<Item> weapons;
+	/** Equipped ammunition, or <code>null</code>. */
+	final StackableItem ammunition;
+	/** Summed attack value of the items. */
+	final float atk;
+	/** Summed ranged attack value of the items. */
+	final float ratk;
+	/** Summed defense value of the items, with the level modifiers applied. */
+	final float def;
+	/** Level modifier of the first weapon, or 1 when there are no weapons. */
+	final double weaponLevelModifier;
+
+	/**
+	 * Create a new EquipmentStats.
+	 *
+	 * @param weapons usable weapons
+	 * @param ammunition equipped ammunition, or <code>null</code>
+	 * @param atk summed attack value
+	 * @param ratk summed ranged attack value
+	 * @param def summed defense value
+	 * @param weaponLevelModifier level modifier of the first weapon
+	 */
+	EquipmentStats(List<Item> weapons, StackableItem ammunition, float atk, float ratk,
+			float def, double weaponLevelModifier) {
+		this.weapons = weapons;
+		this.ammunition = ammunition;
+		this.atk = atk;
+		this.ratk = ratk;
+		this.def = def;
+		this.weaponLevelModifier = weaponLevelModifier;
+	}
+}
@@ -0,0 +1,160 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import games.stendhal.server.entity.item.Item;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+
+/**
+ * The items in the slots of an entity by their name, including the items
+ * inside container items. Each item is marked as carried or not, depending on
+ * whether it is in one of the carrying slots or elsewhere, such as the bank.
+ * Quantities are read from the items when asked, so stack size changes do not
+ * need to be reported to the index.
+ */
+final class ItemNameIndex {
+	/** Items by lower case name. */
+	private final Map<String, List<Entry>> items = new HashMap<>();
+
+	/**
+	 * Add an object and the items inside it.
+	 *
+	 * @param object added object. Objects that are not items are ignored
+	 * @param carried <code>true</code> if the object is in a carrying slot
+	 */
+	void add(RPObject object, boolean carried) {
+		if (!(object instanceof Item)) {
+			return;
+		}
+		Item item = (Item) object;
+		String key = key(item.getName());
+		List<Entry> list = items.get(key);
+		if (list == null) {
+			list = new ArrayList<>(2);
+			items.put(key, list);
+		}
+		list.add(new Entry(item, carried));
+		for (RPSlot slot : item.slots()) {
+			for (RPObject content : slot) {
+				add(content, carried);
+			}
+		}
+	}
+
+	/**
+	 * Remove an object and the items inside it.
+	 *
+	 * @param object removed object
+	 */
+	void remove(RPObject object) {
+		if (!(object instanceof Item)) {
+			return;
+		}
+		Item item = (Item) object;
+		String key = key(item.getName());
+		List<Entry> list = items.get(key);
+		if (list != null) {
+			for (int i = 0; i < list.size(); i++) {
+				if (list.get(i).item == item) {
+					list.remove(i);
+					break;
+				}
+			}
+			if (list.isEmpty()) {
+				items.remove(key);
+			}
+		}
+		for (RPSlot slot : item.slots()) {
+			for (RPObject content : slot) {
+				remove(content);
+			}
+		}
+	}
+
+	/**
+	 * Get the total quantity of items with a name.
+	 *
+	 * @param name item name, in any case
+	 * @param carriedOnly <code>true</code> if only the carried items should
+	 * 	be counted
+	 * @return summed quantity
+	 */
+	int count(String name, boolean carriedOnly) {
+		List<Entry> list = (name != null) ? items.get(key(name)) : null;
+		if (list == null) {
+			return 0;
+		}
+		int count = 0;
+		for (Entry entry : list) {
+			if (entry.carried || !carriedOnly) {
+				count += entry.item.getQuantity();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Get the items with a name.
+	 *
+	 * @param name item name, in any case
+	 * @param carriedOnly <code>true</code> if only the carried items should
+	 * 	be returned
+	 * @return matching items, in no particular order
+	 */
+	List<Item> get(String name, boolean carriedOnly) {
+		List<Entry> list = (name != null) ? items.get(key(name)) : null;
+		if (list == null) {
+			return new ArrayList<>(0);
+		}
+		List<Item> result = new ArrayList<>(list.size());
+		for (Entry entry : list) {
+			if (entry.carried || !carriedOnly) {
+				result.add(entry.item);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the map key of an item name.
+	 *
+	 * @param name item name, or <code>null</code>
+	 * @return key, or <code>null</code> if the name is <code>null</code>.
+	 * 	Items without a name are never found by name
+	 */
+	private static String key(String name) {
+		if (name == null) {
+			return null;
+		}
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * An indexed item.
+	 */
+	private static final class Entry {
+		final Item item;
+		final boolean carried;
+
+		Entry(Item item, boolean carried) {
+			this.item = item;
+			this.carried = carried;
+		}
+	}
+}
@@ -122,6 +122,14 @@ public abstract class RPEntity extends CombatEntity {
 	/** the enemy that is currently attacked by this entity. */
 	private RPEntity attackTarget;
 
+	/**
+	 * Summary of the equipped items. <code>null</code> when not calculated,
+	 * or when the equipment or the level have changed since.
+	 */
+	private EquipmentStats equipmentStats;
+	/** Items in the slots by name. <code>null</code> when not built. */
+	private ItemNameIndex itemIndex;
+
 	/**
 	 * Maps each attacker to the sum of hitpoint loss it has caused to this
 	 * RPEntity.
@@ -489,6 +497,7 @@ public abstract class RPEntity extends CombatEntity {
 		}
 		if (has("level")) {
 			level = getInt("level");
+			equipmentStats = null;
 		}
 		if (has("xp")) {
 			xp = getInt("xp");
@@ -729,6 +738,8 @@ public abstract class RPEntity extends CombatEntity {
 	public void setLevel(final int level) {
 		this.level = level;
 		put("level", level);
+		// the level modifiers of the items depend on the level
+		equipmentStats = null;
 		this.updateModifiedAttributes();
 	}
 
@@ -2140,7 +2151,10 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * @return true iff dropping the desired amount was successful.
 	 */
 	public boolean drop(final String name, final int amount) {
-		return drop(nameMatches(name), amount);
+		if (!isEquipped(name, amount)) {
+			return false;
+		}
+		return dropEquipped(nameMatches(name), amount);
 	}
 
 	private boolean isEquipped(Predicate<Item> condition, int amount) {
@@ -2159,7 +2173,17 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		if (!isEquipped(condition, amount)) {
 			return false;
 		}
+		return dropEquipped(condition, amount);
+	}
 
+	/**
+	 * Drop items that are known to be carried in sufficient amount.
+	 *
+	 * @param condition condition of the dropped items
+	 * @param amount amount to drop
+	 * @return <code>true</code> if the full amount was dropped
+	 */
+	private boolean dropEquipped(Predicate<Item> condition, int amount) {
 		int toDrop = amount;
 		Iterable<Item> matchingItems = equippedStream().filter(condition)::iterator;
 		for (Item item : matchingItems) {
@@ -2279,7 +2303,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 *         number.
 	 */
 	public boolean isEquipped(final String name, final int amount) {
-		return isEquipped(nameMatches(name), amount);
+		return getItemIndex().count(name, true) >= amount;
 	}
 
 	/**
@@ -2307,7 +2331,13 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * 		<code>true</code> if entity is carrying at least specified amount of items matching name & infostring.
 	 */
 	public boolean isEquippedWithInfostring(final String name, final String infostring, final int amount) {
-		return getAllEquippedWithInfostring(name, infostring).size() >= amount;
+		int count = 0;
+		for (final Item item : getItemIndex().get(name, true)) {
+			if (name.equals(item.getName()) && infostring.equalsIgnoreCase(item.getInfoString())) {
+				count++;
+			}
+		}
+		return count >= amount;
 	}
 
 	/**
@@ -2333,8 +2363,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * @return The number of carried items
 	 */
 	public int getNumberOfEquipped(final String name) {
-		return equippedStream().filter(nameMatches(name))
-				.mapToInt(Item::getQuantity).sum();
+		return getItemIndex().count(name, true);
 	}
 
 	/**
@@ -2346,8 +2375,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * @return The number of carried items
 	 */
 	public int getTotalNumberOf(final String name) {
-		Stream<Item> allItems = slots().stream().flatMap(this::slotStream);
-		return allItems.filter(nameMatches(name)).mapToInt(Item::getQuantity).sum();
+		return getItemIndex().count(name, false);
 	}
 
 	/**
@@ -2360,6 +2388,11 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 *         found
 	 */
 	public Item getFirstEquipped(final String name) {
+		final List<Item> items = getItemIndex().get(name, true);
+		if (items.size() < 2) {
+			return items.isEmpty() ? null : items.get(0);
+		}
+		// find the first one in the slot order
 		return equippedStream().filter(nameMatches(name)).findFirst().orElse(null);
 	}
 
@@ -2373,6 +2406,11 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 *         found
 	 */
 	public List<Item> getAllEquipped(final String name) {
+		final List<Item> items = getItemIndex().get(name, true);
+		if (items.size() < 2) {
+			return items;
+		}
+		// in the slot order
 		return getAllEquipped(nameMatches(name));
 	}
 
@@ -2493,7 +2531,22 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		return null;
 	}
 
+	/**
+	 * Gets the weapons that this entity can use.
+	 *
+	 * @return the usable weapons. The list is a copy that the caller may
+	 * 	modify
+	 */
 	public List<Item> getWeapons() {
+		return new ArrayList<>(getEquipmentStats().weapons);
+	}
+
+	/**
+	 * Finds the weapons that this entity can use by looking at the hand slots.
+	 *
+	 * @return usable weapons
+	 */
+	private List<Item> findWeapons() {
 		final List<Item> weapons = new ArrayList<>();
 		Item weaponItem = getWeapon();
 		if (weaponItem != null) {
@@ -2534,7 +2587,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 *         one in its left hand.
 	 */
 	public Item getRangeWeapon() {
-		for (final Item weapon : getWeapons()) {
+		for (final Item weapon : getEquipmentStats().weapons) {
 			if (weapon.isOfClass("ranged")) {
 				return weapon;
 			}
@@ -2552,6 +2605,15 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 *         in its left hand.
 	 */
 	public StackableItem getAmmunition() {
+		return getEquipmentStats().ammunition;
+	}
+
+	/**
+	 * Finds the ammunition by looking at the hand slots.
+	 *
+	 * @return ammunition, or null
+	 */
+	private StackableItem findAmmunition() {
 		final String[] slots = { "lhand", "rhand" };
 
 		for (final String slot : slots) {
@@ -2583,7 +2645,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		StackableItem missileWeaponItem = null;
 		boolean holdsOtherWeapon = false;
 
-		for (final Item weaponItem : getWeapons()) {
+		for (final Item weaponItem : getEquipmentStats().weapons) {
 			if (weaponItem.isOfClass("missile")) {
 				missileWeaponItem = (StackableItem) weaponItem;
 			} else {
@@ -2714,18 +2776,68 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * Retrieves total ATK value of held weapons.
 	 */
 	public float getItemAtk() {
+		return getEquipmentStats().atk;
+	}
+
+	/**
+	 * Retrieves total range attack value of held weapon & ammunition.
+	 */
+	public float getItemRatk() {
+		return getEquipmentStats().ratk;
+	}
+
+	public float getItemDef() {
+		return getEquipmentStats().def;
+	}
+
+	/**
+	 * Get the summary of the equipped items, calculating it if the equipment
+	 * or the level has changed since the last time.
+	 *
+	 * @return equipment summary
+	 */
+	private EquipmentStats getEquipmentStats() {
+		EquipmentStats summary = equipmentStats;
+		if (summary == null) {
+			summary = calculateEquipmentStats();
+			equipmentStats = summary;
+		}
+		return summary;
+	}
+
+	/**
+	 * Calculate the summary of the equipped items.
+	 *
+	 * @return equipment summary
+	 */
+	private EquipmentStats calculateEquipmentStats() {
+		final List<Item> weapons = findWeapons();
+		final StackableItem ammunition = findAmmunition();
+		return new EquipmentStats(Collections.unmodifiableList(weapons), ammunition,
+				calculateItemAtk(weapons, ammunition), calculateItemRatk(weapons, ammunition),
+				calculateItemDef(weapons),
+				weapons.isEmpty() ? 1.0 : getItemLevelModifier(weapons.get(0)));
+	}
+
+	/**
+	 * Calculates total ATK value of held weapons.
+	 *
+	 * @param weapons usable weapons
+	 * @param ammunition equipped ammunition, or <code>null</code>
+	 * @return ATK value
+	 */
+	private float calculateItemAtk(final List<Item> weapons, final StackableItem ammunition) {
 		int weapon = 0;
 		int ring = 0;
 
-		final List<Item> weapons = getWeapons();
 		for (final Item weaponItem : weapons) {
 			weapon += weaponItem.getAttack();
 		}
 
 		// calculate ammo when not using RATK stat
 		if (!Testing.COMBAT && weapons.size() > 0) {
-			if (getWeapons().get(0).isOfClass("ranged")) {
-				weapon += getAmmoAtk();
+			if (weapons.get(0).isOfClass("ranged")) {
+				weapon += getAmmoAtk(ammunition);
 			}
 		}
 
@@ -2737,18 +2849,21 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	}
 
 	/**
-	 * Retrieves total range attack value of held weapon & ammunition.
+	 * Calculates total range attack value of held weapon & ammunition.
+	 *
+	 * @param weapons usable weapons
+	 * @param ammunition equipped ammunition, or <code>null</code>
+	 * @return RATK value
 	 */
-	public float getItemRatk() {
+	private float calculateItemRatk(final List<Item> weapons, final StackableItem ammunition) {
 		float ratk = 0;
-		final List<Item> weapons = getWeapons();
 
 		if (weapons.size() > 0) {
-			final Item held = getWeapons().get(0);
+			final Item held = weapons.get(0);
 			ratk += held.getRangedAttack();
 
 			if (held.isOfClass("ranged")) {
-				ratk += getAmmoAtk();
+				ratk += getAmmoAtk(ammunition);
 			}
 		}
 
@@ -2757,11 +2872,12 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 
 	/**
 	 * Retrieves ATK or RATK (depending on testing.combat system property) value of equipped ammunition.
+	 *
+	 * @param ammoItem equipped ammunition, or <code>null</code>
 	 */
-	private float getAmmoAtk() {
+	private float getAmmoAtk(final StackableItem ammoItem) {
 		float ammo = 0;
 
-		final StackableItem ammoItem = getAmmunition();
 		if (ammoItem != null) {
 			if (Testing.COMBAT) {
 				ammo = ammoItem.getRangedAttack();
@@ -2773,7 +2889,13 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		return ammo;
 	}
 
-	public float getItemDef() {
+	/**
+	 * Calculates total DEF value of the equipped items.
+	 *
+	 * @param targetWeapons usable weapons
+	 * @return DEF value
+	 */
+	private float calculateItemDef(final List<Item> targetWeapons) {
 		int shield = 0;
 		int armor = 0;
 		int helmet = 0;
@@ -2783,44 +2905,41 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		int weapon = 0;
 		int ring = 0;
 
-		Item item;
-
-		if (hasShield()) {
-			item = getShield();
+		Item item = getShield();
+		if (item != null) {
 			shield = (int) (item.getDefense() / getItemLevelModifier(item));
 		}
 
-		if (hasArmor()) {
-			item = getArmor();
+		item = getArmor();
+		if (item != null) {
 			armor = (int) (item.getDefense() / getItemLevelModifier(item));
 		}
 
-		if (hasHelmet()) {
-			item = getHelmet();
+		item = getHelmet();
+		if (item != null) {
 			helmet = (int) (item.getDefense() / getItemLevelModifier(item));
 		}
 
-		if (hasLegs()) {
-			item = getLegs();
+		item = getLegs();
+		if (item != null) {
 			legs = (int) (item.getDefense() / getItemLevelModifier(item));
 		}
 
-		if (hasBoots()) {
-			item = getBoots();
+		item = getBoots();
+		if (item != null) {
 			boots = (int) (item.getDefense() / getItemLevelModifier(item));
 		}
 
-		if (hasCloak()) {
-			item = getCloak();
+		item = getCloak();
+		if (item != null) {
 			cloak = (int) (item.getDefense() / getItemLevelModifier(item));
 		}
 
-		if (hasRing()) {
-			item = getRing();
+		item = getRing();
+		if (item != null) {
 			ring = (int) (item.getDefense() / getItemLevelModifier(item));
 		}
 
-		final List<Item> targetWeapons = getWeapons();
 		for (final Item weaponItem : targetWeapons) {
 			weapon += weaponItem.getDefense() / getItemLevelModifier(weaponItem);
 		}
@@ -2864,6 +2983,8 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * Recalculates item based atk and def.
 	 */
 	public void updateItemAtkDef() {
+		// the items themselves may have changed, even if the slots have not
+		equipmentStats = null;
 		put("atk_item", ((int) getItemAtk()));
 		if (Testing.COMBAT) {
 			put("ratk_item", ((int) getItemRatk()));
@@ -3073,7 +3194,8 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 
 		boolean meleeDistance = isAttacking() && nextTo(getAttackTarget());
 
-		final List<Item> weapons = getWeapons();
+		final EquipmentStats equipment = getEquipmentStats();
+		final List<Item> weapons = equipment.weapons;
 
 		if (weapons.isEmpty()) {
 			return Item.getDefaultAttackRate();
@@ -3087,7 +3209,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		}
 
 		// Level effect
-		best = (int) Math.ceil(best * getItemLevelModifier(weapons.get(0)));
+		best = (int) Math.ceil(best * equipment.weaponLevelModifier);
 
 		return best;
 	}
@@ -3435,6 +3557,79 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		return slots.flatMap(this::slotStream);
 	}
 
+	/**
+	 * Get the index of the items in the slots, building it if needed.
+	 *
+	 * @return item index
+	 */
+	private ItemNameIndex getItemIndex() {
+		if (itemIndex == null) {
+			final ItemNameIndex index = new ItemNameIndex();
+			for (final RPSlot slot : slots()) {
+				final boolean carried = Slots.CARRYING.getNames().contains(slot.getName());
+				for (final RPObject object : slot) {
+					index.add(object, carried);
+				}
+			}
+			itemIndex = index;
+		}
+		return itemIndex;
+	}
+
+	/**
+	 * Called by the item slots when an object has been added to a slot of
+	 * the entity, or to a slot of an item it has.
+	 *
+	 * @param slot the slot of the entity the object is in, either directly
+	 * 	or inside other items
+	 * @param object added object
+	 */
+	public void onSlotObjectAdded(final RPSlot slot, final RPObject object) {
+		equipmentStats = null;
+		if (itemIndex != null) {
+			itemIndex.add(object, Slots.CARRYING.getNames().contains(slot.getName()));
+		}
+	}
+
+	/**
+	 * Called by the item slots when an object has been removed from a slot
+	 * of the entity, or from a slot of an item it has.
+	 *
+	 * @param object removed object
+	 */
+	public void onSlotObjectRemoved(final RPObject object) {
+		equipmentStats = null;
+		if (itemIndex != null) {
+			itemIndex.remove(object);
+		}
+	}
+
+	/**
+	 * Called by items in the slots of the entity, or in the slots of items it
+	 * has, when they change in place, such as when stacks are merged or
+	 * split.
+	 *
+	 * @param object changed object
+	 */
+	public void onSlotObjectChanged(final RPObject object) {
+		equipmentStats = null;
+	}
+
+	@Override
+	public void addSlot(final RPSlot slot) {
+		super.addSlot(slot);
+		// the slot may have contents already
+		equipmentStats = null;
+		itemIndex = null;
+	}
+
+	@Override
+	public RPSlot removeSlot(final String name) {
+		equipmentStats = null;
+		itemIndex = null;
+		return super.removeSlot(name);
+	}
+
 	/**
 	 * A convenience method for getting a method for matching item names.
 	 *
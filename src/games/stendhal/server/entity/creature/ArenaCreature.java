@@ -40,6 +40,11 @@ public class ArenaCreature extends Creature {
 		this.arena = arena;
 	}
 
+	@Override
+	protected boolean attacksPlayersAndFriends() {
+		return false;
+	}
+
 	@Override
 	public List<RPEntity> getEnemyList() {
 		// only return those enemies which are in the arena
@@ -37,6 +37,11 @@ public class AttackableCreature extends Creature {
 		super(copy);
 	}
 
+	@Override
+	protected boolean attacksPlayersAndFriends() {
+		return false;
+	}
+
 	@Override
 	public List<RPEntity> getEnemyList() {
 		List<RPEntity> res = this.getAttackingRPEntities();
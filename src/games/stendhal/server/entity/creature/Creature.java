@@ -29,9 +29,9 @@ import games.stendhal.common.constants.SoundLayer;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPRuleProcessor;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.TargetingService;
 import games.stendhal.server.core.pathfinder.FixedPath;
 import games.stendhal.server.core.pathfinder.Node;
-import games.stendhal.server.core.pathfinder.Path;
 import games.stendhal.server.core.rule.EntityManager;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.Killer;
@@ -700,7 +700,7 @@ public class Creature extends NPC {
 	 * @return list of enemies
 	 */
 	public List<RPEntity> getEnemyList() {
-		if (getAIProfiles().containsKey("offensive")) {
+		if (attacksPlayersAndFriends()) {
 			return getZone().getPlayerAndFriends();
 		} else {
 			return getAttackingRPEntities();
@@ -708,62 +708,64 @@ public class Creature extends NPC {
 	}
 
 	/**
-	 * Returns the nearest enemy, which is reachable or otherwise attackable.
+	 * Check if the enemies of this creature are all the players and friends
+	 * of the zone. Then the enemies can be looked up with the targeting
+	 * service of the zone. Subclasses that override {@link #getEnemyList()}
+	 * must override this too.
+	 *
+	 * @return <code>true</code> if {@link #getEnemyList()} returns the players
+	 * 	and friends of the zone
+	 */
+	protected boolean attacksPlayersAndFriends() {
+		return getAIProfiles().containsKey("offensive");
+	}
+
+	/**
+	 * Get the enemies within a range, that are not invisible to creatures.
 	 *
 	 * @param range
-	 *            attack radius
-	 * @return chosen enemy or null if no enemy was found.
+	 *            maximum distance
+	 * @return enemies in range, nearest first
 	 */
-	public RPEntity getNearestEnemy(final double range) {
-		// create list of enemies
+	public List<RPEntity> getEnemiesInRange(final double range) {
 		final List<RPEntity> enemyList = getEnemyList();
 		if (enemyList.isEmpty()) {
-			return null;
+			return enemyList;
 		}
-
-		// calculate the distance of all possible enemies
-		final Map<RPEntity, Double> distances = new HashMap<RPEntity, Double>();
-		for (final RPEntity enemy : enemyList) {
-			if (enemy == this) {
-				continue;
-			}
-
-			if (enemy.isInvisibleToCreatures()) {
-				continue;
-			}
-
-			final double squaredDistance = this.squaredDistance(enemy);
-			if (squaredDistance <= (range * range)) {
-				distances.put(enemy, squaredDistance);
-			}
+		final StendhalRPZone zone = getZone();
+		if ((zone != null) && attacksPlayersAndFriends()) {
+			// use the index instead of checking everyone in the zone
+			return zone.getTargetingService().getNearest(this, range, Integer.MAX_VALUE);
 		}
+		return TargetingService.sortByDistance(this, enemyList, range);
+	}
+
+	/**
+	 * Returns the nearest enemy, which is reachable or otherwise attackable.
+	 *
+	 * @param range
+	 *            attack radius
+	 * @return chosen enemy or null if no enemy was found.
+	 */
+	public RPEntity getNearestEnemy(final double range) {
+		final List<RPEntity> enemies = getEnemiesInRange(range);
 
 		// now choose the nearest enemy for which there is a path, or is
 		// attackable otherwise
-		RPEntity chosen = null;
-		while ((chosen == null) && !distances.isEmpty()) {
-			double shortestDistance = Double.MAX_VALUE;
-			for (final Map.Entry<RPEntity, Double> enemy : distances.entrySet()) {
-				final double distance = enemy.getValue();
-				if (distance < shortestDistance) {
-					chosen = enemy.getKey();
-					shortestDistance = distance;
-				}
+		for (final RPEntity enemy : enemies) {
+			if (squaredDistance(enemy) < 1) {
+				return enemy;
 			}
-
-			if (shortestDistance >= 1) {
-				final List<Node> path = Path.searchPath(this, chosen, getMovementRange());
-				if ((path == null) || path.isEmpty() && !strategy.canAttackNow(this, chosen)) {
-					distances.remove(chosen);
-					chosen = null;
-				} else {
-					// set the path. if not setMovement() will search a new one
-					setPath(new FixedPath(path, false));
-				}
+			final List<Node> path = getZone().getTargetingService().searchPath(this, enemy,
+					getMovementRange());
+			if (!path.isEmpty() || strategy.canAttackNow(this, enemy)) {
+				// set the path. if not setMovement() will search a new one
+				setPath(new FixedPath(path, false));
+				return enemy;
 			}
 		}
-		// return the chosen enemy or null if we could not find one in reach
-		return chosen;
+		// no enemy in reach
+		return null;
 	}
 
 	public boolean isEnemyNear(final double range) {
@@ -45,8 +45,9 @@ public class AttackWeakest extends HandToHand {
 	 *         keeping the current target if that is the optimal one
 	 */
 	private boolean attackWeakest(Creature creature) {
-		// create list of possible enemies
-		final List<RPEntity> enemyList = creature.getEnemyList();
+		// create list of possible enemies. only those next to the creature
+		// can be attacked
+		final List<RPEntity> enemyList = creature.getEnemiesInRange(1);
 		if (enemyList.isEmpty()) {
 			return false;
 		}
@@ -70,8 +71,7 @@ public class AttackWeakest extends HandToHand {
 				continue;
 			}
 
-			if (creature.getAttackStrategy().canAttackNow(creature, enemy)
-					&& !enemy.isInvisibleToCreatures()) {
+			if (creature.getAttackStrategy().canAttackNow(creature, enemy)) {
 				/*
 				 * Use level as an approximation of the strength. Prefer keeping
 				 * the current target if the enemies are equally strong.
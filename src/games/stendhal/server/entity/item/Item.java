@@ -44,6 +44,7 @@ import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
 import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
+import marauroa.common.game.SlotOwner;
 
 /**
  * This is an item.
@@ -877,6 +878,19 @@ public class Item extends PassiveEntity implements TurnListener, EquipListener,
 		return possibleSlots.contains(slot);
 	}
 
+	/**
+	 * Tell the entity that has this item, either directly or inside other
+	 * items, that the item has changed in place, for example when a stack is
+	 * merged or split.
+	 */
+	protected void notifyEntityAboutChange() {
+		if (isContained()) {
+			final SlotOwner owner = getContainerBaseOwner();
+			if (owner instanceof RPEntity) {
+				((RPEntity) owner).onSlotObjectChanged(this);
+			}
+		}
+	}
 
 	public void removeFromWorld() {
 
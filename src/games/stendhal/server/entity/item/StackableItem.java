@@ -89,6 +89,7 @@ public class StackableItem extends Item implements Stackable<StackableItem> {
 			quantity = amount;
 		}
 		put("quantity", getQuantity());
+		notifyEntityAboutChange();
 	}
 
 	/**
@@ -103,6 +104,7 @@ public class StackableItem extends Item implements Stackable<StackableItem> {
 		}
 		quantity = getQuantity() - amount;
 		put("quantity", getQuantity());
+		notifyEntityAboutChange();
 		return getQuantity();
 	}
 
@@ -21,7 +21,6 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 
 import games.stendhal.common.Direction;
-import games.stendhal.common.parser.ConversationParser;
 import games.stendhal.common.parser.Expression;
 import games.stendhal.common.parser.ExpressionMatcher;
 import games.stendhal.common.parser.ExpressionType;
@@ -723,15 +722,15 @@ public class SpeakerNPC extends PassiveNPC {
 	 *
 	 * @param player
 	 *            The player who spoke to the player
-	 * @param text
-	 *            The text that the given player has said
+	 * @param sentence
+	 *            The parsed text that the given player has said
 	 * @return true iff the NPC had to get rid of the player
 	 */
-	private boolean getRidOfPlayerIfAlreadySpeaking(final Player player, final String text) {
+	private boolean getRidOfPlayerIfAlreadySpeaking(final Player player, final Sentence sentence) {
 		// If we are attending another player make this one wait.
 		if (attending != null && !player.equals(attending)) {
 			if (ConversationPhrases.GREETING_MESSAGES.contains(
-					ConversationParser.parse(text).getTriggerExpression().getNormalized())) {
+					sentence.getTriggerExpression().getNormalized())) {
 				logger.debug("Already attending a player");
 
 				if (waitMessage != null) {
@@ -739,7 +738,6 @@ public class SpeakerNPC extends PassiveNPC {
 				}
 
 				if (waitAction != null) {
-					final Sentence sentence = ConversationParser.parse(text);
 					// Note: sentence is currently not yet used in
 					// the called handler functions.
 					waitAction.fire(player, sentence, new EventRaiser(this));
@@ -757,7 +755,10 @@ public class SpeakerNPC extends PassiveNPC {
 	 * @param text
 	 * @return true if step was successfully executed*/
 	private boolean tell(final Player player, final String text) {
-		if (getRidOfPlayerIfAlreadySpeaking(player, text)) {
+		// parsed only once per turn for all NPCs
+		final Sentence sentence = UtteranceCache.get().parse(text);
+
+		if (getRidOfPlayerIfAlreadySpeaking(player, sentence)) {
 			return true;
 		}
 
@@ -769,7 +770,7 @@ public class SpeakerNPC extends PassiveNPC {
 
 		lastMessageTurn = SingletonRepository.getRuleProcessor().getTurn();
 
-		return engine.step(player, text);
+		return engine.step(player, sentence);
 	}
 
 	public void setCurrentState(final ConversationStates state) {
@@ -0,0 +1,125 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.common.parser.ConversationParser;
+import games.stendhal.common.parser.Sentence;
+
+/**
+ * Parses the texts players say once per turn, so that all NPCs listening to
+ * a player share the same Sentence.
+ *
+ * <p>Texts are only cached while the NPCs react to the players in
+ * {@link SpeakerNPC#preLogic()}, between {@link #beginTurn()} and
+ * {@link #endTurn()}. Outside of that, every text is parsed again. The
+ * Sentences must not be modified by the NPCs.
+ */
+public final class UtteranceCache {
+	private static Logger logger = Logger.getLogger(UtteranceCache.class);
+
+	/** The singleton instance. */
+	private static UtteranceCache instance;
+
+	/** Sentences parsed in the current turn by text. */
+	private final Map<String, Sentence> sentences = new HashMap<String, Sentence>();
+
+	/** <code>true</code> while texts are cached. */
+	private boolean active;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Returns the Singleton instance.
+	 *
+	 * @return The instance
+	 */
+	public static UtteranceCache get() {
+		if (instance == null) {
+			instance = new UtteranceCache();
+		}
+
+		return instance;
+	}
+
+	private UtteranceCache() {
+		// singleton
+	}
+
+	/**
+	 * Start caching the texts of the current turn.
+	 */
+	public void beginTurn() {
+		sentences.clear();
+		active = true;
+	}
+
+	/**
+	 * Stop caching, and forget the texts of the current turn.
+	 */
+	public void endTurn() {
+		sentences.clear();
+		active = false;
+	}
+
+	/**
+	 * Parse a text a player has said.
+	 *
+	 * @param text text
+	 * @return parsed text
+	 */
+	public Sentence parse(final String text) {
+		Sentence sentence = null;
+		if (active) {
+			sentence = sentences.get(text);
+			if (sentence != null) {
+				hits++;
+				return sentence;
+			}
+			misses++;
+		}
+
+		sentence = ConversationParser.parse(text);
+		if (sentence.hasError()) {
+			logger.warn("problem parsing the sentence '" + text + "': "
+					+ sentence.getErrorString());
+		}
+
+		if (active) {
+			sentences.put(text, sentence);
+		}
+		return sentence;
+	}
+
+	/**
+	 * Get the number of texts that were already parsed in the same turn.
+	 *
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of texts that were parsed while caching.
+	 *
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+}
@@ -73,9 +73,9 @@ public class TimePassedCondition implements ChatCondition {
 			// never done quest so enough 'time' has passed
 			return true;
 		} else {
-			final String[] tokens = player.getQuest(questname).split(";");
+			final String token = player.getQuest(questname, index);
 			final long delayInMilliseconds = delay * MathHelper.MILLISECONDS_IN_ONE_MINUTE;
-			if (tokens.length - 1 < index) {
+			if (token.isEmpty()) {
 				// old quest status, the split did not work, so we assume enough time is passed.
 				return true;
 			}
@@ -84,7 +84,7 @@ public class TimePassedCondition implements ChatCondition {
 			// if this is > 0, the time has not yet passed
 			long questtime;
 			try {
-				questtime = Long.parseLong(tokens[index]);
+				questtime = Long.parseLong(token);
 			} catch (final NumberFormatException e) {
 				// set to 0 if it was no Long, as if this quest was done at the beginning of time.
 				questtime = 0;
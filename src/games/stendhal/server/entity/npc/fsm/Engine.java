@@ -47,6 +47,9 @@ public class Engine {
 	// FSM state transition table
 	private final List<Transition> stateTransitionTable = new LinkedList<Transition>();
 
+	// index of the transition table by state and trigger
+	private final TransitionIndex index = new TransitionIndex();
+
 	// current FSM state
 	private ConversationStates currentState = ConversationStates.IDLE;
 
@@ -73,7 +76,7 @@ public class Engine {
 	 * @return previous transition entry
 	 */
 	private Transition get(final ConversationStates state, final Expression trigger, final ChatCondition condition) {
-		for (final Transition transition : stateTransitionTable) {
+		for (final Transition transition : index.getCandidates(state, trigger)) {
 			if (transition.matchesWithCondition(state, trigger, condition)) {
 				return transition;
 			}
@@ -287,7 +290,7 @@ public class Engine {
 	public void add(Collection<Expression> triggerExpressions, final ConversationStates state, final ChatCondition condition,
 			boolean secondary, final ConversationStates nextState, final String reply, final ChatAction action, final String label) {
 		if (triggerExpressions!=null && !triggerExpressions.isEmpty()) {
-			stateTransitionTable.add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action, label));
+			add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action, label));
 		}
 	}
 
@@ -312,10 +315,15 @@ public class Engine {
 	public void add(Collection<Expression> triggerExpressions, final ConversationStates state, final ChatCondition condition,
 			boolean secondary, final ConversationStates nextState, final String reply, final ChatAction action) {
 		if (triggerExpressions!=null && !triggerExpressions.isEmpty()) {
-			stateTransitionTable.add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action));
+			add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action));
 		}
 	}
 
+	private void add(final Transition transition) {
+		stateTransitionTable.add(transition);
+		index.add(transition);
+	}
+
 	/**
 	 * remove matches transition
 	 *
@@ -337,6 +345,9 @@ public class Engine {
 				res = true;
 			}
 		}
+		if (res) {
+			index.rebuild(stateTransitionTable);
+		}
 		return res;
 	}
 
@@ -461,8 +472,10 @@ public class Engine {
 			return true;
 		} else {
 			// Couldn't match the command with the current FSM state
-			logger.debug("Couldn't match any state: " + getCurrentState() + ":"
-					+ sentence);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Couldn't match any state: " + getCurrentState() + ":"
+						+ sentence);
+			}
 			return false;
 		}
 	}
@@ -529,15 +542,13 @@ public class Engine {
 		final TransitionSet preferredTransitions = new TransitionSet();
 		final TransitionSet secondaryTransitions = new TransitionSet();
 
-		// match with all the registered transitions
-		for (final Transition transition : stateTransitionTable) {
-			if (matchesTransition(type, sentence, transition)) {
-				if (transition.isConditionFulfilled(player, sentence, speakerNPC)) {
-					if (transition.isPreferred()) {
-						preferredTransitions.add(transition);
-					} else {
-						secondaryTransitions.add(transition);
-					}
+		// match with the registered transitions
+		for (final Transition transition : index.getMatches(type, currentState, sentence)) {
+			if (transition.isConditionFulfilled(player, sentence, speakerNPC)) {
+				if (transition.isPreferred()) {
+					preferredTransitions.add(transition);
+				} else {
+					secondaryTransitions.add(transition);
 				}
 			}
 		}
@@ -549,9 +560,11 @@ public class Engine {
 			it = preferredTransitions.iterator();
 
 			if (preferredTransitions.size() > 1) {
-				logger.info("Choosing random action because of "
-						+ preferredTransitions.size() + " entries in preferredTransitions: "
-						+ preferredTransitions);
+				if (logger.isInfoEnabled()) {
+					logger.info("Choosing random action because of "
+							+ preferredTransitions.size() + " entries in preferredTransitions: "
+							+ preferredTransitions);
+				}
 
 				TransitionSet.advance(it, Rand.rand(preferredTransitions.size()));
 			}
@@ -562,9 +575,11 @@ public class Engine {
 			it = secondaryTransitions.iterator();
 
 			if (secondaryTransitions.size() > 1) {
-				logger.info("Choosing random action because of "
-						+ secondaryTransitions.size()
-						+ " entries in secondaryTransitions: " + secondaryTransitions);
+				if (logger.isInfoEnabled()) {
+					logger.info("Choosing random action because of "
+							+ secondaryTransitions.size()
+							+ " entries in secondaryTransitions: " + secondaryTransitions);
+				}
 
 				TransitionSet.advance(it, Rand.rand(secondaryTransitions.size()));
 			}
@@ -581,19 +596,6 @@ public class Engine {
 		}
 	}
 
-	/**
-	 * Look for a match between given sentence and transition in the current state.
-	 * TODO mf - refactor match type handling
-	 *
-	 * @param type
-	 * @param sentence
-	 * @param transition
-	 * @return true if transition has been found
-	 */
-	private boolean matchesTransition(final MatchType type, final Sentence sentence, final Transition transition) {
-		return type.match(transition, currentState, sentence);
-	}
-
 	private void executeTransition(final Player player, final Sentence sentence, final Transition trans) {
 		final ConversationStates nextState = trans.getNextState();
 
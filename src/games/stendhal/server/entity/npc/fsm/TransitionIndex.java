@@ -0,0 +1,232 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.fsm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import games.stendhal.common.parser.Expression;
+import games.stendhal.common.parser.Sentence;
+import games.stendhal.common.parser.SimilarityIndex;
+import games.stendhal.server.entity.npc.ConversationStates;
+
+/**
+ * Index of the transitions of an FSM by state and trigger.
+ *
+ * <p>For a given match type, state and input it returns the matching
+ * transitions, in the order they were added to the FSM, like checking each
+ * transition with {@link MatchType#match} would. Exact and normalized matches
+ * are hash lookups of the trigger strings. Similar matches are looked up in a
+ * {@link SimilarityIndex} of the normalized triggers and of their main words.
+ * Only the triggers with an ExpressionMatcher are checked one by one.
+ */
+final class TransitionIndex {
+
+	/** Limit quotient used by Expression.matchesNormalizedSimilar(). */
+	private static final double SIMILARITY = 0.1;
+
+	/** Indexed transitions by starting state. */
+	private final Map<ConversationStates, StateTransitions> states =
+		new EnumMap<ConversationStates, StateTransitions>(ConversationStates.class);
+
+	/** Position of the transitions in the transition table. */
+	private final Map<Transition, Integer> order = new IdentityHashMap<Transition, Integer>();
+
+	private int nextOrder;
+
+	/**
+	 * The transitions of one starting state.
+	 */
+	private static final class StateTransitions {
+		/** Transitions by original trigger string, for triggers without matcher. */
+		final Map<String, List<Transition>> byOriginal = new HashMap<String, List<Transition>>();
+		/** Transitions by normalized trigger string, for triggers without matcher. */
+		final Map<String, List<Transition>> byNormalized = new HashMap<String, List<Transition>>();
+		/** Transitions by similar normalized trigger string, for triggers without matcher. */
+		final SimilarityIndex<Transition> similarNormalized = new SimilarityIndex<Transition>();
+		/** Transitions by similar trigger main word, for triggers without matcher. */
+		final SimilarityIndex<Transition> similarMainWord = new SimilarityIndex<Transition>();
+		/** Transitions with at least one trigger using an ExpressionMatcher. */
+		final List<Transition> matching = new ArrayList<Transition>();
+		/** Transitions with an empty trigger, which are similar to any text. */
+		final List<Transition> any = new ArrayList<Transition>();
+	}
+
+	/**
+	 * Add a transition to the end of the index.
+	 *
+	 * @param transition transition
+	 */
+	void add(final Transition transition) {
+		order.put(transition, Integer.valueOf(nextOrder++));
+
+		StateTransitions entry = states.get(transition.getState());
+		if (entry == null) {
+			entry = new StateTransitions();
+			states.put(transition.getState(), entry);
+		}
+
+		boolean matching = false;
+		boolean any = false;
+		for (final Expression trigger : transition.getTriggers()) {
+			if (trigger.getNormalized().length() == 0) {
+				any = true;
+			}
+			if (trigger.getMatcher() != null) {
+				matching = true;
+			} else {
+				put(entry.byOriginal, trigger.getOriginal(), transition);
+				put(entry.byNormalized, trigger.getNormalized(), transition);
+				entry.similarNormalized.add(trigger.getNormalized(), transition);
+				entry.similarMainWord.add(trigger.getMainWord(), transition);
+			}
+		}
+		if (matching) {
+			entry.matching.add(transition);
+		}
+		if (any) {
+			entry.any.add(transition);
+		}
+	}
+
+	/**
+	 * Rebuild the index from the transition table.
+	 *
+	 * @param transitions all transitions of the FSM in table order
+	 */
+	void rebuild(final Collection<Transition> transitions) {
+		states.clear();
+		order.clear();
+		nextOrder = 0;
+		for (final Transition transition : transitions) {
+			add(transition);
+		}
+	}
+
+	/**
+	 * Get the transitions that may match a trigger exactly.
+	 *
+	 * @param state state
+	 * @param trigger trigger expression
+	 * @return candidate transitions in table order
+	 */
+	Collection<Transition> getCandidates(final ConversationStates state, final Expression trigger) {
+		final StateTransitions entry = states.get(state);
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+		final Map<Integer, Transition> result = new TreeMap<Integer, Transition>();
+		addAll(result, entry.byOriginal.get(trigger.getOriginal()));
+		addAll(result, entry.matching);
+		return result.values();
+	}
+
+	/**
+	 * Get the transitions that match an input.
+	 *
+	 * @param type match type
+	 * @param currentState current state of the FSM
+	 * @param sentence the input
+	 * @return matching transitions in table order
+	 */
+	Collection<Transition> getMatches(final MatchType type, final ConversationStates currentState,
+			final Sentence sentence) {
+		switch (type) {
+		case EXACT_MATCH:
+		case NORMALIZED_MATCH:
+		case SIMILAR_MATCH:
+			return getMatches(type, states.get(currentState), currentState, sentence);
+		case ABSOLUTE_JUMP:
+		case NORMALIZED_JUMP:
+		case SIMILAR_JUMP:
+			if (currentState == ConversationStates.IDLE) {
+				return Collections.emptyList();
+			}
+			return getMatches(type, states.get(ConversationStates.ANY), currentState, sentence);
+		default:
+			throw new IllegalArgumentException("unknown match type " + type);
+		}
+	}
+
+	private Collection<Transition> getMatches(final MatchType type, final StateTransitions entry,
+			final ConversationStates currentState, final Sentence sentence) {
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+
+		final Expression trigger = sentence.getTriggerExpression();
+		final Map<Integer, Transition> result = new TreeMap<Integer, Transition>();
+		switch (type) {
+		case EXACT_MATCH:
+		case ABSOLUTE_JUMP:
+			addAll(result, entry.byOriginal.get(trigger.getOriginal()));
+			addMatching(result, entry.matching, type, currentState, sentence);
+			break;
+		case NORMALIZED_MATCH:
+		case NORMALIZED_JUMP:
+			addAll(result, entry.byNormalized.get(trigger.getNormalized()));
+			addMatching(result, entry.matching, type, currentState, sentence);
+			break;
+		case SIMILAR_MATCH:
+		case SIMILAR_JUMP:
+			// Triggers with an ExpressionMatcher are only similar if they are empty.
+			addAll(result, entry.any);
+			final List<Transition> similar = new ArrayList<Transition>();
+			entry.similarNormalized.findSimilar(trigger.getNormalized(), SIMILARITY, similar);
+			entry.similarMainWord.findSimilar(trigger.getMainWord(), SIMILARITY, similar);
+			addAll(result, similar);
+			break;
+		default:
+			throw new IllegalArgumentException("unknown match type " + type);
+		}
+		return result.values();
+	}
+
+	/**
+	 * Add the transitions with an ExpressionMatcher that match the input.
+	 */
+	private void addMatching(final Map<Integer, Transition> result, final List<Transition> transitions,
+			final MatchType type, final ConversationStates currentState, final Sentence sentence) {
+		for (final Transition transition : transitions) {
+			if (type.match(transition, currentState, sentence)) {
+				result.put(order.get(transition), transition);
+			}
+		}
+	}
+
+	private void addAll(final Map<Integer, Transition> result, final List<Transition> transitions) {
+		if (transitions != null) {
+			for (final Transition transition : transitions) {
+				result.put(order.get(transition), transition);
+			}
+		}
+	}
+
+	private static <K> void put(final Map<K, List<Transition>> map, final K key, final Transition transition) {
+		List<Transition> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<Transition>(1);
+			map.put(key, list);
+		}
+		// a transition can have several triggers with the same key
+		if (list.isEmpty() || (list.get(list.size() - 1) != transition)) {
+			list.add(transition);
+		}
+	}
+}
@@ -11,8 +11,10 @@
  ***************************************************************************/
 package games.stendhal.server.entity.player;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -26,13 +28,32 @@ import marauroa.common.game.RPSlot;
 /**
  * Accesses the player quest states.
  *
+ * <p>The sub states of a quest state are split at ";" only once. The split
+ * state is kept until the slot holds a different state, and is never
+ * modified: changing a sub state stores a new state string.
+ *
  * @author hendrik
  */
 class PlayerQuests {
 	private final Player player;
 
+	/** split quest states by slot name */
+	private final Map<String, SplitState> splitStates = new HashMap<String, SplitState>();
+
 	private static Logger logger = Logger.getLogger(PlayerQuests.class);
 
+	/**
+	 * A quest state split into its sub states.
+	 */
+	private static final class SplitState {
+		private final String state;
+		private final String[] elements;
+
+		private SplitState(final String state) {
+			this.state = state;
+			this.elements = state.split(";");
+		}
+	}
 
 	public PlayerQuests(final Player player) {
 		this.player = player;
@@ -93,13 +114,15 @@ class PlayerQuests {
 	 *            reset the player's status for the quest.
 	 */
 	public void setQuest(final String name, final String status) {
-		final String oldStatus = player.getKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name));
-		player.setKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name), status);
+		final String slot = QuestUtils.evaluateQuestSlotName(name);
+		final String oldStatus = player.getKeyedSlot("!quests", slot);
+		player.setKeyedSlot("!quests", slot, status);
+		splitStates.remove(slot);
 		if ((status == null) || !status.equals(oldStatus)) {
-			new GameEvent(player.getName(), "quest", QuestUtils.evaluateQuestSlotName(name), status).raise();
+			new GameEvent(player.getName(), "quest", slot, status).raise();
 		}
 		// check for reached achievements
-		SingletonRepository.getAchievementNotifier().onFinishQuest(player);
+		SingletonRepository.getAchievementNotifier().onQuestChange(player, slot);
 	}
 
 
@@ -113,7 +136,8 @@ class PlayerQuests {
 	 * @return the player's status in the quest
 	 */
 	public String getQuest(final String name, final int index) {
-		String state = getQuest(name);
+		final String slot = QuestUtils.evaluateQuestSlotName(name);
+		String state = player.getKeyedSlot("!quests", slot);
 		if (state == null) {
 			return null;
 		}
@@ -122,7 +146,7 @@ class PlayerQuests {
 			return state;
 		}
 
-		String[] elements = state.split(";");
+		String[] elements = split(slot, state);
 		if (index < elements.length) {
 			return elements[index];
 		}
@@ -145,16 +169,15 @@ class PlayerQuests {
 	 *            reset the player's status for the quest.
 	 */
 	public void setQuest(final String name, final int index, final String subStatus) {
-		String state = getQuest(name);
+		final String slot = QuestUtils.evaluateQuestSlotName(name);
+		String state = player.getKeyedSlot("!quests", slot);
 		if (state == null) {
 			state = "";
 		}
-		String[] elements = state.split(";");
-		if (elements.length <= index) {
-			String[] temp = new String[index + 1];
-			System.arraycopy(elements, 0, temp, 0, elements.length);
-			elements = temp;
-		}
+		// copy the split state, as it is shared
+		final String[] split = split(slot, state);
+		String[] elements = new String[Math.max(split.length, index + 1)];
+		System.arraycopy(split, 0, elements, 0, split.length);
 
 		elements[index] = subStatus;
 		StringBuilder res = new StringBuilder();
@@ -183,7 +206,29 @@ class PlayerQuests {
 	}
 
 	public void removeQuest(final String name) {
-		player.setKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name), null);
+		final String slot = QuestUtils.evaluateQuestSlotName(name);
+		player.setKeyedSlot("!quests", slot, null);
+		splitStates.remove(slot);
+	}
+
+	/**
+	 * Gets a quest state split into its sub states. The state is split
+	 * only if it differs from the one split last for the slot, which also
+	 * covers states that were not stored by setQuest().
+	 *
+	 * @param slot
+	 *            evaluated name of the quest slot
+	 * @param state
+	 *            the current state in the slot
+	 * @return the sub states, which must not be modified
+	 */
+	private String[] split(final String slot, final String state) {
+		SplitState split = splitStates.get(slot);
+		if ((split == null) || !state.equals(split.state)) {
+			split = new SplitState(state);
+			splitStates.put(slot, split);
+		}
+		return split.elements;
 	}
 
 	/**
@@ -249,9 +294,11 @@ class PlayerQuests {
 			return "";
 		}
 		String questSubString = getQuest(name, index);
-		final String[] elements = questSubString.split("=");
-		String questItem = elements[0];
-		return questItem;
+		final int separator = questSubString.indexOf('=');
+		if (separator < 0) {
+			return questSubString;
+		}
+		return questSubString.substring(0, separator);
 	}
 
 	/**
@@ -12,8 +12,14 @@
  ***************************************************************************/
 package games.stendhal.server.entity.slot;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.RPEntity;
+import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
+import marauroa.common.game.SlotOwner;
 
 /**
  * Stendhal specific information about this slot.
@@ -43,6 +49,62 @@ public class EntitySlot extends RPSlot implements Slot {
 		this.contentSlotName = contentSlotName;
 	}
 
+	@Override
+	protected int add(final RPObject object, final boolean assignId) {
+		final int id = super.add(object, assignId);
+		notifyEntity(object, true);
+		return id;
+	}
+
+	@Override
+	public RPObject remove(final RPObject.ID id) {
+		final RPObject removed = super.remove(id);
+		if (removed != null) {
+			notifyEntity(removed, false);
+		}
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		if (isEmpty()) {
+			super.clear();
+			return;
+		}
+		final List<RPObject> removed = new ArrayList<>(size());
+		for (final RPObject object : this) {
+			removed.add(object);
+		}
+		super.clear();
+		for (final RPObject object : removed) {
+			notifyEntity(object, false);
+		}
+	}
+
+	/**
+	 * Tell the entity that has this slot, either directly or inside the items
+	 * it carries, about an added or removed object.
+	 *
+	 * @param object added or removed object
+	 * @param added <code>true</code> if the object was added,
+	 * 	<code>false</code> if it was removed
+	 */
+	private void notifyEntity(final RPObject object, final boolean added) {
+		SlotOwner owner = getOwner();
+		RPSlot slot = this;
+		while ((owner instanceof RPObject) && ((RPObject) owner).isContained()) {
+			slot = ((RPObject) owner).getContainerSlot();
+			owner = ((RPObject) owner).getContainerOwner();
+		}
+		if (owner instanceof RPEntity) {
+			if (added) {
+				((RPEntity) owner).onSlotObjectAdded(slot, object);
+			} else {
+				((RPEntity) owner).onSlotObjectRemoved(object);
+			}
+		}
+	}
+
 	@Override
 	public boolean isReachableForTakingThingsOutOfBy(final Entity entity) {
 		setErrorMessage("The " + getName() + " of " + ((Entity) getOwner()).getDescriptionName(true) + " is too far away.");
@@ -109,4 +109,12 @@ public class Earning extends Entity implements Dateable {
 		return timeStamp;
 	}
 
+	@Override
+	public void put(final String attribute, final String value) {
+		super.put(attribute, value);
+		// keep the expiry order of the market up to date
+		if (TIMESTAMP_ATTRIBUTE.equals(attribute) && (getContainerOwner() instanceof Market)) {
+			((Market) getContainerOwner()).onTimestampChanged(this);
+		}
+	}
 }
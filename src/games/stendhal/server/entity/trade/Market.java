@@ -13,9 +13,9 @@
 package games.stendhal.server.entity.trade;
 
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedSet;
 
 import org.apache.log4j.Logger;
 
@@ -62,6 +62,13 @@ public class Market extends PassiveEntity {
 	 */
 	public static final String EXPIRED_OFFERS_SLOT_NAME = "expired_offers";
 
+	/** Index of the offers slot. */
+	private final MarketIndex<Offer> offerIndex = new MarketIndex<>(Offer::getOfferer, Offer::getItem);
+	/** Index of the expired offers slot. */
+	private final MarketIndex<Offer> expiredOfferIndex = new MarketIndex<>(Offer::getOfferer, Offer::getItem);
+	/** Index of the earnings slot. */
+	private final MarketIndex<Earning> earningIndex = new MarketIndex<>(Earning::getSeller, earning -> null);
+
 	/**
 	 * Generate the RPClass for the Market
 	 */
@@ -88,17 +95,17 @@ public class Market extends PassiveEntity {
 		if (hasSlot(OFFERS_SLOT_NAME)) {
 			removeSlot(OFFERS_SLOT_NAME);
 		}
-		addSlot(OFFERS_SLOT_NAME);
+		addSlot(new MarketSlot(OFFERS_SLOT_NAME));
 
 		if (hasSlot(EARNINGS_SLOT_NAME)) {
 			removeSlot(EARNINGS_SLOT_NAME);
 		}
-		addSlot(EARNINGS_SLOT_NAME);
+		addSlot(new MarketSlot(EARNINGS_SLOT_NAME));
 
 		if (hasSlot(EXPIRED_OFFERS_SLOT_NAME)) {
 			removeSlot(EXPIRED_OFFERS_SLOT_NAME);
 		}
-		addSlot(EXPIRED_OFFERS_SLOT_NAME);
+		addSlot(new MarketSlot(EXPIRED_OFFERS_SLOT_NAME));
 
 		// copy the contents from the old slots
 		if (object.hasSlot(OFFERS_SLOT_NAME)) {
@@ -155,13 +162,13 @@ public class Market extends PassiveEntity {
 		setRPClass(MARKET_RPCLASS_NAME);
 		hide();
 		if (!this.hasSlot(OFFERS_SLOT_NAME)) {
-			addSlot(OFFERS_SLOT_NAME);
+			addSlot(new MarketSlot(OFFERS_SLOT_NAME));
 		}
 		if (!this.hasSlot(EARNINGS_SLOT_NAME)) {
-			addSlot(EARNINGS_SLOT_NAME);
+			addSlot(new MarketSlot(EARNINGS_SLOT_NAME));
 		}
 		if (!this.hasSlot(EXPIRED_OFFERS_SLOT_NAME)) {
-			addSlot(EXPIRED_OFFERS_SLOT_NAME);
+			addSlot(new MarketSlot(EXPIRED_OFFERS_SLOT_NAME));
 		}
 		store();
 	}
@@ -220,7 +227,7 @@ public class Market extends PassiveEntity {
 	 * 	failure
 	 */
 	public boolean acceptOffer(final Offer offer, final Player acceptingPlayer) {
-		if (getSlot(OFFERS_SLOT_NAME).has(offer.getID()) && offer.hasItem()) {
+		if (offerIndex.contains(offer) && offer.hasItem()) {
 			int price = offer.getPrice().intValue();
 			// Take the money; free items should always succeed
 			if ((price == 0) || acceptingPlayer.drop("money", price)) {
@@ -278,13 +285,7 @@ public class Market extends PassiveEntity {
 	 * @return the fetched earnings
 	 */
 	public Set<Earning> fetchEarnings(final Player earner) {
-		Set<Earning> earningsToRemove = new HashSet<Earning>();
-		for (RPObject earningRPObject : this.getSlot(EARNINGS_SLOT_NAME)) {
-			Earning earning = (Earning) earningRPObject;
-			if (earning.getSeller().equals(earner.getName())) {
-				earningsToRemove.add(earning);
-			}
-		}
+		Set<Earning> earningsToRemove = new HashSet<Earning>(earningIndex.getByOwner(earner.getName()));
 
 		if(!earningsToRemove.isEmpty()) {
 			int summedUpEarnings = 0;
@@ -332,14 +333,7 @@ public class Market extends PassiveEntity {
 	 * @return the number of offers
 	 */
 	public int countOffersOfPlayer(Player offerer) {
-		int count = 0;
-		for (RPObject object : this.getSlot(OFFERS_SLOT_NAME)) {
-			Offer offer = (Offer) object;
-			if (offer.getOfferer().equals(offerer.getName())) {
-				count = count + 1;
-			}
-		}
-		return count;
+		return offerIndex.count(offerer.getName());
 	}
 
 	/**
@@ -358,8 +352,6 @@ public class Market extends PassiveEntity {
 		p.equipOrPutOnGround(item);
 
 		getSlot(OFFERS_SLOT_NAME).remove(o.getID());
-
-		getExpiredOffers().remove(o);
 		getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(o.getID());
 
 		getZone().storeToDatabase();
@@ -398,11 +390,7 @@ public class Market extends PassiveEntity {
 	 * @return all currently expired offers in the market
 	 */
 	public List<Offer> getExpiredOffers() {
-		List<Offer> expiredOffers = new LinkedList<Offer>();
-		for(RPObject o : getSlot(EXPIRED_OFFERS_SLOT_NAME)) {
-			expiredOffers.add((Offer) o);
-		}
-		return expiredOffers;
+		return expiredOfferIndex.getAll();
 	}
 
 	/**
@@ -431,12 +419,12 @@ public class Market extends PassiveEntity {
 	 */
 	public Offer prolongOffer(Offer offer) {
 		offer.updateTimestamp();
-		if (getSlot(EXPIRED_OFFERS_SLOT_NAME).has(offer.getID())) {
+		if (expiredOfferIndex.contains(offer)) {
 			// It had expired. Move to active offers slot.
 			this.getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(offer.getID());
 			RPSlot slot = this.getSlot(OFFERS_SLOT_NAME);
 			slot.add(offer);
-		} else if (!getSlot(OFFERS_SLOT_NAME).has(offer.getID())) {
+		} else if (!offerIndex.contains(offer)) {
 			// Such an offer does not exist anymore
 			return null;
 		}
@@ -453,11 +441,7 @@ public class Market extends PassiveEntity {
 	 * @return list of offers that are older than the specified time
 	 */
 	public List<Offer> getOffersOlderThan(int seconds) {
-		List<Offer> offers = new LinkedList<Offer>();
-		for (RPObject o : getSlot(OFFERS_SLOT_NAME)) {
-			offers.add((Offer) o);
-		}
-		return getOlderThan(offers, seconds);
+		return offerIndex.getOlderThan(getTimeBefore(seconds));
 	}
 
 	/**
@@ -468,7 +452,7 @@ public class Market extends PassiveEntity {
 	 * @return list of expired offers that are older than the specified time
 	 */
 	public List<Offer> getExpiredOffersOlderThan(int seconds) {
-		return getOlderThan(getExpiredOffers(), seconds);
+		return expiredOfferIndex.getOlderThan(getTimeBefore(seconds));
 	}
 
 	/**
@@ -479,35 +463,105 @@ public class Market extends PassiveEntity {
 	 * @return list of earnings that are older than the specified time
 	 */
 	public List<Earning> getEarningsOlderThan(int seconds) {
-		RPSlot slot = this.getSlot(EARNINGS_SLOT_NAME);
-		List<Earning> earnings = new LinkedList<Earning>();
-		for (RPObject o : slot) {
-			earnings.add((Earning) o);
+		return earningIndex.getOlderThan(getTimeBefore(seconds));
+	}
+
+	/**
+	 * Get the point of time a number of seconds ago.
+	 *
+	 * @param seconds age in seconds
+	 * @return point of time in milliseconds
+	 */
+	private long getTimeBefore(int seconds) {
+		return System.currentTimeMillis() - 1000L * seconds;
+	}
+
+	/**
+	 * Find offers in the order they were placed. The offers can be read a
+	 * page at a time.
+	 *
+	 * @param word a word that the item name must contain, or that the item
+	 * 	class must equal. <code>null</code> for offers of any item
+	 * @param offerer name of the offering player, or <code>null</code> for
+	 * 	offers of any player
+	 * @param offset number of matching offers to skip
+	 * @param limit maximum number of offers to return
+	 * @return matching offers
+	 */
+	public List<Offer> findOffers(String word, String offerer, int offset, int limit) {
+		return offerIndex.find(word, offerer, offset, limit);
+	}
+
+	/**
+	 * Find expired offers in the order they expired. The offers can be read a
+	 * page at a time.
+	 *
+	 * @param word a word that the item name must contain, or that the item
+	 * 	class must equal. <code>null</code> for offers of any item
+	 * @param offerer name of the offering player, or <code>null</code> for
+	 * 	offers of any player
+	 * @param offset number of matching offers to skip
+	 * @param limit maximum number of offers to return
+	 * @return matching expired offers
+	 */
+	public List<Offer> findExpiredOffers(String word, String offerer, int offset, int limit) {
+		return expiredOfferIndex.find(word, offerer, offset, limit);
+	}
+
+	/**
+	 * Get the names of the items for which there are offers.
+	 *
+	 * @return alphabetically sorted item names
+	 */
+	public SortedSet<String> getOfferedItemNames() {
+		return offerIndex.getItemNames();
+	}
+
+	/**
+	 * Called by the market slots when an object has been added to them.
+	 *
+	 * @param slot slot where the object was added
+	 * @param object added object
+	 */
+	void onSlotObjectAdded(RPSlot slot, RPObject object) {
+		if (OFFERS_SLOT_NAME.equals(slot.getName())) {
+			offerIndex.add((Offer) object);
+		} else if (EXPIRED_OFFERS_SLOT_NAME.equals(slot.getName())) {
+			expiredOfferIndex.add((Offer) object);
+		} else if (EARNINGS_SLOT_NAME.equals(slot.getName())) {
+			earningIndex.add((Earning) object);
 		}
-		return getOlderThan(earnings, seconds);
 	}
 
 	/**
-	 * retrieves Dateable objects older than seconds from a given Iterable
+	 * Called by the market slots when an object has been removed from them.
 	 *
-	 * @param <T>
-	 * @param set
-	 *            the set to search in
-	 * @param seconds
-	 *            the maximum age
-	 * @return the filtered list
+	 * @param slot slot where the object was removed from
+	 * @param object removed object
 	 */
-	private <T extends Dateable> List<T> getOlderThan(Iterable<T> set,
-			int seconds) {
-		List<T> old = new LinkedList<T>();
-		for (T obj : set) {
-			if (System.currentTimeMillis() > obj.getTimestamp() + 1000L
-					* seconds) {
-				old.add(obj);
-			}
+	void onSlotObjectRemoved(RPSlot slot, RPObject object) {
+		if (OFFERS_SLOT_NAME.equals(slot.getName())) {
+			offerIndex.remove((Offer) object);
+		} else if (EXPIRED_OFFERS_SLOT_NAME.equals(slot.getName())) {
+			expiredOfferIndex.remove((Offer) object);
+		} else if (EARNINGS_SLOT_NAME.equals(slot.getName())) {
+			earningIndex.remove((Earning) object);
 		}
+	}
 
-		return old;
+	/**
+	 * Called by offers and earnings in the market when their timestamp has
+	 * changed.
+	 *
+	 * @param object changed offer or earning
+	 */
+	void onTimestampChanged(RPObject object) {
+		if (object instanceof Offer) {
+			offerIndex.updateTimestamp((Offer) object);
+			expiredOfferIndex.updateTimestamp((Offer) object);
+		} else if (object instanceof Earning) {
+			earningIndex.updateTimestamp((Earning) object);
+		}
 	}
 
 	/**
@@ -530,7 +584,7 @@ public class Market extends PassiveEntity {
 	 * @return true iff the Offer o is in this market's offers
 	 */
 	public boolean contains(Offer o) {
-		return getSlot(OFFERS_SLOT_NAME).has(o.getID());
+		return offerIndex.contains(o);
 	}
 
 	/**
@@ -538,12 +592,6 @@ public class Market extends PassiveEntity {
 	 * @return true iff there are earnings for this player in the market
 	 */
 	public boolean hasEarningsFor(Player player) {
-		for(RPObject o : this.getSlot(EARNINGS_SLOT_NAME)) {
-			Earning e = (Earning) o;
-			if(e.getSeller().equals(player.getName())) {
-				return true;
-			}
-		}
-		return false;
+		return earningIndex.count(player.getName()) > 0;
 	}
 }
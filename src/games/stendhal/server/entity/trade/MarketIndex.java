@@ -0,0 +1,434 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import games.stendhal.server.entity.item.Item;
+import marauroa.common.game.RPObject;
+
+/**
+ * Index over the contents of a market slot. The objects are kept in the order
+ * of the slot, by their owner, by the name and class of their item, and by
+ * their timestamp, so that the market can answer the queries of the NPCs and
+ * the offer expirer without looking at every object in the slot.
+ *
+ * @param <T> type of the indexed objects
+ */
+final class MarketIndex<T extends RPObject & Dateable> {
+	/** Order of the objects in the slot. */
+	private static final Comparator<Entry<?>> SLOT_ORDER = Comparator.comparingLong(entry -> entry.sequence);
+	/** Order of the objects by time, oldest first. */
+	private static final Comparator<Entry<?>> TIME_ORDER = Comparator.<Entry<?>>comparingLong(entry -> entry.timestamp)
+			.thenComparingLong(entry -> entry.sequence);
+
+	/** Function for getting the owner name of an object. */
+	private final Function<T, String> owner;
+	/** Function for getting the item of an object, or <code>null</code>. */
+	private final Function<T, Item> item;
+
+	/** Entries of the objects. */
+	private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+	/** All entries in slot order. */
+	private final NavigableSet<Entry<T>> slotOrder = new TreeSet<>(SLOT_ORDER);
+	/** Entries ordered by time. */
+	private final NavigableSet<Entry<T>> timeOrder = new TreeSet<>(TIME_ORDER);
+	/** Entries by owner name. */
+	private final Map<String, NavigableSet<Entry<T>>> byOwner = new HashMap<>();
+	/** Entries by item name, sorted by the name. */
+	private final TreeMap<String, NavigableSet<Entry<T>>> byItemName = new TreeMap<>();
+	/** Entries by item class. */
+	private final Map<String, NavigableSet<Entry<T>>> byItemClass = new HashMap<>();
+	/** Entries whose object has no item. */
+	private final NavigableSet<Entry<T>> withoutItem = new TreeSet<>(SLOT_ORDER);
+	/** Sequence number for the next added object. */
+	private long nextSequence;
+
+	/**
+	 * Create a new MarketIndex.
+	 *
+	 * @param owner function for getting the owner name of an object
+	 * @param item function for getting the item of an object. The function
+	 * 	may return <code>null</code> for objects that have no item
+	 */
+	MarketIndex(Function<T, String> owner, Function<T, Item> item) {
+		this.owner = owner;
+		this.item = item;
+	}
+
+	/**
+	 * Add an object. The object is placed last in the slot order.
+	 *
+	 * @param object added object
+	 */
+	void add(T object) {
+		if (entries.containsKey(object)) {
+			remove(object);
+		}
+		Entry<T> entry = new Entry<>(object, nextSequence++, owner.apply(object));
+		Item objectItem = item.apply(object);
+		if (objectItem != null) {
+			entry.itemName = objectItem.getName();
+			entry.itemClass = objectItem.getItemClass();
+		}
+		entries.put(object, entry);
+		slotOrder.add(entry);
+		timeOrder.add(entry);
+		addTo(byOwner, entry.owner, entry);
+		if (entry.itemName != null) {
+			addTo(byItemName, entry.itemName, entry);
+			addTo(byItemClass, entry.itemClass, entry);
+		} else {
+			withoutItem.add(entry);
+		}
+	}
+
+	/**
+	 * Remove an object.
+	 *
+	 * @param object removed object
+	 * @return <code>true</code> if the object was in the index
+	 */
+	boolean remove(T object) {
+		Entry<T> entry = entries.remove(object);
+		if (entry == null) {
+			return false;
+		}
+		slotOrder.remove(entry);
+		timeOrder.remove(entry);
+		removeFrom(byOwner, entry.owner, entry);
+		if (entry.itemName != null) {
+			removeFrom(byItemName, entry.itemName, entry);
+			removeFrom(byItemClass, entry.itemClass, entry);
+		} else {
+			withoutItem.remove(entry);
+		}
+		return true;
+	}
+
+	/**
+	 * Update the position of an object in the time order after its timestamp
+	 * has changed.
+	 *
+	 * @param object changed object
+	 */
+	void updateTimestamp(T object) {
+		Entry<T> entry = entries.get(object);
+		if (entry != null) {
+			timeOrder.remove(entry);
+			entry.timestamp = object.getTimestamp();
+			timeOrder.add(entry);
+		}
+	}
+
+	/**
+	 * Check if an object is in the index.
+	 *
+	 * @param object object to check
+	 * @return <code>true</code> if the object is in the index
+	 */
+	boolean contains(T object) {
+		return entries.containsKey(object);
+	}
+
+	/**
+	 * Get the number of objects of an owner.
+	 *
+	 * @param ownerName name of the owner
+	 * @return number of objects
+	 */
+	int count(String ownerName) {
+		Collection<Entry<T>> set = byOwner.get(ownerName);
+		return (set != null) ? set.size() : 0;
+	}
+
+	/**
+	 * Get all objects in slot order.
+	 *
+	 * @return objects
+	 */
+	List<T> getAll() {
+		return toObjects(slotOrder.iterator(), null, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get the objects of an owner in slot order.
+	 *
+	 * @param ownerName name of the owner
+	 * @return objects
+	 */
+	List<T> getByOwner(String ownerName) {
+		Collection<Entry<T>> set = byOwner.get(ownerName);
+		if (set == null) {
+			return new ArrayList<>(0);
+		}
+		return toObjects(set.iterator(), null, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get the objects whose timestamp is before a point of time, oldest first.
+	 *
+	 * @param time point of time in milliseconds
+	 * @return objects
+	 */
+	List<T> getOlderThan(long time) {
+		List<T> result = new ArrayList<>();
+		for (Entry<T> entry : timeOrder) {
+			if (entry.timestamp >= time) {
+				break;
+			}
+			result.add(entry.object);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the sorted names of the items in the objects.
+	 *
+	 * @return item names
+	 */
+	SortedSet<String> getItemNames() {
+		return new TreeSet<>(byItemName.keySet());
+	}
+
+	/**
+	 * Find objects in slot order.
+	 *
+	 * @param word a word that the item name must contain, or that the item
+	 * 	class must equal. <code>null</code> matches all objects. Objects
+	 * 	without an item match any word
+	 * @param ownerName name of the owner, or <code>null</code> for objects of
+	 * 	any owner
+	 * @param offset number of matching objects to skip
+	 * @param limit maximum number of objects to return
+	 * @return matching objects
+	 */
+	List<T> find(String word, String ownerName, int offset, int limit) {
+		if (ownerName != null) {
+			Collection<Entry<T>> set = byOwner.get(ownerName);
+			if (set == null) {
+				return new ArrayList<>(0);
+			}
+			return toObjects(set.iterator(), word, offset, limit);
+		} else if (word != null) {
+			return toObjects(findByWord(word), null, offset, limit);
+		}
+		return toObjects(slotOrder.iterator(), null, offset, limit);
+	}
+
+	/**
+	 * Find the entries matching a word by looking at the distinct item names
+	 * rather than at the individual objects. The entries of the matching
+	 * names are merged only as far as they are read.
+	 *
+	 * @param word word to look for
+	 * @return matching entries in slot order
+	 */
+	private Iterator<Entry<T>> findByWord(String word) {
+		List<NavigableSet<Entry<T>>> sets = new ArrayList<>();
+		for (Map.Entry<String, NavigableSet<Entry<T>>> e : byItemName.entrySet()) {
+			if (e.getKey().contains(word)) {
+				sets.add(e.getValue());
+			}
+		}
+		NavigableSet<Entry<T>> classSet = byItemClass.get(word);
+		if (classSet != null) {
+			sets.add(classSet);
+		}
+		if (!withoutItem.isEmpty()) {
+			sets.add(withoutItem);
+		}
+		if (sets.size() == 1) {
+			return sets.get(0).iterator();
+		}
+		return new MergingIterator<>(sets);
+	}
+
+	/**
+	 * Check if an entry matches a word.
+	 *
+	 * @param entry checked entry
+	 * @param word word to look for
+	 * @return <code>true</code> if the entry matches
+	 */
+	private static boolean matches(Entry<?> entry, String word) {
+		return (entry.itemName == null) || entry.itemName.contains(word) || word.equals(entry.itemClass);
+	}
+
+	/**
+	 * Get a page of the objects of entries.
+	 *
+	 * @param entries entries in the wanted order
+	 * @param word word the entries must match, or <code>null</code> if all
+	 * 	the entries match
+	 * @param offset number of matching entries to skip
+	 * @param limit maximum number of objects to return
+	 * @return objects
+	 */
+	private List<T> toObjects(Iterator<Entry<T>> entries, String word, int offset, int limit) {
+		List<T> result = new ArrayList<>();
+		int skipped = 0;
+		while (entries.hasNext() && (result.size() < limit)) {
+			Entry<T> entry = entries.next();
+			if ((word != null) && !matches(entry, word)) {
+				continue;
+			}
+			if (skipped < offset) {
+				skipped++;
+			} else {
+				result.add(entry.object);
+			}
+		}
+		return result;
+	}
+
+	private static <K, E extends Dateable> void addTo(Map<K, NavigableSet<Entry<E>>> map, K key, Entry<E> entry) {
+		NavigableSet<Entry<E>> set = map.get(key);
+		if (set == null) {
+			set = new TreeSet<>(SLOT_ORDER);
+			map.put(key, set);
+		}
+		set.add(entry);
+	}
+
+	private static <K, E extends Dateable> void removeFrom(Map<K, NavigableSet<Entry<E>>> map, K key, Entry<E> entry) {
+		NavigableSet<Entry<E>> set = map.get(key);
+		if (set != null) {
+			set.remove(entry);
+			if (set.isEmpty()) {
+				map.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Iterator over several sets of entries in slot order. Entries that are
+	 * in more than one of the sets are returned once.
+	 *
+	 * @param <T> type of the indexed objects
+	 */
+	private static final class MergingIterator<T extends Dateable> implements Iterator<Entry<T>> {
+		/** Iterators of the sets, by their next entry. */
+		private final PriorityQueue<PeekingIterator<T>> queue = new PriorityQueue<>(
+				(a, b) -> SLOT_ORDER.compare(a.next, b.next));
+		/** Last returned entry. */
+		private Entry<T> last;
+
+		MergingIterator(Collection<NavigableSet<Entry<T>>> sets) {
+			for (NavigableSet<Entry<T>> set : sets) {
+				if (!set.isEmpty()) {
+					queue.add(new PeekingIterator<>(set.iterator()));
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			skipReturned();
+			return !queue.isEmpty();
+		}
+
+		@Override
+		public Entry<T> next() {
+			skipReturned();
+			if (queue.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			last = advance();
+			return last;
+		}
+
+		/**
+		 * Drop the entries that have been returned already from the head of
+		 * the queue.
+		 */
+		private void skipReturned() {
+			while (!queue.isEmpty() && (queue.peek().next == last)) {
+				advance();
+			}
+		}
+
+		/**
+		 * Take the next entry and move its iterator forward.
+		 *
+		 * @return next entry
+		 */
+		private Entry<T> advance() {
+			PeekingIterator<T> it = queue.poll();
+			Entry<T> entry = it.next;
+			if (it.advance()) {
+				queue.add(it);
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * An iterator that knows its next entry.
+	 *
+	 * @param <T> type of the indexed objects
+	 */
+	private static final class PeekingIterator<T extends Dateable> {
+		private final Iterator<Entry<T>> iterator;
+		Entry<T> next;
+
+		PeekingIterator(Iterator<Entry<T>> iterator) {
+			this.iterator = iterator;
+			advance();
+		}
+
+		/**
+		 * Move to the next entry.
+		 *
+		 * @return <code>false</code> if there are no more entries
+		 */
+		boolean advance() {
+			next = iterator.hasNext() ? iterator.next() : null;
+			return next != null;
+		}
+	}
+
+	/**
+	 * An indexed object with the values it is indexed by.
+	 *
+	 * @param <T> type of the object
+	 */
+	private static final class Entry<T extends Dateable> {
+		final T object;
+		final long sequence;
+		final String owner;
+		String itemName;
+		String itemClass;
+		long timestamp;
+
+		Entry(T object, long sequence, String owner) {
+			this.object = object;
+			this.sequence = sequence;
+			this.owner = owner;
+			timestamp = object.getTimestamp();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+import marauroa.common.game.SlotOwner;
+
+/**
+ * A slot of the market that tells the market about added and removed
+ * offers and earnings, so that the market can keep its indexes up to date.
+ */
+class MarketSlot extends RPSlot {
+	/**
+	 * Create a new MarketSlot.
+	 *
+	 * @param name name of the slot
+	 */
+	MarketSlot(final String name) {
+		super(name);
+	}
+
+	@Override
+	protected int add(final RPObject object, final boolean assignId) {
+		final int id = super.add(object, assignId);
+		final SlotOwner owner = getOwner();
+		if (owner instanceof Market) {
+			((Market) owner).onSlotObjectAdded(this, object);
+		}
+		return id;
+	}
+
+	@Override
+	public RPObject remove(final RPObject.ID id) {
+		final RPObject removed = super.remove(id);
+		final SlotOwner owner = getOwner();
+		if ((removed != null) && (owner instanceof Market)) {
+			((Market) owner).onSlotObjectRemoved(this, removed);
+		}
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		final List<RPObject> removed = new ArrayList<>(size());
+		for (final RPObject object : this) {
+			removed.add(object);
+		}
+		super.clear();
+		final SlotOwner owner = getOwner();
+		if (owner instanceof Market) {
+			for (final RPObject object : removed) {
+				((Market) owner).onSlotObjectRemoved(this, object);
+			}
+		}
+	}
+}
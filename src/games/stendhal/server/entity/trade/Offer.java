@@ -179,6 +179,15 @@ public class Offer extends Entity implements Dateable {
 		put(TIMESTAMP, Long.toString(System.currentTimeMillis()));
 	}
 
+	@Override
+	public void put(final String attribute, final String value) {
+		super.put(attribute, value);
+		// keep the expiry order of the market up to date
+		if (TIMESTAMP.equals(attribute) && (getContainerOwner() instanceof Market)) {
+			((Market) getContainerOwner()).onTimestampChanged(this);
+		}
+	}
+
 	/**
 	 * Check whether accepting this offer should be rewarder in trade score.
 	 *
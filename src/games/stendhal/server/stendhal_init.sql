@@ -148,6 +148,7 @@ CREATE TABLE IF NOT EXISTS npcs (
   buys          VARCHAR(1000),
   sells         VARCHAR(1000),
   sells_outfit  VARCHAR(1000),
+  content_hash  VARCHAR(64),
   PRIMARY KEY (id)
 );
 
@@ -170,6 +171,7 @@ CREATE TABLE IF NOT EXISTS zoneinfo (
   blendMethod   VARCHAR(64),
   dangerLevel   FLOAT,
   weather       VARCHAR(64),
+  content_hash  VARCHAR(64),
   PRIMARY KEY (id)
 );
 
@@ -24,6 +24,10 @@ public class QuestUtils {
 	 * @return evaluated slot
 	 */
 	public static String evaluateQuestSlotName(String name) {
+		if (name.indexOf('[') < 0) {
+			// nearly all slot names have no variables
+			return name;
+		}
 		Map<String, String> params = new HashMap<String, String>();
 		Calendar calendar = Calendar.getInstance();
 		int year = calendar.get(Calendar.YEAR);
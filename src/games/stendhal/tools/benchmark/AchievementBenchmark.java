@@ -0,0 +1,145 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.rp.achievement.Achievement;
+import games.stendhal.server.core.rp.achievement.AchievementNotifier;
+import games.stendhal.server.core.rp.achievement.Category;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.RPObject;
+import marauroa.server.game.db.DatabaseFactory;
+
+/**
+ * Compares the achievement checks on login and on quest changes with the
+ * checks before the achievements were indexed by quest slot, and before
+ * reached achievements were skipped.
+ *
+ * <p>The veteran character has a high level, has finished many quests
+ * many times, and has killed nearly every creature. It has already reached
+ * every achievement it fulfills, which is the usual situation on a login.
+ * A few expensive achievements, like killing all creatures solo, are not
+ * reached yet.
+ *
+ * <p>The achievements need the database configured in server.ini, like the
+ * tests do.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.AchievementBenchmark [iterations]
+ */
+public class AchievementBenchmark {
+	/** categories checked on quest changes before they were indexed */
+	private static final Set<Category> QUEST_CATEGORIES = EnumSet.of(Category.QUEST,
+			Category.QUEST_ADOS_ITEMS, Category.QUEST_SEMOS_MONSTER, Category.QUEST_KIRDNEH_ITEM,
+			Category.FRIEND, Category.OBTAIN, Category.PRODUCTION,
+			Category.QUEST_MITHRILBOURGH_ENEMY_ARMY, Category.QUEST_KILL_BLORDROUGHS);
+
+	public static void main(final String[] args) throws Exception {
+		// creates the RPClasses, and configures logging
+		SingletonRepository.getRPWorld();
+		new DatabaseFactory().initializeDatabase();
+		BenchmarkRunner.setUp();
+
+		final int iterations = BenchmarkRunner.argument(args, 0, 20000);
+
+		final AchievementNotifier notifier = AchievementNotifier.get();
+		notifier.initialize();
+
+		final Player player = createVeteran();
+		final List<Achievement> loginAchievements = new ArrayList<Achievement>();
+		final List<Achievement> questAchievements = new ArrayList<Achievement>();
+		for (final Achievement achievement : notifier.getAchievements()) {
+			if (achievement.isFulfilled(player)) {
+				player.addReachedAchievement(achievement.getIdentifier());
+			}
+			if ((achievement.getCategory() != Category.OUTSIDE_ZONE)
+					&& (achievement.getCategory() != Category.UNDERGROUND_ZONE)) {
+				loginAchievements.add(achievement);
+			}
+			if (QUEST_CATEGORIES.contains(achievement.getCategory())) {
+				questAchievements.add(achievement);
+			}
+		}
+		BenchmarkRunner.section(notifier.getAchievements().size() + " achievements, "
+				+ loginAchievements.size() + " checked on login, "
+				+ questAchievements.size() + " on quest changes");
+
+		BenchmarkRunner.section("login of a veteran:");
+		BenchmarkRunner.compare(iterations, "check all conditions", i -> legacyCheck(player, loginAchievements),
+				"skip reached achievements", i -> {
+					notifier.onLogin(player);
+					return 1;
+				});
+
+		BenchmarkRunner.section("quest slot change of a veteran:");
+		BenchmarkRunner.compare(iterations, "check all quest categories", i -> legacyCheck(player, questAchievements),
+				"check achievements of the slot", i -> {
+					notifier.onQuestChange(player, "daily_item");
+					return 1;
+				});
+	}
+
+	/**
+	 * The achievement check before reached achievements were skipped: every
+	 * condition is evaluated.
+	 *
+	 * @param player checked player
+	 * @param toCheck checked achievements
+	 * @return number of newly reached achievements
+	 */
+	private static long legacyCheck(final Player player, final List<Achievement> toCheck) {
+		long reached = 0;
+		for (final Achievement achievement : toCheck) {
+			if (achievement.isFulfilled(player) && !player.hasReachedAchievement(achievement.getIdentifier())) {
+				reached++;
+			}
+		}
+		return reached;
+	}
+
+	private static Player createVeteran() {
+		final RPObject object = new RPObject();
+		object.put("name", "veteran");
+		final Player player = (Player) new PlayerTransformer().transform(object);
+		player.setName("veteran");
+		player.setLevel(400);
+		player.initReachedAchievements();
+
+		final String[] repeated = { "daily_item", "daily", "weekly_item", "elf_princess", "kill_monks",
+				"meal_for_groongo", "restock_flowershop", "deathmatch" };
+		for (final String quest : repeated) {
+			player.setKeyedSlot("!quests", quest, "done;0;120;0");
+		}
+		player.setKeyedSlot("!quests", "kill_enemy_army", "done;0;0;75");
+		player.setKeyedSlot("!quests", "kill_blordroughs", "done;0;completed=80");
+		for (int i = 0; i < 150; i++) {
+			player.setKeyedSlot("!quests", "quest_" + i, "done");
+		}
+
+		// every creature but a few, so that killing all of them solo is not reached
+		int count = 0;
+		for (final Creature creature : SingletonRepository.getEntityManager().getCreatures()) {
+			if ((count++ % 50) != 0) {
+				player.setSoloKillCount(creature.getName(), 600);
+				player.setSharedKillCount(creature.getName(), 600);
+			}
+		}
+		return player;
+	}
+}
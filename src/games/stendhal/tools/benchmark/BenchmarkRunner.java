@@ -0,0 +1,235 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Timing helper shared by the command line benchmarks in this package. It
+ * runs the warm up and the measured iterations, and prints the results in a
+ * common format, so that the benchmarks only need to set up their data and
+ * declare the operations to measure. Results are printed indented below the
+ * last {@link #section(String)} heading.
+ */
+public final class BenchmarkRunner {
+	/** Sink for results, so that the JIT can not drop the measured code. */
+	private static volatile long blackhole;
+
+	/**
+	 * An operation to measure.
+	 */
+	public interface Operation {
+		/**
+		 * Run the operation once.
+		 *
+		 * @param iteration running number of the invocation
+		 * @return any value depending on the work done
+		 */
+		long run(int iteration);
+	}
+
+	/**
+	 * A task that is timed as a whole.
+	 */
+	public interface Task {
+		/**
+		 * Run the task.
+		 *
+		 * @throws Exception on failure
+		 */
+		void run() throws Exception;
+	}
+
+	private BenchmarkRunner() {
+		// utility class
+	}
+
+	/**
+	 * Configure logging to only show warnings and errors, so that debug
+	 * logging does not distort the measurements. Call this first.
+	 */
+	public static void setUp() {
+		BasicConfigurator.configure();
+		Logger.getRootLogger().setLevel(Level.WARN);
+	}
+
+	/**
+	 * Get a numeric command line argument.
+	 *
+	 * @param args command line arguments
+	 * @param index index of the argument
+	 * @param defaultValue value to use if the argument is missing
+	 * @return argument value
+	 */
+	public static int argument(final String[] args, final int index, final int defaultValue) {
+		if (args.length > index) {
+			return Integer.parseInt(args[index]);
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Get all command line arguments as numbers.
+	 *
+	 * @param args command line arguments
+	 * @param defaultValues values to use if there are no arguments
+	 * @return argument values
+	 */
+	public static int[] arguments(final String[] args, final int... defaultValues) {
+		if (args.length == 0) {
+			return defaultValues;
+		}
+		final int[] values = new int[args.length];
+		for (int i = 0; i < args.length; i++) {
+			values[i] = Integer.parseInt(args[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Print a heading for the following results.
+	 *
+	 * @param title heading
+	 */
+	public static void section(final String title) {
+		System.out.println(title);
+	}
+
+	/**
+	 * Measure the average run time, and the allocated memory if the JVM can
+	 * tell it, of an operation and print them.
+	 *
+	 * @param name label for the output
+	 * @param iterations number of measured invocations
+	 * @param operation operation to measure
+	 * @return average time per invocation in nanoseconds
+	 */
+	public static double measure(final String name, final int iterations, final Operation operation) {
+		long sink = 0;
+		final int warmup = Math.max(1, iterations / 5);
+		for (int i = 0; i < warmup; i++) {
+			sink += operation.run(i);
+		}
+
+		final long startBytes = allocatedBytes();
+		final long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += operation.run(i);
+		}
+		final long elapsed = System.nanoTime() - start;
+		final long allocated = allocatedBytes() - startBytes;
+		blackhole += sink;
+
+		final double perOp = (double) elapsed / iterations;
+		if (startBytes < 0) {
+			print(name, String.format(Locale.ENGLISH, "%14.1f ns/op", perOp));
+		} else {
+			print(name, String.format(Locale.ENGLISH, "%14.1f ns/op %12.0f B/op", perOp,
+					(double) allocated / iterations));
+		}
+		return perOp;
+	}
+
+	/**
+	 * Measure an operation and the implementation it replaced with the same
+	 * number of iterations, and print both results and the speed up.
+	 *
+	 * @param iterations number of measured invocations of each operation
+	 * @param legacyName label of the replaced implementation
+	 * @param legacy replaced implementation
+	 * @param name label of the current implementation
+	 * @param operation current implementation
+	 * @return speed up factor
+	 */
+	public static double compare(final int iterations, final String legacyName, final Operation legacy,
+			final String name, final Operation operation) {
+		final double before = measure(legacyName, iterations, legacy);
+		final double after = measure(name, iterations, operation);
+		final double speedUp = before / after;
+		print("speed up", String.format(Locale.ENGLISH, "%13.1fx", speedUp));
+		return speedUp;
+	}
+
+	/**
+	 * Time a single run of a task and print it.
+	 *
+	 * @param name label for the output
+	 * @param task task to time
+	 * @return elapsed time in milliseconds
+	 * @throws Exception if the task fails
+	 */
+	public static long time(final String name, final Task task) throws Exception {
+		final long elapsed = run(task) / 1000000;
+		print(name, String.format(Locale.ENGLISH, "%14d ms", elapsed));
+		return elapsed;
+	}
+
+	/**
+	 * Time a single run of a task that processes a number of units, and print
+	 * the units processed per second.
+	 *
+	 * @param name label for the output
+	 * @param count number of units the task processes
+	 * @param unit name of the units
+	 * @param task task to time
+	 * @return units per second
+	 * @throws Exception if the task fails
+	 */
+	public static double throughput(final String name, final int count, final String unit, final Task task)
+			throws Exception {
+		final double perSecond = count * 1e9 / run(task);
+		print(name, String.format(Locale.ENGLISH, "%14.0f %s/s", perSecond, unit));
+		return perSecond;
+	}
+
+	/**
+	 * Run a task.
+	 *
+	 * @param task task
+	 * @return elapsed time in nanoseconds
+	 * @throws Exception if the task fails
+	 */
+	private static long run(final Task task) throws Exception {
+		final long start = System.nanoTime();
+		task.run();
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Print a result line.
+	 *
+	 * @param name label
+	 * @param result formatted result
+	 */
+	private static void print(final String name, final String result) {
+		System.out.println(String.format(Locale.ENGLISH, "  %-48s %s", name, result));
+	}
+
+	/**
+	 * Get the number of bytes allocated by the current thread.
+	 *
+	 * @return allocated bytes, or -1 if the JVM does not tell it
+	 */
+	private static long allocatedBytes() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
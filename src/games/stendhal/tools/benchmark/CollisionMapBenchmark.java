@@ -0,0 +1,137 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.awt.Point;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import games.stendhal.common.CollisionDetection;
+import games.stendhal.common.CollisionMap;
+import games.stendhal.common.Line;
+
+/**
+ * Compares the word packed CollisionMap with the column BitSet map it
+ * replaced, for rectangle and line collision checks.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.CollisionMapBenchmark [zone size]
+ */
+public class CollisionMapBenchmark {
+	private static final int ITERATIONS = 2000000;
+
+	/**
+	 * The map used before, with one BitSet per column.
+	 */
+	private static class LegacyMap {
+		private final int width;
+		private final int height;
+		private final BitSet[] colls;
+
+		LegacyMap(final int width, final int height) {
+			this.width = width;
+			this.height = height;
+			colls = new BitSet[width];
+			for (int i = 0; i < width; i++) {
+				colls[i] = new BitSet();
+			}
+		}
+
+		void set(final int x, final int y) {
+			colls[x].set(y);
+		}
+
+		boolean get(final int x, final int y) {
+			return colls[x].get(y);
+		}
+
+		boolean collides(final int x, final int y, final int w, final int h) {
+			if (x < 0 || x - 1 + w >= this.width) {
+				return true;
+			}
+			if (y < 0 || y - 1 + h >= this.height) {
+				return true;
+			}
+			final BitSet result = new BitSet();
+			for (int i = x; i < x + w; i++) {
+				result.or(colls[i]);
+			}
+			return !result.get(y, y + h).isEmpty();
+		}
+
+		boolean collidesOnLine(final int x1, final int y1, final int x2, final int y2) {
+			final List<Point> points;
+			if ((x1 < x2) || ((x1 == x2) && (y1 < y2))) {
+				points = Line.renderLine(x1, y1, x2, y2);
+			} else {
+				points = Line.renderLine(x2, y2, x1, y1);
+			}
+			for (final Point point : points) {
+				final int x = (int) point.getX();
+				final int y = (int) point.getY();
+				if ((x < 0) || (x >= width) || (y < 0) || (y >= height) || get(x, y)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	public static void main(final String[] args) {
+		BenchmarkRunner.setUp();
+		final int size = BenchmarkRunner.argument(args, 0, 256);
+		final Random random = new Random(42);
+		final LegacyMap legacy = new LegacyMap(size, size);
+		final CollisionMap map = new CollisionMap(size, size);
+		final CollisionDetection detection = new CollisionDetection();
+		detection.init(size, size);
+		for (int i = 0; i < size * size / 20; i++) {
+			final int x = random.nextInt(size);
+			final int y = random.nextInt(size);
+			legacy.set(x, y);
+			map.set(x, y);
+			detection.setCollide(x, y);
+		}
+
+		final int[][] queries = new int[1024][];
+		for (int i = 0; i < queries.length; i++) {
+			final int x = random.nextInt(size - 2);
+			final int y = random.nextInt(size - 2);
+			// Line.renderLine() can not handle lines of a single point
+			queries[i] = new int[] { x, y, x + 1 + random.nextInt(6), y + random.nextInt(13) - 6 };
+		}
+
+		BenchmarkRunner.section(size + "x" + size + " map, 5% collision:");
+		BenchmarkRunner.compare(ITERATIONS, "collides 1x2, BitSet columns", i -> {
+			final int[] q = queries[i & 1023];
+			return legacy.collides(q[0], q[1], 1, 2) ? 1 : 0;
+		}, "collides 1x2, packed words", i -> {
+			final int[] q = queries[i & 1023];
+			return map.collides(q[0], q[1], 1, 2) ? 1 : 0;
+		});
+		BenchmarkRunner.compare(ITERATIONS, "collides 2x2, BitSet columns", i -> {
+			final int[] q = queries[i & 1023];
+			return legacy.collides(q[0], q[1], 2, 2) ? 1 : 0;
+		}, "collides 2x2, packed words", i -> {
+			final int[] q = queries[i & 1023];
+			return map.collides(q[0], q[1], 2, 2) ? 1 : 0;
+		});
+		BenchmarkRunner.compare(ITERATIONS / 4, "collidesOnLine, rendered points", i -> {
+			final int[] q = queries[i & 1023];
+			return legacy.collidesOnLine(q[0], q[1], q[2], q[3]) ? 1 : 0;
+		}, "collidesOnLine, packed words", i -> {
+			final int[] q = queries[i & 1023];
+			return detection.collidesOnLine(q[0], q[1], q[2], q[3]) ? 1 : 0;
+		});
+	}
+}
@@ -0,0 +1,173 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import games.stendhal.server.core.engine.RPClassGenerator;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.rule.EntityManager;
+import games.stendhal.server.entity.RPEntity;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.RPObject;
+
+/**
+ * Measures the hit resolution of a fully equipped player fighting a creature,
+ * in the way tools/SimulateCombat runs its rounds. Compares looking up the
+ * item values from the equipment slots at every call, as was done before the
+ * equipment summary, with the summary kept by the entities.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.CombatBenchmark [hits]
+ */
+public class CombatBenchmark {
+
+	public static void main(final String[] args) {
+		BenchmarkRunner.setUp();
+		new RPClassGenerator().createRPClasses();
+		final EntityManager em = SingletonRepository.getEntityManager();
+
+		final int hits = BenchmarkRunner.argument(args, 0, 200000);
+		final Player player = (Player) new PlayerTransformer().transform(new RPObject());
+		player.setLevel(40);
+		player.setAtk(60);
+		player.setDef(80);
+		player.equip("lhand", em.getItem("unicorn shield"));
+		player.equip("rhand", em.getItem("ice sword"));
+		player.equip("armor", em.getItem("chain armor"));
+		player.equip("head", em.getItem("chain helmet"));
+		player.equip("legs", em.getItem("chain legs"));
+		player.equip("feet", em.getItem("steel boots"));
+		player.equip("cloak", em.getItem("dwarf cloak"));
+		player.equip("finger", em.getItem("engagement ring"));
+		final Creature enemy = em.getCreature("troll");
+		BenchmarkRunner.section("player level " + player.getLevel() + " against " + enemy.getName() + ":");
+
+		BenchmarkRunner.compare(hits, "item values from slots",
+				i -> (long) (legacyItemAtk(player) + legacyItemDef(player) + legacyItemDef(enemy)),
+				"item values from summary",
+				i -> (long) (player.getItemAtk() + player.getItemDef() + enemy.getItemDef()));
+
+		BenchmarkRunner.compare(hits, "hit, summary recalculated", i -> {
+			player.updateItemAtkDef();
+			enemy.updateItemAtkDef();
+			return hit(player, enemy);
+		}, "hit, summary kept", i -> hit(player, enemy));
+	}
+
+	/**
+	 * Resolve one attack of each entity, like a turn of SimulateCombat.
+	 */
+	private static long hit(final Player player, final Creature enemy) {
+		long damage = 0;
+		player.heal();
+		enemy.heal();
+		if (player.canHit(enemy)) {
+			damage += player.damageDone(enemy, player.getItemAtk(), player.getDamageType());
+		}
+		if (enemy.canHit(player)) {
+			damage += enemy.damageDone(player, enemy.getItemAtk(), player.getDamageType());
+		}
+		return damage;
+	}
+
+	/**
+	 * Find the usable weapons, as done before the equipment summary.
+	 */
+	private static List<Item> legacyWeapons(final RPEntity entity) {
+		final List<Item> weapons = new ArrayList<Item>();
+		Item weaponItem = entity.getWeapon();
+		if (weaponItem != null) {
+			weapons.add(weaponItem);
+			if (weaponItem.getName().startsWith("l hand ")) {
+				weaponItem = entity.getEquippedItemClass("rhand", weaponItem.getItemClass());
+				if ((weaponItem != null) && (weaponItem.getName().startsWith("r hand "))) {
+					weapons.add(weaponItem);
+				} else {
+					weapons.clear();
+				}
+			} else if (weaponItem.getName().startsWith("r hand ")) {
+				weapons.clear();
+			}
+		}
+		return weapons;
+	}
+
+	/**
+	 * Calculate the item attack, as done before the equipment summary.
+	 */
+	private static float legacyItemAtk(final RPEntity entity) {
+		int weapon = 0;
+		final List<Item> weapons = legacyWeapons(entity);
+		for (final Item weaponItem : weapons) {
+			weapon += weaponItem.getAttack();
+		}
+		if (!weapons.isEmpty() && legacyWeapons(entity).get(0).isOfClass("ranged")) {
+			for (final String slot : new String[] { "lhand", "rhand" }) {
+				final Item ammo = entity.getEquippedItemClass(slot, "ammunition");
+				if (ammo != null) {
+					weapon += ammo.getAttack();
+					break;
+				}
+			}
+		}
+		if (entity.hasRing()) {
+			weapon += entity.getRing().getAttack();
+		}
+		return weapon;
+	}
+
+	/**
+	 * Calculate the item defense, as done before the equipment summary.
+	 */
+	private static float legacyItemDef(final RPEntity entity) {
+		float def = 0;
+		if (entity.hasShield()) {
+			def += 4.0f * (int) (entity.getShield().getDefense() / levelModifier(entity, entity.getShield()));
+		}
+		if (entity.hasArmor()) {
+			def += 2.0f * (int) (entity.getArmor().getDefense() / levelModifier(entity, entity.getArmor()));
+		}
+		if (entity.hasHelmet()) {
+			def += (int) (entity.getHelmet().getDefense() / levelModifier(entity, entity.getHelmet()));
+		}
+		if (entity.hasLegs()) {
+			def += (int) (entity.getLegs().getDefense() / levelModifier(entity, entity.getLegs()));
+		}
+		if (entity.hasBoots()) {
+			def += (int) (entity.getBoots().getDefense() / levelModifier(entity, entity.getBoots()));
+		}
+		if (entity.hasCloak()) {
+			def += 1.5f * (int) (entity.getCloak().getDefense() / levelModifier(entity, entity.getCloak()));
+		}
+		if (entity.hasRing()) {
+			def += (int) (entity.getRing().getDefense() / levelModifier(entity, entity.getRing()));
+		}
+		int weapon = 0;
+		for (final Item weaponItem : legacyWeapons(entity)) {
+			weapon += weaponItem.getDefense() / levelModifier(entity, weaponItem);
+		}
+		return def + 4.0f * weapon;
+	}
+
+	private static double levelModifier(final RPEntity entity, final Item item) {
+		final String minLevel = item.get("min_level");
+		if ((minLevel != null) && (Integer.parseInt(minLevel) > entity.getLevel())) {
+			return 1 - Math.log(((double) entity.getLevel() + 1) / (Integer.parseInt(minLevel) + 1));
+		}
+		return 1.0;
+	}
+}
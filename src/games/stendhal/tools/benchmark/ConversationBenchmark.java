@@ -0,0 +1,177 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import games.stendhal.common.parser.ConversationParser;
+import games.stendhal.common.parser.Sentence;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.entity.npc.ConversationPhrases;
+import games.stendhal.server.entity.npc.ConversationStates;
+import games.stendhal.server.entity.npc.SpeakerNPC;
+import games.stendhal.server.entity.npc.fsm.Engine;
+import games.stendhal.server.entity.npc.fsm.MatchType;
+import games.stendhal.server.entity.npc.fsm.Transition;
+
+/**
+ * Compares the indexed transition lookup of the NPC conversation engine with
+ * the scan over the whole transition table it replaced.
+ *
+ * <p>The NPCs are generated, as the real ones need the complete world to be
+ * loaded. Each of them knows the standard conversation phrases and a number
+ * of topics taken from the item names in data/conf/items, which is similar to
+ * the NPCs of the game that answer questions about items and sell them. The
+ * replayed chat lines are the triggers, variants that only match after
+ * normalization, typing errors and lines no NPC understands.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.ConversationBenchmark [npcs] [topics per npc]
+ */
+public class ConversationBenchmark {
+	private static final Pattern ITEM_NAME = Pattern.compile("<item name=\"([^\"]+)\"");
+
+	public static void main(final String[] args) throws Exception {
+		// creates the RPClasses, and configures logging
+		SingletonRepository.getRPWorld();
+		BenchmarkRunner.setUp();
+
+		final int npcCount = BenchmarkRunner.argument(args, 0, 300);
+		final int topicCount = BenchmarkRunner.argument(args, 1, 60);
+
+		final List<String> topics = readItemNames();
+		final Random random = new Random(42);
+		final List<SpeakerNPC> npcs = new ArrayList<SpeakerNPC>();
+		final List<List<String>> npcTopics = new ArrayList<List<String>>();
+		final List<List<Transition>> tables = new ArrayList<List<Transition>>();
+		BenchmarkRunner.section(npcCount + " NPCs with " + topicCount + " topics:");
+		BenchmarkRunner.time("create NPCs", () -> {
+			for (int i = 0; i < npcCount; i++) {
+				final SpeakerNPC npc = new SpeakerNPC("npc " + i);
+				npc.addGreeting();
+				npc.addJob("I work here.");
+				npc.addHelp("Ask me about my offers.");
+				npc.addOffer("I buy and sell things.");
+				npc.addQuest("I have nothing to do for you.");
+				npc.addGoodbye();
+				npc.add(ConversationStates.QUEST_OFFERED, ConversationPhrases.YES_MESSAGES, null,
+						ConversationStates.ATTENDING, null, null);
+				npc.add(ConversationStates.QUEST_OFFERED, ConversationPhrases.NO_MESSAGES, null,
+						ConversationStates.ATTENDING, null, null);
+				final List<String> known = new ArrayList<String>();
+				for (int t = 0; t < topicCount; t++) {
+					final String topic = topics.get(random.nextInt(topics.size()));
+					known.add(topic);
+					npc.add(ConversationStates.ATTENDING, topic, null, ConversationStates.ATTENDING, null, null);
+				}
+				npcs.add(npc);
+				npcTopics.add(known);
+				tables.add(new ArrayList<Transition>(npc.getEngine().getTransitions()));
+			}
+		});
+
+		// the chat log: which NPC is addressed, and what is said
+		final int lines = 20000;
+		final int[] addressed = new int[lines];
+		final Sentence[] chat = new Sentence[lines];
+		for (int i = 0; i < lines; i++) {
+			addressed[i] = random.nextInt(npcCount);
+			final List<String> known = npcTopics.get(addressed[i]);
+			String text = known.get(random.nextInt(known.size()));
+			switch (random.nextInt(6)) {
+			case 0:
+				text = ConversationPhrases.JOB_MESSAGES.get(0);
+				break;
+			case 1:
+				// matches after normalization
+				text = "the " + text.toUpperCase();
+				break;
+			case 2:
+				// typing error
+				final int pos = random.nextInt(text.length());
+				text = text.substring(0, pos) + text.substring(pos + 1);
+				break;
+			case 3:
+				// not understood by anyone
+				text = "where is the " + topics.get(random.nextInt(topics.size())) + " hidden";
+				break;
+			default:
+				break;
+			}
+			chat[i] = ConversationParser.parse(text);
+		}
+
+		BenchmarkRunner.section("replaying " + lines + " chat lines:");
+		BenchmarkRunner.compare(lines, "scan transition table", i -> {
+			final SpeakerNPC npc = npcs.get(addressed[i]);
+			npc.getEngine().setCurrentState(ConversationStates.ATTENDING);
+			return legacyStep(npc, tables.get(addressed[i]), chat[i]) ? 1 : 0;
+		}, "transition index", i -> {
+			final SpeakerNPC npc = npcs.get(addressed[i]);
+			final Engine engine = npc.getEngine();
+			engine.setCurrentState(ConversationStates.ATTENDING);
+			return engine.step(null, chat[i]) ? 1 : 0;
+		});
+	}
+
+	/**
+	 * The transition lookup before the transition index: every match type
+	 * scans all transitions of the NPC.
+	 *
+	 * @param npc the addressed NPC
+	 * @param transitions transition table of the NPC
+	 * @param sentence what the player said
+	 * @return <code>true</code> if a transition was made
+	 */
+	private static boolean legacyStep(final SpeakerNPC npc, final List<Transition> transitions,
+			final Sentence sentence) {
+		final Engine engine = npc.getEngine();
+		for (final MatchType type : MatchType.values()) {
+			for (final Transition transition : transitions) {
+				if (type.match(transition, engine.getCurrentState(), sentence)
+						&& transition.isConditionFulfilled(null, sentence, npc)) {
+					engine.setCurrentState(transition.getNextState());
+					npc.setIdea("attending");
+					npc.notifyWorldAboutChanges();
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static List<String> readItemNames() throws IOException {
+		final List<String> names = new ArrayList<String>();
+		final File[] files = new File("data/conf/items").listFiles();
+		Arrays.sort(files);
+		for (final File file : files) {
+			if (!file.getName().endsWith(".xml")) {
+				continue;
+			}
+			final Matcher matcher = ITEM_NAME.matcher(new String(Files.readAllBytes(file.toPath()),
+					StandardCharsets.UTF_8));
+			while (matcher.find()) {
+				names.add(matcher.group(1));
+			}
+		}
+		return names;
+	}
+}
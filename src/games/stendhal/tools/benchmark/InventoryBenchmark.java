@@ -0,0 +1,105 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import games.stendhal.server.core.engine.RPClassGenerator;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.entity.slot.Slots;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+
+/**
+ * Compares the item lookups by name used by quest conditions and merchants
+ * with the item streams over all slots that were used before the item name
+ * index. The player has a full bag, keyring and bank.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.InventoryBenchmark [lookups]
+ */
+public class InventoryBenchmark {
+
+	public static void main(final String[] args) {
+		BenchmarkRunner.setUp();
+		new RPClassGenerator().createRPClasses();
+
+		final int lookups = BenchmarkRunner.argument(args, 0, 200000);
+		final Player player = (Player) new PlayerTransformer().transform(new RPObject());
+		final List<String> itemNames = new ArrayList<String>();
+		for (final DefaultItem item : SingletonRepository.getEntityManager().getDefaultItems()) {
+			itemNames.add(item.getItemName());
+		}
+		int next = 0;
+		for (final String slotName : new String[] { "bag", "keyring", "bank" }) {
+			final RPSlot slot = player.getSlot(slotName);
+			while (!slot.isFull()) {
+				slot.add(SingletonRepository.getEntityManager().getItem(itemNames.get(next++ % itemNames.size())));
+			}
+		}
+		BenchmarkRunner.section(next + " items, " + player.getSlot("bag").size() + " in the bag:");
+
+		// the names of the items the player has, and as many others
+		final String[] names = new String[2 * next];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = itemNames.get(i % itemNames.size());
+		}
+
+		BenchmarkRunner.compare(lookups, "isEquipped, stream",
+				i -> legacyNumberOfEquipped(player, names[i % names.length]) > 0 ? 1 : 0,
+				"isEquipped, index", i -> player.isEquipped(names[i % names.length]) ? 1 : 0);
+		BenchmarkRunner.compare(lookups, "getTotalNumberOf, stream",
+				i -> legacyTotalNumberOf(player, names[i % names.length]),
+				"getTotalNumberOf, index", i -> player.getTotalNumberOf(names[i % names.length]));
+
+		final Item carrot = SingletonRepository.getEntityManager().getItem("carrot");
+		BenchmarkRunner.measure("add to and remove from a slot", lookups / 10, i -> {
+			player.getSlot("pouch").add(carrot);
+			player.getSlot("pouch").remove(carrot.getID());
+			return 1;
+		});
+	}
+
+	/**
+	 * Count the carried items by streaming over the slots, as done before the
+	 * item name index.
+	 */
+	private static int legacyNumberOfEquipped(final Player player, final String name) {
+		final Stream<RPSlot> slots = Slots.CARRYING.getNames().stream().map(player::getSlot).filter(Objects::nonNull);
+		return slots.flatMap(InventoryBenchmark::slotStream).filter(item -> name.equalsIgnoreCase(item.getName()))
+				.mapToInt(Item::getQuantity).sum();
+	}
+
+	/**
+	 * Count the items in all slots by streaming over the slots, as done before
+	 * the item name index.
+	 */
+	private static int legacyTotalNumberOf(final Player player, final String name) {
+		return player.slots().stream().flatMap(InventoryBenchmark::slotStream)
+				.filter(item -> name.equalsIgnoreCase(item.getName())).mapToInt(Item::getQuantity).sum();
+	}
+
+	private static Stream<Item> slotStream(final RPSlot slot) {
+		final Stream<RPObject> objects = StreamSupport.stream(slot.spliterator(), false);
+		final Stream<Item> items = objects.filter(Item.class::isInstance).map(Item.class::cast);
+		return items.flatMap(item -> item.slots().isEmpty() ? Stream.of(item)
+				: Stream.concat(Stream.of(item), item.slots().stream().flatMap(InventoryBenchmark::slotStream)));
+	}
+}
@@ -0,0 +1,143 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import games.stendhal.server.core.engine.db.ItemLogBatch;
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+
+/**
+ * Compares the throughput of batched item log writes with the single row
+ * inserts they replaced, on an H2 database in a temporary directory. Each
+ * event creates a new item, like loot does.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.ItemLogBenchmark [events] [batch size]
+ */
+public class ItemLogBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		BenchmarkRunner.setUp();
+		final int events = BenchmarkRunner.argument(args, 0, 20000);
+		final int batchSize = BenchmarkRunner.argument(args, 1, 100);
+
+		final File directory = File.createTempFile("itemlog", "benchmark");
+		directory.delete();
+		directory.mkdirs();
+		final Properties properties = new Properties();
+		properties.put("database_adapter", "marauroa.server.db.adapter.H2DatabaseAdapter");
+		properties.put("jdbc_class", "org.h2.Driver");
+		properties.put("jdbc_url", "jdbc:h2:" + directory.getAbsolutePath() + "/itemlog");
+		properties.put("jdbc_user", "sa");
+		properties.put("jdbc_pwd", "");
+		final TransactionPool pool = new TransactionPool(properties);
+
+		try {
+			DBTransaction transaction = pool.beginWork();
+			transaction.execute("CREATE TABLE item (id INTEGER AUTO_INCREMENT NOT NULL, name VARCHAR(64),"
+					+ " timedate TIMESTAMP DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY(id))", null);
+			transaction.execute("CREATE TABLE itemlog (id INTEGER AUTO_INCREMENT NOT NULL,"
+					+ " timedate TIMESTAMP default CURRENT_TIMESTAMP, itemid INTEGER, source VARCHAR(64),"
+					+ " event VARCHAR(64), param1 VARCHAR(64), param2 VARCHAR(64), param3 VARCHAR(64),"
+					+ " param4 VARCHAR(64), PRIMARY KEY (id))", null);
+			pool.commit(transaction);
+
+			BenchmarkRunner.section(events + " new item events, H2 1.3:");
+			BenchmarkRunner.throughput("one transaction per event, templated inserts", events, "events", () -> {
+				for (int i = 0; i < events; i++) {
+					final DBTransaction single = pool.beginWork();
+					final RPObject item = createItem(i);
+					final Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+					legacyAssignID(single, item, timestamp);
+					legacyWriteEntry(single, timestamp, item.getInt(StendhalItemDAO.ATTR_ITEM_LOGID), "create",
+							item.get("name"), "1", "loot", null);
+					pool.commit(single);
+				}
+			});
+			BenchmarkRunner.throughput(batchSize + " events per transaction, JDBC batches", events, "events", () -> {
+				for (int i = 0; i < events; i += batchSize) {
+					final DBTransaction batchTransaction = pool.beginWork();
+					final ItemLogBatch batch = new ItemLogBatch();
+					for (int j = i; j < Math.min(events, i + batchSize); j++) {
+						final RPObject item = createItem(j);
+						final Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+						batch.assignIDIfNotPresent(batchTransaction, item, timestamp);
+						batch.writeEntry(timestamp, item, null, "create", item.get("name"), "1", "loot", null);
+					}
+					batch.flush(batchTransaction);
+					pool.commit(batchTransaction);
+					batch.applyIds();
+				}
+			});
+
+			transaction = pool.beginWork();
+			System.out.println("  rows: item " + transaction.querySingleCellInt("SELECT COUNT(*) FROM item", null)
+					+ ", itemlog " + transaction.querySingleCellInt("SELECT COUNT(*) FROM itemlog", null)
+					+ ", distinct item ids " + transaction.querySingleCellInt("SELECT COUNT(DISTINCT id) FROM item", null));
+			pool.commit(transaction);
+		} finally {
+			pool.close();
+			for (final File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	private static RPObject createItem(final int i) {
+		final RPObject item = new RPObject();
+		item.put("name", "item " + (i % 50));
+		item.put("quantity", 1 + (i % 7));
+		return item;
+	}
+
+	/**
+	 * The id assignment used before, with templated statements.
+	 */
+	private static void legacyAssignID(final DBTransaction transaction, final RPObject item, final Timestamp timestamp) throws SQLException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("name", item.get("name"));
+		params.put("timedate", timestamp);
+		transaction.execute("INSERT INTO item (name, timedate) VALUES ('[name]', '[timedate]')", params);
+		item.put(StendhalItemDAO.ATTR_ITEM_LOGID, transaction.getLastInsertId("item", "id"));
+		legacyWriteEntry(transaction, timestamp, item.getInt(StendhalItemDAO.ATTR_ITEM_LOGID), "register",
+				item.get("name"), item.get("quantity"), "null", "null");
+	}
+
+	/**
+	 * The log entry insert used before, one templated statement per row.
+	 */
+	private static void legacyWriteEntry(final DBTransaction transaction, final Timestamp timestamp, final int itemid,
+			final String event, final String param1, final String param2, final String param3, final String param4) throws SQLException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("itemid", itemid);
+		params.put("source", null);
+		params.put("event", event);
+		params.put("param1", param1);
+		params.put("param2", param2);
+		params.put("param3", param3);
+		params.put("param4", param4);
+		params.put("timedate", timestamp);
+		transaction.execute("INSERT INTO itemlog (itemid, source, event, "
+				+ "param1, param2, param3, param4, timedate) VALUES ("
+				+ "[itemid], '[source]', '[event]', '[param1]', '[param2]', '[param3]', '[param4]', '[timedate]');", params);
+	}
+}
@@ -0,0 +1,137 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import games.stendhal.server.core.engine.RPClassGenerator;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.entity.trade.Market;
+import games.stendhal.server.entity.trade.Offer;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+
+/**
+ * Measures the market queries of the trade center NPC and the offer expirer
+ * on a market with many offers. Compares filtering copies of the market slots,
+ * as was done before the market indexes, with the indexed queries.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.MarketBenchmark [offers] [queries]
+ *
+ * The default of 2000 offers runs in a few seconds. Pass 50000 offers for
+ * the size of a busy market; then the slot copies take most of the run time.
+ */
+public class MarketBenchmark {
+
+	public static void main(final String[] args) {
+		BenchmarkRunner.setUp();
+		new RPClassGenerator().createRPClasses();
+
+		final int offerCount = BenchmarkRunner.argument(args, 0, 2000);
+		final int queries = BenchmarkRunner.argument(args, 1, 200);
+		final List<String> itemNames = new ArrayList<String>();
+		for (final DefaultItem item : SingletonRepository.getEntityManager().getDefaultItems()) {
+			itemNames.add(item.getItemName());
+		}
+
+		final StendhalRPZone zone = new StendhalRPZone("market");
+		final Market market = Market.createShop();
+		zone.add(market);
+		final Player[] players = new Player[500];
+		for (int i = 0; i < players.length; i++) {
+			players[i] = (Player) new PlayerTransformer().transform(new RPObject());
+			players[i].setName("trader" + i);
+		}
+		final RPSlot offers = market.getSlot(Market.OFFERS_SLOT_NAME);
+		for (int i = 0; i < offerCount; i++) {
+			final Item item = SingletonRepository.getEntityManager().getItem(itemNames.get(i % itemNames.size()));
+			offers.add(new Offer(item, i % 1000, players[i % players.length]));
+		}
+		BenchmarkRunner.section(offerCount + " offers of " + itemNames.size() + " items by " + players.length + " players:");
+
+		final String[] words = { "axe", "potion", "meat", "armor", "ring", "food" };
+		BenchmarkRunner.compare(queries, "show <word>, slot copy",
+				i -> legacyFind(market, words[i % words.length], null).size(),
+				"show <word>, index", i -> market.findOffers(words[i % words.length], null, 0, 21).size());
+		BenchmarkRunner.compare(queries, "show mine, slot copy",
+				i -> legacyFind(market, null, players[i % players.length].getName()).size(),
+				"show mine, index", i -> market.findOffers(null, players[i % players.length].getName(), 0, 21).size());
+		BenchmarkRunner.compare(queries, "countOffersOfPlayer, slot scan",
+				i -> legacyCount(market, players[i % players.length]),
+				"countOffersOfPlayer, index", i -> market.countOffersOfPlayer(players[i % players.length]));
+
+		// the expirer checks every hour, and usually finds nothing to expire
+		final int age = 7 * 24 * 60 * 60;
+		BenchmarkRunner.compare(queries, "offers to expire, slot scan", i -> legacyOlderThan(market, age).size(),
+				"offers to expire, index", i -> market.getOffersOlderThan(age).size());
+	}
+
+	/**
+	 * Filter a copy of the offers slot, as ShowOffersChatAction did before the
+	 * market indexes.
+	 */
+	private static List<Offer> legacyFind(final Market market, final String word, final String offerer) {
+		final List<Offer> offers = new ArrayList<Offer>();
+		for (final RPObject object : market.getSlot(Market.OFFERS_SLOT_NAME)) {
+			offers.add((Offer) object);
+		}
+		final Iterator<Offer> it = offers.iterator();
+		while (it.hasNext()) {
+			final Offer offer = it.next();
+			if ((offerer != null) && !offer.getOfferer().equals(offerer)) {
+				it.remove();
+			} else if ((word != null) && offer.hasItem()) {
+				final Item item = offer.getItem();
+				if (!(item.getName().indexOf(word) != -1 || word.equals(item.getItemClass()))) {
+					it.remove();
+				}
+			}
+		}
+		return offers;
+	}
+
+	/**
+	 * Count the offers of a player by scanning the slot, as done before the
+	 * market indexes.
+	 */
+	private static int legacyCount(final Market market, final Player player) {
+		int count = 0;
+		for (final RPObject object : market.getSlot(Market.OFFERS_SLOT_NAME)) {
+			if (((Offer) object).getOfferer().equals(player.getName())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Find old offers by scanning the slot, as done before the market indexes.
+	 */
+	private static List<Offer> legacyOlderThan(final Market market, final int seconds) {
+		final List<Offer> old = new ArrayList<Offer>();
+		for (final RPObject object : market.getSlot(Market.OFFERS_SLOT_NAME)) {
+			final Offer offer = (Offer) object;
+			if (System.currentTimeMillis() > offer.getTimestamp() + 1000L * seconds) {
+				old.add(offer);
+			}
+		}
+		return old;
+	}
+}
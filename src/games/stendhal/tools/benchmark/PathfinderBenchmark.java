@@ -0,0 +1,293 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Stack;
+
+import games.stendhal.common.CollisionDetection;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.pathfinder.Node;
+import games.stendhal.server.core.pathfinder.Path;
+import games.stendhal.server.core.pathfinder.SimplePathfinder;
+
+/**
+ * Compares the array based A* pathfinder with the object based
+ * implementation it replaced, on a zone with random obstacles. Also
+ * measures jump point search on long paths, and searches to unreachable
+ * goals.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.PathfinderBenchmark [zone size] [obstacle percentage]
+ */
+public class PathfinderBenchmark {
+	private static final int SEARCHES = 2000;
+	private static final int MAX_DISTANCE = 40;
+
+	public static void main(final String[] args) {
+		BenchmarkRunner.setUp();
+		final int size = BenchmarkRunner.argument(args, 0, 256);
+		final int obstacles = BenchmarkRunner.argument(args, 1, 20);
+
+		final Random random = new Random(42);
+		final StendhalRPZone zone = new StendhalRPZone("pathfinder_benchmark", size, size);
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (random.nextInt(100) < obstacles) {
+					zone.collisionMap.setCollide(x, y);
+				}
+			}
+		}
+
+		final int[][] queries = new int[1024][];
+		for (int i = 0; i < queries.length; i++) {
+			final int x = random.nextInt(size);
+			final int y = random.nextInt(size);
+			final int dx = Math.max(0, Math.min(size - 1, x + random.nextInt(2 * MAX_DISTANCE) - MAX_DISTANCE));
+			final int dy = Math.max(0, Math.min(size - 1, y + random.nextInt(2 * MAX_DISTANCE) - MAX_DISTANCE));
+			queries[i] = new int[] { x, y, dx, dy };
+		}
+
+		int found = 0;
+		int sameLength = 0;
+		int shorter = 0;
+		for (final int[] q : queries) {
+			final int current = Path.searchPath(zone, q[0], q[1], q[2], q[3], MAX_DISTANCE * 2).size();
+			final int legacy = new LegacyPathfinder(zone.collisionMap, q[0], q[1],
+					new Rectangle(q[2], q[3], 1, 1), MAX_DISTANCE * 2).getPath().size();
+			if (current > 0) {
+				found++;
+			}
+			if (current == legacy) {
+				sameLength++;
+			} else if (current < legacy) {
+				shorter++;
+			}
+		}
+		BenchmarkRunner.section(size + "x" + size + " zone, " + obstacles + "% obstacles, "
+				+ found + "/" + queries.length + " paths found, "
+				+ sameLength + " with equal length, " + shorter + " shorter than before:");
+
+		BenchmarkRunner.compare(SEARCHES, "searchPath, object nodes", i -> {
+			final int[] q = queries[i & 1023];
+			return new LegacyPathfinder(zone.collisionMap, q[0], q[1],
+					new Rectangle(q[2], q[3], 1, 1), MAX_DISTANCE * 2).getPath().size();
+		}, "searchPath, primitive arrays", i -> {
+			final int[] q = queries[i & 1023];
+			return Path.searchPath(zone, q[0], q[1], q[2], q[3], MAX_DISTANCE * 2).size();
+		});
+
+		longPaths(size);
+		enclosedGoal(size);
+	}
+
+	/**
+	 * Compare A* and jump point search on long paths over open terrain.
+	 *
+	 * @param size zone size
+	 */
+	private static void longPaths(final int size) {
+		final Random random = new Random(7);
+		final StendhalRPZone zone = new StendhalRPZone("pathfinder_benchmark_open", size, size);
+		for (int i = 0; i < size * size / 50; i++) {
+			zone.collisionMap.setCollide(random.nextInt(size), random.nextInt(size));
+		}
+		final int[][] queries = new int[256][];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = new int[] { random.nextInt(size / 4), random.nextInt(size / 4),
+					size - 1 - random.nextInt(size / 4), size - 1 - random.nextInt(size / 4) };
+		}
+
+		BenchmarkRunner.section("long paths, 2% obstacles:");
+		BenchmarkRunner.compare(200, "A*", i -> search(zone, queries[i & 255], false),
+				"jump point search", i -> search(zone, queries[i & 255], true));
+	}
+
+	/**
+	 * Compare searches to a walled in goal, with and without connectivity
+	 * data.
+	 *
+	 * @param size zone size
+	 */
+	private static void enclosedGoal(final int size) {
+		final StendhalRPZone zone = new StendhalRPZone("pathfinder_benchmark_enclosed", size, size);
+		final int center = size / 2;
+		for (int i = center - 2; i <= center + 2; i++) {
+			zone.collisionMap.setCollide(i, center - 2);
+			zone.collisionMap.setCollide(i, center + 2);
+			zone.collisionMap.setCollide(center - 2, i);
+			zone.collisionMap.setCollide(center + 2, i);
+		}
+		final Rectangle goal = new Rectangle(center, center, 1, 1);
+		BenchmarkRunner.section("walled in goal, maximum distance " + size + ":");
+		BenchmarkRunner.compare(200, "object nodes, flood fill",
+				i -> new LegacyPathfinder(zone.collisionMap, 0, 0, goal, size).getPath().size(),
+				"connectivity check", i -> Path.searchPath(zone, 0, 0, center, center, size).size());
+	}
+
+	/**
+	 * Search a path with SimplePathfinder.
+	 *
+	 * @param zone zone
+	 * @param query start x, start y, goal x and goal y
+	 * @param jump <code>true</code> if jump point search should be used
+	 * @return path length
+	 */
+	private static int search(final StendhalRPZone zone, final int[] query, final boolean jump) {
+		final SimplePathfinder finder = new SimplePathfinder(zone, query[0], query[1],
+				new Rectangle(query[2], query[3], 1, 1), 4 * zone.getWidth());
+		finder.setJumpPointSearch(jump);
+		return finder.getPath().size();
+	}
+
+	/**
+	 * The A* implementation used before the array based one, reduced to the
+	 * collision map based search.
+	 */
+	private static class LegacyPathfinder {
+		private static final double STRAIGHT_PATH_PREFERENCE_FACTOR = 0.2;
+
+		private final PriorityQueue<TreeNode> openList = new PriorityQueue<TreeNode>(16,
+				new Comparator<TreeNode>() {
+			@Override
+			public int compare(final TreeNode o1, final TreeNode o2) {
+				return (int) Math.signum(o1.weight - o2.weight);
+			}
+		});
+		private final HashMap<Integer, TreeNode> nodeRegistry = new HashMap<Integer, TreeNode>();
+		private final CollisionDetection collision;
+		private final Rectangle2D goalArea;
+		private final TreeNode goalNode;
+		private final TreeNode startNode;
+		private final double maxDistance;
+
+		LegacyPathfinder(final CollisionDetection collision, final int startX, final int startY,
+				final Rectangle2D destination, final double maxDist) {
+			this.collision = collision;
+			this.goalArea = destination;
+			startNode = new TreeNode(startX, startY);
+			goalNode = new TreeNode((int) destination.getCenterX(), (int) destination.getCenterY());
+			openList.offer(startNode);
+			nodeRegistry.put(startNode.nodeNumber, startNode);
+			maxDistance = Math.max(maxDist, 1.1 * startNode.getHeuristic(goalNode) + 1);
+		}
+
+		List<Node> getPath() {
+			final List<Node> list = new LinkedList<Node>();
+			if (collision.collides((int) goalArea.getX(), (int) goalArea.getY())) {
+				return list;
+			}
+			while (!openList.isEmpty()) {
+				final TreeNode best = openList.poll();
+				best.open = false;
+				if (goalArea.contains(best.x, best.y)) {
+					TreeNode node = best;
+					while (node != null) {
+						list.add(0, new Node(node.x, node.y));
+						node = node.parent;
+					}
+					return list;
+				}
+				best.createChildren();
+			}
+			return list;
+		}
+
+		private class TreeNode {
+			private double weight;
+			private double g;
+			private final int x;
+			private final int y;
+			private int numChildren;
+			private final Integer nodeNumber;
+			private TreeNode parent;
+			private final TreeNode[] children = new TreeNode[4];
+			private boolean open = true;
+
+			TreeNode(final int x, final int y) {
+				this.x = x;
+				this.y = y;
+				this.nodeNumber = x + y * collision.getWidth();
+			}
+
+			private void updateChild(final TreeNode child) {
+				child.parent = this;
+				child.g = this.g + 1.0;
+				double childweight = child.g + child.getHeuristic(goalNode);
+				if (parent != null) {
+					if ((parent.x - x == x - child.x) && (parent.y - y == y - child.y)) {
+						childweight -= STRAIGHT_PATH_PREFERENCE_FACTOR;
+					}
+				}
+				child.weight = childweight;
+			}
+
+			double getHeuristic(final TreeNode nodeGoal) {
+				final int dx = x - nodeGoal.x;
+				final int dy = y - nodeGoal.y;
+				return Math.abs(dx) + Math.abs(dy) + 0.01 * (dx * dx + dy * dy);
+			}
+
+			void createChildren() {
+				if (g < maxDistance) {
+					linkChild(x - 1, y + 0);
+					linkChild(x + 1, y + 0);
+					linkChild(x + 0, y - 1);
+					linkChild(x + 0, y + 1);
+				}
+			}
+
+			private void linkChild(final int x1, final int y1) {
+				if (collision.collides(x1, y1)) {
+					return;
+				}
+				TreeNode child = nodeRegistry.get(x1 + y1 * collision.getWidth());
+				if (child == null) {
+					child = new TreeNode(x1, y1);
+					children[numChildren++] = child;
+					updateChild(child);
+					openList.offer(child);
+					nodeRegistry.put(child.nodeNumber, child);
+				} else {
+					if (child.g > (this.g + 1.0)) {
+						updateChild(child);
+					}
+					if (!child.open) {
+						updateSubTree(child);
+					}
+				}
+			}
+
+			private void updateSubTree(final TreeNode node) {
+				final Stack<TreeNode> nodeStack = new Stack<TreeNode>();
+				nodeStack.push(node);
+				while (nodeStack.size() > 0) {
+					final TreeNode parentTemp = nodeStack.pop();
+					for (int i = 0; i < parentTemp.numChildren; i++) {
+						final TreeNode child = parentTemp.children[i];
+						if (parentTemp.g + 1.0 < child.g) {
+							parentTemp.updateChild(child);
+							nodeStack.push(child);
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.transformer.PlayerTransformer;
+import games.stendhal.server.entity.npc.ChatCondition;
+import games.stendhal.server.entity.npc.condition.AndCondition;
+import games.stendhal.server.entity.npc.condition.QuestActiveCondition;
+import games.stendhal.server.entity.npc.condition.QuestInStateCondition;
+import games.stendhal.server.entity.npc.condition.TimePassedCondition;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.util.StringUtils;
+import marauroa.common.game.RPObject;
+
+/**
+ * Compares the evaluation of typical quest conditions of NPC conversations
+ * with the same checks done the way they were done before the quest states
+ * were kept split: evaluating the slot name and splitting the state on every
+ * access.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.QuestStateBenchmark [iterations]
+ */
+public class QuestStateBenchmark {
+	private static final String QUEST = "daily_item";
+
+	public static void main(final String[] args) {
+		// creates the RPClasses, and configures logging
+		SingletonRepository.getRPWorld();
+		BenchmarkRunner.setUp();
+
+		final int iterations = BenchmarkRunner.argument(args, 0, 200000);
+
+		final RPObject object = new RPObject();
+		object.put("name", "player");
+		final Player player = (Player) new PlayerTransformer().transform(object);
+		player.setQuest(QUEST, "start;" + System.currentTimeMillis() + ";leather armor=2;12;0");
+
+		// what an NPC checks when the player asks for a task
+		final ChatCondition chain = new AndCondition(
+				new QuestActiveCondition(QUEST),
+				new QuestInStateCondition(QUEST, 0, "start"),
+				new TimePassedCondition(QUEST, 1, 60));
+
+		BenchmarkRunner.section("quest condition chain:");
+		BenchmarkRunner.compare(iterations, "evaluate name and split per access", i -> legacyChain(player) ? 1 : 0,
+				"split quest state", i -> chain.fire(player, null, null) ? 1 : 0);
+
+		BenchmarkRunner.section("required item of a quest:");
+		BenchmarkRunner.compare(iterations, "evaluate name and split per access",
+				i -> legacyGetQuest(player, QUEST, 2).split("=")[0].length(),
+				"split quest state", i -> player.getRequiredItemName(QUEST, 2).length());
+	}
+
+	/**
+	 * The condition chain as evaluated before.
+	 *
+	 * @param player player
+	 * @return result of the chain
+	 */
+	private static boolean legacyChain(final Player player) {
+		// QuestActiveCondition
+		if ((legacyGetQuest(player, QUEST, -1) == null) || "rejected".equals(legacyGetQuest(player, QUEST, 0))
+				|| "done".equals(legacyGetQuest(player, QUEST, 0))) {
+			return false;
+		}
+		// QuestInStateCondition
+		if ((legacyGetQuest(player, QUEST, -1) == null) || !legacyGetQuest(player, QUEST, 0).equals("start")) {
+			return false;
+		}
+		// TimePassedCondition
+		if (legacyGetQuest(player, QUEST, -1) == null) {
+			return true;
+		}
+		final String[] tokens = legacyGetQuest(player, QUEST, -1).split(";");
+		return Long.parseLong(tokens[1]) + 60 * 60000L <= System.currentTimeMillis();
+	}
+
+	/**
+	 * Gets a sub state of a quest the way PlayerQuests did before.
+	 *
+	 * @param player player
+	 * @param name quest slot name
+	 * @param index index of the sub state, -1 for the whole state
+	 * @return sub state
+	 */
+	private static String legacyGetQuest(final Player player, final String name, final int index) {
+		final Map<String, String> params = new HashMap<String, String>();
+		final Calendar calendar = Calendar.getInstance();
+		int year = calendar.get(Calendar.YEAR);
+		params.put("year", Integer.toString(year).substring(2));
+		calendar.add(Calendar.MONTH, -2);
+		year = calendar.get(Calendar.YEAR);
+		params.put("seasonyear", Integer.toString(year).substring(2));
+		final String state = player.getKeyedSlot("!quests", StringUtils.substitute(name, params));
+		if ((state == null) || (index == -1)) {
+			return state;
+		}
+		final String[] elements = state.split(";");
+		if (index < elements.length) {
+			return elements[index];
+		}
+		return "";
+	}
+}
@@ -0,0 +1,149 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+
+/**
+ * Measures the TurnNotifier with 100k scheduled listeners, and compares it
+ * with the HashMap based register it replaced.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.TurnNotifierBenchmark [listeners]
+ */
+public class TurnNotifierBenchmark {
+	private static final int MAX_DELAY = 100000;
+
+	private static class Listener implements TurnListener {
+		long count;
+
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			count++;
+		}
+	}
+
+	/**
+	 * The HashMap based register used before the timing wheel.
+	 */
+	private static class LegacyRegister {
+		private final Map<Integer, Set<TurnListener>> register = new HashMap<Integer, Set<TurnListener>>();
+		private int currentTurn;
+
+		void notifyAtTurn(final int turn, final TurnListener listener) {
+			Set<TurnListener> set = register.get(Integer.valueOf(turn));
+			if (set == null) {
+				set = new HashSet<TurnListener>();
+				register.put(Integer.valueOf(turn), set);
+			}
+			set.add(listener);
+		}
+
+		void dontNotify(final TurnListener listener) {
+			for (final Set<TurnListener> set : register.values()) {
+				set.remove(listener);
+			}
+		}
+
+		int getRemainingTurns(final TurnListener listener) {
+			final List<Integer> matchingTurns = new ArrayList<Integer>();
+			for (final Map.Entry<Integer, Set<TurnListener>> entry : register.entrySet()) {
+				if (entry.getValue().contains(listener)) {
+					matchingTurns.add(entry.getKey());
+				}
+			}
+			if (matchingTurns.isEmpty()) {
+				return -1;
+			}
+			Collections.sort(matchingTurns);
+			return matchingTurns.get(0).intValue() - currentTurn;
+		}
+
+		int logic(final int turn) {
+			currentTurn = turn;
+			final Set<TurnListener> set = register.remove(Integer.valueOf(turn));
+			if (set == null) {
+				return 0;
+			}
+			for (final TurnListener listener : set) {
+				listener.onTurnReached(turn);
+			}
+			return set.size();
+		}
+	}
+
+	public static void main(final String[] args) throws Exception {
+		BenchmarkRunner.setUp();
+		final int count = BenchmarkRunner.argument(args, 0, 100000);
+		final Random random = new Random(42);
+		final Listener[] listeners = new Listener[count];
+		final int[] delays = new int[count];
+		for (int i = 0; i < count; i++) {
+			listeners[i] = new Listener();
+			delays[i] = 1 + random.nextInt(MAX_DELAY);
+		}
+
+		BenchmarkRunner.section(count + " scheduled listeners:");
+
+		final TurnNotifier notifier = TurnNotifier.get();
+		final int start = notifier.getCurrentTurnForDebugging() + 1;
+		notifier.logic(start);
+		BenchmarkRunner.time("schedule, timing wheel", () -> {
+			for (int i = 0; i < count; i++) {
+				notifier.notifyAtTurn(start + delays[i], listeners[i]);
+			}
+		});
+		BenchmarkRunner.measure("getRemainingTurns, timing wheel", 20000,
+				i -> notifier.getRemainingTurns(listeners[i % count]));
+		BenchmarkRunner.measure("dontNotify + reschedule, timing wheel", 20000, i -> {
+			final Listener listener = listeners[i % count];
+			notifier.dontNotify(listener);
+			notifier.notifyAtTurn(start + delays[i % count], listener);
+			return 0;
+		});
+		BenchmarkRunner.time("run " + MAX_DELAY + " turns, timing wheel", () -> {
+			for (int turn = start + 1; turn <= start + MAX_DELAY; turn++) {
+				notifier.logic(turn);
+			}
+		});
+
+		final LegacyRegister legacy = new LegacyRegister();
+		BenchmarkRunner.time("schedule, hash map", () -> {
+			for (int i = 0; i < count; i++) {
+				legacy.notifyAtTurn(delays[i], listeners[i]);
+			}
+		});
+		BenchmarkRunner.measure("getRemainingTurns, hash map", 200,
+				i -> legacy.getRemainingTurns(listeners[i % count]));
+		BenchmarkRunner.measure("dontNotify + reschedule, hash map", 200, i -> {
+			final Listener listener = listeners[i % count];
+			legacy.dontNotify(listener);
+			legacy.notifyAtTurn(delays[i % count], listener);
+			return 0;
+		});
+		BenchmarkRunner.time("run " + MAX_DELAY + " turns, hash map", () -> {
+			for (int turn = 1; turn <= MAX_DELAY; turn++) {
+				legacy.logic(turn);
+			}
+		});
+	}
+}
@@ -0,0 +1,109 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.mapstuff.area.AreaEntity;
+import marauroa.common.game.RPObject;
+
+/**
+ * Compares the spatial entity index of StendhalRPZone with the linear scan
+ * over all zone objects it replaced.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.ZoneEntityIndexBenchmark [entity counts...]
+ */
+public class ZoneEntityIndexBenchmark {
+	private static final int ZONE_SIZE = 256;
+	private static final int QUERIES = 200000;
+
+	public static void main(final String[] args) {
+		BenchmarkRunner.setUp();
+		// creates the RPClasses
+		SingletonRepository.getRPWorld();
+
+		for (final int count : BenchmarkRunner.arguments(args, 100, 1000, 10000)) {
+			run(count);
+		}
+	}
+
+	private static void run(final int count) {
+		final Random random = new Random(42);
+		final StendhalRPZone zone = new StendhalRPZone("benchmark_" + count, ZONE_SIZE, ZONE_SIZE);
+		for (int i = 0; i < count; i++) {
+			final AreaEntity entity = new AreaEntity(1 + random.nextInt(2), 1 + random.nextInt(2));
+			entity.setPosition(random.nextInt(ZONE_SIZE), random.nextInt(ZONE_SIZE));
+			entity.setResistance(100);
+			zone.add(entity);
+		}
+		final AreaEntity probe = new AreaEntity(1, 1);
+		probe.setResistance(100);
+
+		final int[] xs = new int[1024];
+		final int[] ys = new int[1024];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = random.nextInt(ZONE_SIZE);
+			ys[i] = random.nextInt(ZONE_SIZE);
+		}
+
+		BenchmarkRunner.section(count + " entities:");
+		final int iterations = Math.max(1000, QUERIES / Math.max(1, count / 100));
+		BenchmarkRunner.compare(iterations, "collides, linear scan", i -> {
+			final int n = i & 1023;
+			return scanCollides(zone, probe, probe.getArea(xs[n], ys[n])) ? 1 : 0;
+		}, "collides, spatial index", i -> {
+			final int n = i & 1023;
+			return zone.collidesObjects(probe, probe.getArea(xs[n], ys[n])) ? 1 : 0;
+		});
+		BenchmarkRunner.compare(iterations, "getEntityAt, linear scan", i -> {
+			final int n = i & 1023;
+			return scanEntityAt(zone, xs[n], ys[n]) != null ? 1 : 0;
+		}, "getEntityAt, spatial index", i -> {
+			final int n = i & 1023;
+			return zone.getEntityAt(xs[n], ys[n]) != null ? 1 : 0;
+		});
+	}
+
+	/**
+	 * The collision check as done before the spatial index.
+	 */
+	private static boolean scanCollides(final StendhalRPZone zone, final Entity entity, final Rectangle2D area) {
+		for (final RPObject other : zone) {
+			if (entity != other) {
+				final Entity otherEntity = (Entity) other;
+				if (area.intersects(otherEntity.getX(), otherEntity.getY(), otherEntity.getWidth(), otherEntity.getHeight())
+						&& otherEntity.isObstacle(entity)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The position lookup as done before the spatial index.
+	 */
+	private static Entity scanEntityAt(final StendhalRPZone zone, final double x, final double y) {
+		for (final RPObject other : zone) {
+			final Entity otherEntity = (Entity) other;
+			if (otherEntity.getArea().contains(x, y)) {
+				return otherEntity;
+			}
+		}
+		return null;
+	}
+}
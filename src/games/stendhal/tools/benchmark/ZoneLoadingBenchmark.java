@@ -0,0 +1,137 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.w3c.dom.Element;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.server.core.config.XMLUtil;
+import games.stendhal.server.core.config.zone.TMXLoader;
+import games.stendhal.server.core.config.zone.ZoneMapCache;
+import games.stendhal.server.core.engine.StendhalRPWorld;
+
+/**
+ * Times the parallel stage of zone loading, parsing the maps and encoding
+ * their layers, for all zones in data/conf/zones, with different numbers of
+ * threads. Then compares a start with an empty zone map cache to one with a
+ * filled cache.
+ *
+ * The commit stage needs a database and the complete server class path. It
+ * is timed by the zone loader itself, and logged at server start.
+ *
+ * Usage:
+ *     games.stendhal.tools.benchmark.ZoneLoadingBenchmark [thread counts...]
+ */
+public class ZoneLoadingBenchmark {
+
+	public static void main(final String[] args) throws Exception {
+		BenchmarkRunner.setUp();
+
+		final List<String> files = new ArrayList<String>();
+		for (final File group : new File("data/conf/zones").listFiles()) {
+			if (!group.getName().endsWith(".xml")) {
+				continue;
+			}
+			final InputStream in = new FileInputStream(group);
+			try {
+				for (final Element zone : XMLUtil.getElements(XMLUtil.parse(in).getDocumentElement(), "zone")) {
+					files.add(StendhalRPWorld.MAPS_FOLDER + zone.getAttribute("file"));
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		final int processors = Runtime.getRuntime().availableProcessors();
+		BenchmarkRunner.section(files.size() + " zones, " + processors + " processors:");
+		// warm up
+		prepare(files, processors, null);
+		for (final int threads : BenchmarkRunner.arguments(args, 1, processors)) {
+			BenchmarkRunner.time("parse and encode, " + threads + " threads", () -> prepare(files, threads, null));
+		}
+
+		final File directory = File.createTempFile("zonecache", "benchmark");
+		directory.delete();
+		try {
+			final ZoneMapCache cache = new ZoneMapCache(directory);
+			BenchmarkRunner.time("cold cache, " + processors + " threads", () -> prepare(files, processors, cache));
+			BenchmarkRunner.time("warm cache, " + processors + " threads", () -> prepare(files, processors, cache));
+		} finally {
+			final File[] cached = directory.listFiles();
+			if (cached != null) {
+				for (final File file : cached) {
+					file.delete();
+				}
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Parse all maps and encode their layers, or read them from the cache,
+	 * like the zone loader does.
+	 *
+	 * @param files map files
+	 * @param threads number of worker threads
+	 * @param cache zone map cache, or <code>null</code>
+	 */
+	private static void prepare(final List<String> files, final int threads, final ZoneMapCache cache) {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (final String file : files) {
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						final Map<String, byte[]> encoded = new HashMap<String, byte[]>();
+						if (cache == null) {
+							final StendhalMapStructure map = TMXLoader.load(file);
+							for (final LayerDefinition layer : map.getLayers()) {
+								encoded.put(layer.getName(), layer.encode());
+							}
+							return encoded.size();
+						}
+						final byte[] source = TMXLoader.readSource(file);
+						if (cache.read(file, source, encoded) == null) {
+							final StendhalMapStructure map = new TMXLoader().readMap(file, source);
+							for (final LayerDefinition layer : map.getLayers()) {
+								encoded.put(layer.getName(), layer.encode());
+							}
+							cache.write(file, source, map, encoded);
+						}
+						return encoded.size();
+					}
+				}));
+			}
+			for (final Future<Integer> result : results) {
+				result.get();
+			}
+		} catch (final Exception e) {
+			throw new IllegalStateException(e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
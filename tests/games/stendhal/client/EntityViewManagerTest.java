@@ -0,0 +1,197 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Rectangle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.client.entity.Entity;
+import games.stendhal.client.entity.IEntity;
+import games.stendhal.client.entity.Sign;
+import games.stendhal.client.gui.j2d.entity.Entity2DView;
+import games.stendhal.client.gui.j2d.entity.EntityView;
+import games.stendhal.client.sprite.EmptySprite;
+import marauroa.common.Log4J;
+import marauroa.common.game.RPClass;
+import marauroa.common.game.RPObject;
+
+/**
+ * Tests for EntityViewManager.
+ */
+public class EntityViewManagerTest {
+	private static final int SIZE = IGameScreen.SIZE_UNIT_PIXELS;
+	/** The screen area at the top left corner of the zone. */
+	private static final Rectangle SCREEN = new Rectangle(0, 0, 20 * SIZE, 15 * SIZE);
+
+	private EntityViewManager manager;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		Log4J.init();
+		if (!RPClass.hasRPClass("sign")) {
+			new RPClass("sign");
+		}
+	}
+
+	@Before
+	public void setUp() {
+		new MockStendhalClient();
+		manager = new EntityViewManager();
+	}
+
+	@After
+	public void tearDown() {
+		StendhalClient.resetClient();
+	}
+
+	private Sign createSign(int x, int y, int id) {
+		RPObject object = new RPObject();
+		object.setRPClass("sign");
+		object.put("x", x);
+		object.put("y", y);
+		object.setID(new RPObject.ID(id, "zone"));
+		Sign sign = new Sign();
+		sign.initialize(object);
+		return sign;
+	}
+
+	private void move(Entity entity, int x, int y) {
+		RPObject changes = new RPObject();
+		changes.put("x", x);
+		changes.put("y", y);
+		entity.getRPObject().put("x", x);
+		entity.getRPObject().put("y", y);
+		entity.onChangedAdded(entity.getRPObject(), changes);
+	}
+
+	private EntityView<IEntity> add(IEntity entity) {
+		EntityView<IEntity> view = new TestView();
+		view.initialize(entity);
+		manager.addEntityView(entity, view);
+		return view;
+	}
+
+	private EntityView<IEntity> viewAt(int x, int y) {
+		return manager.getEntityViewAt(x + 0.5, y + 0.5, x * SIZE + SIZE / 2, y * SIZE + SIZE / 2);
+	}
+
+	/**
+	 * Tests that added, moved and removed entities are seen at the right
+	 * places.
+	 */
+	@Test
+	public void testVisibleViews() {
+		Sign sign = createSign(5, 5, 1);
+		EntityView<IEntity> view = add(sign);
+		// not visible before the screen is drawn
+		assertNull(viewAt(5, 5));
+
+		manager.prepareViews(SCREEN, true);
+		assertSame(view, viewAt(5, 5));
+
+		// moving off screen
+		move(sign, 40, 5);
+		manager.prepareViews(SCREEN, true);
+		assertNull(viewAt(5, 5));
+		manager.prepareViews(new Rectangle(30 * SIZE, 0, 20 * SIZE, 15 * SIZE), true);
+		assertSame(view, viewAt(40, 5));
+
+		// and back
+		move(sign, 6, 6);
+		manager.prepareViews(SCREEN, true);
+		assertSame(view, viewAt(6, 6));
+
+		manager.removeEntity(sign);
+		manager.prepareViews(SCREEN, true);
+		assertNull(viewAt(6, 6));
+	}
+
+	/**
+	 * Tests that the topmost view is found where views overlap, also after
+	 * they have moved.
+	 */
+	@Test
+	public void testOrder() {
+		Sign upper = createSign(5, 5, 1);
+		Sign lower = createSign(5, 6, 2);
+		EntityView<IEntity> upperView = add(upper);
+		EntityView<IEntity> lowerView = add(lower);
+		manager.prepareViews(SCREEN, true);
+		// the lower one is drawn later. The world coordinates are outside
+		// both entities, so that the views are searched by the screen area.
+		assertSame(lowerView, manager.getEntityViewAt(-1, -1, 5 * SIZE + 1, 6 * SIZE + 1));
+
+		move(upper, 5, 7);
+		manager.prepareViews(SCREEN, true);
+		assertSame(upperView, manager.getEntityViewAt(-1, -1, 5 * SIZE + 1, 7 * SIZE + 1));
+	}
+
+	/**
+	 * Tests that the removal of a view is handled also if the view was added
+	 * and removed between two draws.
+	 */
+	@Test
+	public void testAddAndRemoveBetweenDraws() {
+		Sign sign = createSign(5, 5, 1);
+		add(sign);
+		move(sign, 6, 5);
+		manager.removeEntity(sign);
+		manager.prepareViews(SCREEN, true);
+		assertNull(viewAt(5, 5));
+		assertNull(viewAt(6, 5));
+	}
+
+	/**
+	 * Tests that a view changing many times between draws is queued only
+	 * once.
+	 */
+	@Test
+	public void testChangesAreCoalesced() {
+		Sign sign = createSign(5, 5, 1);
+		EntityView<IEntity> view = add(sign);
+		manager.prepareViews(SCREEN, true);
+		assertEquals(0, manager.getQueuedChanges());
+
+		for (int i = 0; i < 100; i++) {
+			move(sign, 5 + i % 10, 5);
+		}
+		assertEquals(1, manager.getQueuedChanges());
+		manager.prepareViews(SCREEN, true);
+		assertEquals(0, manager.getQueuedChanges());
+		assertSame(view, viewAt(14, 5));
+
+		// changes after the draw are queued again
+		move(sign, 7, 7);
+		assertEquals(1, manager.getQueuedChanges());
+		manager.prepareViews(SCREEN, true);
+		assertSame(view, viewAt(7, 7));
+	}
+
+	/**
+	 * A view with a sprite one tile wide and two tiles high, that needs no
+	 * images.
+	 */
+	private static class TestView extends Entity2DView<IEntity> {
+		@Override
+		protected void buildRepresentation(IEntity entity) {
+			setSprite(new EmptySprite(SIZE, 2 * SIZE, null));
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+import games.stendhal.client.sprite.Tileset;
+
+/**
+ * Tests for LayerChunkCache.
+ */
+public class LayerChunkCacheTest {
+	private static final int WIDTH = 40;
+	private static final int HEIGHT = 20;
+	private static final int SIZE = IGameScreen.SIZE_UNIT_PIXELS;
+
+	private CountingSprite constant;
+	private CountingSprite animated;
+	private TileRenderer renderer;
+
+	@Before
+	public void setUp() {
+		BufferedImage red = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics g = red.getGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(0, 0, SIZE / 2, SIZE);
+		g.dispose();
+		constant = new CountingSprite(new ImageSprite(red), true);
+		animated = new CountingSprite(new ImageSprite(red), false);
+		renderer = createRenderer();
+	}
+
+	private TileRenderer createRenderer() {
+		TileRenderer r = new TileRenderer();
+		r.width = WIDTH;
+		r.height = HEIGHT;
+		r.map = new int[WIDTH * HEIGHT];
+		// one animated tile, and a few empty ones
+		r.map[WIDTH + 3] = 1;
+		r.map[2 * WIDTH + 20] = 2;
+		r.map[WIDTH * HEIGHT - 1] = 2;
+		r.setTileset(new Tileset() {
+			@Override
+			public int getSize() {
+				return 3;
+			}
+
+			@Override
+			public Sprite getSprite(int index) {
+				switch (index) {
+				case 1:
+					return animated;
+				case 2:
+					return new ImageSprite(new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB));
+				default:
+					return constant;
+				}
+			}
+		});
+		return r;
+	}
+
+	private BufferedImage draw(LayerChunkCache cache, TileRenderer r, int x, int y) {
+		BufferedImage image = new BufferedImage(20 * SIZE, 15 * SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.translate(-x * SIZE, -y * SIZE);
+		if (cache != null) {
+			cache.draw(g, r, x, y, 20, 15);
+		} else {
+			r.draw(g, x, y, 20, 15);
+		}
+		g.dispose();
+		return image;
+	}
+
+	private void assertSameImage(BufferedImage expected, BufferedImage actual) {
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertEquals("pixel at " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Check that drawing through the cache gives the same result as drawing
+	 * the tiles directly.
+	 */
+	@Test
+	public void testSameResult() {
+		LayerChunkCache cache = new LayerChunkCache(false);
+		assertSameImage(draw(null, renderer, 0, 0), draw(cache, renderer, 0, 0));
+		assertSameImage(draw(null, renderer, 13, 2), draw(cache, renderer, 13, 2));
+		// partly outside the map
+		assertSameImage(draw(null, renderer, 30, 10), draw(cache, renderer, 30, 10));
+	}
+
+	/**
+	 * Check that opaque chunks of a layer drawn on the screen background give
+	 * the same result as drawing the tiles directly.
+	 */
+	@Test
+	public void testSameResultOnBackground() {
+		LayerChunkCache cache = new LayerChunkCache(true);
+		assertSameImage(draw(null, renderer, 0, 0), draw(cache, renderer, 0, 0));
+		assertSameImage(draw(null, renderer, 30, 10), draw(cache, renderer, 30, 10));
+	}
+
+	/**
+	 * Check that the constant tiles are drawn only once, and the animated
+	 * ones at every draw.
+	 */
+	@Test
+	public void testRedraw() {
+		LayerChunkCache cache = new LayerChunkCache(false);
+		draw(cache, renderer, 0, 0);
+		int constantDraws = constant.draws;
+		assertEquals(1, animated.draws);
+
+		draw(cache, renderer, 0, 0);
+		assertEquals(constantDraws, constant.draws);
+		assertEquals(2, animated.draws);
+
+		// a new renderer, as after a zone or coloring change
+		draw(cache, createRenderer(), 0, 0);
+		assertEquals(2 * constantDraws, constant.draws);
+		assertEquals(3, animated.draws);
+	}
+
+	/**
+	 * A sprite that counts its draws.
+	 */
+	private static class CountingSprite implements Sprite {
+		private final Sprite sprite;
+		private final boolean isConstant;
+		int draws;
+
+		CountingSprite(Sprite sprite, boolean isConstant) {
+			this.sprite = sprite;
+			this.isConstant = isConstant;
+		}
+
+		@Override
+		public Sprite createRegion(int x, int y, int width, int height, Object ref) {
+			return sprite.createRegion(x, y, width, height, ref);
+		}
+
+		@Override
+		public void draw(Graphics g, int x, int y) {
+			draws++;
+			sprite.draw(g, x, y);
+		}
+
+		@Override
+		public void draw(Graphics g, int destx, int desty, int x, int y, int w, int h) {
+			draws++;
+			sprite.draw(g, destx, desty, x, y, w, h);
+		}
+
+		@Override
+		public int getHeight() {
+			return sprite.getHeight();
+		}
+
+		@Override
+		public Object getReference() {
+			return null;
+		}
+
+		@Override
+		public int getWidth() {
+			return sprite.getWidth();
+		}
+
+		@Override
+		public boolean isConstant() {
+			return isConstant;
+		}
+	}
+}
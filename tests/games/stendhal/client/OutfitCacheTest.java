@@ -0,0 +1,100 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+
+/**
+ * Tests for OutfitCache.
+ */
+public class OutfitCacheTest {
+	/** Size of a 10x10 sprite image in bytes. */
+	private static final int SPRITE_BYTES = 400;
+
+	private static Sprite createSprite(int width, int height) {
+		return new ImageSprite(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+	}
+
+	/**
+	 * Tests that the least recently used sprites are dropped when the budget
+	 * is exceeded.
+	 */
+	@Test
+	public void testEviction() {
+		OutfitCache cache = new OutfitCache(3 * SPRITE_BYTES);
+		Sprite a = createSprite(10, 10);
+		Sprite b = createSprite(10, 10);
+		Sprite c = createSprite(10, 10);
+		cache.put("a", a);
+		cache.put("b", b);
+		cache.put("c", c);
+		assertEquals(3, cache.size());
+		assertEquals(3 * SPRITE_BYTES, cache.getBytes());
+
+		// use "a", so that "b" is the least recently used
+		assertSame(a, cache.get("a"));
+		Sprite d = createSprite(10, 10);
+		cache.put("d", d);
+		assertEquals(3, cache.size());
+		assertNull(cache.get("b"));
+		assertSame(a, cache.get("a"));
+		assertSame(c, cache.get("c"));
+		assertSame(d, cache.get("d"));
+
+		// a large sprite replaces several small ones
+		Sprite large = createSprite(20, 10);
+		cache.put("large", large);
+		assertEquals(2, cache.size());
+		assertEquals(3 * SPRITE_BYTES, cache.getBytes());
+		assertSame(d, cache.get("d"));
+		assertSame(large, cache.get("large"));
+
+		// replacing a sprite does not count it twice
+		cache.put("d", createSprite(10, 10));
+		assertEquals(3 * SPRITE_BYTES, cache.getBytes());
+
+		// sprites larger than the budget are not stored
+		cache.put("huge", createSprite(40, 10));
+		assertNull(cache.get("huge"));
+		assertEquals(2, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+	}
+
+	/**
+	 * Tests the hit rate.
+	 */
+	@Test
+	public void testHitRate() {
+		OutfitCache cache = new OutfitCache(SPRITE_BYTES);
+		assertEquals(0.0, cache.getHitRate(), 0.0);
+		cache.put("a", createSprite(10, 10));
+		cache.get("a");
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		assertEquals(0.75, cache.getHitRate(), 0.0001);
+		assertTrue(cache.getStatistics().endsWith("of 4 lookups"));
+	}
+}
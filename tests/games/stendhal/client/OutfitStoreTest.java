@@ -0,0 +1,146 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import games.stendhal.client.gui.OutfitColor;
+import games.stendhal.client.gui.wt.core.WtWindowManager;
+import games.stendhal.client.sprite.ImageSprite;
+import games.stendhal.client.sprite.Sprite;
+import games.stendhal.client.sprite.SpriteStore;
+
+/**
+ * Tests for OutfitStore.
+ */
+public class OutfitStoreTest {
+	private static final String NONUDE = "gamescreen.nonude";
+
+	private OutfitStore store;
+
+	@Before
+	public void setUp() {
+		store = new OutfitStore(SpriteStore.get());
+		store.init();
+	}
+
+	/**
+	 * Tests that outfit codes resulting in the same image get the same
+	 * reference, and others do not.
+	 */
+	@Test
+	public void testEquivalentCodes() {
+		final String reference = store.buildReference("body=1,head=2", OutfitColor.PLAIN);
+		assertEquals(reference, store.buildReference("head=2,dress=0,body=1,mouth=0", OutfitColor.PLAIN));
+		assertNotEquals(reference, store.buildReference("body=1,head=3", OutfitColor.PLAIN));
+		assertNotEquals(reference, store.buildReference("body=1,head=2", null));
+	}
+
+	/**
+	 * Tests that the hair index does not matter under hats that hide the
+	 * hair.
+	 */
+	@Test
+	public void testHiddenHair() {
+		assertEquals(store.buildReference("hair=2,hat=3", null), store.buildReference("hair=5,hat=3", null));
+		assertNotEquals(store.buildReference("hair=2,hat=1", null), store.buildReference("hair=5,hat=1", null));
+	}
+
+	/**
+	 * Tests that details with a rear layer are marked in the reference.
+	 */
+	@Test
+	public void testRearDetail() {
+		assertTrue(store.buildReference("detail=1", null).contains("rear,"));
+		assertFalse(store.buildReference("detail=5", null).contains("rear,"));
+	}
+
+	/**
+	 * Tests that the nonude setting is part of the reference.
+	 */
+	@Test
+	public void testNonude() {
+		final WtWindowManager settings = WtWindowManager.getInstance();
+		final String old = settings.getProperty(NONUDE, "true");
+		try {
+			settings.setProperty(NONUDE, "true");
+			final String nonude = store.buildReference("body=1", null);
+			settings.setProperty(NONUDE, "false");
+			final String nude = store.buildReference("body=1", null);
+			assertTrue(nonude.contains("nonude,"));
+			assertFalse(nude.contains("nonude,"));
+		} finally {
+			settings.setProperty(NONUDE, old);
+		}
+	}
+
+	/**
+	 * Tests that equivalent outfits requested while one is being composed
+	 * share a single composition, that each view is called back once, and
+	 * that cancelled views are not called back.
+	 */
+	@Test
+	public void testSingleComposition() throws InterruptedException {
+		final CountDownLatch composing = new CountDownLatch(1);
+		final AtomicInteger compositions = new AtomicInteger();
+		final Sprite composed = new ImageSprite(new BufferedImage(48 * 3, 64 * 4, BufferedImage.TYPE_INT_ARGB));
+		store = new OutfitStore(SpriteStore.get()) {
+			@Override
+			Sprite buildOutfit(final String strcode, final OutfitColor color) {
+				try {
+					composing.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				compositions.incrementAndGet();
+				return composed;
+			}
+		};
+
+		final CountDownLatch done = new CountDownLatch(2);
+		final AtomicInteger firstCalls = new AtomicInteger();
+		final AtomicInteger cancelledCalls = new AtomicInteger();
+		final Runnable first = () -> {
+			firstCalls.incrementAndGet();
+			done.countDown();
+		};
+		final Runnable second = () -> done.countDown();
+		final Runnable cancelled = () -> cancelledCalls.incrementAndGet();
+
+		assertFalse(composed == store.getAdjustedOutfit("body=1,head=2", null, null, null, first));
+		// a rebuild of the same view while the outfit is still pending
+		store.getAdjustedOutfit("body=1,head=2", null, null, null, first);
+		store.getAdjustedOutfit("head=2,body=1,dress=0", null, null, null, second);
+		store.getAdjustedOutfit("body=1,head=2", null, null, null, cancelled);
+		store.cancelOutfit(cancelled);
+		composing.countDown();
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(1, compositions.get());
+		assertEquals(1, firstCalls.get());
+		assertEquals(0, cancelledCalls.get());
+		assertSame(composed, store.getAdjustedOutfit("body=1,dress=0,head=2", null, null, null, first));
+		assertEquals(1, compositions.get());
+	}
+}
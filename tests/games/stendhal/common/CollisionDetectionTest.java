@@ -236,4 +236,48 @@ public class CollisionDetectionTest {
 			}
 		}
 	}
+
+	/**
+	 * Tests the connected components, and their update when the collision
+	 * changes.
+	 */
+	@Test
+	public void testComponents() {
+		CollisionDetection map = new CollisionDetection();
+		map.init(5, 3);
+		// wall at x = 2 with a gap at y = 2
+		map.setCollide(2, 0);
+		map.setCollide(2, 1);
+		assertThat(map.getComponent(2, 0), is(0));
+		assertThat(map.getComponent(0, 0), is(map.getComponent(4, 0)));
+		assertThat(map.isConnected(0, 0, new Rectangle(4, 1, 1, 1)), is(true));
+
+		map.setCollide(2, 2);
+		assertThat(map.getComponent(0, 0) == map.getComponent(4, 0), is(false));
+		assertThat(map.getComponent(0, 0), is(map.getComponent(1, 2)));
+		assertThat(map.isConnected(0, 0, new Rectangle(4, 1, 1, 1)), is(false));
+		// partially reachable area
+		assertThat(map.isConnected(0, 0, new Rectangle(1, 1, 3, 1)), is(true));
+		// unknown start
+		assertThat(map.isConnected(2, 1, new Rectangle(4, 1, 1, 1)), is(true));
+		assertThat(map.isConnected(-1, 0, new Rectangle(4, 1, 1, 1)), is(true));
+	}
+
+	/**
+	 * Tests lines through collision.
+	 */
+	@Test
+	public void testCollidesOnLine() {
+		CollisionDetection map = new CollisionDetection();
+		map.init(10, 10);
+		map.setCollide(5, 5);
+		assertThat(map.collidesOnLine(0, 0, 9, 9), is(true));
+		assertThat(map.collidesOnLine(9, 9, 0, 0), is(true));
+		assertThat(map.collidesOnLine(0, 9, 9, 0), is(false));
+		assertThat(map.collidesOnLine(5, 0, 5, 9), is(true));
+		assertThat(map.collidesOnLine(4, 0, 4, 9), is(false));
+		assertThat(map.collidesOnLine(2, 2, 2, 2), is(false));
+		assertThat(map.collidesOnLine(5, 5, 5, 5), is(true));
+		assertThat(map.collidesOnLine(0, 0, 10, 0), is(true));
+	}
 }
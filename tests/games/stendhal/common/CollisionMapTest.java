@@ -18,6 +18,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.awt.geom.Rectangle2D;
 import java.util.BitSet;
+import java.util.Random;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -128,6 +129,72 @@ public class CollisionMapTest {
 		assertTrue("edge", map.collides(3, 3, 2, 2));
 	}
 
+	/**
+	 * Tests that get() treats positions outside the map as free, also next to
+	 * collisions on the neighbouring rows.
+	 */
+	@Test
+	public void testGetOutside() {
+		final CollisionMap map = new CollisionMap(64, 2);
+		map.set(0, 1);
+		map.set(63, 0);
+		assertTrue(map.get(0, 1));
+		assertFalse(map.get(64, 0));
+		assertFalse(map.get(-1, 1));
+		assertFalse(map.get(0, 2));
+		assertFalse(map.get(0, -1));
+	}
+
+	/**
+	 * Tests that set() and unset() ignore positions outside the map instead
+	 * of changing other rows.
+	 */
+	@Test
+	public void testSetOutside() {
+		final CollisionMap map = new CollisionMap(64, 2);
+		map.set(64, 0);
+		map.set(-1, 1);
+		map.set(0, 2);
+		map.set(0, -1);
+		assertFalse(map.collides(0, 0, 64, 2));
+
+		map.set(0, 1);
+		map.set(63, 0);
+		map.unset(64, 0);
+		map.unset(-1, 1);
+		map.unset(0, 2);
+		map.unset(0, -1);
+		assertTrue(map.get(0, 1));
+		assertTrue(map.get(63, 0));
+	}
+
+	/**
+	 * Tests setting rectangles that reach over the edges of the map.
+	 */
+	@Test
+	public void testSetEdgeRectangles() {
+		final CollisionMap map = new CollisionMap(64, 4);
+		map.set(new Rectangle2D.Double(62, 1, 4, 2));
+		assertTrue(map.get(62, 1));
+		assertTrue(map.get(63, 1));
+		assertTrue(map.get(62, 2));
+		assertTrue(map.get(63, 2));
+		// nothing wrapped around to the next rows
+		assertFalse(map.collides(0, 0, 62, 4));
+
+		map.clear();
+		map.set(new Rectangle2D.Double(-2, -2, 3, 3));
+		assertTrue(map.get(0, 0));
+		assertFalse(map.collides(1, 0, 63, 4));
+		assertFalse(map.collides(0, 1, 64, 3));
+
+		map.clear();
+		map.set(new Rectangle2D.Double(70, 0, 2, 2));
+		map.set(new Rectangle2D.Double(0, 4, 2, 2));
+		map.set(new Rectangle2D.Double(-5, -5, 2, 2));
+		assertFalse(map.collides(0, 0, 64, 4));
+	}
+
 	/**
 	 * Tests for bitsetlogic.
 	 */
@@ -353,4 +420,41 @@ public class CollisionMapTest {
 				.getWidth(), (int) bob.getHeight()));
 	}
 
+	/**
+	 * Tests rectangle collisions on a map wider than a word, against
+	 * checking every tile.
+	 */
+	@Test
+	public void testCollidesWideMap() {
+		final Random random = new Random(3);
+		final CollisionMap map = new CollisionMap(150, 20);
+		for (int i = 0; i < 100; i++) {
+			map.set(random.nextInt(150), random.nextInt(20));
+		}
+		for (int i = 0; i < 2000; i++) {
+			final int x = random.nextInt(150);
+			final int y = random.nextInt(20);
+			final int w = 1 + random.nextInt(Math.min(140, 150 - x));
+			final int h = 1 + random.nextInt(20 - y);
+			boolean expected = false;
+			for (int tx = x; tx < x + w; tx++) {
+				for (int ty = y; ty < y + h; ty++) {
+					expected |= map.get(tx, ty);
+				}
+			}
+			assertThat(x + "," + y + " " + w + "x" + h, map.collides(x, y, w, h), is(expected));
+		}
+
+		// word boundary
+		final CollisionMap empty = new CollisionMap(130, 2);
+		empty.set(64, 1);
+		assertTrue(empty.get(64, 1));
+		assertFalse(empty.get(63, 1));
+		assertFalse(empty.collides(0, 0, 130, 1));
+		assertFalse(empty.collides(0, 1, 64, 1));
+		assertTrue(empty.collides(63, 1, 2, 1));
+		assertTrue(empty.collides(64, 0, 66, 2));
+		empty.unset(64, 1);
+		assertFalse(empty.collides(0, 0, 130, 2));
+	}
 }
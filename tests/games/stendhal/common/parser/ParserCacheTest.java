@@ -0,0 +1,56 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for the parser caches.
+ */
+public class ParserCacheTest {
+
+	/**
+	 * The least recently used entries must be dropped when the cache is
+	 * full, and hits and misses must be counted.
+	 */
+	@Test
+	public void testBoundedLeastRecentlyUsed() {
+		final ParserCache<String> cache = new ParserCache<String>(2);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		assertEquals("A", cache.get("a"));
+		cache.put("c", "C");
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals("A", cache.get("a"));
+		assertEquals("C", cache.get("c"));
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * The trigger expressions of the conversation parser are shared.
+	 */
+	@Test
+	public void testTriggerExpressionCache() {
+		final ParserCache<Expression> cache = ConversationParser.getTriggerExpressionsCache();
+		final long hits = cache.getHits();
+		final Expression expr = ConversationParser.createTriggerExpression("parser cache test");
+		assertSame(expr, ConversationParser.createTriggerExpression("parser cache test"));
+		assertEquals(hits + 1, cache.getHits());
+	}
+}
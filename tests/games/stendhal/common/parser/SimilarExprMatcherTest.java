@@ -16,6 +16,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Locale;
+import java.util.Random;
+
 import org.junit.Test;
 
 /**
@@ -105,4 +108,83 @@ public class SimilarExprMatcherTest {
 		assertEquals(false, ConversationParser.parse("hailo").matchesFull(m1));
 	}
 
+	/**
+	 * The limited Levenshtein distance must be the full distance if it is
+	 * within the limit, and larger than the limit otherwise.
+	 */
+	@Test
+	public final void testLimitedLevenshtein() {
+		final Random random = new Random(1);
+		for (int n = 0; n < 20000; n++) {
+			final String str1 = randomString(random);
+			final String str2 = (random.nextBoolean()) ? mutate(str1, random) : randomString(random);
+			final int expected = levenshtein(str1.toLowerCase(Locale.ENGLISH), str2.toLowerCase(Locale.ENGLISH));
+			for (int limit = 0; limit < 4; limit++) {
+				final int actual = SimilarExprMatcher.limitedLevenshtein(str1, str2, limit);
+				final String message = str1 + " " + str2 + " " + limit;
+				if (expected <= limit) {
+					assertEquals(message, expected, actual);
+				} else {
+					assertEquals(message, limit + 1, actual);
+				}
+			}
+		}
+
+		assertEquals(true, SimilarExprMatcher.isSimilar("Äpfelbaum", "äpfelbäum", 0.1));
+		assertEquals(false, SimilarExprMatcher.isSimilar("Äpfelbaum", "äpfelbäume", 0.1));
+	}
+
+	private static String randomString(final Random random) {
+		final StringBuilder builder = new StringBuilder();
+		final int length = random.nextInt(12);
+		for (int i = 0; i < length; i++) {
+			builder.append("abcABC -".charAt(random.nextInt(8)));
+		}
+		return builder.toString();
+	}
+
+	private static String mutate(final String str, final Random random) {
+		final StringBuilder builder = new StringBuilder(str);
+		final int edits = random.nextInt(4);
+		for (int i = 0; i < edits; i++) {
+			final int pos = random.nextInt(builder.length() + 1);
+			switch (random.nextInt(3)) {
+			case 0:
+				builder.insert(pos, 'x');
+				break;
+			case 1:
+				if (pos < builder.length()) {
+					builder.deleteCharAt(pos);
+				}
+				break;
+			default:
+				if (pos < builder.length()) {
+					builder.setCharAt(pos, 'y');
+				}
+				break;
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Plain Levenshtein distance as reference.
+	 */
+	private static int levenshtein(final String str1, final String str2) {
+		final int[][] d = new int[str1.length() + 1][str2.length() + 1];
+		for (int i = 0; i <= str1.length(); i++) {
+			d[i][0] = i;
+		}
+		for (int j = 0; j <= str2.length(); j++) {
+			d[0][j] = j;
+		}
+		for (int i = 1; i <= str1.length(); i++) {
+			for (int j = 1; j <= str2.length(); j++) {
+				final int cost = (str1.charAt(i - 1) == str2.charAt(j - 1)) ? 0 : 1;
+				d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+			}
+		}
+		return d[str1.length()][str2.length()];
+	}
+
 }
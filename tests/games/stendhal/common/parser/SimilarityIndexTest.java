@@ -0,0 +1,73 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the similarity index.
+ */
+public class SimilarityIndexTest {
+	private static final String[] WORDS = { "", "hi", "hello", "Hallo", "job", "jobs", "work", "offer", "quest",
+		"task", "help", "buy", "sell", "yes", "no", "nope", "bye", "goodbye", "leather armor", "leather armour",
+		"cloak", "cloaks", "elf cloak", "dwarf cloak", "magic scroll", "ados", "semos", "cheese", "meat", "ham" };
+
+	/**
+	 * The index must find the same strings as comparing with each of them.
+	 */
+	@Test
+	public void testSameAsScan() {
+		final SimilarityIndex<String> index = new SimilarityIndex<String>();
+		for (final String word : WORDS) {
+			index.add(word, word);
+		}
+
+		final Random random = new Random(1);
+		final List<String> queries = new ArrayList<String>();
+		for (final String word : WORDS) {
+			queries.add(word);
+			queries.add(word.toUpperCase());
+			for (int i = 0; i < 5; i++) {
+				final StringBuilder builder = new StringBuilder(word);
+				final int pos = random.nextInt(word.length() + 1);
+				if (random.nextBoolean() || (pos == word.length())) {
+					builder.insert(pos, 'e');
+				} else {
+					builder.deleteCharAt(pos);
+				}
+				queries.add(builder.toString());
+			}
+		}
+		queries.add("xyz");
+
+		for (final String query : queries) {
+			final List<String> expected = new ArrayList<String>();
+			for (final String word : WORDS) {
+				if (SimilarExprMatcher.isSimilar(query, word, 0.1)) {
+					expected.add(word);
+				}
+			}
+			final List<String> found = new ArrayList<String>();
+			index.findSimilar(query, 0.1, found);
+			Collections.sort(expected);
+			Collections.sort(found);
+			assertEquals(query, expected, found);
+		}
+	}
+}
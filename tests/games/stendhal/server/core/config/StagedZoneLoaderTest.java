@@ -0,0 +1,154 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.config.ZonesXMLLoader.ZoneDesc;
+import games.stendhal.server.core.config.zone.SetupDescriptor;
+import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.server.game.db.DatabaseFactory;
+
+/**
+ * Tests for StagedZoneLoader.
+ */
+public class StagedZoneLoaderTest {
+	private static final String THREADS = "stendhal.zone.loader.threads";
+	private static final String PREFIX = "staged test ";
+
+	private String oldThreads;
+	private ZonesXMLLoader loader;
+	private final List<ZoneDesc> descriptors = new ArrayList<ZoneDesc>();
+
+	/** Names of the configured zones, in commit order. */
+	private final List<String> committed = new ArrayList<String>();
+	/** Threads the zones were configured in. */
+	private final List<Thread> committers = new ArrayList<Thread>();
+
+	/**
+	 * Records the zones it is run for.
+	 */
+	private class RecordingDescriptor extends SetupDescriptor {
+		@Override
+		public void setup(final StendhalRPZone zone) {
+			committed.add(zone.getName());
+			committers.add(Thread.currentThread());
+		}
+	}
+
+	/**
+	 * Fails the commit of the zone it is run for.
+	 */
+	private static class FailingDescriptor extends SetupDescriptor {
+		@Override
+		public void setup(final StendhalRPZone zone) {
+			throw new IllegalStateException("broken zone");
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	@Before
+	public void setUp() throws URISyntaxException {
+		loader = new ZonesXMLLoader(new URI("testsemos.xml"));
+		oldThreads = System.getProperty(THREADS);
+		System.setProperty(THREADS, "3");
+	}
+
+	@After
+	public void tearDown() {
+		if (oldThreads == null) {
+			System.clearProperty(THREADS);
+		} else {
+			System.setProperty(THREADS, oldThreads);
+		}
+		final StendhalRPWorld world = MockStendlRPWorld.get();
+		for (final ZoneDesc desc : descriptors) {
+			final StendhalRPZone zone = world.getZone(desc.getName());
+			if (zone != null) {
+				world.removeZone(zone);
+			}
+		}
+	}
+
+	private ZoneDesc desc(final String name, final String file) {
+		final ZoneDesc desc = new ZoneDesc(PREFIX + name, "Level 0/semos/" + file, null, ZoneDesc.UNSET,
+				ZoneDesc.UNSET, ZoneDesc.UNSET, true);
+		desc.addDescriptor(new RecordingDescriptor());
+		descriptors.add(desc);
+		return desc;
+	}
+
+	/**
+	 * Tests that the zones are committed in the order they were added, in the
+	 * calling thread, even if the maps are prepared in parallel.
+	 */
+	@Test
+	public void testCommitOrder() {
+		final StagedZoneLoader staged = new StagedZoneLoader();
+		staged.add(loader, Arrays.asList(
+				desc("1", "mountain_n_w4.tmx"),
+				desc("2", "mountain_n2_w2.tmx"),
+				desc("3", "mountain_n2_w.tmx")));
+		staged.add(loader, Arrays.asList(
+				desc("4", "mountain_n2_w2.tmx"),
+				desc("5", "mountain_n_w4.tmx")));
+		staged.load();
+
+		assertEquals(Arrays.asList(PREFIX + "1", PREFIX + "2", PREFIX + "3", PREFIX + "4", PREFIX + "5"),
+				committed);
+		for (final Thread thread : committers) {
+			assertSame(Thread.currentThread(), thread);
+		}
+	}
+
+	/**
+	 * Tests that a zone whose map can not be loaded, and a zone whose
+	 * configuration fails, do not stop loading the other zones.
+	 */
+	@Test
+	public void testSkipFailingZone() {
+		final ZoneDesc broken = desc("broken", "mountain_n2_w.tmx");
+		broken.addDescriptor(new FailingDescriptor());
+		// a descriptor after the failing one is not run
+		broken.addDescriptor(new RecordingDescriptor());
+
+		final StagedZoneLoader staged = new StagedZoneLoader();
+		staged.add(loader, Arrays.asList(
+				desc("1", "mountain_n_w4.tmx"),
+				desc("missing", "no_such_map.tmx"),
+				desc("2", "mountain_n2_w2.tmx"),
+				broken,
+				desc("3", "mountain_n2_w.tmx")));
+		staged.load();
+
+		assertEquals(Arrays.asList(PREFIX + "1", PREFIX + "2", PREFIX + "broken", PREFIX + "3"), committed);
+	}
+}
@@ -0,0 +1,135 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.common.tiled.TileSetDefinition;
+
+/**
+ * Tests for the zone map cache.
+ */
+public class ZoneMapCacheTest {
+	private static final String MAP = "tiled/interiors/abstract/afterlife.tmx";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ZoneMapCache cache;
+	private byte[] source;
+	private StendhalMapStructure map;
+	private Map<String, byte[]> encoded;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new ZoneMapCache(folder.newFolder("cache"));
+		source = TMXLoader.readSource(MAP);
+		map = new TMXLoader().readMap(MAP, source);
+		encoded = new HashMap<String, byte[]>();
+		for (final LayerDefinition layer : map.getLayers()) {
+			encoded.put(layer.getName(), layer.encode());
+		}
+	}
+
+	/**
+	 * A cached map must have the same encoded layers, tilesets and server
+	 * side layers as the parsed map.
+	 */
+	@Test
+	public void testRoundTrip() {
+		assertNull(cache.read(MAP, source, new HashMap<String, byte[]>()));
+		cache.write(MAP, source, map, encoded);
+
+		final Map<String, byte[]> cachedEncoded = new HashMap<String, byte[]>();
+		final StendhalMapStructure cached = cache.read(MAP, source, cachedEncoded);
+		assertNotNull(cached);
+		assertEquals(map.getWidth(), cached.getWidth());
+		assertEquals(map.getHeight(), cached.getHeight());
+		assertEquals(encoded.keySet(), cachedEncoded.keySet());
+		for (final Map.Entry<String, byte[]> entry : encoded.entrySet()) {
+			assertArrayEquals(entry.getKey(), entry.getValue(), cachedEncoded.get(entry.getKey()));
+		}
+
+		assertEquals(map.getTilesets().size(), cached.getTilesets().size());
+		for (int i = 0; i < map.getTilesets().size(); i++) {
+			final TileSetDefinition expected = map.getTilesets().get(i);
+			final TileSetDefinition actual = cached.getTilesets().get(i);
+			assertEquals(expected.getName(), actual.getName());
+			assertEquals(expected.getSource(), actual.getSource());
+			assertEquals(expected.getFirstGid(), actual.getFirstGid());
+		}
+
+		map.build();
+		for (final String name : new String[] { "collision", "protection", "objects" }) {
+			final LayerDefinition expected = map.getLayer(name);
+			final LayerDefinition actual = cached.getLayer(name);
+			assertNotNull(name, actual);
+			for (int y = 0; y < expected.getHeight(); y++) {
+				for (int x = 0; x < expected.getWidth(); x++) {
+					if ("objects".equals(name)) {
+						assertEquals(expected.getTileAt(x, y), actual.getTileAt(x, y));
+					} else {
+						assertEquals(expected.getTileAt(x, y) != 0, actual.getTileAt(x, y) != 0);
+					}
+				}
+			}
+		}
+		assertFalse(cached.hasLayer("0_floor"));
+	}
+
+	/**
+	 * The cache must not be used when the map file has changed.
+	 */
+	@Test
+	public void testChangedSource() {
+		cache.write(MAP, source, map, encoded);
+		final byte[] changed = source.clone();
+		changed[changed.length - 2] ^= 1;
+		final Map<String, byte[]> cachedEncoded = new HashMap<String, byte[]>();
+		assertNull(cache.read(MAP, changed, cachedEncoded));
+		assertTrue(cachedEncoded.isEmpty());
+	}
+
+	/**
+	 * Broken cache files must be ignored.
+	 *
+	 * @throws IOException on test setup errors
+	 */
+	@Test
+	public void testTruncatedFile() throws IOException {
+		cache.write(MAP, source, map, encoded);
+		final FileOutputStream out = new FileOutputStream(cache.getCacheFile(MAP), true);
+		out.getChannel().truncate(200);
+		out.close();
+
+		final Map<String, byte[]> cachedEncoded = new HashMap<String, byte[]>();
+		assertNull(cache.read(MAP, source, cachedEncoded));
+		assertTrue(cachedEncoded.isEmpty());
+	}
+}
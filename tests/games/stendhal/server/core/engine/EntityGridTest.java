@@ -0,0 +1,154 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.mapstuff.area.AreaEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for the spatial entity index of StendhalRPZone.
+ */
+public class EntityGridTest {
+	private StendhalRPZone zone;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	@Before
+	public void setUp() {
+		zone = new StendhalRPZone("grid_test", 100, 100);
+	}
+
+	private AreaEntity createEntity(final int x, final int y, final int width, final int height) {
+		final AreaEntity entity = new AreaEntity(width, height);
+		entity.setPosition(x, y);
+		zone.add(entity);
+		return entity;
+	}
+
+	/**
+	 * Tests for point lookups.
+	 */
+	@Test
+	public void testGetEntityAt() {
+		final AreaEntity entity = createEntity(10, 20, 2, 2);
+		assertSame(entity, zone.getEntityAt(10, 20));
+		assertSame(entity, zone.getEntityAt(11.5, 21.5));
+		assertNull(zone.getEntityAt(12, 20));
+		assertNull(zone.getEntityAt(9, 20));
+		assertThat(zone.getEntitiesAt(11, 21), contains((Entity) entity));
+		assertThat(zone.getEntitiesAt(50, 50), empty());
+	}
+
+	/**
+	 * Tests that moved and resized entities are found at their new area.
+	 */
+	@Test
+	public void testMoveAndResize() {
+		final AreaEntity entity = createEntity(1, 1, 1, 1);
+		entity.setPosition(60, 70);
+		assertNull(zone.getEntityAt(1, 1));
+		assertSame(entity, zone.getEntityAt(60, 70));
+
+		entity.setSize(20, 1);
+		assertSame(entity, zone.getEntityAt(79, 70));
+
+		entity.put("x", 5);
+		entity.put("y", 5);
+		entity.update();
+		assertNull(zone.getEntityAt(60, 70));
+		assertSame(entity, zone.getEntityAt(24, 5));
+	}
+
+	/**
+	 * Tests that removed entities are no longer found.
+	 */
+	@Test
+	public void testRemove() {
+		final AreaEntity entity = createEntity(3, 3, 1, 1);
+		zone.remove(entity);
+		assertNull(zone.getEntityAt(3, 3));
+		assertFalse(zone.collidesObjects(entity, new Rectangle(3, 3, 1, 1)));
+	}
+
+	/**
+	 * Tests entities with large areas or outside of the zone.
+	 */
+	@Test
+	public void testLargeAndOutsideEntities() {
+		final AreaEntity large = createEntity(0, 0, 100, 100);
+		final AreaEntity outside = createEntity(-5, 2, 1, 1);
+		final AreaEntity far = createEntity(200, 200, 1, 1);
+		assertThat(zone.getEntitiesAt(42, 42), contains((Entity) large));
+		assertThat(zone.getEntitiesAt(-5, 2), contains((Entity) outside));
+		assertSame(far, zone.getEntityAt(200, 200));
+	}
+
+	/**
+	 * Tests collision checks against other entities.
+	 */
+	@Test
+	public void testCollidesObjects() {
+		final AreaEntity walker = createEntity(5, 5, 1, 1);
+		walker.setResistance(100);
+		final AreaEntity blocker = createEntity(15, 5, 3, 3);
+		blocker.setResistance(100);
+
+		assertFalse(zone.collides(walker, 14, 5));
+		assertTrue(zone.collides(walker, 15, 5));
+		assertTrue(zone.collides(walker, 17, 7));
+		assertFalse(zone.collides(walker, 18, 7));
+		// an entity does not collide with itself
+		assertFalse(zone.collides(walker, 5, 5));
+
+		blocker.setResistance(0);
+		assertFalse(zone.collides(walker, 15, 5));
+	}
+
+	/**
+	 * Tests area queries report entities spanning several buckets once.
+	 */
+	@Test
+	public void testGetFilteredEntitiesInArea() {
+		final AreaEntity spanning = createEntity(6, 6, 12, 12);
+		final AreaEntity small = createEntity(30, 30, 1, 1);
+		createEntity(80, 80, 1, 1);
+
+		final List<Entity> found = zone.getFilteredEntities(new Rectangle(0, 0, 40, 40), null);
+		assertThat(found, containsInAnyOrder((Entity) spanning, small));
+	}
+}
@@ -0,0 +1,141 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import java.awt.Rectangle;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for the index of exterior zones by world position.
+ */
+public class ExteriorZoneIndexTest {
+	private ExteriorZoneIndex index;
+	private StendhalRPZone center;
+	private StendhalRPZone east;
+	private StendhalRPZone south;
+	private StendhalRPZone far;
+	private StendhalRPZone below;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	@Before
+	public void setUp() {
+		index = new ExteriorZoneIndex();
+		center = createZone("center", 0, 0, 0, 128, 128);
+		east = createZone("east", 0, 128, 0, 100, 128);
+		south = createZone("south", 0, -50, 128, 300, 64);
+		far = createZone("far", 0, 1000, -1000, 128, 128);
+		below = createZone("below", -1, 0, 0, 128, 128);
+
+		final StendhalRPZone interior = new StendhalRPZone("interior", 128, 128);
+		interior.setPosition();
+		index.add(interior);
+	}
+
+	private StendhalRPZone createZone(final String name, final int level, final int x, final int y,
+			final int width, final int height) {
+		final StendhalRPZone zone = new StendhalRPZone(name, width, height);
+		zone.setPosition(level, x, y);
+		index.add(zone);
+		return zone;
+	}
+
+	private StendhalRPZone zoneAt(final int level, final int x, final int y) {
+		return index.getZoneAt(level, new Rectangle(x, y, 1, 1));
+	}
+
+	/**
+	 * Tests finding the zone at a position.
+	 */
+	@Test
+	public void testGetZoneAt() {
+		assertSame(center, zoneAt(0, 0, 0));
+		assertSame(center, zoneAt(0, 127, 127));
+		assertSame(east, zoneAt(0, 128, 0));
+		assertSame(east, zoneAt(0, 227, 127));
+		assertNull(zoneAt(0, 228, 0));
+		assertSame(south, zoneAt(0, -50, 128));
+		assertSame(south, zoneAt(0, 249, 191));
+		assertNull(zoneAt(0, -51, 128));
+		assertNull(zoneAt(0, -1, 0));
+		assertSame(far, zoneAt(0, 1100, -900));
+		assertSame(below, zoneAt(-1, 5, 5));
+		assertNull(zoneAt(1, 5, 5));
+	}
+
+	/**
+	 * Tests that removed zones are not found anymore.
+	 */
+	@Test
+	public void testRemove() {
+		index.remove(east);
+		assertNull(zoneAt(0, 128, 0));
+		assertSame(center, zoneAt(0, 127, 0));
+	}
+
+	/**
+	 * Tests finding the neighbours of a zone.
+	 */
+	@Test
+	public void testGetNeighbours() {
+		assertThat(index.getNeighbours(center), containsInAnyOrder(east, south));
+		assertThat(index.getNeighbours(east), containsInAnyOrder(center, south));
+		assertThat(index.getNeighbours(far), empty());
+		assertThat(index.getNeighbours(below), empty());
+	}
+
+	/**
+	 * Tests that adding a zone to the world replaces the indexed zone with
+	 * the same ID.
+	 */
+	@Test
+	public void testReplaceZoneInWorld() throws Exception {
+		final StendhalRPWorld world = MockStendlRPWorld.get();
+		final StendhalRPZone neighbour = new StendhalRPZone("index neighbour", 128, 128);
+		neighbour.setPosition(0, 5000, 5000);
+		final StendhalRPZone old = new StendhalRPZone("index replaced", 128, 128);
+		old.setPosition(0, 5128, 5000);
+		final StendhalRPZone replacement = new StendhalRPZone("index replaced", 128, 128);
+		replacement.setPosition(0, 5000, 5128);
+		try {
+			world.addRPZone(neighbour);
+			world.addRPZone(old);
+			assertThat(world.getNeighbourZones(neighbour), containsInAnyOrder(old));
+
+			world.addRPZone(replacement);
+			assertThat(world.getNeighbourZones(neighbour), containsInAnyOrder(replacement));
+		} finally {
+			world.removeRPZone(neighbour.getID());
+			world.removeRPZone(replacement.getID());
+		}
+	}
+}
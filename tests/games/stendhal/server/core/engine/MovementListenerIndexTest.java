@@ -0,0 +1,240 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.events.MovementListener;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.entity.mapstuff.area.AreaEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for the movement listener index of StendhalRPZone.
+ */
+public class MovementListenerIndexTest {
+	private StendhalRPZone zone;
+	private List<String> events;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	@Before
+	public void setUp() {
+		zone = new StendhalRPZone("listener_test", 100, 100);
+		events = new ArrayList<String>();
+	}
+
+	/**
+	 * Listeners must be notified in registration order, including listeners
+	 * with large areas and listeners registered twice.
+	 */
+	@Test
+	public void testNotificationOrder() {
+		final ActiveEntity entity = createMover();
+		zone.addMovementListener(new RecordingListener("a", new Rectangle(0, 0, 20, 20)));
+		final RecordingListener b = new RecordingListener("b", new Rectangle(5, 5, 1, 1));
+		zone.addMovementListener(b);
+		zone.addMovementListener(new RecordingListener("c", new Rectangle(0, 0, 100, 100)));
+		zone.addMovementListener(new RecordingListener("d", new Rectangle(50, 50, 2, 2)));
+		zone.addMovementListener(b);
+
+		zone.notifyMovement(entity, 4, 5, 5, 5);
+		assertThat(events, contains("a moved", "b entered", "c moved", "b entered"));
+
+		events.clear();
+		zone.removeMovementListener(b);
+		zone.notifyMovement(entity, 5, 5, 6, 5);
+		assertThat(events, contains("a moved", "c moved", "b exited"));
+
+		events.clear();
+		zone.notifyMovement(entity, 19, 19, 20, 20);
+		assertThat(events, contains("a exited", "c moved"));
+
+		events.clear();
+		zone.notifyEntered(entity, 51, 51);
+		zone.notifyExited(entity, 51, 51);
+		assertThat(events, contains("c entered", "d entered", "c exited", "d exited"));
+	}
+
+	/**
+	 * Listeners that are entities must be found at their new position after
+	 * they moved.
+	 */
+	@Test
+	public void testMovingListener() {
+		final ActiveEntity entity = createMover();
+		final ListenerArea area = new ListenerArea();
+		area.setPosition(10, 10);
+		zone.add(area);
+		zone.addMovementListener(area);
+
+		zone.notifyEntered(entity, 70, 70);
+		assertThat(events, empty());
+
+		area.setPosition(70, 70);
+		zone.notifyEntered(entity, 70, 70);
+		assertThat(events, contains("area entered"));
+
+		events.clear();
+		zone.remove(area);
+		zone.notifyEntered(entity, 70, 70);
+		assertThat(events, empty());
+	}
+
+	/**
+	 * Compare the notifications with checking every listener, for random
+	 * listeners and movements.
+	 */
+	@Test
+	public void testRandomMovements() {
+		final Random random = new Random(1);
+		final ActiveEntity entity = createMover();
+		final List<MovementListener> listeners = new ArrayList<MovementListener>();
+		for (int i = 0; i < 200; i++) {
+			final int size = (i % 20 == 0) ? 60 : 1 + random.nextInt(4);
+			final MovementListener listener = new RecordingListener(Integer.toString(i),
+					new Rectangle2D.Double(random.nextInt(100) - 5 + random.nextDouble(), random.nextInt(100) - 5,
+							size, 1 + random.nextInt(4)));
+			listeners.add(listener);
+			zone.addMovementListener(listener);
+		}
+
+		for (int i = 0; i < 2000; i++) {
+			final int x = random.nextInt(100);
+			final int y = random.nextInt(100);
+			final int newX = x + random.nextInt(3) - 1;
+			final int newY = y + random.nextInt(3) - 1;
+			events.clear();
+			zone.notifyMovement(entity, x, y, newX, newY);
+			final List<String> indexed = new ArrayList<String>(events);
+
+			events.clear();
+			final Rectangle2D oldArea = entity.getArea(x, y);
+			final Rectangle2D newArea = entity.getArea(newX, newY);
+			for (final MovementListener listener : listeners) {
+				final boolean oldIn = listener.getArea().intersects(oldArea);
+				final boolean newIn = listener.getArea().intersects(newArea);
+				if (!oldIn && newIn) {
+					listener.onEntered(entity, zone, newX, newY);
+				}
+				if (oldIn && newIn) {
+					listener.onMoved(entity, zone, x, y, newX, newY);
+				}
+				if (oldIn && !newIn) {
+					listener.onExited(entity, zone, x, y);
+				}
+			}
+			assertEquals(events, indexed);
+		}
+	}
+
+	private ActiveEntity createMover() {
+		final ActiveEntity entity = new ActiveEntity() {
+			// nothing to add
+		};
+		entity.setSize(1, 2);
+		return entity;
+	}
+
+	/**
+	 * Listener that records the notifications.
+	 */
+	private class RecordingListener implements MovementListener {
+		private final String name;
+		private final Rectangle2D area;
+
+		RecordingListener(final String name, final Rectangle2D area) {
+			this.name = name;
+			this.area = area;
+		}
+
+		@Override
+		public Rectangle2D getArea() {
+			return area;
+		}
+
+		@Override
+		public void onEntered(final ActiveEntity entity, final StendhalRPZone zone, final int newX, final int newY) {
+			events.add(name + " entered");
+		}
+
+		@Override
+		public void onExited(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY) {
+			events.add(name + " exited");
+		}
+
+		@Override
+		public void beforeMove(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+				final int newX, final int newY) {
+			events.add(name + " before");
+		}
+
+		@Override
+		public void onMoved(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+				final int newX, final int newY) {
+			events.add(name + " moved");
+		}
+	}
+
+	/**
+	 * Area entity listening to movements.
+	 */
+	private class ListenerArea extends AreaEntity implements MovementListener {
+		ListenerArea() {
+			super(2, 2);
+		}
+
+		@Override
+		public void onEntered(final ActiveEntity entity, final StendhalRPZone zone, final int newX, final int newY) {
+			events.add("area entered");
+		}
+
+		@Override
+		public void onExited(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY) {
+			events.add("area exited");
+		}
+
+		@Override
+		public void beforeMove(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+				final int newX, final int newY) {
+			// not needed
+		}
+
+		@Override
+		public void onMoved(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+				final int newX, final int newY) {
+			events.add("area moved");
+		}
+	}
+}
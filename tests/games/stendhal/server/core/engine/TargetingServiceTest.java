@@ -0,0 +1,138 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.pathfinder.Node;
+import games.stendhal.server.entity.RPEntity;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+import utilities.RPClass.CreatureTestHelper;
+
+/**
+ * Tests for TargetingService.
+ */
+public class TargetingServiceTest {
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+		CreatureTestHelper.generateRPClasses();
+	}
+
+	/**
+	 * Tests for getNearest.
+	 */
+	@Test
+	public void testGetNearest() {
+		final StendhalRPZone zone = new StendhalRPZone("targeting_test", 60, 60);
+		final Creature creature = new Creature();
+		creature.setPosition(30, 30);
+		zone.add(creature);
+
+		final Player near = createPlayer(zone, "near", 32, 31);
+		final Player middle = createPlayer(zone, "middle", 25, 30);
+		final Player far = createPlayer(zone, "far", 30, 40);
+		final Player outside = createPlayer(zone, "outside", 50, 30);
+		final Player invisible = createPlayer(zone, "invisible", 31, 30);
+		invisible.setInvisible(true);
+
+		final TargetingService targeting = zone.getTargetingService();
+		assertEquals(Arrays.asList(near, middle, far), targeting.getNearest(creature, 10, 10));
+		assertEquals(Arrays.asList(near, middle), targeting.getNearest(creature, 10, 2));
+		assertEquals(Collections.singletonList(near), targeting.getNearest(creature, 2, 10));
+
+		// entities entering the zone must be found in the same turn
+		final Player late = createPlayer(zone, "late", 30, 29);
+		assertEquals(Arrays.asList(late, near), targeting.getNearest(creature, 2, 10));
+
+		// as well as entities that moved since the index was built
+		far.setPosition(27, 30);
+		assertEquals(Arrays.asList(late, near, far), targeting.getNearest(creature, 2, 10));
+
+		// and left ones should not be returned
+		zone.remove(late);
+		assertEquals(Arrays.asList(near, far), targeting.getNearest(creature, 2, 10));
+
+		// moves of any distance are seen, also several in the same turn
+		outside.setPosition(31, 31);
+		assertEquals(Arrays.asList(outside, near, far), targeting.getNearest(creature, 2, 10));
+		outside.setPosition(36, 31);
+		assertEquals(Arrays.asList(near, far), targeting.getNearest(creature, 2, 10));
+		near.setPosition(36, 30);
+		assertEquals(Collections.singletonList(far), targeting.getNearest(creature, 2, 10));
+	}
+
+	/**
+	 * Tests for sortByDistance.
+	 */
+	@Test
+	public void testSortByDistance() {
+		final StendhalRPZone zone = new StendhalRPZone("targeting_sort_test", 60, 60);
+		final Creature creature = new Creature();
+		creature.setPosition(10, 10);
+		zone.add(creature);
+		final Player first = createPlayer(zone, "first", 20, 10);
+		final Player second = createPlayer(zone, "second", 12, 10);
+
+		final List<RPEntity> others = Arrays.<RPEntity>asList(first, second, creature);
+		assertEquals(Arrays.asList(second, first), TargetingService.sortByDistance(creature, others, 20));
+		assertEquals(Collections.singletonList(second), TargetingService.sortByDistance(creature, others, 5));
+	}
+
+	/**
+	 * Tests for searchPath.
+	 */
+	@Test
+	public void testSearchPath() {
+		final StendhalRPZone zone = new StendhalRPZone("targeting_path_test", 40, 40);
+		for (int y = 0; y < 30; y++) {
+			zone.collisionMap.setCollide(20, y);
+		}
+		final Creature creature = new Creature();
+		creature.setPosition(10, 10);
+		zone.add(creature);
+		final Player player = createPlayer(zone, "target", 30, 10);
+
+		final TargetingService targeting = zone.getTargetingService();
+		final List<Node> path = targeting.searchPath(creature, player, 100);
+		assertFalse(path.isEmpty());
+		final List<Node> cached = targeting.searchPath(creature, player, 100);
+		assertEquals(path, cached);
+		// the callers get their own copy
+		assertNotSame(path, cached);
+		path.clear();
+		assertEquals(cached, targeting.searchPath(creature, player, 100));
+
+		// a too short maximum distance is a different search
+		assertTrue(targeting.searchPath(creature, player, 10).isEmpty());
+	}
+
+	private static Player createPlayer(final StendhalRPZone zone, final String name, final int x, final int y) {
+		final Player player = PlayerTestHelper.createPlayer(name);
+		player.setPosition(x, y);
+		zone.add(player);
+		return player;
+	}
+}
@@ -0,0 +1,223 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.Blood;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.mapstuff.portal.Portal;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for the entity lists of StendhalRPZone.
+ */
+public class ZoneEntityListTest {
+	private static final int ZONE_SIZE = 128;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * The list must behave like a linked list for random adds and removes,
+	 * including duplicates.
+	 */
+	@Test
+	public void testListOperations() {
+		final Random random = new Random(1);
+		final ZoneEntityList<String> list = new ZoneEntityList<String>();
+		final List<String> expected = new LinkedList<String>();
+		for (int i = 0; i < 20000; i++) {
+			final String element = "e" + random.nextInt(300);
+			final int operation = random.nextInt(10);
+			if (operation < 5) {
+				list.add(element);
+				expected.add(element);
+			} else if (operation < 9) {
+				assertEquals(expected.remove(element), list.remove(element));
+			} else if (!expected.isEmpty()) {
+				final int index = random.nextInt(expected.size());
+				assertEquals(expected.get(index), list.get(index));
+				assertEquals(expected.indexOf(element), list.indexOf(element));
+			}
+			assertEquals(expected.size(), list.size());
+			assertEquals(expected.contains(element), list.contains(element));
+		}
+		assertEquals(expected, new ArrayList<String>(list));
+		list.clear();
+		assertTrue(list.isEmpty());
+		assertFalse(list.iterator().hasNext());
+	}
+
+	/**
+	 * Removing elements while iterating must not throw. Elements removed
+	 * before the iterator reaches them are skipped, elements added after the
+	 * iterator was created are not returned.
+	 */
+	@Test
+	public void testModificationWhileIterating() {
+		final ZoneEntityList<String> list = new ZoneEntityList<String>();
+		list.add("a");
+		list.add("b");
+		list.add("c");
+		list.add("d");
+
+		final List<String> seen = new ArrayList<String>();
+		for (final String element : list) {
+			seen.add(element);
+			if ("a".equals(element)) {
+				list.remove("a");
+				list.remove("c");
+				list.add("e");
+			}
+		}
+		assertThat(seen, contains("a", "b", "d"));
+		assertThat(list, contains("b", "d", "e"));
+
+		final Iterator<String> iterator = list.iterator();
+		while (iterator.hasNext()) {
+			if ("d".equals(iterator.next())) {
+				iterator.remove();
+			}
+		}
+		assertThat(list, contains("b", "e"));
+
+		// remove the element right after the cursor
+		list.add("f");
+		final Iterator<String> it = list.iterator();
+		assertEquals("b", it.next());
+		list.remove("e");
+		assertTrue(it.hasNext());
+		assertEquals("f", it.next());
+		assertFalse(it.hasNext());
+
+		// remove the last element after hasNext() said there is one
+		list.add("g");
+		final Iterator<String> it2 = list.iterator();
+		assertEquals("b", it2.next());
+		assertEquals("f", it2.next());
+		assertTrue(it2.hasNext());
+		list.remove("g");
+		assertFalse(it2.hasNext());
+	}
+
+	/**
+	 * Add and remove portals and blood in a zone with 5000 objects, and
+	 * compare the position lookups with a linear search.
+	 */
+	@Test
+	public void testStress() {
+		final Random random = new Random(2);
+		final StendhalRPZone zone = new StendhalRPZone("list_stress_test", ZONE_SIZE, ZONE_SIZE);
+		final List<Entity> added = new ArrayList<Entity>();
+		for (int i = 0; i < 5000; i++) {
+			final Entity entity = createEntity(random, i);
+			zone.add(entity);
+			added.add(entity);
+		}
+		checkZone(zone, added, random);
+		assertEquals(2500, zone.getPortals().size());
+
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 250; i++) {
+				final Entity entity = added.remove(random.nextInt(added.size()));
+				zone.remove(entity);
+			}
+			for (int i = 0; i < 100; i++) {
+				added.get(random.nextInt(added.size())).setPosition(random.nextInt(ZONE_SIZE),
+						random.nextInt(ZONE_SIZE));
+			}
+			for (int i = 0; i < 250; i++) {
+				final Entity entity = createEntity(random, i);
+				zone.add(entity);
+				added.add(entity);
+			}
+			checkZone(zone, added, random);
+		}
+
+		for (final Entity entity : added) {
+			zone.remove(entity);
+		}
+		assertTrue(zone.getPortals().isEmpty());
+		for (int x = 0; x < ZONE_SIZE; x++) {
+			for (int y = 0; y < ZONE_SIZE; y++) {
+				assertNull(zone.getBlood(x, y));
+				assertNull(zone.getPortal(x, y));
+			}
+		}
+	}
+
+	private Entity createEntity(final Random random, final int i) {
+		final Entity entity;
+		if (i % 2 == 0) {
+			entity = new Portal();
+		} else {
+			entity = new Blood();
+		}
+		entity.setPosition(random.nextInt(ZONE_SIZE), random.nextInt(ZONE_SIZE));
+		return entity;
+	}
+
+	/**
+	 * Compare the position lookups with a linear search.
+	 *
+	 * @param zone zone
+	 * @param added the entities of the zone, in the order they were added
+	 * @param random random number generator
+	 */
+	private void checkZone(final StendhalRPZone zone, final List<Entity> added, final Random random) {
+		final List<Blood> bloods = new ArrayList<Blood>();
+		for (final Entity entity : added) {
+			if (entity instanceof Blood) {
+				bloods.add((Blood) entity);
+			}
+		}
+		for (int i = 0; i < 500; i++) {
+			final int x = random.nextInt(ZONE_SIZE);
+			final int y = random.nextInt(ZONE_SIZE);
+			assertSame(findFirst(zone.getPortals(), x, y), zone.getPortal(x, y));
+			assertSame(findFirst(bloods, x, y), zone.getBlood(x, y));
+		}
+	}
+
+	private <T extends Entity> T findFirst(final List<T> entities, final int x, final int y) {
+		for (final T entity : entities) {
+			if ((entity.getX() == x) && (entity.getY() == y)) {
+				return entity;
+			}
+		}
+		return null;
+	}
+}
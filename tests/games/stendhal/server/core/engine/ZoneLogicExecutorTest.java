@@ -0,0 +1,346 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.common.Rand;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import games.stendhal.server.core.rp.StendhalRPAction;
+import games.stendhal.server.entity.mapstuff.area.AreaEntity;
+import games.stendhal.server.entity.npc.NPC;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for ZoneLogicExecutor.
+ */
+public class ZoneLogicExecutorTest {
+	private static final int ZONES = 16;
+	private static final int ROUNDS = 20;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * The observable results of one turn.
+	 */
+	private static class Outcome {
+		final List<String> deferred = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> notified = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> steps = new ArrayList<String>();
+		StendhalRPZone travellerZone;
+		int travellerX;
+	}
+
+	/**
+	 * An NPC with logic that touches its own zone, the turn notifier and other
+	 * zones.
+	 */
+	private static class BusyNPC extends NPC {
+		private final Outcome outcome;
+		private final AreaEntity traveller;
+		private final List<StendhalRPZone> zones;
+		private final int index;
+
+		BusyNPC(final Outcome outcome, final AreaEntity traveller, final List<StendhalRPZone> zones, final int index) {
+			this.outcome = outcome;
+			this.traveller = traveller;
+			this.zones = zones;
+			this.index = index;
+		}
+
+		@Override
+		public void logic() {
+			final String name = getZone().getName();
+			// zone local work
+			for (int i = 0; i < 10; i++) {
+				setPosition(i, index % 10);
+			}
+			outcome.deferred.add("request " + name);
+			final Runnable action = new Runnable() {
+				@Override
+				public void run() {
+					outcome.deferred.add(name);
+				}
+			};
+			if (!ZoneLogicExecutor.defer(action)) {
+				action.run();
+			}
+			TurnNotifier.get().notifyInTurns(0, new TurnListener() {
+				@Override
+				public void onTurnReached(final int currentTurn) {
+					outcome.notified.add(name);
+				}
+			});
+			// every zone sends the traveller somewhere else
+			StendhalRPAction.placeat(zones.get((index + 1) % zones.size()), traveller, index, 1);
+		}
+	}
+
+	private Outcome runTurn(final ZoneLogicExecutor executor) {
+		final Outcome outcome = new Outcome();
+		final List<StendhalRPZone> zones = new ArrayList<StendhalRPZone>();
+		for (int i = 0; i < ZONES; i++) {
+			zones.add(new StendhalRPZone("logic_zone_" + i, 20, 20));
+		}
+		final AreaEntity traveller = new AreaEntity(1, 1);
+		zones.get(0).add(traveller);
+		for (int i = 0; i < ZONES; i++) {
+			final BusyNPC npc = new BusyNPC(outcome, traveller, zones, i);
+			npc.setPosition(0, 5);
+			zones.get(i).add(npc);
+		}
+
+		final TurnNotifier notifier = TurnNotifier.get();
+		final int turn = notifier.getCurrentTurnForDebugging() + 1;
+		executor.execute(zones);
+		notifier.logic(turn);
+
+		for (final StendhalRPZone zone : zones) {
+			final NPC npc = zone.getNPCList().get(0);
+			outcome.steps.add(zone.getName() + ":" + npc.getX() + "," + npc.getY());
+		}
+		outcome.travellerZone = traveller.getZone();
+		outcome.travellerX = traveller.getX();
+		if (outcome.travellerZone != null) {
+			outcome.steps.add(outcome.travellerZone.getName() + ":" + traveller.getX());
+		}
+		return outcome;
+	}
+
+	/**
+	 * Tests that the sequential mode runs the zone logic on the calling thread.
+	 */
+	@Test
+	public void testSequential() {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(1);
+		assertFalse(executor.isParallel());
+		final Outcome outcome = runTurn(executor);
+		// nothing gets deferred, the actions run immediately
+		assertEquals(2 * ZONES, outcome.deferred.size());
+		assertEquals("request logic_zone_0", outcome.deferred.get(0));
+		assertEquals("logic_zone_0", outcome.deferred.get(1));
+		assertEquals(ZONES, outcome.notified.size());
+		// turn listeners are notified in the order they were registered
+		for (int i = 0; i < ZONES; i++) {
+			assertEquals("logic_zone_" + i, outcome.notified.get(i));
+		}
+		assertEquals("logic_zone_0", outcome.travellerZone.getName());
+		assertEquals(ZONES - 1, outcome.travellerX);
+	}
+
+	/**
+	 * Tests that parallel runs give the same results as the sequential mode,
+	 * every time.
+	 */
+	@Test
+	public void testParallelIsDeterministic() {
+		final Outcome sequential = runTurn(new ZoneLogicExecutor(1));
+
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(4);
+		try {
+			assertTrue(executor.isParallel());
+			for (int round = 0; round < ROUNDS; round++) {
+				final Outcome parallel = runTurn(executor);
+
+				// deferred actions are applied in zone order after all zones are done
+				final List<String> applied = new ArrayList<String>();
+				for (final String entry : parallel.deferred) {
+					if (!entry.startsWith("request ")) {
+						applied.add(entry);
+					}
+				}
+				assertEquals(ZONES, applied.size());
+				for (int i = 0; i < ZONES; i++) {
+					assertEquals("logic_zone_" + i, applied.get(i));
+				}
+
+				assertEquals(sequential.notified, parallel.notified);
+				assertEquals(sequential.steps, parallel.steps);
+				assertEquals(sequential.travellerZone.getName(), parallel.travellerZone.getName());
+				assertEquals(sequential.travellerX, parallel.travellerX);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * An NPC that draws random numbers.
+	 */
+	private static class DiceNPC extends NPC {
+		private final int draws;
+		private final List<Integer> results = new ArrayList<Integer>();
+
+		DiceNPC(final int draws) {
+			this.draws = draws;
+		}
+
+		@Override
+		public void logic() {
+			for (int i = 0; i < draws; i++) {
+				results.add(Rand.roll1D100());
+			}
+		}
+	}
+
+	/**
+	 * Draw random numbers in two zones for a few turns.
+	 *
+	 * @param otherDraws number of random numbers drawn by the second zone
+	 * 	every turn
+	 * @return the random numbers drawn by the first zone
+	 */
+	private List<Integer> drawInZones(final int otherDraws) {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(4, new Random(42));
+		try {
+			final List<StendhalRPZone> zones = new ArrayList<StendhalRPZone>();
+			final DiceNPC first = new DiceNPC(5);
+			final DiceNPC other = new DiceNPC(otherDraws);
+			for (final DiceNPC npc : Arrays.asList(first, other)) {
+				final StendhalRPZone zone = new StendhalRPZone("dice_zone_" + zones.size(), 20, 20);
+				zone.add(npc);
+				zones.add(zone);
+			}
+			for (int turn = 0; turn < 3; turn++) {
+				executor.execute(zones);
+			}
+			return first.results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that each zone draws from a random number generator of its own in
+	 * parallel mode, so that other zones do not change its results.
+	 */
+	@Test
+	public void testZoneGenerators() {
+		final List<Integer> results = drawInZones(0);
+		assertEquals(15, results.size());
+		assertEquals(results, drawInZones(1000));
+		assertEquals(results, drawInZones(1));
+	}
+
+	/**
+	 * Tests that side effects are not deferred outside of parallel zone logic.
+	 */
+	@Test
+	public void testDeferOutsideZoneLogic() {
+		final StendhalRPZone zone = new StendhalRPZone("logic_zone_plain", 20, 20);
+		assertFalse(ZoneLogicExecutor.defer(new Runnable() {
+			@Override
+			public void run() {
+				// not called
+			}
+		}));
+		final AreaEntity entity = new AreaEntity(1, 1);
+		assertTrue(StendhalRPAction.placeat(zone, entity, 3, 3));
+		assertSame(zone, entity.getZone());
+	}
+
+	/**
+	 * An NPC that moves entities to other zones and reads the turn notifier
+	 * in its logic.
+	 */
+	private static class PlacingNPC extends NPC {
+		private final AreaEntity traveller;
+		private final StendhalRPZone target;
+		private final StendhalRPZone tooSmall;
+		private final List<Object> results = new ArrayList<Object>();
+
+		PlacingNPC(final AreaEntity traveller, final StendhalRPZone target, final StendhalRPZone tooSmall) {
+			this.traveller = traveller;
+			this.target = target;
+			this.tooSmall = tooSmall;
+		}
+
+		@Override
+		public void logic() {
+			results.add(StendhalRPAction.placeat(target, traveller, 2, 2));
+			results.add(traveller.getZone());
+			results.add(StendhalRPAction.placeat(tooSmall, new AreaEntity(2, 2), 0, 0));
+
+			final TurnNotifier notifier = TurnNotifier.get();
+			final TurnListener listener = new TurnListener() {
+				@Override
+				public void onTurnReached(final int currentTurn) {
+					// not called
+				}
+			};
+			notifier.notifyInTurns(4, listener);
+			results.add(notifier.getRemainingTurns(listener));
+			notifier.dontNotify(listener);
+			results.add(notifier.getRemainingTurns(listener));
+			notifier.notifyInTurns(7, listener);
+			results.add(notifier.getRemainingTurns(listener));
+			notifier.dontNotify(listener);
+		}
+	}
+
+	/**
+	 * Tests that zone logic running in parallel gets the result of placing
+	 * entities into other zones right away, and reads the turn notifier
+	 * changes it made.
+	 */
+	@Test
+	public void testParallelResults() {
+		final ZoneLogicExecutor executor = new ZoneLogicExecutor(4);
+		try {
+			final List<StendhalRPZone> zones = new ArrayList<StendhalRPZone>();
+			final StendhalRPZone target = new StendhalRPZone("logic_zone_target", 20, 20);
+			final StendhalRPZone tooSmall = new StendhalRPZone("logic_zone_small", 1, 1);
+			final List<PlacingNPC> npcs = new ArrayList<PlacingNPC>();
+			for (int i = 0; i < ZONES; i++) {
+				final StendhalRPZone zone = new StendhalRPZone("logic_zone_placing_" + i, 20, 20);
+				final AreaEntity traveller = new AreaEntity(1, 1);
+				traveller.setPosition(1, 1);
+				zone.add(traveller);
+				final PlacingNPC npc = new PlacingNPC(traveller, target, tooSmall);
+				npc.setPosition(5, 5);
+				zone.add(npc);
+				zones.add(zone);
+				npcs.add(npc);
+			}
+			executor.execute(zones);
+
+			for (final PlacingNPC npc : npcs) {
+				assertEquals(Arrays.<Object>asList(Boolean.TRUE, target, Boolean.FALSE, 5, -1, 8), npc.results);
+				assertSame(target, npc.traveller.getZone());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
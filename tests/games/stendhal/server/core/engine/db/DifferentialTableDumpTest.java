@@ -0,0 +1,124 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DatabaseFactory;
+
+/**
+ * Tests for DifferentialTableDump.
+ */
+public class DifferentialTableDumpTest {
+	private DBTransaction transaction;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	@Before
+	public void setUp() throws SQLException {
+		transaction = TransactionPool.get().beginWork();
+		transaction.execute("DELETE FROM zoneinfo", null);
+	}
+
+	@After
+	public void tearDown() {
+		// leave the table as it was
+		TransactionPool.get().rollback(transaction);
+	}
+
+	private DifferentialTableDump createDump() {
+		return new DifferentialTableDump("zoneinfo", "name", "level", "description", "dangerLevel");
+	}
+
+	private void assertCounts(DifferentialTableDump dump, int inserted, int updated, int deleted) {
+		assertEquals("inserted", inserted, dump.getInserted());
+		assertEquals("updated", updated, dump.getUpdated());
+		assertEquals("deleted", deleted, dump.getDeleted());
+	}
+
+	/**
+	 * Read the zone descriptions from the table.
+	 */
+	private Map<String, String> readDescriptions() throws SQLException {
+		Map<String, String> res = new TreeMap<>();
+		ResultSet resultSet = transaction.query("SELECT name, description FROM zoneinfo", null);
+		while (resultSet.next()) {
+			res.put(resultSet.getString(1), resultSet.getString(2));
+		}
+		resultSet.close();
+		return res;
+	}
+
+	/**
+	 * Tests that only the changed rows are written.
+	 */
+	@Test
+	public void testWriteChanges() throws SQLException {
+		DifferentialTableDump dump = createDump();
+		dump.addRow("zone a", 0, "first", 0.5);
+		dump.addRow("zone b", -1, null, 1.0);
+		dump.write(transaction);
+		assertCounts(dump, 2, 0, 0);
+		assertEquals("{zone a=first, zone b=null}", readDescriptions().toString());
+
+		// nothing changed
+		dump = createDump();
+		dump.addRow("zone a", 0, "first", 0.5);
+		dump.addRow("zone b", -1, null, 1.0);
+		dump.write(transaction);
+		assertCounts(dump, 0, 0, 0);
+
+		dump = createDump();
+		dump.addRow("zone b", -1, "null", 1.0);
+		dump.addRow("zone c", 1, "third", 0.0);
+		dump.write(transaction);
+		assertCounts(dump, 1, 1, 1);
+		assertEquals("{zone b=null, zone c=third}", readDescriptions().toString());
+		assertEquals("null", readDescriptions().get("zone b"));
+	}
+
+	/**
+	 * Tests that rows written before the content hashes, and duplicate rows,
+	 * are replaced.
+	 */
+	@Test
+	public void testOldRows() throws SQLException {
+		transaction.execute("INSERT INTO zoneinfo (name, level, description) VALUES ('zone a', 0, 'first')", null);
+		transaction.execute("INSERT INTO zoneinfo (name, level, description) VALUES ('zone a', 0, 'first')", null);
+
+		DifferentialTableDump dump = createDump();
+		dump.addRow("zone a", 0, "first", 0.5);
+		dump.write(transaction);
+		assertCounts(dump, 0, 1, 1);
+		assertEquals("{zone a=first}", readDescriptions().toString());
+
+		dump = createDump();
+		dump.addRow("zone a", 0, "first", 0.5);
+		dump.write(transaction);
+		assertCounts(dump, 0, 0, 0);
+	}
+}
@@ -0,0 +1,163 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.db.ItemLogBatch;
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DatabaseFactory;
+
+/**
+ * Tests for LogItemEventBatchCommand.
+ */
+public class LogItemEventBatchCommandTest {
+	private static final String NAME = "batch test item";
+
+	/** prefix of the item names of the current test */
+	private String prefix;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	@Before
+	public void setUp() {
+		prefix = NAME + " " + System.nanoTime();
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		transaction.execute("DELETE FROM itemlog WHERE itemid IN (SELECT id FROM item WHERE name LIKE '" + NAME + "%')", null);
+		transaction.execute("DELETE FROM item WHERE name LIKE '" + NAME + "%'", null);
+		TransactionPool.get().commit(transaction);
+	}
+
+	private static RPObject createItem(String name) {
+		RPObject item = new RPObject();
+		item.put("name", name);
+		return item;
+	}
+
+	private static AbstractLogItemEventCommand createEvent(RPObject item, String event) {
+		AbstractLogItemEventCommand command = new LogSimpleItemEventCommand(item, null, event, item.get("name"), null, null, null);
+		command.setEnqueueTime(new Timestamp(System.currentTimeMillis()));
+		return command;
+	}
+
+	/**
+	 * Executes a command like the command queue does.
+	 *
+	 * @param command command
+	 */
+	private static void execute(LogItemEventBatchCommand command) throws SQLException {
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			command.execute(transaction);
+			TransactionPool.get().commit(transaction);
+		} catch (SQLException e) {
+			TransactionPool.get().rollback(transaction);
+			command.setException(e);
+		}
+		command.invokeCallback();
+	}
+
+	private int countItems() throws SQLException {
+		return countRows("SELECT COUNT(*) FROM item WHERE name LIKE '" + prefix + "%'");
+	}
+
+	private static int countRows(String sql) throws SQLException {
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			return transaction.querySingleCellInt(sql, null);
+		} finally {
+			TransactionPool.get().commit(transaction);
+		}
+	}
+
+	/**
+	 * Tests that the logids are put on the items, and that events of one
+	 * item refer to the same row.
+	 */
+	@Test
+	public void testWrite() throws SQLException {
+		RPObject item = createItem(prefix + " 1");
+		execute(new LogItemEventBatchCommand(Arrays.asList(createEvent(item, "create"), createEvent(item, "equip"))));
+
+		assertTrue(item.has(StendhalItemDAO.ATTR_ITEM_LOGID));
+		int id = item.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+		assertEquals(1, countItems());
+		// register, create and equip
+		assertEquals(3, countRows("SELECT COUNT(*) FROM itemlog WHERE itemid=" + id));
+	}
+
+	/**
+	 * Tests that a failing event does not prevent writing the other events
+	 * of the batch, and that the item of the failed event does not get a
+	 * logid.
+	 */
+	@Test
+	public void testFailingEvent() throws SQLException {
+		RPObject good = createItem(prefix + " good");
+		final RPObject bad = createItem(prefix + " bad");
+		AbstractLogItemEventCommand failing = new AbstractLogItemEventCommand() {
+			@Override
+			protected void log(DBTransaction transaction, ItemLogBatch batch) throws SQLException {
+				batch.assignIDIfNotPresent(transaction, bad, getEnqueueTime());
+				transaction.execute("SELECT * FROM no_such_table", null);
+			}
+		};
+		failing.setEnqueueTime(new Timestamp(System.currentTimeMillis()));
+
+		execute(new LogItemEventBatchCommand(Arrays.asList(createEvent(good, "create"), failing)));
+
+		assertTrue(good.has(StendhalItemDAO.ATTR_ITEM_LOGID));
+		assertFalse(bad.has(StendhalItemDAO.ATTR_ITEM_LOGID));
+		assertEquals(1, countItems());
+		assertEquals(2, countRows("SELECT COUNT(*) FROM itemlog WHERE itemid="
+				+ good.getInt(StendhalItemDAO.ATTR_ITEM_LOGID)));
+	}
+
+	/**
+	 * Tests that the items do not get a logid if the transaction is rolled
+	 * back.
+	 */
+	@Test
+	public void testRollback() throws SQLException {
+		RPObject item = createItem(prefix + " rollback");
+		LogItemEventBatchCommand command = new LogItemEventBatchCommand(Arrays.asList(createEvent(item, "create")));
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		command.execute(transaction);
+		TransactionPool.get().rollback(transaction);
+		command.setException(new SQLException("rolled back"));
+		command.invokeCallback();
+
+		assertFalse(item.has(StendhalItemDAO.ATTR_ITEM_LOGID));
+		assertEquals(0, countItems());
+	}
+}
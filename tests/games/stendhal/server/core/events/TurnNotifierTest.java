@@ -0,0 +1,204 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.events;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for TurnNotifier.
+ */
+public class TurnNotifierTest {
+	private TurnNotifier notifier;
+	private List<String> fired;
+
+	/**
+	 * A listener that records the turns it was notified at.
+	 */
+	private class Recorder implements TurnListener {
+		private final String name;
+
+		Recorder(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			fired.add(name + "@" + currentTurn);
+		}
+	}
+
+	@Before
+	public void setUp() {
+		notifier = new TurnNotifier();
+		fired = new ArrayList<String>();
+		notifier.logic(0);
+	}
+
+	private void runUntil(final int turn) {
+		for (int i = notifier.getCurrentTurnForDebugging() + 1; i <= turn; i++) {
+			notifier.logic(i);
+		}
+	}
+
+	/**
+	 * Tests that listeners are notified exactly at their turn.
+	 */
+	@Test
+	public void testNotifyInTurns() {
+		notifier.notifyInTurns(0, new Recorder("a"));
+		notifier.notifyInTurns(4, new Recorder("b"));
+		runUntil(4);
+		assertThat(fired, contains("a@1"));
+		runUntil(5);
+		assertThat(fired, contains("a@1", "b@5"));
+		runUntil(10);
+		assertEquals(2, fired.size());
+	}
+
+	/**
+	 * Tests registrations far in the future, that pass several levels of the
+	 * wheel.
+	 */
+	@Test
+	public void testLongDelays() {
+		final int[] delays = { 255, 256, 257, 1000, 16383, 16384, 16385, 100000, 1100000 };
+		for (final int delay : delays) {
+			notifier.notifyAtTurn(delay, new Recorder(Integer.toString(delay)));
+		}
+		runUntil(1100000);
+		final List<String> expected = new ArrayList<String>();
+		for (final int delay : delays) {
+			expected.add(delay + "@" + delay);
+		}
+		assertEquals(expected, fired);
+	}
+
+	/**
+	 * Tests that a listener is notified only once per turn, but can be
+	 * registered for several turns.
+	 */
+	@Test
+	public void testRegisterTwice() {
+		final Recorder recorder = new Recorder("a");
+		notifier.notifyAtTurn(3, recorder);
+		notifier.notifyAtTurn(3, recorder);
+		notifier.notifyAtTurn(7, recorder);
+		assertEquals(2, notifier.getEventListForDebugging().size());
+		assertEquals(3, notifier.getRemainingTurns(recorder));
+		runUntil(10);
+		assertThat(fired, contains("a@3", "a@7"));
+		assertEquals(-1, notifier.getRemainingTurns(recorder));
+	}
+
+	/**
+	 * Tests cancelling registrations.
+	 */
+	@Test
+	public void testDontNotify() {
+		final Recorder a = new Recorder("a");
+		final Recorder b = new Recorder("b");
+		notifier.notifyAtTurn(2, a);
+		notifier.notifyAtTurn(50000, a);
+		notifier.notifyAtTurn(2, b);
+		notifier.dontNotify(a);
+		assertEquals(-1, notifier.getRemainingTurns(a));
+		assertEquals(2, notifier.getRemainingTurns(b));
+		runUntil(60000);
+		assertThat(fired, contains("b@2"));
+	}
+
+	/**
+	 * Tests that registrations in the past are rejected.
+	 */
+	@Test
+	public void testPastTurn() {
+		runUntil(5);
+		notifier.notifyAtTurn(5, new Recorder("a"));
+		notifier.notifyAtTurn(3, new Recorder("b"));
+		runUntil(10);
+		assertThat(fired, empty());
+	}
+
+	/**
+	 * Tests that listeners can register again while being notified.
+	 */
+	@Test
+	public void testRegisterWhileNotified() {
+		final TurnListener repeating = new TurnListener() {
+			@Override
+			public void onTurnReached(final int currentTurn) {
+				fired.add("r@" + currentTurn);
+				notifier.notifyInTurns(1, this);
+			}
+		};
+		notifier.notifyInTurns(0, repeating);
+		runUntil(7);
+		assertThat(fired, contains("r@1", "r@3", "r@5", "r@7"));
+		assertEquals(2, notifier.getRemainingTurns(repeating));
+	}
+
+	/**
+	 * Tests jumps of the turn counter. Only the registrations of the turns that
+	 * are actually processed are notified, like with sequential turns.
+	 */
+	@Test
+	public void testTurnJumps() {
+		notifier.notifyAtTurn(3, new Recorder("a"));
+		notifier.notifyAtTurn(300, new Recorder("b"));
+		notifier.notifyAtTurn(40000, new Recorder("c"));
+		notifier.logic(300);
+		assertThat(fired, contains("b@300"));
+		// skipped registration is still known
+		assertEquals(1, notifier.getEventListForDebugging().get(Integer.valueOf(3)).size());
+
+		notifier.logic(3);
+		assertThat(fired, contains("b@300", "a@3"));
+		notifier.logic(40000);
+		assertThat(fired, contains("b@300", "a@3", "c@40000"));
+	}
+
+	/**
+	 * Tests clearing the registrations.
+	 */
+	@Test
+	public void testClear() {
+		notifier.notifyAtTurn(2, new Recorder("a"));
+		notifier.notifyAtTurn(20000, new Recorder("b"));
+		final Map<Integer, Set<TurnListener>> events = notifier.getEventListForDebugging();
+		try {
+			events.clear();
+			fail("the debugging map should not be modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals(2, notifier.getEventListForDebugging().size());
+		notifier.clearAll();
+		assertTrue(notifier.getEventListForDebugging().isEmpty());
+		// the snapshot is not affected
+		assertEquals(2, events.size());
+		runUntil(20000);
+		assertThat(fired, empty());
+	}
+}
@@ -13,9 +13,13 @@
 package games.stendhal.server.core.pathfinder;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.awt.Rectangle;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -74,4 +78,158 @@ public class PathTest {
 
 		assertArrayEquals(expected.toArray(), Path.searchPath(zone, 0, 0, 6, 6, 20).toArray());
 	}
+
+	/**
+	 * Tests that the reused search data of earlier searches does not affect
+	 * later ones, also in zones of different size.
+	 */
+	@Test
+	public void testRepeatedSearches() {
+		final StendhalRPZone small = new StendhalRPZone("test", 10, 10);
+		final StendhalRPZone large = new StendhalRPZone("test", 50, 50);
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(expected.toArray(), Path.searchPath(small, 0, 0, 6, 6, 20).toArray());
+			assertEquals(81, Path.searchPath(large, 0, 0, 40, 40, 100).size());
+		}
+	}
+
+	/**
+	 * Tests walking around a wall, and giving up when the wall is closed.
+	 */
+	@Test
+	public void testSearchPathAroundWall() {
+		final StendhalRPZone zone = new StendhalRPZone("test", 10, 10);
+		// vertical wall at x = 5 with a gap at y = 9
+		for (int y = 0; y < 9; y++) {
+			zone.collisionMap.setCollide(5, y);
+		}
+		final List<Node> path = Path.searchPath(zone, 0, 0, 9, 0, 50);
+		assertEquals(new Node(0, 0), path.get(0));
+		assertEquals(new Node(9, 0), path.get(path.size() - 1));
+		// 9 steps to the right, 9 down and 9 up again
+		assertEquals(28, path.size());
+		assertTrue(path.contains(new Node(5, 9)));
+
+		zone.collisionMap.setCollide(5, 9);
+		assertTrue(Path.searchPath(zone, 0, 0, 9, 0, 50).isEmpty());
+	}
+
+	/**
+	 * Tests that jump point search finds paths of the same length as A* on
+	 * open terrain and around walls.
+	 */
+	@Test
+	public void testJumpPointSearchSameLength() {
+		final StendhalRPZone open = new StendhalRPZone("test", 50, 50);
+		assertEquals(13, searchLength(open, 0, 0, 6, 6, false));
+		assertEquals(13, searchLength(open, 0, 0, 6, 6, true));
+		assertEquals(81, searchLength(open, 0, 0, 40, 40, false));
+		assertEquals(81, searchLength(open, 0, 0, 40, 40, true));
+		assertEquals(searchLength(open, 45, 3, 2, 30, false), searchLength(open, 45, 3, 2, 30, true));
+
+		final StendhalRPZone walled = new StendhalRPZone("test", 10, 10);
+		for (int y = 0; y < 9; y++) {
+			walled.collisionMap.setCollide(5, y);
+		}
+		assertEquals(28, searchLength(walled, 0, 0, 9, 0, false));
+		assertEquals(28, searchLength(walled, 0, 0, 9, 0, true));
+		walled.collisionMap.setCollide(5, 9);
+		assertEquals(0, searchLength(walled, 0, 0, 9, 0, true));
+	}
+
+	/**
+	 * Tests that jump point search finds paths where A* does on terrain with
+	 * random obstacles, and that the paths are complete and as short as
+	 * possible. The tie breaking heuristic of the default search can give
+	 * somewhat longer paths there, so those are only checked to be not
+	 * shorter.
+	 */
+	@Test
+	public void testJumpPointSearch() {
+		final Random random = new Random(1);
+		final StendhalRPZone zone = new StendhalRPZone("test", 60, 60);
+		for (int i = 0; i < 600; i++) {
+			zone.collisionMap.setCollide(random.nextInt(60), random.nextInt(60));
+		}
+		for (int i = 0; i < 200; i++) {
+			final int x = random.nextInt(60);
+			final int y = random.nextInt(60);
+			final Rectangle goal = new Rectangle(random.nextInt(60), random.nextInt(60), 1, 1);
+			if (zone.collisionMap.collides(x, y)) {
+				continue;
+			}
+			final List<Node> astar = new SimplePathfinder(zone, x, y, goal, 200).getPath();
+			final SimplePathfinder finder = new SimplePathfinder(zone, x, y, goal, 200);
+			finder.setJumpPointSearch(true);
+			final List<Node> jps = finder.getPath();
+
+			assertEquals(astar.isEmpty(), jps.isEmpty());
+			if (!jps.isEmpty()) {
+				assertEquals(shortestLength(zone, x, y, goal.x, goal.y), jps.size());
+				assertTrue(jps.size() <= astar.size());
+				assertEquals(new Node(x, y), jps.get(0));
+				assertEquals(new Node(goal.x, goal.y), jps.get(jps.size() - 1));
+				for (int j = 1; j < jps.size(); j++) {
+					final Node a = jps.get(j - 1);
+					final Node b = jps.get(j);
+					assertEquals(1, Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY()));
+					assertTrue(!zone.collisionMap.collides(b.getX(), b.getY()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Search a path with or without jump point search.
+	 *
+	 * @return number of nodes in the path, 0 if none was found
+	 */
+	private static int searchLength(final StendhalRPZone zone, final int x, final int y,
+			final int goalX, final int goalY, final boolean jumpPointSearch) {
+		final SimplePathfinder finder = new SimplePathfinder(zone, x, y,
+				new Rectangle(goalX, goalY, 1, 1), 200);
+		finder.setJumpPointSearch(jumpPointSearch);
+		return finder.getPath().size();
+	}
+
+	/**
+	 * Get the number of nodes in the shortest path with a breadth first
+	 * search.
+	 *
+	 * @return number of nodes in the shortest path, 0 if there is none
+	 */
+	private static int shortestLength(final StendhalRPZone zone, final int x, final int y,
+			final int goalX, final int goalY) {
+		final int width = zone.getWidth();
+		final int height = zone.getHeight();
+		final int[] length = new int[width * height];
+		final int[] queue = new int[width * height];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = x + y * width;
+		length[x + y * width] = 1;
+		while (head < tail) {
+			final int node = queue[head++];
+			final int nodeX = node % width;
+			final int nodeY = node / width;
+			if ((nodeX == goalX) && (nodeY == goalY)) {
+				return length[node];
+			}
+			final int[][] steps = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+			for (final int[] step : steps) {
+				final int childX = nodeX + step[0];
+				final int childY = nodeY + step[1];
+				if ((childX < 0) || (childY < 0) || (childX >= width) || (childY >= height)
+						|| zone.collisionMap.collides(childX, childY)) {
+					continue;
+				}
+				final int child = childX + childY * width;
+				if (length[child] == 0) {
+					length[child] = length[node] + 1;
+					queue[tail++] = child;
+				}
+			}
+		}
+		return 0;
+	}
 }
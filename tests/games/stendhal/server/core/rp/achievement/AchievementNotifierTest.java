@@ -0,0 +1,74 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rp.achievement;
+
+import static games.stendhal.server.core.rp.achievement.factory.AdosItemQuestAchievementsFactory.ID_PROVIDER;
+import static games.stendhal.server.core.rp.achievement.factory.AdosItemQuestAchievementsFactory.ID_SUPPORTER;
+import static games.stendhal.server.core.rp.achievement.factory.FriendAchievementFactory.ID_GOOD_SAMARITAN;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import games.stendhal.server.entity.player.Player;
+import utilities.AchievementTestHelper;
+
+/**
+ * Tests for the selection of the achievements that are checked on quest
+ * changes and on login.
+ */
+public class AchievementNotifierTest extends AchievementTestHelper {
+
+	private Player player;
+
+	@Before
+	public void setUp() {
+		player = createPlayer("player");
+		init(player);
+	}
+
+	/**
+	 * An achievement is checked when a quest slot it declares changes.
+	 */
+	@Test
+	public void testDeclaredQuestSlot() {
+		player.setQuest("daily_item", "done;0;10");
+		assertTrue(achievementReached(player, ID_SUPPORTER));
+		assertFalse(achievementReached(player, ID_PROVIDER));
+	}
+
+	/**
+	 * An achievement with unknown quest slots is checked on any quest change.
+	 */
+	@Test
+	public void testUnknownQuestSlots() {
+		player.addKarma(300);
+		assertFalse(achievementReached(player, ID_GOOD_SAMARITAN));
+		player.setQuest("unrelated_quest", "done");
+		assertTrue(achievementReached(player, ID_GOOD_SAMARITAN));
+	}
+
+	/**
+	 * An achievement is not checked when a quest slot changes it does not
+	 * read, but it is checked on login.
+	 */
+	@Test
+	public void testOtherQuestSlot() {
+		player.setKeyedSlot("!quests", "daily_item", "done;0;10");
+		player.setQuest("unrelated_quest", "done");
+		assertFalse(achievementReached(player, ID_SUPPORTER));
+
+		an.onLogin(player);
+		assertTrue(achievementReached(player, ID_SUPPORTER));
+	}
+}
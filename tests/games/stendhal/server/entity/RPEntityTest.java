@@ -38,6 +38,7 @@ import games.stendhal.server.entity.item.CaptureTheFlagFlag;
 import games.stendhal.server.entity.item.Container;
 import games.stendhal.server.entity.item.Corpse;
 import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.item.StackableItem;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.entity.slot.PlayerSlot;
 import games.stendhal.server.events.AttackEvent;
@@ -205,6 +206,58 @@ public class RPEntityTest {
 		assertEquals(1, entity.getNumberOfEquipped("carrot"));
 	}
 
+	/**
+	 * Tests that the item lookups by name follow the changes in the slots,
+	 * including the slots of container items.
+	 */
+	@Test
+	public void testItemLookupsFollowSlotChanges() {
+		final RPEntity entity = new MockRPEntity();
+		entity.addSlot(new PlayerSlot("bag"));
+		entity.addSlot(new PlayerSlot("bank"));
+		assertEquals(0, entity.getNumberOfEquipped("carrot"));
+
+		entity.equip("bag", ItemTestHelper.createItem("carrot", 3));
+		entity.equip("bank", ItemTestHelper.createItem("carrot", 5));
+		assertEquals(3, entity.getNumberOfEquipped("Carrot"));
+		assertEquals(8, entity.getTotalNumberOf("carrot"));
+		assertTrue(entity.isEquipped("carrot", 3));
+		assertFalse(entity.isEquipped("carrot", 4));
+
+		// contents of a carried container
+		Item bag = new Container("testbag", "container", "testbag", Collections.emptyMap());
+		entity.equip("bag", bag);
+		Item inner = ItemTestHelper.createItem("carrot", 2);
+		bag.getSlot("content").add(inner);
+		assertEquals(5, entity.getNumberOfEquipped("carrot"));
+		assertEquals(2, entity.getAllEquipped("carrot").size());
+
+		// stack size changes
+		((StackableItem) inner).setQuantity(4);
+		assertEquals(7, entity.getNumberOfEquipped("carrot"));
+
+		// removing the container removes its contents
+		entity.getSlot("bag").remove(bag.getID());
+		assertEquals(3, entity.getNumberOfEquipped("carrot"));
+		assertEquals(8, entity.getTotalNumberOf("carrot"));
+
+		assertTrue(entity.drop("carrot", 3));
+		assertEquals(null, entity.getFirstEquipped("carrot"));
+		assertFalse(entity.drop("carrot"));
+		assertEquals(5, entity.getTotalNumberOf("carrot"));
+
+		// slots removed and added with contents
+		entity.addSlot(new PlayerSlot("pouch"));
+		entity.equip("pouch", ItemTestHelper.createItem("money", 10));
+		assertEquals(10, entity.getTotalNumberOf("money"));
+		RPSlot pouch = entity.removeSlot("pouch");
+		assertEquals(0, entity.getTotalNumberOf("money"));
+		entity.addSlot(pouch);
+		assertEquals(10, entity.getTotalNumberOf("money"));
+		entity.getSlot("pouch").clear();
+		assertEquals(0, entity.getTotalNumberOf("money"));
+	}
+
 	/**
 	 * Tests for getItemAtkforsimpleweapon.
 	 */
@@ -289,6 +342,54 @@ public class RPEntityTest {
 
 	}
 
+	/**
+	 * Tests that the item values follow equipment, level and item changes.
+	 */
+	@Test
+	public void testItemValuesFollowChanges() {
+		final RPEntity entity = new MockRPEntity();
+		entity.addSlot(new PlayerSlot("lhand"));
+		entity.addSlot(new PlayerSlot("rhand"));
+		entity.addSlot(new PlayerSlot("armor"));
+		entity.setLevel(10);
+
+		// level modifier
+		final Item armor = SingletonRepository.getEntityManager().getItem("leather armor");
+		armor.put("min_level", 20);
+		entity.getSlot("armor").add(armor);
+		final float lowLevelDef = entity.getItemDef();
+		assertThat(lowLevelDef, greaterThan(0f));
+		entity.setLevel(20);
+		final float armorDef = entity.getItemDef();
+		assertThat(armorDef, greaterThan(lowLevelDef));
+
+		// changed item values are seen after updating
+		armor.put("def", armor.getDefense() + 10);
+		entity.updateItemAtkDef();
+		assertThat(entity.getItemDef(), greaterThan(armorDef));
+
+		// running out of ammunition
+		final Item bow = SingletonRepository.getEntityManager().getItem("wooden bow");
+		entity.equip("lhand", bow);
+		assertThat(entity.getRangeWeapon(), is(bow));
+		final float bowAtk = entity.getItemAtk();
+		final StackableItem arrows = (StackableItem) SingletonRepository.getEntityManager().getItem("wooden arrow");
+		arrows.setQuantity(2);
+		entity.equip("rhand", arrows);
+		assertNotNull(entity.getAmmunition());
+		final float arrowAtk = entity.getItemAtk();
+		assertThat(arrowAtk, greaterThan(bowAtk));
+		entity.drop("wooden arrow");
+		assertThat(entity.getItemAtk(), is(arrowAtk));
+		entity.drop("wooden arrow");
+		assertEquals(null, entity.getAmmunition());
+		assertThat(entity.getItemAtk(), is(bowAtk));
+
+		// the returned weapon list is the caller's own
+		entity.getWeapons().clear();
+		assertEquals(Arrays.asList(bow), entity.getWeapons());
+	}
+
 	/**
 	 * Tests for attackCanHitreturnTruedamageZero.
 	 */
@@ -0,0 +1,52 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import games.stendhal.common.parser.Sentence;
+
+/**
+ * Tests for the utterance cache.
+ */
+public class UtteranceCacheTest {
+
+	/**
+	 * Texts must be parsed only once while the NPCs react to the players,
+	 * and again after that.
+	 */
+	@Test
+	public void testParseOncePerTurn() {
+		final UtteranceCache cache = UtteranceCache.get();
+		final Sentence outside = cache.parse("buy 2 cookies");
+		assertNotSame(outside, cache.parse("buy 2 cookies"));
+
+		final long hits = cache.getHits();
+		cache.beginTurn();
+		try {
+			final Sentence sentence = cache.parse("buy 2 cookies");
+			assertEquals("buy", sentence.getTriggerExpression().getNormalized());
+			assertSame(sentence, cache.parse("buy 2 cookies"));
+			assertEquals(hits + 1, cache.getHits());
+
+			cache.endTurn();
+			cache.beginTurn();
+			assertNotSame(sentence, cache.parse("buy 2 cookies"));
+		} finally {
+			cache.endTurn();
+		}
+	}
+}
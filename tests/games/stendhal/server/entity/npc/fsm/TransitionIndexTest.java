@@ -0,0 +1,126 @@
+/***************************************************************************
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.fsm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import games.stendhal.common.parser.ConversationParser;
+import games.stendhal.common.parser.Expression;
+import games.stendhal.common.parser.ExpressionMatcher;
+import games.stendhal.common.parser.JokerExprMatcher;
+import games.stendhal.common.parser.Sentence;
+import games.stendhal.server.entity.npc.ConversationStates;
+
+/**
+ * Tests for the transition index.
+ */
+public class TransitionIndexTest {
+	private static final String[] TRIGGERS = { "hi", "hello", "job", "jobs", "offer", "quest", "task", "help",
+		"buy", "sell", "yes", "no", "bye", "goodbye", "leather armor", "leather armour", "cloak", "cloaks",
+		"elf cloak", "magic scroll", "", "ados" };
+
+	private static final String[] INPUTS = { "hi", "Hello", "hallo", "job", "jobs", "joob", "offers", "quest",
+		"quets", "tasks", "help me", "buy cloak", "buy 2 cloaks", "sell leather armor", "yes", "yess", "no", "nope",
+		"bye", "goodby", "leather armour", "cloaks", "elf cloak", "magic scrol", "ados", "xyz", "a" };
+
+	private final List<Transition> transitions = new ArrayList<Transition>();
+	private final TransitionIndex index = new TransitionIndex();
+
+	@Before
+	public void setUp() {
+		final ConversationStates[] states = { ConversationStates.IDLE, ConversationStates.ATTENDING,
+				ConversationStates.QUEST_OFFERED, ConversationStates.ANY };
+		int i = 0;
+		for (final ConversationStates state : states) {
+			for (final String trigger : TRIGGERS) {
+				// vary the number of triggers per transition
+				final List<String> triggers = new ArrayList<String>();
+				triggers.add(trigger);
+				if ((i % 3) == 0) {
+					triggers.add(TRIGGERS[(i * 7) % TRIGGERS.length]);
+				}
+				addTransition(state, triggers, null);
+				i++;
+			}
+			addTransition(state, Arrays.asList("buy"), new JokerExprMatcher());
+			addTransition(state, Arrays.asList("|TYPE|ados"), null);
+		}
+	}
+
+	private void addTransition(final ConversationStates state, final List<String> triggers,
+			final ExpressionMatcher matcher) {
+		final List<Expression> expressions = new ArrayList<Expression>();
+		for (final String trigger : triggers) {
+			expressions.add(ConversationParser.createTriggerExpression(trigger, matcher));
+		}
+		final Transition transition = new Transition(state, expressions, null, false, ConversationStates.IDLE,
+				null, null);
+		transitions.add(transition);
+		index.add(transition);
+	}
+
+	/**
+	 * The index must find the same matching transitions in the same order as
+	 * a scan of all transitions.
+	 */
+	@Test
+	public void testSameMatchesAsScan() {
+		for (final String input : INPUTS) {
+			final Sentence sentence = ConversationParser.parse(input);
+			for (final ConversationStates state : ConversationStates.values()) {
+				for (final MatchType type : MatchType.values()) {
+					final String message = type + " " + state + " '" + input + "'";
+					assertEquals(message, scan(type, state, sentence),
+							new ArrayList<Transition>(index.getMatches(type, state, sentence)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The index must stay consistent when it is rebuilt after removing
+	 * transitions.
+	 */
+	@Test
+	public void testRebuild() {
+		for (int i = transitions.size() - 1; i >= 0; i -= 3) {
+			transitions.remove(i);
+		}
+		index.rebuild(transitions);
+
+		for (final String input : INPUTS) {
+			final Sentence sentence = ConversationParser.parse(input);
+			for (final MatchType type : MatchType.values()) {
+				final ConversationStates state = ConversationStates.ATTENDING;
+				assertEquals(type + " '" + input + "'", scan(type, state, sentence),
+						new ArrayList<Transition>(index.getMatches(type, state, sentence)));
+			}
+		}
+	}
+
+	private List<Transition> scan(final MatchType type, final ConversationStates state, final Sentence sentence) {
+		final List<Transition> result = new ArrayList<Transition>();
+		for (final Transition transition : transitions) {
+			if (type.match(transition, state, sentence)) {
+				result.add(transition);
+			}
+		}
+		return result;
+	}
+}
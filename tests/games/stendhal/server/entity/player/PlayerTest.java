@@ -363,6 +363,31 @@ public class PlayerTest {
 
 	}
 
+	/**
+	 * Tests for quest states that are changed without setQuest().
+	 */
+	@Test
+	public void testQuestChangedInSlot() {
+		Player player = PlayerTestHelper.createPlayer("questTestPlayer");
+		player.setQuest("testquest", "start;leather armor=2;5");
+		assertThat(player.getQuest("testquest", 1), equalTo("leather armor=2"));
+		assertThat(player.getRequiredItemName("testquest", 1), equalTo("leather armor"));
+		assertThat(player.getRequiredItemQuantity("testquest", 1), equalTo(2));
+		assertThat(player.getRequiredItemName("testquest", 2), equalTo("5"));
+
+		player.setKeyedSlot("!quests", "testquest", "done;cloak;7");
+		assertThat(player.getQuest("testquest", 0), equalTo("done"));
+		assertThat(player.getRequiredItemName("testquest", 1), equalTo("cloak"));
+		assertThat(player.getNumberOfRepetitions("testquest", 2), equalTo(7));
+		assertTrue(player.isQuestInState("testquest", 0, "done"));
+
+		player.setQuest("testquest", 2, "8");
+		assertThat(player.getQuest("testquest"), equalTo("done;cloak;8"));
+
+		player.removeQuest("testquest");
+		assertThat(player.getQuest("testquest", 0), nullValue());
+	}
+
 	/**
 	 * Test that the damage done by a player is of right type.
 	 */
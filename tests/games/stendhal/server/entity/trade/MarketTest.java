@@ -19,6 +19,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -593,6 +595,84 @@ public class MarketTest {
 		assertTrue(market.getExpiredOffers().size() == 0);
 	}
 
+	/**
+	 * Tests that the offer queries follow the changes of the market.
+	 */
+	@Test
+	public void testFindOffers() {
+		Player bob = PlayerTestHelper.createPlayer("bob");
+		Player alice = PlayerTestHelper.createPlayer("alice");
+		StendhalRPZone zone = new StendhalRPZone("shop");
+		Market market = Market.createShop();
+		zone.add(market);
+
+		Offer[] offers = new Offer[4];
+		String[] names = { "axe", "cheese", "battle axe", "axe" };
+		for (int i = 0; i < offers.length; i++) {
+			Player player = (i % 2 == 0) ? bob : alice;
+			Item item = SingletonRepository.getEntityManager().getItem(names[i]);
+			player.equipToInventoryOnly(item);
+			offers[i] = market.createOffer(player, item, 10 + i, 1);
+		}
+		assertEquals(Arrays.asList(offers), market.findOffers(null, null, 0, 10));
+		assertEquals(Arrays.asList(offers[1], offers[2]), market.findOffers(null, null, 1, 2));
+		// the word is looked for in the item name, or compared to the class
+		assertEquals(Arrays.asList(offers[0], offers[2], offers[3]), market.findOffers("axe", null, 0, 10));
+		assertEquals(Arrays.asList(offers[1]), market.findOffers("food", null, 0, 10));
+		assertEquals(Arrays.asList(offers[1], offers[3]), market.findOffers(null, "alice", 0, 10));
+		assertEquals(Arrays.asList(offers[3]), market.findOffers("axe", "alice", 0, 10));
+		assertEquals(Arrays.asList("axe", "battle axe", "cheese"), new ArrayList<>(market.getOfferedItemNames()));
+		assertThat(market.countOffersOfPlayer(bob), is(2));
+
+		market.expireOffer(offers[0]);
+		assertEquals(Arrays.asList(offers[2], offers[3]), market.findOffers("axe", null, 0, 10));
+		assertEquals(Arrays.asList(offers[0]), market.findExpiredOffers(null, "bob", 0, 10));
+		assertThat(market.countOffersOfPlayer(bob), is(1));
+
+		// a prolonged expired offer is placed last
+		market.prolongOffer(offers[0]);
+		assertEquals(Arrays.asList(offers[2], offers[3], offers[0]), market.findOffers("axe", null, 0, 10));
+		assertTrue(market.findExpiredOffers(null, null, 0, 10).isEmpty());
+
+		market.removeOffer(offers[2], bob);
+		assertEquals(Arrays.asList(offers[1], offers[3], offers[0]), market.findOffers(null, null, 0, 10));
+		assertEquals(Arrays.asList("axe", "cheese"), new ArrayList<>(market.getOfferedItemNames()));
+
+		market.getSlot(Market.OFFERS_SLOT_NAME).clear();
+		assertTrue(market.findOffers(null, null, 0, 10).isEmpty());
+		assertThat(market.countOffersOfPlayer(alice), is(0));
+	}
+
+	/**
+	 * Tests that the offers, expired offers and earnings of a market loaded
+	 * from the database can be queried.
+	 */
+	@Test
+	public void testQueriesAfterLoading() {
+		Player bob = PlayerTestHelper.createPlayer("bob");
+		StendhalRPZone zone = new StendhalRPZone("shop");
+		Market market = Market.createShop();
+		zone.add(market);
+		for (String name : new String[] { "axe", "cheese", "carrot" }) {
+			Item item = SingletonRepository.getEntityManager().getItem(name);
+			bob.equipToInventoryOnly(item);
+			market.createOffer(bob, item, 0, 1);
+		}
+		market.expireOffer(market.findOffers("cheese", null, 0, 1).get(0));
+		Player ernie = PlayerTestHelper.createPlayer("ernie");
+		market.acceptOffer(market.findOffers("carrot", null, 0, 1).get(0), ernie);
+
+		Market loaded = new Market(market);
+		zone.add(loaded);
+		assertThat(loaded.countOffersOfPlayer(bob), is(1));
+		assertEquals("axe", loaded.findOffers(null, "bob", 0, 10).get(0).getItemName());
+		assertEquals("cheese", loaded.findExpiredOffers("cheese", null, 0, 10).get(0).getItemName());
+		assertTrue(loaded.hasEarningsFor(bob));
+		assertThat(loaded.getOffersOlderThan(-1).size(), is(1));
+		assertThat(loaded.getExpiredOffersOlderThan(-1).size(), is(1));
+		assertThat(loaded.getEarningsOlderThan(-1).size(), is(1));
+	}
+
 	@Test
 	public void testExpireEarnings() {
 		Player george = PlayerTestHelper.createPlayer("george");